@@ -0,0 +1,26 @@
+package villanidev.jproxypayment.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entrada do benchmarks.jar: aceita as mesmas opções do JMH (filtro por regex, -f, -wi, -i, -prof...)
+ * e liga sempre o profiler de GC, para que gc.alloc.rate.norm (bytes por operação) apareça em toda
+ * execução e uma regressão de alocação por pagamento fique visível.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package villanidev.jproxypayment.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisCacheClient contra o {@link RespStandIn} em loopback.
+ * <ul>
+ *   <li>{@code savePayment}: registro no write-behind, o que a thread do worker paga por
+ *       pagamento concluído. Os lotes seguem para o stand-in em segundo plano.</li>
+ *   <li>{@code savePaymentThenSummary}: um registro seguido da leitura do summary, que espera o
+ *       flush: uma transação MULTI por pagamento, o pior caso do write-behind.</li>
+ *   <li>{@code summary}: só o MGET dos totais e a resposta do cache de JSON.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisCacheClientBenchmark {
+
+    private RespStandIn standIn;
+    private JedisPool jedisPool;
+    private RedisCacheClient client;
+    private final Instant timestamp = Instant.parse("2025-07-15T12:34:56.000Z");
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = new RespStandIn();
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(20);
+        poolConfig.setMaxIdle(10);
+        jedisPool = new JedisPool(poolConfig, "127.0.0.1", standIn.port());
+        client = new RedisCacheClient(jedisPool, "bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        jedisPool.close();
+        standIn.close();
+    }
+
+    @Benchmark
+    public void savePayment() {
+        client.savePayment(new UUID(++sequence, sequence), "default", 1990, timestamp);
+    }
+
+    @Benchmark
+    public byte[] savePaymentThenSummary() {
+        client.savePayment(new UUID(++sequence, sequence), "default", 1990, timestamp);
+        return client.getSummaryJson(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public byte[] summary() {
+        return client.getSummaryJson(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,58 @@
+package villanidev.jproxypayment.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse do corpo de POST /payments como o PaymentHandler faz no event loop: direto do buffer
+ * direto da conexão, sem copiar para o heap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentBodyParserBenchmark {
+
+    @Param({"canonical", "reordered"})
+    public String body;
+
+    private final PaymentBodyParser parser = new PaymentBodyParser();
+    private ByteBuffer buffer;
+    private int length;
+
+    @Setup
+    public void setUp() {
+        String json = switch (body) {
+            case "canonical" -> "{\"correlationId\":\"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3\",\"amount\":19.90}";
+            // Campos fora de ordem, espaços e um campo desconhecido a pular
+            default -> "{ \"amount\" : 19.9, \"extra\": {\"a\": [1, 2]},\n  \"correlationId\" : \"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3\" }";
+        };
+        byte[] bytes = json.getBytes(StandardCharsets.US_ASCII);
+        buffer = ByteBuffer.allocateDirect(4096);
+        buffer.put(0, bytes);
+        length = bytes.length;
+    }
+
+    @Benchmark
+    public long parse() {
+        if (!parser.parse(buffer, 0, length)) {
+            throw new IllegalStateException(parser.error());
+        }
+        return parser.correlationIdMsb() ^ parser.correlationIdLsb() ^ parser.amountCents();
+    }
+}
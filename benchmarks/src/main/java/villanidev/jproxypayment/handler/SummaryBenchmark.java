@@ -0,0 +1,71 @@
+package villanidev.jproxypayment.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import villanidev.jproxypayment.cache.SummaryJsonCache;
+import villanidev.jproxypayment.server.HttpResponses;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminho do GET /payments-summary fora do Redis: parse da query e montagem da resposta.
+ * {@code jsonCacheHit} é o caso comum (totais iguais aos da leitura anterior, bytes
+ * reaproveitados); {@code jsonCacheMiss} força a reserialização a cada chamada.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBenchmark {
+
+    private final SummaryQueryParser parser = new SummaryQueryParser();
+    private final SummaryJsonCache jsonCache = new SummaryJsonCache();
+    private ByteBuffer query;
+    private int queryLength;
+    private long counter;
+
+    @Setup
+    public void setUp() {
+        byte[] bytes = "from=2025-07-15T12:34:56.000Z&to=2025-07-15T12:35:56.000Z".getBytes(StandardCharsets.US_ASCII);
+        query = ByteBuffer.allocateDirect(256);
+        query.put(0, bytes);
+        queryLength = bytes.length;
+        jsonCache.update(15_000, 29_850_000, 3_000, 5_970_000);
+    }
+
+    @Benchmark
+    public long parseQuery() {
+        if (!parser.parse(query, 0, queryLength)) {
+            throw new IllegalStateException("invalid query");
+        }
+        return parser.fromMillis() ^ parser.toMillis();
+    }
+
+    @Benchmark
+    public byte[] jsonCacheHit() {
+        return jsonCache.update(15_000, 29_850_000, 3_000, 5_970_000);
+    }
+
+    @Benchmark
+    public byte[] jsonCacheMiss() {
+        counter++;
+        return jsonCache.update(15_000 + counter, 29_850_000 + counter * 1990, 3_000, 5_970_000);
+    }
+
+    @Benchmark
+    public byte[] renderWindowResponse() {
+        return HttpResponses.json(SummaryJsonCache.render(15_000, 29_850_000, 3_000, 5_970_000));
+    }
+}
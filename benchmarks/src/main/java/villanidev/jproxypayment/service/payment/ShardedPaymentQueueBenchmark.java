@@ -0,0 +1,79 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import villanidev.jproxypayment.dto.PaymentEvent;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor de fila do PaymentQueueService: aceite (dedup + offer) e consumo (take) de um pagamento.
+ * Cada operação faz um offer seguido de um take, então a fila nunca esvazia para quem vai tirar
+ * e nenhum worker fica bloqueado no fim da iteração. {@code contended} roda com um worker por
+ * thread disputando os shards (com roubo entre eles).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedPaymentQueueBenchmark {
+
+    private static final int WORKERS = 4;
+
+    @State(Scope.Benchmark)
+    public static class Queue {
+        ShardedPaymentQueue queue;
+        CorrelationIdIndex acceptedIds;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            queue = new ShardedPaymentQueue(WORKERS);
+            acceptedIds = new CorrelationIdIndex(1 << 17, Duration.ofSeconds(60));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        int index;
+        long sequence;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            index = threadParams.getThreadIndex() % WORKERS;
+            sequence = (long) threadParams.getThreadIndex() << 40;
+        }
+    }
+
+    @Benchmark
+    public PaymentEvent offerTake(Queue state, Worker worker) throws InterruptedException {
+        return acceptAndTake(state, worker);
+    }
+
+    @Benchmark
+    @Threads(WORKERS)
+    public PaymentEvent contended(Queue state, Worker worker) throws InterruptedException {
+        return acceptAndTake(state, worker);
+    }
+
+    private static PaymentEvent acceptAndTake(Queue state, Worker worker) throws InterruptedException {
+        long msb = ++worker.sequence * 0x9E3779B97F4A7C15L;
+        long lsb = worker.sequence;
+        // Ids sempre novos: o add nunca recusa, e o offer incondicional garante o take seguinte
+        state.acceptedIds.add(msb, lsb);
+        state.queue.offer(msb, lsb, 1990, 1_752_582_896_000L);
+        return state.queue.take(worker.index);
+    }
+}
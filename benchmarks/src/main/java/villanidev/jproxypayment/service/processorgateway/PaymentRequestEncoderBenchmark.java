@@ -0,0 +1,42 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corpo enviado aos processadores: {@code encode} é o que o HttpPaymentProcessor usa (array de
+ * tamanho exato, uma alocação); {@code encodeTo} escreve num buffer reaproveitado.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentRequestEncoderBenchmark {
+
+    private static final long MSB = 0x4a7901b87d264d9dL;
+    private static final long LSB = 0xaa194dc1c7cf60b3L;
+
+    private final byte[] scratch = new byte[PaymentRequestEncoder.MAX_LENGTH];
+    private long epochMillis = 1_752_582_896_000L;
+
+    @Benchmark
+    public byte[] encode() {
+        return PaymentRequestEncoder.encode(MSB, LSB, 1990, epochMillis++);
+    }
+
+    @Benchmark
+    public int encodeTo() {
+        return PaymentRequestEncoder.encodeTo(scratch, 0, MSB, LSB, 1990, epochMillis++);
+    }
+}
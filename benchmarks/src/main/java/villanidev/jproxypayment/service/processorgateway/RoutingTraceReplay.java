@@ -0,0 +1,124 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Avalia uma {@link RoutingPolicy} offline contra um trace gravado de latências, sem Redis nem
+ * processadores. Cada linha do CSV é o que a eleição veria naquele instante para um processador:
+ * <pre>
+ * elapsedMillis,processor,failing,latencyMillis,errorRate
+ * 0,default,false,12,0.0
+ * 0,fallback,false,35,0.0
+ * 1000,default,true,2147483647,1.0
+ * </pre>
+ * A decisão vale até o próximo instante do trace; o resultado é a fração do tempo em cada
+ * destino e a taxa média paga por pagamento roteado.
+ *
+ * <p>Fica no módulo de benchmarks, fora da imagem. Uso, depois de {@code mvn -f benchmarks/pom.xml package}:
+ * {@code java -cp benchmarks/target/benchmarks.jar villanidev.jproxypayment.service.processorgateway.RoutingTraceReplay trace.csv [cost|latency]}
+ */
+public final class RoutingTraceReplay {
+
+    public record TraceSample(long elapsedMillis, String processor, boolean failing, long latencyMillis, double errorRate) {}
+
+    public record Result(double defaultShare, double fallbackShare, double holdShare, double averageFee) {}
+
+    private static final double DEFAULT_FEE = 0.05;
+    private static final double FALLBACK_FEE = 0.10;
+
+    private RoutingTraceReplay() {
+    }
+
+    public static Result replay(List<TraceSample> trace, RoutingPolicy policy) {
+        TraceSample lastDefault = null;
+        TraceSample lastFallback = null;
+        long defaultDownSince = -1;
+        long fallbackDownSince = -1;
+
+        double defaultTime = 0;
+        double fallbackTime = 0;
+        double holdTime = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            TraceSample sample = trace.get(i);
+            if ("default".equals(sample.processor())) {
+                lastDefault = sample;
+                defaultDownSince = sample.failing() ? (defaultDownSince < 0 ? sample.elapsedMillis() : defaultDownSince) : -1;
+            } else {
+                lastFallback = sample;
+                fallbackDownSince = sample.failing() ? (fallbackDownSince < 0 ? sample.elapsedMillis() : fallbackDownSince) : -1;
+            }
+            if (lastDefault == null || lastFallback == null || i + 1 == trace.size()) {
+                continue;
+            }
+            long duration = trace.get(i + 1).elapsedMillis() - sample.elapsedMillis();
+            if (duration <= 0) {
+                continue;
+            }
+
+            RoutingDecision decision = policy.decide(
+                    view(lastDefault, DEFAULT_FEE, defaultDownSince, sample.elapsedMillis()),
+                    view(lastFallback, FALLBACK_FEE, fallbackDownSince, sample.elapsedMillis()));
+            if (decision.hold()) {
+                holdTime += duration;
+            } else {
+                defaultTime += duration * decision.defaultWeight();
+                fallbackTime += duration * (1 - decision.defaultWeight());
+            }
+        }
+
+        double total = defaultTime + fallbackTime + holdTime;
+        if (total == 0) {
+            return new Result(0, 0, 0, 0);
+        }
+        double routed = defaultTime + fallbackTime;
+        double averageFee = routed == 0 ? 0 : (defaultTime * DEFAULT_FEE + fallbackTime * FALLBACK_FEE) / routed;
+        return new Result(defaultTime / total, fallbackTime / total, holdTime / total, averageFee);
+    }
+
+    private static ProcessorView view(TraceSample sample, double fee, long downSince, long now) {
+        return new ProcessorView(sample.processor(),
+                fee,
+                sample.failing(),
+                sample.latencyMillis(),
+                sample.errorRate(),
+                downSince < 0 ? 0 : now - downSince);
+    }
+
+    public static List<TraceSample> read(Path path) throws IOException {
+        List<TraceSample> trace = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            if (line.isBlank() || line.startsWith("#") || line.startsWith("elapsedMillis")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            trace.add(new TraceSample(
+                    Long.parseLong(parts[0].trim()),
+                    parts[1].trim(),
+                    Boolean.parseBoolean(parts[2].trim()),
+                    Long.parseLong(parts[3].trim()),
+                    Double.parseDouble(parts[4].trim())));
+        }
+        return trace;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Uso: RoutingTraceReplay <trace.csv> [cost|latency]");
+            System.exit(1);
+        }
+        RoutingPolicy policy = RoutingPolicy.fromName(args.length > 1 ? args[1] : "cost");
+        Result result = replay(read(Path.of(args[0])), policy);
+        System.out.println(String.format(Locale.ROOT,
+                "%s: default=%.1f%% fallback=%.1f%% hold=%.1f%% averageFee=%.4f",
+                policy.getClass().getSimpleName(),
+                result.defaultShare() * 100,
+                result.fallbackShare() * 100,
+                result.holdShare() * 100,
+                result.averageFee()));
+    }
+}
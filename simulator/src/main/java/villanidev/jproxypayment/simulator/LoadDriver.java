@@ -0,0 +1,217 @@
+package villanidev.jproxypayment.simulator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga: envia POST /payments ao proxy a uma taxa fixa (modelo aberto: cada envio
+ * tem um horário marcado e a latência é medida a partir dele, então fila no proxy aparece no
+ * p99 em vez de baixar a taxa) e GET /payments-summary em paralelo. No fim espera as respostas
+ * pendentes e o {@code --settle} para o proxy drenar a fila, e compara o summary do proxy com o
+ * que cada simulador registrou na mesma janela. Sai com 1 se houver divergência.
+ * <p>
+ * Uso: {@code java -cp simulator.jar villanidev.jproxypayment.simulator.LoadDriver --rate 500
+ * --duration 30 --default-processor http://localhost:8001 --fallback-processor http://localhost:8002}
+ */
+public final class LoadDriver {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("loadDriverHttpVthread-", 0L).factory()))
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final URI target;
+    private final URI defaultProcessor;
+    private final URI fallbackProcessor;
+    private final String amount;
+    private final Map<Integer, LongAdder> paymentStatuses = new ConcurrentHashMap<>();
+    private final LongAdder summaryRequests = new LongAdder();
+    private final LongAdder summaryErrors = new LongAdder();
+    private long[] latenciesMicros;
+    private final AtomicInteger latencyCount = new AtomicInteger();
+
+    LoadDriver(URI target, URI defaultProcessor, URI fallbackProcessor, String amount) {
+        this.target = target;
+        this.defaultProcessor = defaultProcessor;
+        this.fallbackProcessor = fallbackProcessor;
+        this.amount = amount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Args options = new Args(args);
+        LoadDriver driver = new LoadDriver(
+                URI.create(options.get("target", "http://localhost:9999")),
+                URI.create(options.get("default-processor", "http://localhost:8001")),
+                URI.create(options.get("fallback-processor", "http://localhost:8002")),
+                options.get("amount", "19.90"));
+        boolean consistent = driver.run(
+                options.getDouble("rate", 200),
+                options.getInt("duration", 30),
+                options.getDouble("summary-rate", 1),
+                options.getInt("settle", 5));
+        System.exit(consistent ? 0 : 1);
+    }
+
+    boolean run(double rate, int durationSeconds, double summaryRate, int settleSeconds) throws InterruptedException {
+        int total = (int) (rate * durationSeconds);
+        latenciesMicros = new long[total];
+        long intervalNanos = (long) (1_000_000_000L / rate);
+        // O summary dos processors guarda requestedAt em ms; a janela começa antes do primeiro envio
+        Instant from = Instant.now().minusSeconds(1).truncatedTo(ChronoUnit.MILLIS);
+
+        Thread summaryLoad = Thread.ofVirtual().name("loadDriverSummaryVthread-", 0L)
+                .start(() -> summaryLoad(summaryRate, from));
+
+        long startNanos = System.nanoTime();
+        try (ExecutorService senders = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("loadDriverVthread-", 0L).factory())) {
+            for (int i = 0; i < total; i++) {
+                long intendedNanos = startNanos + i * intervalNanos;
+                long wait = intendedNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                senders.submit(() -> sendPayment(intendedNanos));
+            }
+            senders.shutdown();
+            if (!senders.awaitTermination(60, TimeUnit.SECONDS)) {
+                System.err.println("Payments still in flight after 60s");
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        summaryLoad.interrupt();
+        summaryLoad.join();
+
+        report(total, elapsedSeconds);
+        TimeUnit.SECONDS.sleep(settleSeconds);
+        return checkConsistency(from, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    private void sendPayment(long intendedNanos) {
+        String body = "{\"correlationId\":\"" + UUID.randomUUID() + "\",\"amount\":" + amount + "}";
+        HttpRequest request = HttpRequest.newBuilder(target.resolve("/payments"))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        int status;
+        try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        latenciesMicros[latencyCount.getAndIncrement()] = (System.nanoTime() - intendedNanos) / 1_000;
+        paymentStatuses.computeIfAbsent(status, __ -> new LongAdder()).increment();
+    }
+
+    private void summaryLoad(double summaryRate, Instant from) {
+        if (summaryRate <= 0) {
+            return;
+        }
+        long intervalMillis = (long) (1000 / summaryRate);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(intervalMillis);
+                String json = fetch(target.resolve("/payments-summary?from=" + from + "&to=" + Instant.now()));
+                summaryRequests.increment();
+                if (json == null) {
+                    summaryErrors.increment();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void report(int total, double elapsedSeconds) {
+        int count = latencyCount.get();
+        long[] sorted = Arrays.copyOf(latenciesMicros, count);
+        Arrays.sort(sorted);
+        System.out.printf("payments: %d sent in %.1fs (%.0f req/s)%n", total, elapsedSeconds, total / elapsedSeconds);
+        System.out.println("statuses: " + paymentStatuses);
+        if (count > 0) {
+            System.out.printf("latency ms: p50=%.2f p99=%.2f max=%.2f%n",
+                    percentile(sorted, 0.50) / 1000.0, percentile(sorted, 0.99) / 1000.0, sorted[count - 1] / 1000.0);
+        }
+        System.out.println("summary requests: " + summaryRequests.sum() + " (errors: " + summaryErrors.sum() + ")");
+    }
+
+    private boolean checkConsistency(Instant from, Instant to) {
+        String window = "?from=" + from + "&to=" + to;
+        String proxy = fetch(target.resolve("/payments-summary" + window));
+        String defaultSummary = fetch(defaultProcessor.resolve("/admin/payments-summary" + window));
+        String fallbackSummary = fetch(fallbackProcessor.resolve("/admin/payments-summary" + window));
+        if (proxy == null || defaultSummary == null || fallbackSummary == null) {
+            System.out.println("consistency: could not read all summaries");
+            return false;
+        }
+        boolean consistent = compare("default", section(proxy, "default"), defaultSummary)
+                & compare("fallback", section(proxy, "fallback"), fallbackSummary);
+        System.out.println("consistency: " + (consistent ? "OK" : "MISMATCH"));
+        return consistent;
+    }
+
+    private static boolean compare(String processor, String proxy, String simulator) {
+        long proxyRequests = Long.parseLong(number(proxy, "totalRequests"));
+        long simulatorRequests = Long.parseLong(number(simulator, "totalRequests"));
+        BigDecimal proxyAmount = new BigDecimal(number(proxy, "totalAmount"));
+        BigDecimal simulatorAmount = new BigDecimal(number(simulator, "totalAmount"));
+        boolean matches = proxyRequests == simulatorRequests && proxyAmount.compareTo(simulatorAmount) == 0;
+        System.out.printf("%s: proxy %d / %s, processor %d / %s%s%n", processor,
+                proxyRequests, proxyAmount.toPlainString(), simulatorRequests, simulatorAmount.toPlainString(),
+                matches ? "" : "  <-- mismatch");
+        return matches;
+    }
+
+    private String fetch(URI uri) {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? response.body() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String section(String json, String name) {
+        int start = json.indexOf("\"" + name + "\"");
+        return json.substring(start, json.indexOf('}', start) + 1);
+    }
+
+    private static String number(String json, String name) {
+        int start = json.indexOf(':', json.indexOf("\"" + name + "\"")) + 1;
+        int end = start;
+        while (end < json.length() && ",}".indexOf(json.charAt(end)) < 0) {
+            end++;
+        }
+        return json.substring(start, end).trim();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,213 @@
+package villanidev.jproxypayment.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulador de um payment processor do desafio, com os mesmos endpoints:
+ * <ul>
+ *   <li>POST /payments: aplica a fase corrente do {@link SimulationScript} (latência, 500, 429),
+ *       responde 422 para correlationId repetido e registra o pagamento aceito.</li>
+ *   <li>GET /payments/service-health: {@code failing} e {@code minResponseTime} da fase
+ *       corrente, limitado a uma chamada a cada 5 s (429 nas demais).</li>
+ *   <li>GET /admin/payments-summary?from&amp;to: totais do que foi aceito, pelo requestedAt.</li>
+ *   <li>POST /admin/purge-payments: zera os pagamentos registrados.</li>
+ * </ul>
+ * Uso: {@code java -jar simulator.jar --name default --port 8001 --script "0:latency=5;20:down"}.
+ */
+public final class ProcessorSimulator {
+
+    private static final long HEALTH_MIN_INTERVAL_MILLIS = 5_000;
+
+    private final String name;
+    private final SimulationScript script;
+    private final long startedAt = System.currentTimeMillis();
+    // correlationId -> {centavos, requestedAt}
+    private final Map<String, long[]> payments = new ConcurrentHashMap<>();
+    private final AtomicLong lastHealthCheck = new AtomicLong();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    ProcessorSimulator(String name, SimulationScript script) {
+        this.name = name;
+        this.script = script;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Respostas do HttpServer em duas escritas: sem isso o Nagle soma dezenas de ms por chamada
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        Args options = new Args(args);
+        ProcessorSimulator simulator = new ProcessorSimulator(
+                options.get("name", "default"),
+                SimulationScript.parse(options.get("script", "0:latency=5"), options.getInt("loop", 0)));
+        int port = options.getInt("port", 8001);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/payments", simulator::handlePayments);
+        server.createContext("/admin/payments-summary", simulator::handleSummary);
+        server.createContext("/admin/purge-payments", simulator::handlePurge);
+        server.setExecutor(Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(simulator.name + "SimulatorVthread-", 0L).factory()));
+        server.start();
+        System.out.println(simulator.name + " processor simulator listening on port " + port);
+    }
+
+    private void handlePayments(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/payments/service-health")) {
+                handleHealth(exchange);
+            } else if (path.equals("/payments") && "POST".equals(exchange.getRequestMethod())) {
+                handlePayment(exchange);
+            } else {
+                respond(exchange, 404, "");
+            }
+        }
+    }
+
+    private void handlePayment(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        received.increment();
+        SimulationScript.Phase phase = script.at(System.currentTimeMillis() - startedAt);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < phase.throttleRate()) {
+            throttled.increment();
+            respond(exchange, 429, "");
+            return;
+        }
+        long latency = phase.latencyMillis() + (phase.jitterMillis() > 0 ? random.nextLong(phase.jitterMillis() + 1) : 0);
+        sleep(latency);
+        if (random.nextDouble() < phase.failureRate()) {
+            failed.increment();
+            respond(exchange, 500, "");
+            return;
+        }
+
+        String correlationId = field(body, "correlationId");
+        String amount = field(body, "amount");
+        String requestedAt = field(body, "requestedAt");
+        if (correlationId == null || amount == null || requestedAt == null) {
+            respond(exchange, 400, "{\"message\":\"invalid payment\"}");
+            return;
+        }
+        long cents = new BigDecimal(amount).movePointRight(2).longValueExact();
+        long requestedAtMillis = Instant.parse(requestedAt).toEpochMilli();
+        if (payments.putIfAbsent(correlationId, new long[]{cents, requestedAtMillis}) != null) {
+            duplicates.increment();
+            respond(exchange, 422, "{\"message\":\"duplicated correlationId\"}");
+            return;
+        }
+        respond(exchange, 200, "{\"message\":\"payment processed successfully\"}");
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        long now = System.currentTimeMillis();
+        long last = lastHealthCheck.get();
+        if (now - last < HEALTH_MIN_INTERVAL_MILLIS || !lastHealthCheck.compareAndSet(last, now)) {
+            respond(exchange, 429, "");
+            return;
+        }
+        SimulationScript.Phase phase = script.at(now - startedAt);
+        respond(exchange, 200, "{\"failing\":" + phase.failing() + ",\"minResponseTime\":" + phase.latencyMillis() + "}");
+    }
+
+    private void handleSummary(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    if (param.startsWith("from=")) {
+                        from = Instant.parse(param.substring(5)).toEpochMilli();
+                    } else if (param.startsWith("to=")) {
+                        to = Instant.parse(param.substring(3)).toEpochMilli();
+                    }
+                }
+            }
+            long count = 0;
+            long cents = 0;
+            for (long[] payment : payments.values()) {
+                if (payment[1] >= from && payment[1] <= to) {
+                    count++;
+                    cents += payment[0];
+                }
+            }
+            respond(exchange, 200, "{\"totalRequests\":" + count
+                    + ",\"totalAmount\":" + BigDecimal.valueOf(cents, 2).toPlainString()
+                    + ",\"received\":" + received.sum()
+                    + ",\"failed\":" + failed.sum()
+                    + ",\"throttled\":" + throttled.sum()
+                    + ",\"duplicates\":" + duplicates.sum() + "}");
+        }
+    }
+
+    private void handlePurge(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            payments.clear();
+            received.reset();
+            failed.reset();
+            throttled.reset();
+            duplicates.reset();
+            respond(exchange, 200, "{\"message\":\"All payments purged.\"}");
+        }
+    }
+
+    /**
+     * Valor cru de um campo do JSON do pagamento (string sem aspas ou número); basta para o
+     * corpo fixo que o proxy envia.
+     */
+    private static String field(String json, String name) {
+        int key = json.indexOf("\"" + name + "\"");
+        if (key < 0) {
+            return null;
+        }
+        int start = json.indexOf(':', key) + 1;
+        while (start < json.length() && (json.charAt(start) == ' ' || json.charAt(start) == '"')) {
+            start++;
+        }
+        int end = start;
+        while (end < json.length() && ",}\" ".indexOf(json.charAt(end)) < 0) {
+            end++;
+        }
+        return end > start ? json.substring(start, end) : null;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
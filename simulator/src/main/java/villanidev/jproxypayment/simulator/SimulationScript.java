@@ -0,0 +1,76 @@
+package villanidev.jproxypayment.simulator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Roteiro do simulador: fases a partir de um segundo do start, cada uma com latência, jitter,
+ * taxa de falha (500) e taxa de 429. Formato:
+ * <pre>0:latency=5;20:fail=1;40:latency=120,jitter=40,throttle=0.1;60:latency=5</pre>
+ * Chaves omitidas valem o padrão (latency=5, jitter=0, fail=0, throttle=0); {@code down} é o
+ * mesmo que {@code fail=1}. Com {@code loop} &gt; 0 o roteiro recomeça a cada {@code loop} segundos.
+ */
+final class SimulationScript {
+
+    record Phase(long startMillis, long latencyMillis, long jitterMillis, double failureRate, double throttleRate) {
+
+        boolean failing() {
+            return failureRate >= 0.5;
+        }
+    }
+
+    private final List<Phase> phases;
+    private final long loopMillis;
+
+    private SimulationScript(List<Phase> phases, long loopMillis) {
+        this.phases = phases;
+        this.loopMillis = loopMillis;
+    }
+
+    static SimulationScript parse(String script, int loopSeconds) {
+        List<Phase> phases = new ArrayList<>();
+        for (String phase : script.split(";")) {
+            if (phase.isBlank()) {
+                continue;
+            }
+            int colon = phase.indexOf(':');
+            long start = (long) (Double.parseDouble(phase.substring(0, colon).trim()) * 1000);
+            long latency = 5;
+            long jitter = 0;
+            double fail = 0;
+            double throttle = 0;
+            for (String setting : phase.substring(colon + 1).split(",")) {
+                String[] pair = setting.trim().toLowerCase(Locale.ROOT).split("=");
+                switch (pair[0]) {
+                    case "" -> { }
+                    case "latency" -> latency = Long.parseLong(pair[1]);
+                    case "jitter" -> jitter = Long.parseLong(pair[1]);
+                    case "fail" -> fail = Double.parseDouble(pair[1]);
+                    case "throttle" -> throttle = Double.parseDouble(pair[1]);
+                    case "down" -> fail = 1;
+                    default -> throw new IllegalArgumentException("Unknown script setting: " + setting);
+                }
+            }
+            phases.add(new Phase(start, latency, jitter, fail, throttle));
+        }
+        if (phases.isEmpty()) {
+            phases.add(new Phase(0, 5, 0, 0, 0));
+        }
+        phases.sort(Comparator.comparingLong(Phase::startMillis));
+        return new SimulationScript(List.copyOf(phases), loopSeconds * 1000L);
+    }
+
+    Phase at(long elapsedMillis) {
+        long t = loopMillis > 0 ? elapsedMillis % loopMillis : elapsedMillis;
+        Phase current = phases.getFirst();
+        for (Phase phase : phases) {
+            if (phase.startMillis() > t) {
+                break;
+            }
+            current = phase;
+        }
+        return current;
+    }
+}
@@ -1,57 +1,113 @@
 package villanidev;
 
 import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import villanidev.jproxypayment.cache.RedisCacheClient;
 import villanidev.jproxypayment.cache.RedisConfig;
+import villanidev.jproxypayment.cache.RedisWarmUp;
+import villanidev.jproxypayment.handler.HandlerWarmUp;
+import villanidev.jproxypayment.handler.MetricsHandler;
 import villanidev.jproxypayment.handler.PaymentHandler;
+import villanidev.jproxypayment.handler.ReadyHandler;
 import villanidev.jproxypayment.handler.SummaryHandler;
+import villanidev.jproxypayment.handler.SummaryPartialHandler;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.server.NioHttpServer;
+import villanidev.jproxypayment.service.payment.AdmissionController;
 import villanidev.jproxypayment.service.payment.PaymentQueueService;
+import villanidev.jproxypayment.service.payment.PaymentQueueWarmUp;
+import villanidev.jproxypayment.service.processorgateway.CircuitBreaker;
+import villanidev.jproxypayment.service.processorgateway.CircuitBreakerPaymentProcessor;
 import villanidev.jproxypayment.service.processorgateway.DefaultPaymentProcessor;
 import villanidev.jproxypayment.service.processorgateway.DistributedProcessorSelector;
 import villanidev.jproxypayment.service.processorgateway.FallbackPaymentProcessor;
+import villanidev.jproxypayment.service.processorgateway.PaymentProcessor;
+import villanidev.jproxypayment.service.processorgateway.ProcessorClientWarmUp;
+import villanidev.jproxypayment.service.processorgateway.ProcessorEndpoint;
+import villanidev.jproxypayment.service.processorgateway.ProcessorLatencyStats;
+import villanidev.jproxypayment.service.processorgateway.RoutingPolicy;
 import villanidev.jproxypayment.service.scheduler.HealthCheckScheduler;
+import villanidev.jproxypayment.service.summary.PaymentAggregates;
+import villanidev.jproxypayment.service.summary.SummaryService;
+import villanidev.jproxypayment.warmup.WarmUpRunner;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.Executors;
 
 public class Application {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
 
     private static final int MAIN_SERVER_THREADS = 20;
+    private static final String JDK_SERVER = "jdk";
 
     public static void main(String[] args) throws IOException {
         try {
             Instant start = Instant.now();
             int port = 8080;
-            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
             // Configuração do Redis
             String redisHost = System.getenv("REDIS_HOST");
+            String instanceId = System.getenv("INSTANCE_ID");
             RedisConfig redisConfig = new RedisConfig(redisHost);
-            RedisCacheClient redisCacheClient = new RedisCacheClient(redisConfig.getJedisPool());
+            RedisCacheClient redisCacheClient = new RedisCacheClient(redisConfig.getJedisPool(), instanceId);
+            redisCacheClient.start();
 
             // Processadores de pagamento
             String defaultProcessorUrl = System.getenv("DEFAULT_PROCESSOR_URL");
             String fallbackProcessorUrl = System.getenv("FALLBACK_PROCESSOR_URL");
 
-            DefaultPaymentProcessor defaultProcessor = new DefaultPaymentProcessor(
-                    defaultProcessorUrl);
-            FallbackPaymentProcessor fallbackProcessor = new FallbackPaymentProcessor(
-                    fallbackProcessorUrl);
-
-            // Seleção distribuída de processadores
+            // Circuit breakers alimentados pelos pagamentos reais
+            CircuitBreaker defaultCircuitBreaker = new CircuitBreaker("default");
+            CircuitBreaker fallbackCircuitBreaker = new CircuitBreaker("fallback");
+            defaultCircuitBreaker.start();
+            fallbackCircuitBreaker.start();
+
+            // Latência e erros observados nos pagamentos reais (eleição e timeouts)
+            ProcessorLatencyStats defaultLatencyStats = new ProcessorLatencyStats("default");
+            ProcessorLatencyStats fallbackLatencyStats = new ProcessorLatencyStats("fallback");
+
+            PaymentProcessor defaultProcessor = new CircuitBreakerPaymentProcessor(
+                    new DefaultPaymentProcessor(defaultProcessorUrl, defaultLatencyStats),
+                    defaultCircuitBreaker);
+            PaymentProcessor fallbackProcessor = new CircuitBreakerPaymentProcessor(
+                    new FallbackPaymentProcessor(fallbackProcessorUrl, fallbackLatencyStats),
+                    fallbackCircuitBreaker);
+            defaultProcessor.start();
+            fallbackProcessor.start();
+
+            // Seleção distribuída de processadores, com a política de roteamento de ROUTING_POLICY
             DistributedProcessorSelector processorSelector = new DistributedProcessorSelector(
                     redisConfig.getJedisPool(),
-                    System.getenv("INSTANCE_ID"));
-
-            // Serviços
+                    instanceId,
+                    new ProcessorEndpoint("default", defaultProcessor.getFee(), defaultCircuitBreaker, defaultLatencyStats),
+                    new ProcessorEndpoint("fallback", fallbackProcessor.getFee(), fallbackCircuitBreaker, fallbackLatencyStats),
+                    RoutingPolicy.fromName(System.getenv("ROUTING_POLICY")));
+            processorSelector.start();
+
+            // Serviços; os agregados locais respondem o summary com janela junto com os peers
+            PaymentAggregates paymentAggregates = new PaymentAggregates();
+            SummaryService summaryService = new SummaryService(
+                    paymentAggregates,
+                    redisCacheClient,
+                    SummaryService.peersFromEnv());
             PaymentQueueService queueService = new PaymentQueueService(
                     processorSelector,
                     redisCacheClient,
+                    paymentAggregates,
                     defaultProcessor,
                     fallbackProcessor);
+            queueService.start();
+            AdmissionController admissionController = new AdmissionController(
+                    queueService::backlog,
+                    queueService::drainedCount);
+            admissionController.start();
 
             // Agendador de health checks
             HealthCheckScheduler healthCheckScheduler = new HealthCheckScheduler(
@@ -61,23 +117,82 @@ public class Application {
             healthCheckScheduler.start();
 
             // Handlers
-            server.createContext("/payments", new PaymentHandler(queueService));
-            server.createContext("/payments-summary", new SummaryHandler(redisCacheClient));
-
-            // Configura a main thread virtual
-            server.setExecutor(Executors.newFixedThreadPool(
-                    MAIN_SERVER_THREADS,
-                    Thread.ofVirtual().name("mainVthread-", 0L).factory()
-            ));
-
-            server.start();
+            PaymentHandler paymentHandler = new PaymentHandler(queueService, admissionController);
+            SummaryHandler summaryHandler = new SummaryHandler(summaryService);
+            SummaryPartialHandler summaryPartialHandler = new SummaryPartialHandler(summaryService);
+            MetricsHandler metricsHandler = new MetricsHandler(Metrics.REGISTRY);
+            // Warm-up do JIT contra stand-ins em processo; /ready responde 200 só depois dele
+            WarmUpRunner warmUp = new WarmUpRunner(List.of(
+                    new HandlerWarmUp(),
+                    new PaymentQueueWarmUp(),
+                    new ProcessorClientWarmUp(),
+                    new RedisWarmUp()));
+            ReadyHandler readyHandler = new ReadyHandler(warmUp::isReady);
+
+            // HTTP_SERVER=jdk mantém o com.sun.net.httpserver para comparação; o padrão é o servidor NIO
+            String listenAddress;
+            if (JDK_SERVER.equalsIgnoreCase(System.getenv("HTTP_SERVER"))) {
+                HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+                server.createContext("/payments", paymentHandler);
+                server.createContext("/payments-summary", summaryHandler);
+                server.createContext(SummaryService.PARTIAL_PATH, summaryPartialHandler);
+                server.createContext("/metrics", metricsHandler);
+                server.createContext("/ready", readyHandler);
+
+                // Configura a main thread virtual
+                server.setExecutor(Executors.newFixedThreadPool(
+                        MAIN_SERVER_THREADS,
+                        Metrics.countingVirtualThreads(Thread.ofVirtual().name("mainVthread-", 0L).factory())
+                ));
+                server.start();
+                listenAddress = "jdk server on port: " + port;
+            } else {
+                // SERVER_UNIX_SOCKET permite servir o upstream do nginx via Unix domain socket
+                String unixSocket = System.getenv("SERVER_UNIX_SOCKET");
+                NioHttpServer server = unixSocket != null && !unixSocket.isBlank()
+                        ? NioHttpServer.unix(Path.of(unixSocket))
+                        : NioHttpServer.tcp(port);
+                server.route("/payments", paymentHandler);
+                server.route("/payments-summary", summaryHandler);
+                server.route(SummaryService.PARTIAL_PATH, summaryPartialHandler);
+                server.route("/metrics", metricsHandler);
+                server.route("/ready", readyHandler);
+                server.start();
+                listenAddress = unixSocket != null && !unixSocket.isBlank()
+                        ? "nio server on unix socket: " + unixSocket
+                        : "nio server on port: " + port;
+            }
 
             Instant finish = Instant.now();
             long timeElapsed = Duration.between(start, finish).toMillis();
-            System.out.println("Server started on port: " + port + " in " + timeElapsed + " (ms)");
+            LOGGER.info("Server started ({}) in {} (ms)", listenAddress, timeElapsed);
+            // Para comparar JVM e imagem nativa: inclui o boot da JVM, que o tempo acima não vê
+            LOGGER.info("Startup: {} (ms) since process start, RSS {} (kB)",
+                    ProcessHandle.current().info().startInstant()
+                            .map(processStart -> Duration.between(processStart, finish).toMillis())
+                            .orElse(-1L),
+                    residentSetKb());
+
+            warmUp.run();
 
         } catch (Exception e) {
             throw new RuntimeException("App initialization error: ", e);
         }
     }
+
+    /**
+     * VmRSS de /proc/self/status; -1 fora do Linux.
+     */
+    private static long residentSetKb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read RSS: {}", e.toString());
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,213 @@
+package villanidev.jproxypayment.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Totais do summary sem janela mantidos em memória, para responder sem ir ao Redis.
+ * <ul>
+ *   <li>Os desta instância são os que ela já tinha no Redis antes desta execução
+ *       ({@link #TOTALS_KEY_PREFIX}{@code <instância>}, lido no start ou deduzido da resposta do
+ *       primeiro lote) somados a tudo o que o write-behind registrou desde então, gravado ou
+ *       não: ficam em dia a cada pagamento concluído.</li>
+ *   <li>Os das outras instâncias chegam pelo canal {@link #TOTALS_CHANNEL}, publicados por elas
+ *       depois de cada lote aplicado, e podem estar até um flush atrás, como na leitura do Redis.
+ *       A cada (re)assinatura eles são relidos das chaves de cada instância listada em
+ *       {@link #INSTANCES_KEY}, já com a assinatura ativa: nenhuma publicação cai no intervalo.</li>
+ * </ul>
+ * Os totais de uma instância só crescem, então entre duas versões fica a de mais pagamentos e a
+ * ordem de chegada não importa. Enquanto a base local não é conhecida ou a assinatura está caída,
+ * {@link #totals} devolve false e o summary volta a ler o Redis.
+ */
+final class ClusterSummarySnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterSummarySnapshot.class);
+
+    // Hash por instância com os mesmos campos das chaves globais de totais, e o conjunto das instâncias
+    static final String TOTALS_KEY_PREFIX = "summary:totals:";
+    static final String INSTANCES_KEY = "summary:instances";
+    static final String TOTALS_CHANNEL = "summary:totals";
+    private static final long MIN_RESUBSCRIBE_BACKOFF_MILLIS = 100;
+    private static final long MAX_RESUBSCRIBE_BACKOFF_MILLIS = 2_000;
+
+    private final JedisPool jedisPool;
+    private final String instanceId;
+    private final PaymentWriteBehind writeBehind;
+    private final Map<String, long[]> peers = new ConcurrentHashMap<>();
+    // Totais desta instância no Redis antes desta execução; null enquanto não conhecidos
+    private volatile long[] ownBase;
+    private volatile boolean subscribed;
+
+    ClusterSummarySnapshot(JedisPool jedisPool, String instanceId, PaymentWriteBehind writeBehind) {
+        this.jedisPool = jedisPool;
+        this.instanceId = instanceId;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Lê a base desta instância e assina o canal. Tem que rodar antes do primeiro pagamento
+     * registrado: depois disso a leitura poderia já incluir um lote desta execução.
+     */
+    void start() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            ownBase = decode(jedis.hgetAll(TOTALS_KEY_PREFIX + instanceId));
+        } catch (Exception e) {
+            LOGGER.warn("Could not read this instance's summary totals, waiting for the first batch: {}", e.getMessage());
+        }
+        Metrics.REGISTRY.gauge("jproxy_summary_snapshot_ready",
+                "1 when unwindowed summaries are answered from memory", () -> ready() ? 1 : 0);
+        Thread.ofVirtual().name("summaryTotalsSubscriberVthread-", 0L).start(this::subscribeLoop);
+    }
+
+    /**
+     * Base desta instância a partir dos totais dela no Redis logo depois de um lote e do que esta
+     * execução já gravou até ele, inclusive. Só a primeira conta; as seguintes dão o mesmo valor.
+     */
+    void learnOwnBase(long[] redisTotals, long[] writtenThisRun) {
+        if (ownBase != null) {
+            return;
+        }
+        long[] base = new long[4];
+        for (int i = 0; i < 4; i++) {
+            base[i] = redisTotals[i] - writtenThisRun[i];
+        }
+        ownBase = base;
+    }
+
+    boolean ready() {
+        return ownBase != null && subscribed;
+    }
+
+    /**
+     * Soma em {@code totals} (defaultRequests, defaultCents, fallbackRequests, fallbackCents) os
+     * totais do cluster; false, sem somar nada, se o snapshot não estiver pronto.
+     */
+    boolean totals(long[] totals) {
+        long[] base = ownBase;
+        if (base == null || !subscribed) {
+            return false;
+        }
+        writeBehind.recordedTotals(totals);
+        add(totals, base);
+        for (long[] peer : peers.values()) {
+            add(totals, peer);
+        }
+        return true;
+    }
+
+    private static void add(long[] totals, long[] values) {
+        for (int i = 0; i < 4; i++) {
+            totals[i] += values[i];
+        }
+    }
+
+    /**
+     * Mensagem do canal: {@code <instância> <defaultRequests> <defaultCents> <fallbackRequests> <fallbackCents>}.
+     */
+    static String encode(String instanceId, long[] totals) {
+        return instanceId + " " + totals[0] + " " + totals[1] + " " + totals[2] + " " + totals[3];
+    }
+
+    /**
+     * Totais de uma instância a partir do hash dela (campos ausentes contam zero).
+     */
+    static long[] decode(Map<String, String> fields) {
+        long[] totals = new long[4];
+        for (int i = 0; i < 4; i++) {
+            totals[i] = parseLong(fields.get(RedisCacheClient.TOTAL_FIELDS.get(i)));
+        }
+        return totals;
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    private void applyEncoded(String message) {
+        String[] parts = message.split(" ");
+        try {
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("expected 5 fields");
+            }
+            applyPeer(parts[0], new long[]{
+                    Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]),
+                    Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4])});
+        } catch (RuntimeException e) {
+            LOGGER.warn("Ignoring malformed summary totals: {}", message);
+        }
+    }
+
+    private void applyPeer(String peer, long[] totals) {
+        if (peer.equals(instanceId)) {
+            return;
+        }
+        peers.merge(peer, totals, (current, received) -> received[0] + received[2] >= current[0] + current[2]
+                ? received
+                : current);
+    }
+
+    /**
+     * Relê os totais de todas as outras instâncias; roda com a assinatura já ativa.
+     */
+    private boolean bootstrapPeers() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String peer : jedis.smembers(INSTANCES_KEY)) {
+                if (!peer.equals(instanceId)) {
+                    applyPeer(peer, decode(jedis.hgetAll(TOTALS_KEY_PREFIX + peer)));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Could not read the other instances' summary totals: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Assina o canal com uma conexão dedicada, como a do estado de roteamento. Sem assinatura o
+     * snapshot deixa de valer até a próxima (re)leitura completa.
+     */
+    private void subscribeLoop() {
+        long backoffMillis = MIN_RESUBSCRIBE_BACKOFF_MILLIS;
+        while (true) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.subscribe(new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        if (bootstrapPeers()) {
+                            subscribed = true;
+                        } else {
+                            unsubscribe();
+                        }
+                    }
+
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        applyEncoded(message);
+                    }
+                }, TOTALS_CHANNEL);
+            } catch (Exception e) {
+                LOGGER.warn("Summary totals subscription lost, retrying in {}ms: {}", backoffMillis, e.getMessage());
+            }
+            if (subscribed) {
+                backoffMillis = MIN_RESUBSCRIBE_BACKOFF_MILLIS;
+            }
+            subscribed = false;
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RESUBSCRIBE_BACKOFF_MILLIS);
+        }
+    }
+}
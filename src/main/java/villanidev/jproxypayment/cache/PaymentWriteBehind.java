@@ -0,0 +1,238 @@
+package villanidev.jproxypayment.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.logging.LogSampler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acumula os pagamentos concluídos em memória e os grava no Redis em lotes, por intervalo
+ * ou ao atingir {@link #BATCH_SIZE}. Quem precisa ler um estado consistente (summary)
+ * chama {@link #awaitFlush()}, que espera até tudo o que esta instância registrou antes da
+ * chamada estar gravado.
+ *
+ * <p>{@link #record} nunca bloqueia: ele roda no callback de conclusão do processador, e
+ * esperar ali pararia todas as conclusões e liberações do limitador. O limite de
+ * {@code WRITE_BEHIND_MAX_PENDING} pagamentos vale antes do despacho: com o Redis fora por muito
+ * tempo, {@link #awaitCapacity} segura os workers até a fila baixar, e o que passa do limite é só
+ * o que já estava em voo (contado em {@link #overCapacity}). Cada lote leva uma sequência própria
+ * para o {@link BatchWriter}, que a usa para não reaplicar um lote já gravado quando só a resposta
+ * se perdeu.
+ */
+public class PaymentWriteBehind {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentWriteBehind.class);
+
+    record PendingPayment(long correlationIdMsb, long correlationIdLsb, String processor, long amountCents, long timestampMillis) {}
+
+    /**
+     * Grava um lote. {@code retry} indica que a tentativa anterior do mesmo lote falhou, talvez
+     * depois de já ter sido aplicada no Redis.
+     */
+    @FunctionalInterface
+    interface BatchWriter {
+        void write(List<PendingPayment> batch, long batchSequence, boolean retry);
+    }
+
+    private static final int BATCH_SIZE = 512;
+    private static final int MAX_PENDING = Integer.parseInt(
+            System.getenv().getOrDefault("WRITE_BEHIND_MAX_PENDING", "65536"));
+    private static final long FLUSH_INTERVAL_NANOS = Duration.ofMillis(5).toNanos();
+    private static final long RETRY_BACKOFF_NANOS = Duration.ofMillis(50).toNanos();
+    private static final long BARRIER_TIMEOUT_NANOS = Duration.ofMillis(500).toNanos();
+    private static final long FULL_WAIT_MILLIS = 100;
+    private static final LogSampler FULL_SAMPLER = new LogSampler(Duration.ofSeconds(1), 1);
+
+    // Sequência e fila mudam juntas sob o lock: a ordem na fila é a ordem das sequências, então
+    // "flushed >= sequência" basta para saber que um pagamento já está no Redis
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // Sinalizada pelo flusher a cada lote confirmado pelo Redis: acorda a barreira de leitura
+    private final Condition flushProgress = lock.newCondition();
+    private final ArrayDeque<PendingPayment> pending = new ArrayDeque<>();
+    private final LongAdder overCapacity = new LongAdder();
+    // Tudo o que esta execução registrou (gravado ou não), no formato dos totais do summary
+    private final long[] recordedTotals = new long[4];
+    private volatile long submitted;
+    private volatile long flushed;
+    private final BatchWriter batchWriter;
+    private final Thread flusher;
+
+    PaymentWriteBehind(BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+        this.flusher = Thread.ofVirtual().name("writeBehindVthread-", 0L).start(this::flushLoop);
+    }
+
+    /**
+     * Enfileira um pagamento concluído sem bloquear, mesmo acima do limite: ele já foi confirmado
+     * pelo processador e não pode ser descartado.
+     */
+    void record(long correlationIdMsb, long correlationIdLsb, String processor, long amountCents, long timestampMillis) {
+        PendingPayment payment = new PendingPayment(correlationIdMsb, correlationIdLsb, processor, amountCents, timestampMillis);
+        long sequence;
+        lock.lock();
+        try {
+            if (pending.size() >= MAX_PENDING) {
+                overCapacity.increment();
+            }
+            pending.addLast(payment);
+            sequence = ++submitted;
+            int slot = "default".equals(processor) ? 0 : 2;
+            recordedTotals[slot]++;
+            recordedTotals[slot + 1] += amountCents;
+        } finally {
+            lock.unlock();
+        }
+        if (sequence - flushed >= BATCH_SIZE) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Espera a fila ficar abaixo de {@code WRITE_BEHIND_MAX_PENDING}. Para os workers chamarem
+     * antes de despachar um pagamento: o backpressure fica em quem ainda pode esperar, não no
+     * callback de conclusão.
+     */
+    void awaitCapacity() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.size() >= MAX_PENDING) {
+                if (FULL_SAMPLER.tryAcquire()) {
+                    LOGGER.warn("Write-behind queue full ({} payments), waiting for Redis ({} suppressed)",
+                            MAX_PENDING, FULL_SAMPLER.drainSuppressed());
+                }
+                notFull.await(FULL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Soma em {@code totals} (defaultRequests, defaultCents, fallbackRequests, fallbackCents) tudo
+     * o que foi registrado nesta execução, lido de uma vez sob o lock.
+     */
+    void recordedTotals(long[] totals) {
+        lock.lock();
+        try {
+            for (int i = 0; i < 4; i++) {
+                totals[i] += recordedTotals[i];
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pagamentos registrados com a fila já cheia (em voo quando ela encheu).
+     */
+    long overCapacity() {
+        return overCapacity.sum();
+    }
+
+    /**
+     * Pagamentos registrados e ainda não gravados no Redis.
+     */
+    long pending() {
+        return submitted - flushed;
+    }
+
+    /**
+     * Barreira de leitura: força um flush e espera até que todos os pagamentos registrados
+     * antes desta chamada, nesta instância, estejam no Redis. Não cobre as outras instâncias:
+     * cada uma tem o próprio write-behind, que pode estar até um intervalo de flush atrás.
+     * Retorna false se o tempo limite estourar.
+     */
+    boolean awaitFlush() {
+        return awaitFlush(BARRIER_TIMEOUT_NANOS);
+    }
+
+    boolean awaitFlush(long timeoutNanos) {
+        long target = submitted;
+        if (flushed >= target) {
+            return true;
+        }
+
+        LockSupport.unpark(flusher);
+        long remainingNanos = timeoutNanos;
+        lock.lock();
+        try {
+            while (flushed < target) {
+                if (remainingNanos <= 0) {
+                    LOGGER.warn("Write-behind flush barrier timed out, pending: {}", target - flushed);
+                    return false;
+                }
+                remainingNanos = flushProgress.awaitNanos(remainingNanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingPayment> batch = new ArrayList<>(BATCH_SIZE);
+        long batchSequence = 0;
+        boolean retry = false;
+        while (true) {
+            if (batch.isEmpty()) {
+                if (submitted - flushed < BATCH_SIZE) {
+                    LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                }
+                drain(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                batchSequence++;
+                retry = false;
+            }
+
+            try {
+                batchWriter.write(batch, batchSequence, retry);
+                signalFlushed(batch.size());
+                batch.clear();
+            } catch (Exception e) {
+                // Mantém o lote e tenta de novo: perder a contabilidade é pior que atrasá-la
+                LOGGER.warn("Write-behind flush failed, retrying {} payments: {}", batch.size(), e.toString());
+                retry = true;
+                LockSupport.parkNanos(RETRY_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    private void signalFlushed(int batchSize) {
+        lock.lock();
+        try {
+            flushed += batchSize;
+            flushProgress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain(List<PendingPayment> batch) {
+        lock.lock();
+        try {
+            PendingPayment payment;
+            while (batch.size() < BATCH_SIZE && (payment = pending.pollFirst()) != null) {
+                batch.add(payment);
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,81 +1,535 @@
 package villanidev.jproxypayment.cache;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.params.SetParams;
 import villanidev.jproxypayment.dto.PaymentSummary;
+import villanidev.jproxypayment.exception.SummaryUnavailableException;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
 
 import java.time.Instant;
-import java.util.Optional;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class RedisCacheClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCacheClient.class);
+
     private static final String DEFAULT_TOTAL = "default:total";
     private static final String FALLBACK_TOTAL = "fallback:total";
-    private static final String DEFAULT_AMOUNT = "default:amount";
-    private static final String FALLBACK_AMOUNT = "fallback:amount";
-    private static final String PAYMENTS_PREFIX = "payment:";
+    // Valores sempre em centavos inteiros (INCRBY): somas exatas, sem INCRBYFLOAT
+    private static final String AMOUNT_CENTS_SUFFIX = ":amountCents";
+    private static final String DEFAULT_AMOUNT = "default" + AMOUNT_CENTS_SUFFIX;
+    private static final String FALLBACK_AMOUNT = "fallback" + AMOUNT_CENTS_SUFFIX;
+    // Ordem dos totais em todo long[] do summary: defaultRequests, defaultCents, fallbackRequests, fallbackCents
+    static final List<String> TOTAL_FIELDS = List.of(DEFAULT_TOTAL, DEFAULT_AMOUNT, FALLBACK_TOTAL, FALLBACK_AMOUNT);
+
+    // Índice temporal por processador em buckets de 1 s: summary:<p>:index (ZSET, score = epoch
+    // seconds) aponta para summary:<p>:<segundo>, um hash só de agregados: contagem "n" e centavos
+    // "c" do segundo e, para resolver as bordas da consulta ao milissegundo, "n:<offsetMs>" e
+    // "c:<offsetMs>" (no máximo mil de cada, nada por pagamento). As chaves dos segundos expiram
+    // depois de SUMMARY_RETENTION_SECONDS e o índice é aparado a cada lote: a memória fica limitada
+    // pela retenção, não pelo tempo de vida do Redis. O índice não tem TTL, então o volatile-lru não
+    // o despeja, e um segundo que está nele sem o hash foi despejado: a soma recusa em vez de contar
+    // a menos.
+    private static final String SUMMARY_PREFIX = "summary:";
+    private static final String INDEX_SUFFIX = "index";
+    private static final String COUNT_FIELD = "n";
+    private static final String AMOUNT_FIELD = "c";
+    private static final long RETENTION_SECONDS = Long.parseLong(
+            System.getenv().getOrDefault("SUMMARY_RETENTION_SECONDS", "600"));
+    // Folga contra relógios desalinhados entre as instâncias e o Redis (que conta o TTL): a faixa
+    // consultável começa esse tanto depois do limite da retenção
+    private static final long RETENTION_GUARD_SECONDS = 5;
+    private static final List<String> RANGE_KEYS = List.of(
+            SUMMARY_PREFIX + "default:" + INDEX_SUFFIX,
+            SUMMARY_PREFIX + "fallback:" + INDEX_SUFFIX,
+            DEFAULT_TOTAL, DEFAULT_AMOUNT, FALLBACK_TOTAL, FALLBACK_AMOUNT);
+    // Faixa vazia no ZRANGEBYSCORE quando a consulta não tem segundos inteiros
+    private static final String NO_SECOND = "";
+
+    /**
+     * Soma, no servidor e num único round trip, os pagamentos de cada processador na faixa já
+     * decomposta pelo {@link #sumRange}: segundos inteiros [ARGV[1], ARGV[2]] pelo índice e até
+     * duas bordas (segundo ARGV[3]/ARGV[6], offsets [ARGV[4], ARGV[5]] e [ARGV[7], ARGV[8]]) pelos
+     * campos de milissegundo. Com ARGV[9] = '1' a faixa é o complemento do pedido (tudo depois de
+     * {@code to}) e o script devolve os totais menos essa soma, lidos na mesma execução. KEYS =
+     * índices do default e do fallback seguidos das quatro chaves de totais; as chaves dos segundos
+     * são derivadas dos índices (Redis de um nó só, sem cluster). Retorna {completo,
+     * defaultTotal, defaultCents, fallbackTotal, fallbackCents} como inteiros: completo é 0 se
+     * algum segundo do índice perdeu o hash (despejado), e tudo é contagem ou centavos, então a
+     * conversão de número Lua para inteiro na resposta é exata.
+     */
+    private static final String RANGE_SUM_SCRIPT = """
+            local complete = 1
+            local function edge(index, prefix, second, first, last, sums)
+                if second == '' then return end
+                local fields = redis.call('HGETALL', prefix .. second)
+                if #fields == 0 then
+                    if redis.call('ZSCORE', index, second) then complete = 0 end
+                    return
+                end
+                first, last = tonumber(first), tonumber(last)
+                for i = 1, #fields, 2 do
+                    local kind, offset = string.match(fields[i], '^([nc]):(%d+)$')
+                    if kind then
+                        offset = tonumber(offset)
+                        if offset >= first and offset <= last then
+                            local slot = kind == 'n' and 1 or 2
+                            sums[slot] = sums[slot] + tonumber(fields[i + 1])
+                        end
+                    end
+                end
+            end
+            local result = {}
+            for p = 1, 2 do
+                local index = KEYS[p]
+                local prefix = string.sub(index, 1, -6)
+                local sums = {0, 0}
+                if ARGV[1] ~= '' then
+                    local seconds = redis.call('ZRANGEBYSCORE', index, ARGV[1], ARGV[2])
+                    for i = 1, #seconds do
+                        local bucket = redis.call('HMGET', prefix .. seconds[i], 'n', 'c')
+                        local count = tonumber(bucket[1])
+                        if not count then complete = 0 end
+                        sums[1] = sums[1] + (count or 0)
+                        sums[2] = sums[2] + (tonumber(bucket[2]) or 0)
+                    end
+                end
+                edge(index, prefix, ARGV[3], ARGV[4], ARGV[5], sums)
+                edge(index, prefix, ARGV[6], ARGV[7], ARGV[8], sums)
+                if ARGV[9] == '1' then
+                    sums[1] = (tonumber(redis.call('GET', KEYS[p * 2 + 1])) or 0) - sums[1]
+                    sums[2] = (tonumber(redis.call('GET', KEYS[p * 2 + 2])) or 0) - sums[2]
+                end
+                result[p * 2] = sums[1]
+                result[p * 2 + 1] = sums[2]
+            end
+            result[1] = complete
+            return result
+            """;
+
+    // Camada compartilhada de deduplicação: DEDUP_SHARED=true faz as instâncias verem os ids umas das outras
+    private static final boolean SHARED_DEDUP = Boolean.parseBoolean(System.getenv("DEDUP_SHARED"));
+    private static final String DEDUP_PREFIX = "dedup:";
+    private static final long DEDUP_TTL_SECONDS = 120;
+
+    // Overflow dos pagamentos aceitos em sobrecarga: uma lista por instância
+    private static final String OVERFLOW_PREFIX = "payments:overflow:";
+    // Último lote do write-behind aplicado por instância, gravado na mesma transação do lote
+    private static final String LAST_BATCH_PREFIX = "writebehind:lastbatch:";
+
+    private static final Histogram WRITE_BATCH_ROUNDTRIP = roundtrip("write_batch");
+    private static final Histogram SUMMARY_TOTALS_ROUNDTRIP = roundtrip("summary_totals");
+    private static final Histogram SUMMARY_RANGE_ROUNDTRIP = roundtrip("summary_range");
+    private static final Counter PAYMENTS_WRITTEN = Metrics.REGISTRY.counter(
+            "jproxy_redis_payments_written_total", "Payments written to Redis by the write-behind");
 
     private final JedisPool jedisPool;
+    private final String instanceId;
+    private final String overflowKey;
+    private final String lastBatchKey;
+    // Distingue os lotes desta execução dos de uma execução anterior com o mesmo instanceId
+    private final String runId = UUID.randomUUID().toString();
+    private final PaymentWriteBehind writeBehind;
+    private final SummaryJsonCache summaryJsonCache = new SummaryJsonCache();
+    // Só sem DEDUP_SHARED: com ele um lote pode perder pagamentos já contados por outra instância
+    private final ClusterSummarySnapshot snapshot;
+    // Do flusher do write-behind: totais gravados nesta execução e o último lote somado neles
+    private final long[] writtenThisRun = new long[4];
+    private long countedBatchSequence;
+    private volatile String rangeSumSha;
+
+    private static Histogram roundtrip(String operation) {
+        return Metrics.REGISTRY.histogram("jproxy_redis_roundtrip_seconds",
+                "Redis calls by operation, including the pool checkout", Histogram.ROUNDTRIP_BUCKETS,
+                "operation", operation);
+    }
 
-    public RedisCacheClient(JedisPool jedisPool) {
+    public RedisCacheClient(JedisPool jedisPool, String instanceId) {
         this.jedisPool = jedisPool;
+        this.instanceId = instanceId;
+        this.overflowKey = OVERFLOW_PREFIX + instanceId;
+        this.lastBatchKey = LAST_BATCH_PREFIX + instanceId;
+        this.writeBehind = new PaymentWriteBehind(this::writePayments);
+        this.snapshot = SHARED_DEDUP ? null : new ClusterSummarySnapshot(jedisPool, instanceId, writeBehind);
     }
 
-    public void savePayment(String processor, double amount, Instant timestamp) {
+    /**
+     * Registra as métricas do write-behind, lê os totais desta instância e assina os das outras
+     * para o summary sem janela. Antes do primeiro pagamento registrado, fora do construtor para
+     * não expor a instância antes de ela estar pronta.
+     */
+    public void start() {
+        Metrics.REGISTRY.gauge("jproxy_write_behind_pending",
+                "Counted payments not yet written to Redis", writeBehind::pending);
+        Metrics.REGISTRY.counter("jproxy_write_behind_over_capacity_total",
+                "Payments completed while the write-behind queue was full", writeBehind::overCapacity);
+        if (snapshot != null) {
+            snapshot.start();
+        }
+    }
+
+    /**
+     * Registra o pagamento no write-behind; a gravação no Redis acontece em lote,
+     * fora da thread que concluiu o pagamento.
+     */
+    public void savePayment(UUID correlationId, String processor, long amountCents, Instant timestamp) {
+        writeBehind.record(correlationId.getMostSignificantBits(),
+                correlationId.getLeastSignificantBits(),
+                processor,
+                amountCents,
+                timestamp.toEpochMilli());
+    }
+
+    /**
+     * Segura o chamador enquanto o write-behind estiver cheio. Os workers chamam antes de
+     * despachar um pagamento, já que {@link #savePayment} não bloqueia.
+     */
+    public void awaitWriteCapacity() throws InterruptedException {
+        writeBehind.awaitCapacity();
+    }
+
+    /**
+     * Grava um lote do write-behind. Numa retentativa, confere antes se o lote já foi aplicado: o
+     * id do último lote vai na mesma transação MULTI/EXEC dos contadores, então se ele está lá o
+     * EXEC anterior rodou inteiro e só a resposta se perdeu.
+     */
+    private void writePayments(List<PaymentWriteBehind.PendingPayment> batch, long batchSequence, boolean retry) {
+        long startNanos = System.nanoTime();
+        String batchId = runId + ":" + batchSequence;
         try (Jedis jedis = jedisPool.getResource()) {
+            if (retry && batchId.equals(jedis.get(lastBatchKey))) {
+                LOGGER.info("Batch {} was applied before the failure, not writing it again", batchId);
+                countWritten(batch, batchSequence);
+                publishTotals(jedis, ClusterSummarySnapshot.decode(
+                        jedis.hgetAll(ClusterSummarySnapshot.TOTALS_KEY_PREFIX + instanceId)));
+                return;
+            }
+            long[] instanceTotals = writePayments(jedis, SHARED_DEDUP ? claimShared(jedis, batch) : batch,
+                    instanceId, lastBatchKey, batchId);
+            countWritten(batch, batchSequence);
+            WRITE_BATCH_ROUNDTRIP.recordSince(startNanos);
+            PAYMENTS_WRITTEN.add(batch.size());
+            publishTotals(jedis, instanceTotals);
+        }
+
+        LOGGER.debug("Saved payments batch: {}", batch.size());
+    }
+
+    /**
+     * Soma o lote aplicado aos totais desta execução uma vez só, mesmo se a publicação falhar e
+     * ele voltar como retentativa.
+     */
+    private void countWritten(List<PaymentWriteBehind.PendingPayment> batch, long batchSequence) {
+        if (snapshot == null || batchSequence <= countedBatchSequence) {
+            return;
+        }
+        for (PaymentWriteBehind.PendingPayment payment : batch) {
+            int slot = "default".equals(payment.processor()) ? 0 : 2;
+            writtenThisRun[slot]++;
+            writtenThisRun[slot + 1] += payment.amountCents();
+        }
+        countedBatchSequence = batchSequence;
+    }
+
+    /**
+     * Publica para as outras instâncias os totais desta no Redis logo depois do lote.
+     */
+    private void publishTotals(Jedis jedis, long[] instanceTotals) {
+        if (snapshot == null || instanceTotals == null) {
+            return;
+        }
+        snapshot.learnOwnBase(instanceTotals, writtenThisRun);
+        jedis.publish(ClusterSummarySnapshot.TOTALS_CHANNEL, ClusterSummarySnapshot.encode(instanceId, instanceTotals));
+    }
+
+    /**
+     * Reivindica cada id no Redis com SET NX GET em pipeline e devolve só os pagamentos que
+     * esta instância deve contar. Um id já gravado com o nosso instanceId é nosso (lote repetido
+     * após falha do flush); com o de outra instância é duplicado e fica de fora.
+     */
+    private List<PaymentWriteBehind.PendingPayment> claimShared(Jedis jedis,
+                                                               List<PaymentWriteBehind.PendingPayment> batch) {
+        SetParams claim = SetParams.setParams().nx().ex(DEDUP_TTL_SECONDS);
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<String>> owners = new ArrayList<>(batch.size());
+        for (PaymentWriteBehind.PendingPayment payment : batch) {
+            String key = DEDUP_PREFIX + new UUID(payment.correlationIdMsb(), payment.correlationIdLsb());
+            owners.add(pipeline.setGet(key, instanceId, claim));
+        }
+        pipeline.sync();
+
+        List<PaymentWriteBehind.PendingPayment> unique = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String owner = owners.get(i).get();
+            if (owner == null || owner.equals(instanceId)) {
+                unique.add(batch.get(i));
+            }
+        }
+        if (unique.size() != batch.size()) {
+            LOGGER.info("Skipped {} payments already counted by another instance", batch.size() - unique.size());
+        }
+        return unique;
+    }
+
+    /**
+     * Aplica o lote numa transação: totais globais, buckets de segundo e o hash de totais da
+     * instância. Retorna os totais da instância depois do lote (defaultRequests, defaultCents,
+     * fallbackRequests, fallbackCents), ou null se o lote estiver vazio.
+     */
+    static long[] writePayments(Jedis jedis, List<PaymentWriteBehind.PendingPayment> batch,
+                                String instanceId, String batchKey, String batchId) {
+        if (batch.isEmpty()) {
+            return null;
+        }
+        // Agrega o lote por processador/segundo antes de montar a transação
+        Map<String, long[]> totals = new HashMap<>();
+        Map<String, Long> amounts = new HashMap<>();
+        Map<String, Map<Long, SecondBucket>> seconds = new HashMap<>();
+        long[] batchTotals = new long[TOTAL_FIELDS.size()];
+        for (PaymentWriteBehind.PendingPayment payment : batch) {
+            int slot = "default".equals(payment.processor()) ? 0 : 2;
+            batchTotals[slot]++;
+            batchTotals[slot + 1] += payment.amountCents();
+            totals.computeIfAbsent(payment.processor(), __ -> new long[1])[0]++;
+            amounts.merge(payment.processor(), payment.amountCents(), Long::sum);
+            seconds.computeIfAbsent(payment.processor(), __ -> new HashMap<>())
+                    .computeIfAbsent(Math.floorDiv(payment.timestampMillis(), 1000L), __ -> new SecondBucket())
+                    .add((int) Math.floorMod(payment.timestampMillis(), 1000L), payment.amountCents());
+        }
+
+        String retainedFrom = Long.toString(System.currentTimeMillis() / 1000 - RETENTION_SECONDS);
+        String instanceTotalsKey = ClusterSummarySnapshot.TOTALS_KEY_PREFIX + instanceId;
+        Transaction tx = jedis.multi();
+        // Os quatro campos sempre, mesmo com incremento zero: as respostas são os totais da instância
+        List<Response<Long>> instanceTotals = new ArrayList<>(TOTAL_FIELDS.size());
+        for (int i = 0; i < TOTAL_FIELDS.size(); i++) {
+            instanceTotals.add(tx.hincrBy(instanceTotalsKey, TOTAL_FIELDS.get(i), batchTotals[i]));
+        }
+        tx.sadd(ClusterSummarySnapshot.INSTANCES_KEY, instanceId);
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            String processor = entry.getKey();
+            String summaryPrefix = SUMMARY_PREFIX + processor + ":";
+            String indexKey = summaryPrefix + INDEX_SUFFIX;
+
             // Incrementa contadores totais
-            jedis.incr(processor + ":total");
-            jedis.incrByFloat(processor + ":amount", amount);
+            tx.incrBy(processor + ":total", entry.getValue()[0]);
+            tx.incrBy(processor + AMOUNT_CENTS_SUFFIX, amounts.get(processor));
+
+            // Agrega nos buckets de segundo para queries temporais
+            for (Map.Entry<Long, SecondBucket> second : seconds.get(processor).entrySet()) {
+                String field = Long.toString(second.getKey());
+                String secondKey = summaryPrefix + field;
+                SecondBucket bucket = second.getValue();
+                tx.zadd(indexKey, second.getKey(), field);
+                tx.hincrBy(secondKey, COUNT_FIELD, bucket.count);
+                tx.hincrBy(secondKey, AMOUNT_FIELD, bucket.cents);
+                for (Map.Entry<Integer, long[]> millis : bucket.millis.entrySet()) {
+                    tx.hincrBy(secondKey, COUNT_FIELD + ":" + millis.getKey(), millis.getValue()[0]);
+                    tx.hincrBy(secondKey, AMOUNT_FIELD + ":" + millis.getKey(), millis.getValue()[1]);
+                }
+                tx.expire(secondKey, RETENTION_SECONDS);
+            }
+            // Segundos fora da retenção: as chaves já expiraram (ou vão expirar), sai do índice também
+            tx.zremrangeByScore(indexKey, "-inf", "(" + retainedFrom);
+        }
+        tx.set(batchKey, batchId);
+        tx.exec();
+        return new long[]{
+                instanceTotals.get(0).get(),
+                instanceTotals.get(1).get(),
+                instanceTotals.get(2).get(),
+                instanceTotals.get(3).get()};
+    }
 
-            // Armazena detalhes para queries temporais
-            String paymentKey = PAYMENTS_PREFIX + processor + ":" + timestamp.toEpochMilli();
-            jedis.hset(paymentKey, "amount", String.valueOf(amount));
-            jedis.expire(paymentKey, 86400); // Expira em 24h
+    /**
+     * Pagamentos de um processador num segundo dentro de um lote, com a contagem e os centavos
+     * de cada milissegundo: {offset -> {contagem, centavos}}.
+     */
+    private static final class SecondBucket {
+        long count;
+        long cents;
+        final Map<Integer, long[]> millis = new HashMap<>();
 
-            System.out.println(Thread.currentThread().getName() +"- Saved payment: " + processor + ", " + amount + ", " + timestamp);
+        void add(int offsetMillis, long amountCents) {
+            count++;
+            cents += amountCents;
+            long[] slot = millis.computeIfAbsent(offsetMillis, __ -> new long[2]);
+            slot[0]++;
+            slot[1] += amountCents;
+        }
+    }
+
+    /**
+     * Acrescenta pagamentos (já codificados) ao fim do overflow desta instância.
+     */
+    public void pushOverflow(List<String> payments) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.rpush(overflowKey, payments.toArray(String[]::new));
         }
     }
 
-    public PaymentSummary getSummary(Instant from, Instant to) {
+    /**
+     * Retira até {@code count} pagamentos do início do overflow; lista vazia se não houver.
+     */
+    public List<String> popOverflow(int count) {
         try (Jedis jedis = jedisPool.getResource()) {
-            long defaultTotal = Long.parseLong(getWithDefault(jedis,DEFAULT_TOTAL, "0"));
-            long fallbackTotal = Long.parseLong(getWithDefault(jedis,FALLBACK_TOTAL, "0"));
-            double defaultAmount = Double.parseDouble(getWithDefault(jedis,DEFAULT_AMOUNT, "0"));
-            double fallbackAmount = Double.parseDouble(getWithDefault(jedis,FALLBACK_AMOUNT, "0"));
-
-            if (from != null && to != null) {
-                defaultTotal = countPaymentsInRange(jedis, "default", from, to);
-                fallbackTotal = countPaymentsInRange(jedis, "fallback", from, to);
-                defaultAmount = sumAmountsInRange(jedis, "default", from, to);
-                fallbackAmount = sumAmountsInRange(jedis, "fallback", from, to);
+            List<String> payments = jedis.lpop(overflowKey, count);
+            return payments == null ? List.of() : payments;
+        }
+    }
+
+    public long overflowLength() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.llen(overflowKey);
+        }
+    }
+
+    /**
+     * JSON do summary sem janela a partir do {@link ClusterSummarySnapshot}, sem ir ao Redis;
+     * null se o snapshot estiver desligado (DEDUP_SHARED) ou ainda não estiver pronto.
+     */
+    public byte[] getSnapshotSummaryJson() {
+        long[] totals = new long[4];
+        if (snapshot == null || !snapshot.totals(totals)) {
+            return null;
+        }
+        return summaryJsonCache.update(totals[0], totals[1], totals[2], totals[3]);
+    }
+
+    /**
+     * JSON do summary em [fromMillis, toMillis]. A barreira do write-behind só garante os
+     * pagamentos desta instância; os das outras chegam ao Redis no próximo flush delas.
+     * Sem janela ({@code Long.MIN_VALUE}/{@code Long.MAX_VALUE}) lê os totais num único MGET e
+     * devolve os bytes do {@link SummaryJsonCache}, que só reserializa quando os números mudaram.
+     * Com janela, mesmo só com um dos limites, soma os buckets de segundo no Redis (bordas ao
+     * milissegundo, ver {@link #sumRange}) e serializa o resultado.
+     *
+     * @throws SummaryUnavailableException se a barreira estourar o prazo ou a janela não puder
+     *                                     ser somada por inteiro
+     */
+    public byte[] getSummaryJson(long fromMillis, long toMillis) {
+        if (!writeBehind.awaitFlush()) {
+            // O Redis ainda não tem tudo o que esta instância concluiu: a resposta viria menor
+            throw new SummaryUnavailableException("Write-behind flush barrier timed out");
+        }
+        long startNanos = System.nanoTime();
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE) {
+                PaymentSummary summary = sumRange(jedis, fromMillis, toMillis);
+                SUMMARY_RANGE_ROUNDTRIP.recordSince(startNanos);
+                return SummaryJsonCache.render(
+                        summary.defaultTotalRequests(),
+                        summary.defaultTotalAmountCents(),
+                        summary.fallbackTotalRequests(),
+                        summary.fallbackTotalAmountCents());
             }
 
-            return new PaymentSummary(defaultTotal, defaultAmount, fallbackTotal, fallbackAmount);
+            byte[] json = readTotals(jedis, summaryJsonCache);
+            SUMMARY_TOTALS_ROUNDTRIP.recordSince(startNanos);
+            return json;
         }
     }
 
-    private String getWithDefault(Jedis jedis, String cacheKey, String defaultValue) {
-        return Optional.ofNullable(jedis.get(cacheKey)).orElse(defaultValue);
+    static byte[] readTotals(Jedis jedis, SummaryJsonCache jsonCache) {
+        List<String> totals = jedis.mget(DEFAULT_TOTAL, DEFAULT_AMOUNT, FALLBACK_TOTAL, FALLBACK_AMOUNT);
+        return jsonCache.update(
+                parseLong(totals.get(0)),
+                parseLong(totals.get(1)),
+                parseLong(totals.get(2)),
+                parseLong(totals.get(3)));
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0 : Long.parseLong(value);
     }
 
-    private long countPaymentsInRange(Jedis jedis, String processor, Instant from, Instant to) {
-        Set<String> keys = jedis.keys(PAYMENTS_PREFIX + processor + ":*");
-        return keys.stream()
-                .filter(key -> {
-                    long timestamp = Long.parseLong(key.split(":")[2]);
-                    return timestamp >= from.toEpochMilli() && timestamp <= to.toEpochMilli();
-                })
-                .count();
+    /**
+     * Decompõe [fromMillis, toMillis] em segundos inteiros e até duas bordas parciais, resolvidas
+     * ao milissegundo. Um limite só ({@code from} ou {@code to}) filtra daquele lado e deixa o
+     * outro aberto; sem nenhum, a consulta nem chega aqui (vai para os totais). Os buckets só
+     * cobrem a retenção: uma faixa aberta no início vira totais menos o que veio depois de
+     * {@code to}, e qualquer outra que comece antes da retenção, ou que esbarre num bucket
+     * despejado, é recusada em vez de somada pela metade.
+     */
+    @SuppressWarnings("unchecked")
+    private PaymentSummary sumRange(Jedis jedis, long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            return new PaymentSummary(0, 0, 0, 0);
+        }
+        long retainedFromMillis = (System.currentTimeMillis() / 1000 - RETENTION_SECONDS + RETENTION_GUARD_SECONDS) * 1000;
+        boolean complement = false;
+        if (fromMillis < retainedFromMillis) {
+            if (fromMillis != Long.MIN_VALUE || toMillis + 1 < retainedFromMillis) {
+                throw new SummaryUnavailableException("Summary range starts before the "
+                        + RETENTION_SECONDS + "s Redis retention");
+            }
+            // (-inf, to] = totais - [to + 1, +inf), tudo dentro da retenção
+            complement = true;
+            fromMillis = toMillis + 1;
+            toMillis = Long.MAX_VALUE;
+        }
+
+        String[] args = {"-inf", "+inf", NO_SECOND, "0", "999", NO_SECOND, "0", "999", complement ? "1" : "0"};
+        long firstSecond = Math.floorDiv(fromMillis, 1000L);
+        long lastSecond = Long.MAX_VALUE;
+        long firstOffset = Math.floorMod(fromMillis, 1000L);
+        if (firstOffset != 0) {
+            args[2] = Long.toString(firstSecond);
+            args[3] = Long.toString(firstOffset);
+            firstSecond++;
+        }
+        if (toMillis != Long.MAX_VALUE) {
+            lastSecond = Math.floorDiv(toMillis, 1000L);
+            long offset = Math.floorMod(toMillis, 1000L);
+            if (offset != 999) {
+                if (NO_SECOND.equals(args[2]) || firstSecond - 1 != lastSecond) {
+                    args[5] = Long.toString(lastSecond);
+                    args[7] = Long.toString(offset);
+                } else {
+                    // As duas bordas caem no mesmo segundo: uma faixa só de offsets
+                    args[4] = Long.toString(offset);
+                }
+                lastSecond--;
+            }
+        }
+        if (firstSecond > lastSecond) {
+            args[0] = NO_SECOND;
+        } else {
+            args[0] = Long.toString(firstSecond);
+            if (lastSecond != Long.MAX_VALUE) {
+                args[1] = Long.toString(lastSecond);
+            }
+        }
+
+        List<Long> result = (List<Long>) evalRangeSum(jedis, List.of(args));
+        if (result.get(0) != 1) {
+            throw new SummaryUnavailableException("Summary buckets in range were evicted from Redis");
+        }
+        return new PaymentSummary(result.get(1), result.get(2), result.get(3), result.get(4));
     }
 
-    private double sumAmountsInRange(Jedis jedis, String processor, Instant from, Instant to) {
-        Set<String> keys = jedis.keys(PAYMENTS_PREFIX + processor + ":*");
-        return keys.stream()
-                .filter(key -> {
-                    long timestamp = Long.parseLong(key.split(":")[2]);
-                    return timestamp >= from.toEpochMilli() && timestamp <= to.toEpochMilli();
-                })
-                .mapToDouble(key -> Double.parseDouble(jedis.hget(key, "amount")))
-                .sum();
+    private Object evalRangeSum(Jedis jedis, List<String> args) {
+        String sha = rangeSumSha;
+        if (sha != null) {
+            try {
+                return jedis.evalsha(sha, RANGE_KEYS, args);
+            } catch (JedisNoScriptException e) {
+                // Script cache do Redis foi limpo (restart/SCRIPT FLUSH): recarrega abaixo
+            }
+        }
+        rangeSumSha = jedis.scriptLoad(RANGE_SUM_SCRIPT);
+        return jedis.evalsha(rangeSumSha, RANGE_KEYS, args);
     }
 }
@@ -10,6 +10,8 @@ public class RedisConfig {
         JedisPoolConfig poolConfig = new JedisPoolConfig();
         poolConfig.setMaxTotal(20);
         poolConfig.setMaxIdle(10);
+        // As métricas saem em /metrics; o MBean do pool só custaria reflexão na imagem nativa
+        poolConfig.setJmxEnabled(false);
         this.jedisPool = new JedisPool(poolConfig, redisHost);
     }
 
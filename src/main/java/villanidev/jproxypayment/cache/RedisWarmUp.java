@@ -0,0 +1,78 @@
+package villanidev.jproxypayment.cache;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import villanidev.jproxypayment.warmup.WarmUpTask;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gravação de um lote de pagamentos (a transação do write-behind) e leitura dos totais do
+ * summary pelo Jedis, com os mesmos comandos do {@link RedisCacheClient}, contra o
+ * {@link RespStandIn} em loopback: os contadores do Redis de verdade não são tocados.
+ */
+public final class RedisWarmUp implements WarmUpTask {
+
+    private static final int PAYMENTS_PER_BATCH = 256;
+    // Poucos buckets de timestamp: o stand-in guarda tudo em memória
+    private static final int BUCKETS = 16;
+    private static final String WARM_UP_INSTANCE = "warmup";
+    private static final String WARM_UP_BATCH_KEY = "writebehind:lastbatch:" + WARM_UP_INSTANCE;
+
+    private final SummaryJsonCache jsonCache = new SummaryJsonCache();
+    private final List<PaymentWriteBehind.PendingPayment> batch = new ArrayList<>(PAYMENTS_PER_BATCH);
+    private RespStandIn standIn;
+    private JedisPool jedisPool;
+    private long sequence;
+
+    @Override
+    public String name() {
+        return "redis client";
+    }
+
+    @Override
+    public void open() throws IOException {
+        standIn = new RespStandIn();
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(2);
+        poolConfig.setJmxEnabled(false);
+        jedisPool = new JedisPool(poolConfig, "127.0.0.1", standIn.port());
+    }
+
+    @Override
+    public void runBatch() {
+        long baseMillis = System.currentTimeMillis() / 1000 * 1000;
+        batch.clear();
+        for (int i = 0; i < PAYMENTS_PER_BATCH; i++) {
+            sequence++;
+            batch.add(new PaymentWriteBehind.PendingPayment(
+                    sequence * 0x9E3779B97F4A7C15L,
+                    sequence,
+                    i % 5 == 0 ? "fallback" : "default",
+                    1990,
+                    baseMillis + i % BUCKETS));
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            RedisCacheClient.writePayments(jedis, batch, WARM_UP_INSTANCE, WARM_UP_BATCH_KEY, Long.toString(sequence));
+            RedisCacheClient.readTotals(jedis, jsonCache);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (jedisPool != null) {
+            jedisPool.close();
+        }
+        if (standIn != null) {
+            try {
+                standIn.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
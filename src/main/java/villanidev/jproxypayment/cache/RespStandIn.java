@@ -0,0 +1,223 @@
+package villanidev.jproxypayment.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Servidor RESP2 em processo, só com os comandos que o RedisCacheClient usa no caminho de
+ * gravação e no summary sem janela (GET, SET, MGET, INCRBY, HINCRBY, SADD, ZADD,
+ * ZREMRANGEBYSCORE, EXPIRE e MULTI/EXEC). Não tem Lua: consultas com janela não rodam contra ele. Serve para exercitar o
+ * lado do cliente (serialização, pool, write-behind) sem rede nem Redis de verdade: no warm-up
+ * da inicialização ({@link RedisWarmUp}) e nos benchmarks.
+ */
+final class RespStandIn implements AutoCloseable {
+
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUEUED = "+QUEUED\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ServerSocket serverSocket;
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, Map<String, Long>> hashes = new HashMap<>();
+    private final Map<String, Set<String>> sets = new HashMap<>();
+    private final Map<String, Map<String, String>> sortedSets = new HashMap<>();
+
+    RespStandIn() throws IOException {
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("respStandInAcceptVthread-", 0L).start(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().name("respStandInVthread-", 0L).start(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            List<List<String>> transaction = null;
+            while (true) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                String name = command.get(0).toUpperCase();
+                if (name.equals("MULTI")) {
+                    transaction = new ArrayList<>();
+                    out.write(OK);
+                } else if (name.equals("EXEC") && transaction != null) {
+                    writeArrayHeader(out, transaction.size());
+                    for (List<String> queued : transaction) {
+                        execute(queued, out);
+                    }
+                    transaction = null;
+                } else if (transaction != null) {
+                    transaction.add(command);
+                    out.write(QUEUED);
+                } else {
+                    execute(command, out);
+                }
+                // Só descarrega quando não há mais comandos já recebidos (pipeline)
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Conexão encerrada pelo cliente
+        }
+    }
+
+    private synchronized void execute(List<String> command, OutputStream out) throws IOException {
+        switch (command.get(0).toUpperCase()) {
+            case "PING" -> out.write("+PONG\r\n".getBytes(StandardCharsets.US_ASCII));
+            case "GET" -> writeBulk(out, strings.get(command.get(1)));
+            case "SET" -> {
+                strings.put(command.get(1), command.get(2));
+                out.write(OK);
+            }
+            case "MGET" -> {
+                writeArrayHeader(out, command.size() - 1);
+                for (int i = 1; i < command.size(); i++) {
+                    writeBulk(out, strings.get(command.get(i)));
+                }
+            }
+            case "INCRBY" -> {
+                long value = Long.parseLong(strings.getOrDefault(command.get(1), "0")) + Long.parseLong(command.get(2));
+                strings.put(command.get(1), Long.toString(value));
+                writeInteger(out, value);
+            }
+            case "HINCRBY" -> writeInteger(out, hashes.computeIfAbsent(command.get(1), __ -> new HashMap<>())
+                    .merge(command.get(2), Long.parseLong(command.get(3)), Long::sum));
+            case "SADD" -> {
+                int added = 0;
+                for (int i = 2; i < command.size(); i++) {
+                    added += sets.computeIfAbsent(command.get(1), __ -> new HashSet<>()).add(command.get(i)) ? 1 : 0;
+                }
+                writeInteger(out, added);
+            }
+            case "ZADD" -> {
+                String previous = sortedSets.computeIfAbsent(command.get(1), __ -> new HashMap<>())
+                        .put(command.get(3), command.get(2));
+                writeInteger(out, previous == null ? 1 : 0);
+            }
+            case "ZREMRANGEBYSCORE" -> {
+                Map<String, String> members = sortedSets.getOrDefault(command.get(1), Map.of());
+                int before = members.size();
+                members.values().removeIf(score -> inRange(score, command.get(2), command.get(3)));
+                writeInteger(out, before - members.size());
+            }
+            case "EXPIRE" -> writeInteger(out, 1);
+            // CLIENT SETINFO e afins do handshake do Jedis
+            default -> out.write(OK);
+        }
+    }
+
+    /**
+     * Score dentro de [min, max], com os limites do Redis: -inf/+inf e "(" para exclusivo.
+     */
+    private static boolean inRange(String score, String min, String max) {
+        double value = Double.parseDouble(score);
+        boolean minExclusive = min.startsWith("(");
+        boolean maxExclusive = max.startsWith("(");
+        double low = bound(minExclusive ? min.substring(1) : min);
+        double high = bound(maxExclusive ? max.substring(1) : max);
+        return (minExclusive ? value > low : value >= low) && (maxExclusive ? value < high : value <= high);
+    }
+
+    private static double bound(String value) {
+        return switch (value) {
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            case "+inf", "inf" -> Double.POSITIVE_INFINITY;
+            default -> Double.parseDouble(value);
+        };
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected RESP array, got " + (char) type);
+        }
+        int count = (int) readNumber(in);
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected RESP bulk string");
+            }
+            int length = (int) readNumber(in);
+            byte[] bytes = in.readNBytes(length);
+            in.skipNBytes(2);
+            command.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static long readNumber(InputStream in) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+        in.read();
+        return negative ? -value : value;
+    }
+
+    private static void writeArrayHeader(OutputStream out, int size) throws IOException {
+        out.write(('*' + Integer.toString(size) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((':' + Long.toString(value) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeBulk(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(('$' + Integer.toString(bytes.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+}
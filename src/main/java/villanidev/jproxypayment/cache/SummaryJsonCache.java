@@ -0,0 +1,98 @@
+package villanidev.jproxypayment.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cache de renderização do JSON do summary: guarda os últimos totais recebidos e os bytes
+ * serializados a partir deles. Não é uma fonte de totais: quem consulta obtém os números (do
+ * {@link ClusterSummarySnapshot} ou, sem ele, de um MGET) e chama {@link #update}; se eles não
+ * mudaram desde a chamada anterior, os mesmos bytes são devolvidos e só uma mudança custa uma
+ * nova serialização. A entrada é imutável e trocada por referência, então leitores concorrentes nunca
+ * veem números e bytes misturados.
+ *
+ * <p>Valores em centavos; o JSON sai sem String.format e sempre com duas casas e ponto:
+ * <pre>{"default":{"totalRequests":10,"totalAmount":199.00},"fallback":{"totalRequests":0,"totalAmount":0.00}}</pre>
+ */
+public final class SummaryJsonCache {
+
+    private static final byte[] DEFAULT_REQUESTS = "{\"default\":{\"totalRequests\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALLBACK_REQUESTS = "},\"fallback\":{\"totalRequests\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT = ",\"totalAmount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "}}".getBytes(StandardCharsets.US_ASCII);
+    // Dois longs com sinal (20 dígitos) mais ponto em cada valor
+    private static final int MAX_LENGTH = DEFAULT_REQUESTS.length + FALLBACK_REQUESTS.length
+            + 2 * AMOUNT.length + END.length + 4 * 22;
+
+    private record State(long defaultRequests, long defaultCents, long fallbackRequests, long fallbackCents, byte[] json) {}
+
+    private volatile State state = new State(0, 0, 0, 0, render(0, 0, 0, 0));
+
+    /**
+     * Registra os totais lidos e devolve o JSON correspondente, reaproveitando o anterior se nada mudou.
+     * O array devolvido é compartilhado: não pode ser alterado.
+     */
+    public byte[] update(long defaultRequests, long defaultCents, long fallbackRequests, long fallbackCents) {
+        State current = state;
+        if (current.defaultRequests == defaultRequests && current.defaultCents == defaultCents
+                && current.fallbackRequests == fallbackRequests && current.fallbackCents == fallbackCents) {
+            return current.json;
+        }
+        State next = new State(defaultRequests, defaultCents, fallbackRequests, fallbackCents,
+                render(defaultRequests, defaultCents, fallbackRequests, fallbackCents));
+        // Duas leituras concorrentes podem se cruzar; qualquer uma delas é um estado real dos totais
+        state = next;
+        return next.json;
+    }
+
+    /**
+     * Serializa um summary avulso (consultas com janela de tempo, que não passam pelo cache).
+     */
+    public static byte[] render(long defaultRequests, long defaultCents, long fallbackRequests, long fallbackCents) {
+        byte[] json = new byte[MAX_LENGTH];
+        int p = put(json, 0, DEFAULT_REQUESTS);
+        p = putDecimal(json, p, defaultRequests);
+        p = put(json, p, AMOUNT);
+        p = putCents(json, p, defaultCents);
+        p = put(json, p, FALLBACK_REQUESTS);
+        p = putDecimal(json, p, fallbackRequests);
+        p = put(json, p, AMOUNT);
+        p = putCents(json, p, fallbackCents);
+        p = put(json, p, END);
+        return Arrays.copyOf(json, p);
+    }
+
+    private static int put(byte[] dst, int p, byte[] src) {
+        System.arraycopy(src, 0, dst, p, src.length);
+        return p + src.length;
+    }
+
+    private static int putCents(byte[] dst, int p, long cents) {
+        if (cents < 0) {
+            dst[p++] = '-';
+            cents = -cents;
+        }
+        p = putDecimal(dst, p, cents / 100);
+        dst[p++] = '.';
+        long fraction = cents % 100;
+        dst[p++] = (byte) ('0' + fraction / 10);
+        dst[p++] = (byte) ('0' + fraction % 10);
+        return p;
+    }
+
+    private static int putDecimal(byte[] dst, int p, long value) {
+        if (value < 0) {
+            dst[p++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[p + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+}
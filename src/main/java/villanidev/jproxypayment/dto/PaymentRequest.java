@@ -2,4 +2,4 @@ package villanidev.jproxypayment.dto;
 
 import java.util.UUID;
 
-public record PaymentRequest(UUID correlationId, double amount) {}
\ No newline at end of file
+public record PaymentRequest(UUID correlationId, long amountCents) {}
\ No newline at end of file
@@ -2,7 +2,7 @@ package villanidev.jproxypayment.dto;
 
 public record PaymentSummary(
         long defaultTotalRequests,
-        double defaultTotalAmount,
+        long defaultTotalAmountCents,
         long fallbackTotalRequests,
-        double fallbackTotalAmount
+        long fallbackTotalAmountCents
 ) {}
\ No newline at end of file
@@ -0,0 +1,15 @@
+package villanidev.jproxypayment.exception;
+
+import java.io.Serial;
+
+/**
+ * O circuit breaker do processador recusou a chamada; o processador nem foi chamado.
+ */
+public class CircuitOpenException extends PaymentProcessingException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
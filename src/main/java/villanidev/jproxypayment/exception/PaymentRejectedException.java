@@ -0,0 +1,16 @@
+package villanidev.jproxypayment.exception;
+
+import java.io.Serial;
+
+/**
+ * O processador respondeu e recusou o pagamento em definitivo (4xx que não seja 422 ou 429):
+ * tentar de novo não muda a resposta.
+ */
+public class PaymentRejectedException extends PaymentProcessingException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public PaymentRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package villanidev.jproxypayment.exception;
+
+import java.io.Serial;
+
+/**
+ * O summary pedido não pode ser respondido com exatidão agora (faixa fora da retenção do Redis,
+ * buckets despejados, write-behind atrasado): melhor recusar do que devolver uma soma parcial.
+ */
+public class SummaryUnavailableException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public SummaryUnavailableException(String message) {
+        super(message);
+    }
+}
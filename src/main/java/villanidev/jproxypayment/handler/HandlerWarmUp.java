@@ -0,0 +1,99 @@
+package villanidev.jproxypayment.handler;
+
+import villanidev.jproxypayment.cache.SummaryJsonCache;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.service.summary.PaymentAggregates;
+import villanidev.jproxypayment.warmup.WarmUpTask;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Parse do corpo de POST /payments e da query do summary, soma nos agregados por janela e
+ * montagem da resposta do summary, como os handlers fazem: direto de buffers diretos, com
+ * instâncias próprias (os parsers dos handlers, os agregados da instância e o cache de JSON do
+ * RedisCacheClient ficam intocados).
+ */
+public final class HandlerWarmUp implements WarmUpTask {
+
+    private static final int BODIES = 64;
+    private static final int PAYMENTS_PER_BATCH = 2_000;
+    private static final int SUMMARIES_PER_BATCH = 200;
+
+    private final PaymentBodyParser paymentParser = new PaymentBodyParser();
+    private final SummaryQueryParser queryParser = new SummaryQueryParser();
+    private final SummaryJsonCache jsonCache = new SummaryJsonCache();
+    private final ByteBuffer bodies = ByteBuffer.allocateDirect(BODIES * 128);
+    private final int[] bodyOffsets = new int[BODIES];
+    private final int[] bodyLengths = new int[BODIES];
+    private final long[] totals = new long[4];
+    private PaymentAggregates aggregates;
+    private final ByteBuffer query = ByteBuffer.allocateDirect(256);
+    private int queryLength;
+    private long sequence;
+
+    @Override
+    public String name() {
+        return "handlers";
+    }
+
+    @Override
+    public void open() {
+        aggregates = new PaymentAggregates();
+        int offset = 0;
+        for (int i = 0; i < BODIES; i++) {
+            // Valores com 0, 1 e 2 casas e, de vez em quando, campos fora de ordem
+            String amount = switch (i % 3) {
+                case 0 -> Integer.toString(10 + i);
+                case 1 -> (10 + i) + ".9";
+                default -> (10 + i) + ".99";
+            };
+            String correlationId = UUID.randomUUID().toString();
+            String json = i % 8 == 7
+                    ? "{ \"amount\" : " + amount + ", \"correlationId\" : \"" + correlationId + "\" }"
+                    : "{\"correlationId\":\"" + correlationId + "\",\"amount\":" + amount + "}";
+            byte[] bytes = json.getBytes(StandardCharsets.US_ASCII);
+            bodies.put(offset, bytes);
+            bodyOffsets[i] = offset;
+            bodyLengths[i] = bytes.length;
+            offset += bytes.length;
+        }
+        byte[] bytes = "from=2025-07-15T12:34:56.000Z&to=2025-07-15T12:35:56.000Z".getBytes(StandardCharsets.US_ASCII);
+        query.put(0, bytes);
+        queryLength = bytes.length;
+    }
+
+    @Override
+    public void runBatch() {
+        long now = System.currentTimeMillis();
+        long checksum = 0;
+        for (int i = 0; i < PAYMENTS_PER_BATCH; i++) {
+            int body = i % BODIES;
+            if (!paymentParser.parse(bodies, bodyOffsets[body], bodyLengths[body])) {
+                throw new IllegalStateException("Synthetic payment rejected: " + paymentParser.error());
+            }
+            checksum += paymentParser.amountCents();
+            aggregates.record(i % 5 == 0 ? "fallback" : "default", paymentParser.amountCents(), now + i / 8);
+        }
+        for (int i = 0; i < SUMMARIES_PER_BATCH; i++) {
+            if (!queryParser.parse(query, 0, queryLength)) {
+                throw new IllegalStateException("Synthetic summary query rejected");
+            }
+            sequence++;
+            if (aggregates.sum(now - i * 7L, now + PAYMENTS_PER_BATCH / 8 - i, totals)) {
+                checksum += totals[0];
+            }
+            checksum += jsonCache.update(sequence, sequence * 1990, sequence / 3, sequence * 663).length;
+            checksum += HttpResponses.json(SummaryJsonCache.render(sequence, sequence * 1990, 0, 0)).length;
+        }
+        if (checksum == 0) {
+            throw new IllegalStateException("Warm-up produced nothing");
+        }
+    }
+
+    @Override
+    public void close() {
+        aggregates = null;
+    }
+}
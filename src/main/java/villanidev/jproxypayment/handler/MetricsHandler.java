@@ -0,0 +1,56 @@
+package villanidev.jproxypayment.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.metrics.MetricsRegistry;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpExchange;
+import villanidev.jproxypayment.server.NioHttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * GET /metrics no formato texto do Prometheus.
+ */
+public class MetricsHandler implements HttpHandler, NioHttpHandler {
+
+    private final MetricsRegistry registry;
+    // Ler os MXBeans e montar o texto não é trabalho para o event loop do NioHttpServer
+    private final ExecutorService metricsExecutor = Executors.newThreadPerTaskExecutor(
+            Metrics.countingVirtualThreads(Thread.ofVirtual().name("metricsVthread-", 0L).factory())
+    );
+
+    public MetricsHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void handle(NioHttpExchange exchange) {
+        if (!"GET".equals(exchange.method())) {
+            exchange.respond(HttpResponses.METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        metricsExecutor.submit(() -> exchange.respond(HttpResponses.text(registry.scrape())));
+    }
+}
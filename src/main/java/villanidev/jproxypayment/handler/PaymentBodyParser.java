@@ -0,0 +1,316 @@
+package villanidev.jproxypayment.handler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parser do corpo de POST /payments direto dos bytes, numa única passada e sem Strings
+ * intermediárias: aceita campos em qualquer ordem, espaços em qualquer lugar e ignora
+ * campos desconhecidos. O correlationId sai como dois longs e o amount em centavos.
+ * Erros são reportados pelo retorno de {@link #parse} e por {@link #error()}, sem exceções.
+ * A instância guarda o resultado da última chamada e não é thread-safe.
+ */
+public final class PaymentBodyParser {
+
+    public static final String OK = "ok";
+    public static final String MALFORMED_JSON = "malformed json";
+    public static final String INVALID_CORRELATION_ID = "invalid correlationId";
+    public static final String INVALID_AMOUNT = "invalid amount";
+    public static final String MISSING_FIELD = "missing correlationId or amount";
+
+    private static final byte[] CORRELATION_ID = {'c', 'o', 'r', 'r', 'e', 'l', 'a', 't', 'i', 'o', 'n', 'I', 'd'};
+    private static final byte[] AMOUNT = {'a', 'm', 'o', 'u', 'n', 't'};
+    private static final int UUID_LENGTH = 36;
+    // 15 dígitos inteiros ainda cabem em centavos num long com folga
+    private static final int MAX_INTEGER_DIGITS = 15;
+
+    private ByteBuffer buffer;
+    private int position;
+    private int end;
+
+    private long correlationIdMsb;
+    private long correlationIdLsb;
+    private long amountCents;
+    private String error = OK;
+
+    public long correlationIdMsb() {
+        return correlationIdMsb;
+    }
+
+    public long correlationIdLsb() {
+        return correlationIdLsb;
+    }
+
+    public long amountCents() {
+        return amountCents;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    /**
+     * Interpreta os bytes em [offset, offset + length) do buffer usando apenas leituras absolutas.
+     */
+    public boolean parse(ByteBuffer source, int offset, int length) {
+        this.buffer = source;
+        this.position = offset;
+        this.end = offset + length;
+        this.error = OK;
+        boolean hasId = false;
+        boolean hasAmount = false;
+
+        try {
+            if (!expect('{')) {
+                return fail(MALFORMED_JSON);
+            }
+            skipWhitespace();
+            if (peek() == '}') {
+                return fail(MISSING_FIELD);
+            }
+
+            while (true) {
+                if (!expect('"')) {
+                    return fail(MALFORMED_JSON);
+                }
+                int keyStart = position;
+                if (!skipStringBody()) {
+                    return fail(MALFORMED_JSON);
+                }
+                int keyEnd = position - 1;
+                if (!expect(':')) {
+                    return fail(MALFORMED_JSON);
+                }
+                skipWhitespace();
+
+                if (keyEquals(keyStart, keyEnd, CORRELATION_ID)) {
+                    if (!parseCorrelationId()) {
+                        return fail(INVALID_CORRELATION_ID);
+                    }
+                    hasId = true;
+                } else if (keyEquals(keyStart, keyEnd, AMOUNT)) {
+                    if (!parseAmount()) {
+                        return fail(INVALID_AMOUNT);
+                    }
+                    hasAmount = true;
+                } else if (!skipValue()) {
+                    return fail(MALFORMED_JSON);
+                }
+
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    return fail(MALFORMED_JSON);
+                }
+                skipWhitespace();
+            }
+
+            skipWhitespace();
+            if (position != end) {
+                return fail(MALFORMED_JSON);
+            }
+            return hasId && hasAmount || fail(MISSING_FIELD);
+        } finally {
+            this.buffer = null;
+        }
+    }
+
+    private boolean parseCorrelationId() {
+        if (next() != '"' || end - position < UUID_LENGTH + 1) {
+            return false;
+        }
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            byte b = buffer.get(position + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') {
+                    return false;
+                }
+                continue;
+            }
+            int nibble = hexValue(b);
+            if (nibble < 0) {
+                return false;
+            }
+            if (i < 18) {
+                msb = (msb << 4) | nibble;
+            } else {
+                lsb = (lsb << 4) | nibble;
+            }
+        }
+        position += UUID_LENGTH;
+        if (next() != '"') {
+            return false;
+        }
+        correlationIdMsb = msb;
+        correlationIdLsb = lsb;
+        return true;
+    }
+
+    /**
+     * Número JSON não negativo, sem expoente, convertido para centavos; a terceira casa
+     * decimal em diante arredonda meio-para-cima.
+     */
+    private boolean parseAmount() {
+        long integer = 0;
+        int integerDigits = 0;
+        while (position < end && isDigit(peek())) {
+            if (++integerDigits > MAX_INTEGER_DIGITS) {
+                return false;
+            }
+            integer = integer * 10 + (next() - '0');
+        }
+        if (integerDigits == 0) {
+            return false;
+        }
+
+        long cents = 0;
+        if (position < end && peek() == '.') {
+            position++;
+            int decimals = 0;
+            boolean roundUp = false;
+            while (position < end && isDigit(peek())) {
+                int digit = next() - '0';
+                if (decimals < 2) {
+                    cents = cents * 10 + digit;
+                } else if (decimals == 2) {
+                    roundUp = digit >= 5;
+                }
+                decimals++;
+            }
+            if (decimals == 0) {
+                return false;
+            }
+            if (decimals == 1) {
+                cents *= 10;
+            }
+            if (roundUp) {
+                cents++;
+            }
+        }
+        if (position < end && (peek() == 'e' || peek() == 'E')) {
+            return false;
+        }
+
+        amountCents = integer * 100 + cents;
+        return true;
+    }
+
+    private boolean skipValue() {
+        if (position >= end) {
+            return false;
+        }
+        byte b = peek();
+        if (b == '"') {
+            position++;
+            return skipStringBody();
+        }
+        if (b == '{' || b == '[') {
+            return skipNested();
+        }
+        // número, true, false ou null: avança até o próximo delimitador
+        int start = position;
+        while (position < end) {
+            byte c = peek();
+            if (c == ',' || c == '}' || c == ']' || isWhitespace(c)) {
+                break;
+            }
+            position++;
+        }
+        return position > start;
+    }
+
+    private boolean skipNested() {
+        int depth = 0;
+        while (position < end) {
+            byte b = next();
+            if (b == '"') {
+                if (!skipStringBody()) {
+                    return false;
+                }
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Avança até depois das aspas de fechamento, respeitando escapes.
+     */
+    private boolean skipStringBody() {
+        while (position < end) {
+            byte b = next();
+            if (b == '\\') {
+                position++;
+            } else if (b == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean keyEquals(int start, int keyEnd, byte[] expected) {
+        if (keyEnd - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean expect(char expected) {
+        skipWhitespace();
+        return position < end && next() == expected;
+    }
+
+    private void skipWhitespace() {
+        while (position < end && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+    }
+
+    private byte peek() {
+        return position < end ? buffer.get(position) : 0;
+    }
+
+    private byte next() {
+        return position < end ? buffer.get(position++) : 0;
+    }
+
+    private boolean fail(String reason) {
+        this.error = reason;
+        return false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+}
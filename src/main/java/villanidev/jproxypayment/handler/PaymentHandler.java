@@ -2,26 +2,45 @@ package villanidev.jproxypayment.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import villanidev.jproxypayment.dto.PaymentRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpExchange;
+import villanidev.jproxypayment.server.NioHttpHandler;
+import villanidev.jproxypayment.service.payment.AdmissionController;
 import villanidev.jproxypayment.service.payment.PaymentQueueService;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class PaymentHandler implements HttpHandler, NioHttpHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentHandler.class);
+
+    // O parse é inline e barato: um parser por thread (no NIO, só a do event loop)
+    private static final ThreadLocal<PaymentBodyParser> PARSER = ThreadLocal.withInitial(PaymentBodyParser::new);
+    private static final Counter RECEIVED = Metrics.REGISTRY.counter(
+            "jproxy_payments_received_total", "POST /payments requests with a valid body");
+    private static final Counter INVALID = Metrics.REGISTRY.counter(
+            "jproxy_payments_invalid_total", "POST /payments requests rejected with 400");
 
-public class PaymentHandler implements HttpHandler {
-    private final ExecutorService asyncProcessor = Executors.newFixedThreadPool(
-            10,
-            Thread.ofVirtual().name("asyncVthread-", 0L).factory()
-    );
     private final PaymentQueueService paymentQueueService;
+    private final AdmissionController admissionController;
+    // Com ADMISSION_POLICY=throttle o 202 do NIO sai atrasado daqui, sem segurar o event loop
+    private final ScheduledExecutorService throttleScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("paymentThrottleVthread-", 0L).factory()
+    );
 
-    public PaymentHandler(PaymentQueueService paymentQueueService) {
+    public PaymentHandler(PaymentQueueService paymentQueueService, AdmissionController admissionController) {
         this.paymentQueueService = paymentQueueService;
+        this.admissionController = admissionController;
     }
 
     @Override
@@ -31,36 +50,84 @@ public class PaymentHandler implements HttpHandler {
             return;
         }
 
-        System.out.println("Processing payment request: "+ Thread.currentThread().getName());
-
-        try (exchange; InputStream is = exchange.getRequestBody()) {
-            String requestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8)
-                    .replaceAll("\\s", "");
+        LOGGER.debug("Processing payment request");
 
-            asyncProcessor.submit(() -> processAsync(requestBody));
-
-            sendResponse(exchange, 202, "");
+        AdmissionController.Decision decision = admissionController.admit();
+        if (decision == AdmissionController.Decision.REJECT) {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.getResponseHeaders().set("Retry-After",
+                        Integer.toString(admissionController.retryAfterSeconds()));
+                exchange.sendResponseHeaders(admissionController.rejectStatus(), -1);
+            }
+            return;
+        }
 
-        } catch (Exception e) {
-            System.err.println(Thread.currentThread().getName() +" - Error processing payment request: " + e);
+        try (exchange) {
+            try (InputStream is = exchange.getRequestBody()) {
+                byte[] body = is.readAllBytes();
+                if (accept(ByteBuffer.wrap(body), 0, body.length, decision)) {
+                    if (decision == AdmissionController.Decision.THROTTLE) {
+                        // Segura a thread do pool do HttpServer: a aceitação desacelera junto
+                        Thread.sleep(admissionController.throttleDelayMillis());
+                    }
+                    sendResponse(exchange, 202, "");
+                } else {
+                    sendResponse(exchange, 400, "Bad request");
+                }
+            } catch (Exception e) {
+                // Ainda com a exchange aberta: o cliente recebe o 500 em vez de esperar o timeout
+                LOGGER.error("Error processing payment request", e);
+                sendResponse(exchange, 500, "Internal Server Error");
+            }
         }
     }
 
-    private void processAsync(String requestBody) {
-        try {
-            String idStr = requestBody.substring(18, 54);
+    @Override
+    public void handle(NioHttpExchange exchange) {
+        if (!"POST".equals(exchange.method())) {
+            exchange.respond(HttpResponses.METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        AdmissionController.Decision decision = admissionController.admit();
+        if (decision == AdmissionController.Decision.REJECT) {
+            exchange.respond(HttpResponses.retryLater(
+                    admissionController.rejectStatus(), admissionController.retryAfterSeconds()));
+            return;
+        }
 
-            int amountStart = requestBody.indexOf("\"amount\":") + 9;
-            int amountEnd = requestBody.indexOf("}", amountStart);
-            String amountStr = requestBody.substring(amountStart, amountEnd).trim();
+        if (!accept(exchange.buffer(), exchange.bodyOffset(), exchange.bodyLength(), decision)) {
+            exchange.respond(HttpResponses.BAD_REQUEST);
+        } else if (decision == AdmissionController.Decision.THROTTLE) {
+            throttleScheduler.schedule(() -> exchange.respond(HttpResponses.ACCEPTED),
+                    admissionController.throttleDelayMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            exchange.respond(HttpResponses.ACCEPTED);
+        }
+    }
 
-            UUID correlationId = UUID.fromString(idStr);
-            double amount = Double.parseDouble(amountStr);
+    private boolean accept(ByteBuffer body, int offset, int length, AdmissionController.Decision decision) {
+        PaymentBodyParser parser = PARSER.get();
+        if (!parser.parse(body, offset, length)) {
+            INVALID.increment();
+            LOGGER.debug("Error parsing payment request: {}", parser.error());
+            return false;
+        }
 
-            paymentQueueService.enqueuePayment(new PaymentRequest(correlationId, amount));
-        } catch (Exception e) {
-            System.err.println(Thread.currentThread().getName() +" - Error parsing payment request: " + e);
+        RECEIVED.increment();
+        if (decision == AdmissionController.Decision.SPILL) {
+            paymentQueueService.spillPayment(
+                    parser.correlationIdMsb(),
+                    parser.correlationIdLsb(),
+                    parser.amountCents());
+        } else {
+            paymentQueueService.enqueuePayment(
+                    parser.correlationIdMsb(),
+                    parser.correlationIdLsb(),
+                    parser.amountCents());
         }
+        return true;
     }
 
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
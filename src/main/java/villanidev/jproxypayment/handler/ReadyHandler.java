@@ -0,0 +1,49 @@
+package villanidev.jproxypayment.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpExchange;
+import villanidev.jproxypayment.server.NioHttpHandler;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * GET /ready: 200 depois do warm-up, 503 antes. Para o healthcheck do compose segurar o
+ * tráfego do nginx até a instância estar aquecida.
+ */
+public class ReadyHandler implements HttpHandler, NioHttpHandler {
+
+    private static final byte[] NOT_READY = HttpResponses.retryLater(503, 1);
+
+    private final BooleanSupplier ready;
+
+    public ReadyHandler(BooleanSupplier ready) {
+        this.ready = ready;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            boolean isReady = ready.getAsBoolean();
+            if (!isReady) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            exchange.sendResponseHeaders(isReady ? 200 : 503, -1);
+        }
+    }
+
+    @Override
+    public void handle(NioHttpExchange exchange) {
+        if (!"GET".equals(exchange.method())) {
+            exchange.respond(HttpResponses.METHOD_NOT_ALLOWED);
+            return;
+        }
+        exchange.respond(ready.getAsBoolean() ? HttpResponses.OK : NOT_READY);
+    }
+}
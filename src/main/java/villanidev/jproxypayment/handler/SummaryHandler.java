@@ -2,81 +2,130 @@ package villanidev.jproxypayment.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import villanidev.jproxypayment.cache.RedisCacheClient;
-import villanidev.jproxypayment.dto.PaymentSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.exception.SummaryUnavailableException;
+import villanidev.jproxypayment.logging.LogSampler;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpExchange;
+import villanidev.jproxypayment.server.NioHttpHandler;
+import villanidev.jproxypayment.service.summary.SummaryService;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
-
-public class SummaryHandler implements HttpHandler {
-    private static final String SUMMARY_RESPONSE = """
-            {
-                "default": {
-                    "totalRequests": %d,
-                    "totalAmount": %.2f
-                },
-                "fallback": {
-                    "totalRequests": %d,
-                    "totalAmount": %.2f
-                }
-            }
-            """;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SummaryHandler implements HttpHandler, NioHttpHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SummaryHandler.class);
+
+    // Como no PaymentHandler: a query é lida inline, um parser por thread
+    private static final ThreadLocal<SummaryQueryParser> PARSER = ThreadLocal.withInitial(SummaryQueryParser::new);
+    // Summary que não dá para somar por inteiro: 503 em vez de uma soma parcial
+    private static final byte[] UNAVAILABLE = HttpResponses.retryLater(503, 1);
+    private static final LogSampler UNAVAILABLE_SAMPLER = new LogSampler(Duration.ofSeconds(1), 1);
 
-    private final RedisCacheClient redisCacheClient;
+    private record EncodedSummary(byte[] json, byte[] response) {}
 
-    public SummaryHandler(RedisCacheClient redisCacheClient) {
-        this.redisCacheClient = redisCacheClient;
+    private final SummaryService summaryService;
+    private volatile EncodedSummary lastResponse;
+    // Consulta ao Redis (ou aos peers) é bloqueante: roda fora do event loop do NioHttpServer
+    private final ExecutorService summaryExecutor = Executors.newThreadPerTaskExecutor(
+            Metrics.countingVirtualThreads(Thread.ofVirtual().name("summaryVthread-", 0L).factory())
+    );
+
+    public SummaryHandler(SummaryService summaryService) {
+        this.summaryService = summaryService;
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         if (!"GET".equals(exchange.getRequestMethod())) {
-            sendResponse(exchange, 405, "Method Not Allowed");
+            sendResponse(exchange, 405, "Method Not Allowed".getBytes(StandardCharsets.UTF_8));
             return;
         }
 
-        System.out.println("Processing summary request: "+ Thread.currentThread().getName());
+        LOGGER.debug("Processing summary request");
+
+        SummaryQueryParser parser = PARSER.get();
+        String query = exchange.getRequestURI().getRawQuery();
+        byte[] queryBytes = query == null ? new byte[0] : query.getBytes(StandardCharsets.US_ASCII);
+        if (!parser.parse(ByteBuffer.wrap(queryBytes), 0, queryBytes.length)) {
+            sendResponse(exchange, 400, "Bad request".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
 
         try {
-            String query = exchange.getRequestURI().getQuery();
-            Instant from = null;
-            Instant to = null;
-
-            if (query != null) {
-                String[] params = query.split("&");
-                for (String param : params) {
-                    if (param.startsWith("from=")) {
-                        String fromStr = param.substring(5);
-                        from = Instant.from(DateTimeFormatter.ISO_INSTANT.parse(fromStr));
-                    } else if (param.startsWith("to=")) {
-                        String toStr = param.substring(3);
-                        to = Instant.from(DateTimeFormatter.ISO_INSTANT.parse(toStr));
-                    }
-                }
+            sendResponse(exchange, 200, summaryService.getSummaryJson(parser.fromMillis(), parser.toMillis()));
+        } catch (SummaryUnavailableException e) {
+            logUnavailable(e);
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendResponse(exchange, 503, "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            LOGGER.error("Error reading payments summary", e);
+            sendResponse(exchange, 500, "Internal Server Error".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void handle(NioHttpExchange exchange) {
+        if (!"GET".equals(exchange.method())) {
+            exchange.respond(HttpResponses.METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        // O buffer da conexão só vale durante o handle: a query é lida aqui e só os limites seguem
+        SummaryQueryParser parser = PARSER.get();
+        if (!parser.parse(exchange.buffer(), exchange.queryOffset(), exchange.queryLength())) {
+            exchange.respond(HttpResponses.BAD_REQUEST);
+            return;
+        }
+        long fromMillis = parser.fromMillis();
+        long toMillis = parser.toMillis();
+
+        summaryExecutor.submit(() -> {
+            try {
+                exchange.respond(encodedResponse(summaryService.getSummaryJson(fromMillis, toMillis)));
+            } catch (SummaryUnavailableException e) {
+                logUnavailable(e);
+                exchange.respond(UNAVAILABLE);
+            } catch (Exception e) {
+                LOGGER.error("Error reading payments summary", e);
+                exchange.respond(HttpResponses.INTERNAL_ERROR);
             }
+        });
+    }
 
-            PaymentSummary summary = redisCacheClient.getSummary(from, to);
-            String response = String.format(SUMMARY_RESPONSE,
-                    summary.defaultTotalRequests(),
-                    summary.defaultTotalAmount(),
-                    summary.fallbackTotalRequests(),
-                    summary.fallbackTotalAmount());
+    private static void logUnavailable(SummaryUnavailableException e) {
+        if (UNAVAILABLE_SAMPLER.tryAcquire()) {
+            LOGGER.warn("Summary unavailable, answering 503 ({} suppressed): {}",
+                    UNAVAILABLE_SAMPLER.drainSuppressed(), e.getMessage());
+        }
+    }
 
-            sendResponse(exchange, 200, response);
-        } catch (Exception e) {
-            System.err.println(e);
-            sendResponse(exchange, 400, "Bad request");
+    /**
+     * Resposta HTTP completa; o SummaryJsonCache devolve o mesmo array enquanto os totais não mudam,
+     * então a última resposta montada é reaproveitada por identidade.
+     */
+    private byte[] encodedResponse(byte[] json) {
+        EncodedSummary cached = lastResponse;
+        if (cached != null && cached.json == json) {
+            return cached.response;
         }
+        byte[] response = HttpResponses.json(json);
+        lastResponse = new EncodedSummary(json, response);
+        return response;
     }
 
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
+    private void sendResponse(HttpExchange exchange, int statusCode, byte[] response) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(statusCode, response.getBytes(StandardCharsets.UTF_8).length);
+        exchange.sendResponseHeaders(statusCode, response.length);
         try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes(StandardCharsets.UTF_8));
+            os.write(response);
         }
     }
 }
@@ -0,0 +1,72 @@
+package villanidev.jproxypayment.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpExchange;
+import villanidev.jproxypayment.server.NioHttpHandler;
+import villanidev.jproxypayment.service.summary.SummaryService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GET /payments-summary/partial?from=..&to=..: totais só desta instância, em texto
+ * ({@code defaultRequests defaultCents fallbackRequests fallbackCents}), para o
+ * {@link SummaryService} das outras somar. 404 quando a parcial local não é exata.
+ * A soma nos agregados é em memória: responde direto no event loop.
+ */
+public class SummaryPartialHandler implements HttpHandler, NioHttpHandler {
+
+    private static final ThreadLocal<SummaryQueryParser> PARSER = ThreadLocal.withInitial(SummaryQueryParser::new);
+
+    private final SummaryService summaryService;
+
+    public SummaryPartialHandler(SummaryService summaryService) {
+        this.summaryService = summaryService;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            SummaryQueryParser parser = PARSER.get();
+            String query = exchange.getRequestURI().getRawQuery();
+            byte[] queryBytes = query == null ? new byte[0] : query.getBytes(StandardCharsets.US_ASCII);
+            if (!parser.parse(ByteBuffer.wrap(queryBytes), 0, queryBytes.length)) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] partial = summaryService.partial(parser.fromMillis(), parser.toMillis());
+            if (partial == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, partial.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(partial);
+            }
+        }
+    }
+
+    @Override
+    public void handle(NioHttpExchange exchange) {
+        if (!"GET".equals(exchange.method())) {
+            exchange.respond(HttpResponses.METHOD_NOT_ALLOWED);
+            return;
+        }
+        SummaryQueryParser parser = PARSER.get();
+        if (!parser.parse(exchange.buffer(), exchange.queryOffset(), exchange.queryLength())) {
+            exchange.respond(HttpResponses.BAD_REQUEST);
+            return;
+        }
+        byte[] partial = summaryService.partial(parser.fromMillis(), parser.toMillis());
+        exchange.respond(partial == null ? HttpResponses.NOT_FOUND : HttpResponses.text(partial));
+    }
+}
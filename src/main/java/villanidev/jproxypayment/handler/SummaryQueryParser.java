@@ -0,0 +1,236 @@
+package villanidev.jproxypayment.handler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parser da query de GET /payments-summary direto dos bytes: extrai {@code from} e {@code to}
+ * como epoch millis sem split, substring nem DateTimeFormatter. Aceita instantes ISO-8601 no
+ * formato {@code yyyy-MM-ddTHH:mm:ss[.fração](Z|±HH:mm)}; a fração além do milissegundo é
+ * truncada e os dois-pontos podem vir codificados como {@code %3A}. Parâmetros desconhecidos
+ * são ignorados. Sem um dos limites, o intervalo fica aberto daquele lado
+ * ({@link #UNBOUNDED_FROM}/{@link #UNBOUNDED_TO}). A instância não é thread-safe.
+ */
+public final class SummaryQueryParser {
+
+    public static final long UNBOUNDED_FROM = Long.MIN_VALUE;
+    public static final long UNBOUNDED_TO = Long.MAX_VALUE;
+
+    private static final byte[] FROM = {'f', 'r', 'o', 'm'};
+    private static final byte[] TO = {'t', 'o'};
+
+    private ByteBuffer buffer;
+    private int position;
+    private int end;
+    // Fim do valor corrente: os leitores de instante nunca passam do '&' seguinte
+    private int valueEnd;
+
+    private long fromMillis;
+    private long toMillis;
+    private long parsedMillis;
+
+    public long fromMillis() {
+        return fromMillis;
+    }
+
+    public long toMillis() {
+        return toMillis;
+    }
+
+    /**
+     * Interpreta a query em [offset, offset + length) do buffer usando apenas leituras absolutas
+     * (length 0 = sem query).
+     * Retorna false se {@code from} ou {@code to} não for um instante válido.
+     */
+    public boolean parse(ByteBuffer source, int offset, int length) {
+        this.buffer = source;
+        this.end = offset + length;
+        this.fromMillis = UNBOUNDED_FROM;
+        this.toMillis = UNBOUNDED_TO;
+
+        try {
+            int paramStart = offset;
+            while (paramStart < end) {
+                int paramEnd = indexOf('&', paramStart);
+                int equals = indexOf('=', paramStart);
+                if (equals < paramEnd) {
+                    position = equals + 1;
+                    if (keyEquals(paramStart, equals, FROM)) {
+                        if (!parseInstant(paramEnd)) {
+                            return false;
+                        }
+                        fromMillis = parsedMillis;
+                    } else if (keyEquals(paramStart, equals, TO)) {
+                        if (!parseInstant(paramEnd)) {
+                            return false;
+                        }
+                        toMillis = parsedMillis;
+                    }
+                }
+                paramStart = paramEnd + 1;
+            }
+            return true;
+        } finally {
+            this.buffer = null;
+        }
+    }
+
+    private boolean parseInstant(int valueEnd) {
+        this.valueEnd = valueEnd;
+        int year = digits(4);
+        if (year < 0 || !separator('-')) {
+            return false;
+        }
+        int month = digits(2);
+        if (month < 1 || month > 12 || !separator('-')) {
+            return false;
+        }
+        int day = digits(2);
+        if (day < 1 || day > daysInMonth(year, month) || !(separator('T') || separator('t'))) {
+            return false;
+        }
+        int hour = digits(2);
+        if (hour < 0 || hour > 23 || !colon()) {
+            return false;
+        }
+        int minute = digits(2);
+        if (minute < 0 || minute > 59 || !colon()) {
+            return false;
+        }
+        int second = digits(2);
+        if (second < 0 || second > 59) {
+            return false;
+        }
+
+        int millis = 0;
+        if (position < valueEnd && buffer.get(position) == '.') {
+            position++;
+            int fractionDigits = 0;
+            while (position < valueEnd && isDigit(buffer.get(position))) {
+                if (fractionDigits < 3) {
+                    millis = millis * 10 + (buffer.get(position) - '0');
+                }
+                fractionDigits++;
+                position++;
+            }
+            if (fractionDigits == 0 || fractionDigits > 9) {
+                return false;
+            }
+            for (int i = fractionDigits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        int offsetSeconds;
+        if (separator('Z') || separator('z')) {
+            offsetSeconds = 0;
+        } else if (position < valueEnd && (buffer.get(position) == '+' || buffer.get(position) == '-')) {
+            int sign = buffer.get(position++) == '-' ? -1 : 1;
+            int offsetHours = digits(2);
+            if (offsetHours < 0 || offsetHours > 18 || !colon()) {
+                return false;
+            }
+            int offsetMinutes = digits(2);
+            if (offsetMinutes < 0 || offsetMinutes > 59) {
+                return false;
+            }
+            offsetSeconds = sign * (offsetHours * 3600 + offsetMinutes * 60);
+        } else {
+            return false;
+        }
+        if (position != valueEnd) {
+            return false;
+        }
+
+        long epochSeconds = daysFromCivil(year, month, day) * 86_400L
+                + hour * 3600L + minute * 60L + second - offsetSeconds;
+        parsedMillis = epochSeconds * 1000 + millis;
+        return true;
+    }
+
+    /**
+     * Dias desde 1970-01-01 pelo algoritmo days-from-civil de H. Hinnant.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Lê exatamente {@code count} dígitos; -1 se faltar algum.
+     */
+    private int digits(int count) {
+        if (valueEnd - position < count) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            byte b = buffer.get(position + i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        position += count;
+        return value;
+    }
+
+    private boolean separator(char expected) {
+        if (position < valueEnd && buffer.get(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * ':' literal ou codificado como %3A.
+     */
+    private boolean colon() {
+        if (separator(':')) {
+            return true;
+        }
+        if (valueEnd - position >= 3 && buffer.get(position) == '%' && buffer.get(position + 1) == '3'
+                && (buffer.get(position + 2) == 'A' || buffer.get(position + 2) == 'a')) {
+            position += 3;
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(char target, int from) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private boolean keyEquals(int start, int keyEnd, byte[] expected) {
+        if (keyEnd - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
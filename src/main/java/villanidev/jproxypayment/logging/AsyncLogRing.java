@@ -0,0 +1,209 @@
+package villanidev.jproxypayment.logging;
+
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Anel de eventos de log com slots pré-alocados (fila limitada de múltiplos produtores no
+ * estilo de Vyukov) e um único escritor em segundo plano.
+ * <ul>
+ *   <li>Quem loga reserva um slot com um CAS, copia as referências (formato, argumentos,
+ *       thread, horário) e publica pela sequência do slot: sem lock, sem formatar e sem I/O
+ *       na thread que chamou. Anel cheio descarta o evento e conta, nunca bloqueia.</li>
+ *   <li>O escritor formata os eventos em lote e faz uma escrita por lote no stdout.</li>
+ * </ul>
+ * Os argumentos são formatados depois, na thread do escritor: objetos mutáveis aparecem com o
+ * estado do momento da escrita.
+ */
+final class AsyncLogRing {
+
+    private static final class Slot {
+        volatile long sequence;
+        int level;
+        long timestampMillis;
+        String threadName;
+        String loggerName;
+        String format;
+        int argCount;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+        Throwable throwable;
+    }
+
+    // argCount que indica argumentos no array (varargs), não em arg1/arg2
+    static final int ARGS_ARRAY = 3;
+
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final int halfMask;
+    private final AtomicLong tail = new AtomicLong();
+    // Só o escritor avança a cabeça
+    private long head;
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported;
+    private final OutputStream out;
+    private final StringBuilder batch = new StringBuilder(16 * 1024);
+    private volatile boolean closing;
+    private final Thread writer;
+
+    AsyncLogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        this.halfMask = mask >>> 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        this.out = new FileOutputStream(FileDescriptor.out);
+        // Thread de plataforma: a escrita no stdout é bloqueante e prenderia o carrier de uma virtual
+        this.writer = Thread.ofPlatform().name("asyncLogWriter").daemon(true).start(this::writeLoop);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "asyncLogShutdown"));
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    void publish(int level, String loggerName, String format,
+                 int argCount, Object arg1, Object arg2, Object[] args, Throwable throwable) {
+        Slot slot;
+        long position = tail.get();
+        while (true) {
+            slot = slots[(int) (position & mask)];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Escritor atrasado uma volta inteira: descarta em vez de bloquear quem loga
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+        slot.level = level;
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.threadName = Thread.currentThread().getName();
+        slot.loggerName = loggerName;
+        slot.format = format;
+        slot.argCount = argCount;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        slot.throwable = throwable;
+        slot.sequence = position + 1;
+        if ((position & halfMask) == 0) {
+            // A cada meia volta acorda o escritor, sem esperar o fim do intervalo ocioso
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            int written = drain();
+            if (written == 0) {
+                if (closing) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Formata até {@link #MAX_BATCH} eventos publicados e os escreve de uma vez.
+     */
+    private int drain() {
+        int count = 0;
+        while (count < MAX_BATCH) {
+            Slot slot = slots[(int) (head & mask)];
+            if (slot.sequence != head + 1) {
+                break;
+            }
+            append(slot);
+            slot.format = null;
+            slot.arg1 = null;
+            slot.arg2 = null;
+            slot.args = null;
+            slot.throwable = null;
+            slot.sequence = head + slots.length;
+            head++;
+            count++;
+        }
+        long droppedNow = dropped.sum();
+        if (droppedNow != droppedReported) {
+            batch.append(Instant.ofEpochMilli(System.currentTimeMillis())).append(" [asyncLogWriter] WARN ")
+                    .append(AsyncLogRing.class.getName()).append(" - ")
+                    .append(droppedNow - droppedReported).append(" log events dropped, ring full\n");
+            droppedReported = droppedNow;
+        }
+        if (!batch.isEmpty()) {
+            try {
+                out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException ignored) {
+                // Sem stdout não há onde avisar
+            }
+            batch.setLength(0);
+        }
+        return count;
+    }
+
+    private void append(Slot slot) {
+        batch.append(Instant.ofEpochMilli(slot.timestampMillis))
+                .append(" [").append(slot.threadName).append("] ")
+                .append(RingLogger.levelName(slot.level)).append(' ')
+                .append(slot.loggerName).append(" - ");
+        Throwable throwable = slot.throwable;
+        if (slot.argCount == 0) {
+            batch.append(slot.format);
+        } else {
+            Object[] args = switch (slot.argCount) {
+                case 1 -> new Object[]{slot.arg1};
+                case 2 -> new Object[]{slot.arg1, slot.arg2};
+                default -> slot.args;
+            };
+            FormattingTuple tuple = throwable == null
+                    ? MessageFormatter.arrayFormat(slot.format, args)
+                    : MessageFormatter.arrayFormat(slot.format, args, throwable);
+            batch.append(tuple.getMessage());
+            throwable = tuple.getThrowable();
+        }
+        batch.append('\n');
+        if (throwable != null) {
+            StringWriter trace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(trace));
+            batch.append(trace);
+        }
+    }
+
+    private void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
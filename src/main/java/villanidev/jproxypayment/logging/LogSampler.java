@@ -0,0 +1,48 @@
+package villanidev.jproxypayment.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Amostragem de mensagens repetidas: deixa passar até {@code permits} por janela e conta as
+ * demais, para a próxima mensagem registrada informar quantas foram suprimidas.
+ * <pre>
+ * if (SAMPLER.tryAcquire()) {
+ *     log.warn("Falha ({} suprimidas)", SAMPLER.drainSuppressed(), e);
+ * }
+ * </pre>
+ */
+public final class LogSampler {
+
+    private final long windowNanos;
+    private final int permits;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogSampler(Duration window, int permits) {
+        this.windowNanos = window.toNanos();
+        this.permits = permits;
+    }
+
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() <= permits) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Mensagens suprimidas desde a última chamada.
+     */
+    public long drainSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
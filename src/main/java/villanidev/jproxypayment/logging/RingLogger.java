@@ -0,0 +1,222 @@
+package villanidev.jproxypayment.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.LegacyAbstractLogger;
+
+import java.io.Serial;
+
+/**
+ * Logger do slf4j sobre o {@link AsyncLogRing}. O nível é conferido antes de qualquer outra
+ * coisa; as chamadas com até dois argumentos vão direto para o slot do anel, sem montar array
+ * nem formatar. Varargs e marcadores seguem pelo caminho genérico do {@link LegacyAbstractLogger}.
+ */
+final class RingLogger extends LegacyAbstractLogger {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    static final int TRACE = Level.TRACE.toInt();
+    static final int DEBUG = Level.DEBUG.toInt();
+    static final int INFO = Level.INFO.toInt();
+    static final int WARN = Level.WARN.toInt();
+    static final int ERROR = Level.ERROR.toInt();
+
+    private final transient AsyncLogRing ring;
+    private final int threshold;
+
+    RingLogger(String name, AsyncLogRing ring, int threshold) {
+        this.name = name;
+        this.ring = ring;
+        this.threshold = threshold;
+    }
+
+    static String levelName(int level) {
+        if (level >= ERROR) {
+            return "ERROR";
+        }
+        if (level >= WARN) {
+            return "WARN";
+        }
+        if (level >= INFO) {
+            return "INFO";
+        }
+        return level >= DEBUG ? "DEBUG" : "TRACE";
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return threshold <= TRACE;
+    }
+
+    @Override
+    public void trace(String msg) {
+        if (threshold <= TRACE) {
+            ring.publish(TRACE, name, msg, 0, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void trace(String format, Object arg) {
+        if (threshold <= TRACE) {
+            ring.publish(TRACE, name, format, 1, arg, null, null, null);
+        }
+    }
+
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        if (threshold <= TRACE) {
+            ring.publish(TRACE, name, format, 2, arg1, arg2, null, null);
+        }
+    }
+
+    @Override
+    public void trace(String msg, Throwable t) {
+        if (threshold <= TRACE) {
+            ring.publish(TRACE, name, msg, 0, null, null, null, t);
+        }
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return threshold <= DEBUG;
+    }
+
+    @Override
+    public void debug(String msg) {
+        if (threshold <= DEBUG) {
+            ring.publish(DEBUG, name, msg, 0, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        if (threshold <= DEBUG) {
+            ring.publish(DEBUG, name, format, 1, arg, null, null, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        if (threshold <= DEBUG) {
+            ring.publish(DEBUG, name, format, 2, arg1, arg2, null, null);
+        }
+    }
+
+    @Override
+    public void debug(String msg, Throwable t) {
+        if (threshold <= DEBUG) {
+            ring.publish(DEBUG, name, msg, 0, null, null, null, t);
+        }
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return threshold <= INFO;
+    }
+
+    @Override
+    public void info(String msg) {
+        if (threshold <= INFO) {
+            ring.publish(INFO, name, msg, 0, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        if (threshold <= INFO) {
+            ring.publish(INFO, name, format, 1, arg, null, null, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        if (threshold <= INFO) {
+            ring.publish(INFO, name, format, 2, arg1, arg2, null, null);
+        }
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        if (threshold <= INFO) {
+            ring.publish(INFO, name, msg, 0, null, null, null, t);
+        }
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return threshold <= WARN;
+    }
+
+    @Override
+    public void warn(String msg) {
+        if (threshold <= WARN) {
+            ring.publish(WARN, name, msg, 0, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        if (threshold <= WARN) {
+            ring.publish(WARN, name, format, 1, arg, null, null, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        if (threshold <= WARN) {
+            ring.publish(WARN, name, format, 2, arg1, arg2, null, null);
+        }
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        if (threshold <= WARN) {
+            ring.publish(WARN, name, msg, 0, null, null, null, t);
+        }
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return threshold <= ERROR;
+    }
+
+    @Override
+    public void error(String msg) {
+        if (threshold <= ERROR) {
+            ring.publish(ERROR, name, msg, 0, null, null, null, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        if (threshold <= ERROR) {
+            ring.publish(ERROR, name, format, 1, arg, null, null, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        if (threshold <= ERROR) {
+            ring.publish(ERROR, name, format, 2, arg1, arg2, null, null);
+        }
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        if (threshold <= ERROR) {
+            ring.publish(ERROR, name, msg, 0, null, null, null, t);
+        }
+    }
+
+    @Override
+    protected String getFullyQualifiedCallerName() {
+        return null;
+    }
+
+    @Override
+    protected void handleNormalizedLoggingCall(Level level, Marker marker, String messagePattern,
+                                               Object[] arguments, Throwable throwable) {
+        int argCount = arguments == null || arguments.length == 0 ? 0 : AsyncLogRing.ARGS_ARRAY;
+        ring.publish(level.toInt(), name, messagePattern, argCount, null, null, arguments, throwable);
+    }
+}
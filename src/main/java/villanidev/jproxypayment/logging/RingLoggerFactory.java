@@ -0,0 +1,27 @@
+package villanidev.jproxypayment.logging;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Um {@link RingLogger} por nome, todos no mesmo anel e com o mesmo nível mínimo.
+ */
+final class RingLoggerFactory implements ILoggerFactory {
+
+    private final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+    private final AsyncLogRing ring;
+    private final int threshold;
+
+    RingLoggerFactory(AsyncLogRing ring, int threshold) {
+        this.ring = ring;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Logger getLogger(String name) {
+        return loggers.computeIfAbsent(name, n -> new RingLogger(n, ring, threshold));
+    }
+}
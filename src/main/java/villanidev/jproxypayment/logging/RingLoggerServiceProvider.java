@@ -0,0 +1,56 @@
+package villanidev.jproxypayment.logging;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.IMarkerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.BasicMDCAdapter;
+import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.spi.MDCAdapter;
+import org.slf4j.spi.SLF4JServiceProvider;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.util.Locale;
+
+/**
+ * Provider do slf4j (registrado em META-INF/services) que liga o {@code slf4j-api} ao
+ * {@link AsyncLogRing}. LOG_LEVEL define o nível mínimo (padrão INFO) e LOG_RING_SIZE o número
+ * de slots do anel (padrão 8192).
+ */
+public final class RingLoggerServiceProvider implements SLF4JServiceProvider {
+
+    private static final String LOG_LEVEL = System.getenv().getOrDefault("LOG_LEVEL", "INFO");
+    private static final int LOG_RING_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("LOG_RING_SIZE", "8192"));
+
+    private ILoggerFactory loggerFactory;
+    private final IMarkerFactory markerFactory = new BasicMarkerFactory();
+    private final MDCAdapter mdcAdapter = new BasicMDCAdapter();
+
+    @Override
+    public void initialize() {
+        AsyncLogRing ring = new AsyncLogRing(LOG_RING_SIZE);
+        loggerFactory = new RingLoggerFactory(ring, Level.valueOf(LOG_LEVEL.toUpperCase(Locale.ROOT)).toInt());
+        Metrics.REGISTRY.counter("jproxy_log_events_dropped_total",
+                "Log events dropped because the ring was full", ring::dropped);
+    }
+
+    @Override
+    public ILoggerFactory getLoggerFactory() {
+        return loggerFactory;
+    }
+
+    @Override
+    public IMarkerFactory getMarkerFactory() {
+        return markerFactory;
+    }
+
+    @Override
+    public MDCAdapter getMDCAdapter() {
+        return mdcAdapter;
+    }
+
+    @Override
+    public String getRequestedApiVersion() {
+        return "2.0.99";
+    }
+}
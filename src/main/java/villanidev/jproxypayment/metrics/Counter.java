@@ -0,0 +1,27 @@
+package villanidev.jproxypayment.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotônico sobre {@link LongAdder}: incrementar não aloca e não disputa a mesma
+ * linha de cache entre threads.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long sum() {
+        return value.sum();
+    }
+}
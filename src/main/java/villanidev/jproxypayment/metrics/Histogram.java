@@ -0,0 +1,64 @@
+package villanidev.jproxypayment.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de buckets fixos no formato do Prometheus. Os limites são definidos em segundos
+ * na criação e guardados em nanos; gravar é uma busca linear em poucos limites e dois
+ * {@link LongAdder}, sem alocação.
+ */
+public final class Histogram {
+
+    // 1 ms a 10 s: chamadas aos processadores e health checks
+    public static final double[] REQUEST_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    // 100 µs a 1 s: round trips ao Redis
+    public static final double[] ROUNDTRIP_BUCKETS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 1};
+
+    private final double[] bounds;
+    private final long[] boundsNanos;
+    // Um contador por bucket (não cumulativo) mais o +Inf; o acumulado é montado na leitura
+    private final LongAdder[] counts;
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.boundsNanos = new long[bounds.length];
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            boundsNanos[i] = (long) (bounds[i] * 1_000_000_000L);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        int bucket = 0;
+        while (bucket < boundsNanos.length && nanos > boundsNanos[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Grava o tempo decorrido desde {@code startNanos} ({@link System#nanoTime()}).
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    void write(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"")
+                    .append(i < bounds.length ? Double.toString(bounds[i]) : "+Inf").append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix).append(sumNanos.sum() / 1e9).append('\n');
+        out.append(name).append("_count").append(suffix).append(cumulative).append('\n');
+    }
+}
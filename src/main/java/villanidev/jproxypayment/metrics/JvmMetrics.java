@@ -0,0 +1,60 @@
+package villanidev.jproxypayment.metrics;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Memória, GC, threads de plataforma, buffers diretos e CPU da JVM, lidos dos MXBeans na
+ * coleta. É o que importa para caber nos 150 MB e 0.6 CPU de cada instância.
+ */
+final class JvmMetrics {
+
+    private JvmMetrics() {
+    }
+
+    static void register(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registry.gauge("jvm_memory_used_bytes", "Used memory by area",
+                () -> memory.getHeapMemoryUsage().getUsed(), "area", "heap");
+        registry.gauge("jvm_memory_used_bytes", "Used memory by area",
+                () -> memory.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed memory by area",
+                () -> memory.getHeapMemoryUsage().getCommitted(), "area", "heap");
+        registry.gauge("jvm_memory_committed_bytes", "Committed memory by area",
+                () -> memory.getNonHeapMemoryUsage().getCommitted(), "area", "nonheap");
+        registry.gauge("jvm_memory_max_bytes", "Max heap memory (-1 when undefined)",
+                () -> memory.getHeapMemoryUsage().getMax(), "area", "heap");
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            registry.gauge("jvm_memory_pool_used_bytes", "Used memory by pool",
+                    () -> pool.getUsage().getUsed(), "pool", pool.getName());
+        }
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            registry.gauge("jvm_buffer_pool_used_bytes", "Memory used by NIO buffer pools",
+                    pool::getMemoryUsed, "pool", pool.getName());
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            registry.counter("jvm_gc_collections_total", "Garbage collections by collector",
+                    gc::getCollectionCount, "gc", gc.getName());
+            registry.gauge("jvm_gc_collection_time_seconds", "Accumulated collection time by collector",
+                    () -> gc.getCollectionTime() / 1000.0, "gc", gc.getName());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        registry.gauge("jvm_threads_live", "Live platform threads", threads::getThreadCount);
+        registry.gauge("jvm_threads_daemon", "Live daemon platform threads", threads::getDaemonThreadCount);
+
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            registry.gauge("process_cpu_time_seconds", "Accumulated process CPU time",
+                    () -> os.getProcessCpuTime() / 1e9);
+            registry.gauge("process_cpu_load", "Recent process CPU load (0..1 of the available CPUs)",
+                    os::getProcessCpuLoad);
+        }
+        registry.gauge("jvm_available_processors", "Processors available to the JVM",
+                () -> Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,44 @@
+package villanidev.jproxypayment.metrics;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro único da aplicação. Os componentes criam suas séries em campos (estáticos ou de
+ * instância) na inicialização e só as incrementam no caminho quente.
+ */
+public final class Metrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private static final LongAdder VIRTUAL_THREADS_STARTED = new LongAdder();
+    private static final LongAdder VIRTUAL_THREADS_LIVE = new LongAdder();
+
+    static {
+        JvmMetrics.register(REGISTRY);
+        REGISTRY.counter("jproxy_virtual_threads_started_total",
+                "Virtual threads started by the counted executors", VIRTUAL_THREADS_STARTED::sum);
+        REGISTRY.gauge("jproxy_virtual_threads_live",
+                "Virtual threads currently alive in the counted executors", VIRTUAL_THREADS_LIVE::sum);
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Envolve a factory de um executor para contar as threads virtuais vivas: a JVM 21 não
+     * expõe essa contagem. As poucas threads de vida longa iniciadas direto com
+     * {@code Thread.ofVirtual().start(...)} ficam de fora.
+     */
+    public static ThreadFactory countingVirtualThreads(ThreadFactory factory) {
+        return task -> factory.newThread(() -> {
+            VIRTUAL_THREADS_STARTED.increment();
+            VIRTUAL_THREADS_LIVE.increment();
+            try {
+                task.run();
+            } finally {
+                VIRTUAL_THREADS_LIVE.decrement();
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package villanidev.jproxypayment.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro das métricas expostas em /metrics, no formato texto do Prometheus (0.0.4).
+ * As séries são criadas na inicialização dos componentes; depois disso o caminho quente só
+ * incrementa {@link Counter}s e {@link Histogram}s. Gauges e contadores já mantidos pelos
+ * próprios componentes entram como funções, lidas só na coleta.
+ * <p>
+ * Labels são pares nome/valor: {@code counter("x_total", "...", "processor", "default")}.
+ */
+public final class MetricsRegistry {
+
+    private interface Sample {
+        void write(StringBuilder out, String name);
+    }
+
+    private record Family(String help, String type, List<Sample> samples) {}
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        Counter counter = new Counter();
+        String rendered = labels(labels);
+        register(name, help, "counter", (out, n) -> line(out, n, rendered, Long.toString(counter.sum())));
+        return counter;
+    }
+
+    /**
+     * Contador mantido pelo próprio componente (ex.: um {@code LongAdder} que ele já expõe).
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        String rendered = labels(labels);
+        register(name, help, "counter", (out, n) -> line(out, n, rendered, Long.toString(value.getAsLong())));
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        String rendered = labels(labels);
+        register(name, help, "gauge", (out, n) -> line(out, n, rendered, format(value.getAsDouble())));
+    }
+
+    public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+        Histogram histogram = new Histogram(bounds);
+        String rendered = labels(labels);
+        register(name, help, "histogram", (out, n) -> histogram.write(out, n, rendered));
+        return histogram;
+    }
+
+    public byte[] scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        synchronized (families) {
+            for (Map.Entry<String, Family> entry : families.entrySet()) {
+                String name = entry.getKey();
+                Family family = entry.getValue();
+                out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+                out.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+                for (Sample sample : family.samples()) {
+                    sample.write(out, name);
+                }
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void register(String name, String help, String type, Sample sample) {
+        synchronized (families) {
+            Family family = families.computeIfAbsent(name, __ -> new Family(help, type, new ArrayList<>()));
+            if (!family.type().equals(type)) {
+                throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type());
+            }
+            family.samples().add(sample);
+        }
+    }
+
+    private static void line(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+}
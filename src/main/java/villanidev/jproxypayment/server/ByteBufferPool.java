@@ -0,0 +1,31 @@
+package villanidev.jproxypayment.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool de ByteBuffers diretos de tamanho fixo. Não é thread-safe: só o event loop usa.
+ */
+final class ByteBufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> buffers;
+
+    ByteBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.buffers = new ArrayDeque<>(maxPooled);
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void release(ByteBuffer buffer) {
+        if (buffers.size() < maxPooled) {
+            buffer.clear();
+            buffers.offerFirst(buffer);
+        }
+    }
+}
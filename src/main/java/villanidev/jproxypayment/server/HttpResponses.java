@@ -0,0 +1,86 @@
+package villanidev.jproxypayment.server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Respostas HTTP/1.1 pré-codificadas (status line + headers + corpo) usadas pelo {@link NioHttpServer}.
+ */
+public final class HttpResponses {
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] JSON_200_PREFIX =
+            "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEXT_200_PREFIX =
+            "HTTP/1.1 200 OK\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\nContent-Length: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static final byte[] OK = encode(200, "OK", EMPTY);
+    public static final byte[] ACCEPTED = encode(202, "Accepted", EMPTY);
+    public static final byte[] BAD_REQUEST = encode(400, "Bad Request", "Bad request".getBytes(StandardCharsets.US_ASCII));
+    public static final byte[] NOT_FOUND = encode(404, "Not Found", EMPTY);
+    public static final byte[] METHOD_NOT_ALLOWED = encode(405, "Method Not Allowed", "Method Not Allowed".getBytes(StandardCharsets.US_ASCII));
+    public static final byte[] PAYLOAD_TOO_LARGE = encode(413, "Payload Too Large", EMPTY);
+    public static final byte[] INTERNAL_ERROR = encode(500, "Internal Server Error", EMPTY);
+    public static final byte[] NOT_IMPLEMENTED = encode(501, "Not Implemented", EMPTY);
+
+    // 429/503 com Retry-After de 1 a MAX_RETRY_AFTER segundos, pré-montadas por valor
+    private static final int MAX_RETRY_AFTER = 30;
+    private static final byte[][] TOO_MANY_REQUESTS = retryLater(429, "Too Many Requests");
+    private static final byte[][] SERVICE_UNAVAILABLE = retryLater(503, "Service Unavailable");
+
+    private HttpResponses() {
+    }
+
+    /**
+     * Monta uma resposta 200 com corpo JSON.
+     */
+    public static byte[] json(byte[] body) {
+        return ok(JSON_200_PREFIX, body);
+    }
+
+    /**
+     * Monta uma resposta 200 em texto no formato de exposição do Prometheus.
+     */
+    public static byte[] text(byte[] body) {
+        return ok(TEXT_200_PREFIX, body);
+    }
+
+    /**
+     * 429 ou 503 com Retry-After (limitado a 1..30 s); outros status caem no 503.
+     */
+    public static byte[] retryLater(int status, int retryAfterSeconds) {
+        byte[][] responses = status == 429 ? TOO_MANY_REQUESTS : SERVICE_UNAVAILABLE;
+        return responses[Math.max(1, Math.min(MAX_RETRY_AFTER, retryAfterSeconds))];
+    }
+
+    private static byte[][] retryLater(int status, String reason) {
+        byte[][] responses = new byte[MAX_RETRY_AFTER + 1][];
+        for (int seconds = 1; seconds <= MAX_RETRY_AFTER; seconds++) {
+            responses[seconds] = ("HTTP/1.1 " + status + " " + reason + "\r\nRetry-After: " + seconds
+                    + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+        return responses;
+    }
+
+    private static byte[] ok(byte[] prefix, byte[] body) {
+        byte[] length = Integer.toString(body.length).getBytes(StandardCharsets.US_ASCII);
+        byte[] response = new byte[prefix.length + length.length + HEADER_END.length + body.length];
+        int offset = 0;
+        System.arraycopy(prefix, 0, response, offset, prefix.length);
+        offset += prefix.length;
+        System.arraycopy(length, 0, response, offset, length.length);
+        offset += length.length;
+        System.arraycopy(HEADER_END, 0, response, offset, HEADER_END.length);
+        offset += HEADER_END.length;
+        System.arraycopy(body, 0, response, offset, body.length);
+        return response;
+    }
+
+    private static byte[] encode(int status, String reason, byte[] body) {
+        byte[] head = ("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: " + body.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] response = new byte[head.length + body.length];
+        System.arraycopy(head, 0, response, 0, head.length);
+        System.arraycopy(body, 0, response, head.length, body.length);
+        return response;
+    }
+}
@@ -0,0 +1,284 @@
+package villanidev.jproxypayment.server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estado de uma conexão keep-alive do {@link NioHttpServer} e visão da requisição corrente.
+ * O objeto é reutilizado por todas as requisições da conexão; os offsets apontam direto para
+ * o buffer de leitura, que não é alterado enquanto a resposta não for enviada.
+ */
+public final class NioHttpExchange {
+
+    enum State { READING, HANDLING, WRITING }
+
+    static final int INCOMPLETE = 0;
+    static final int COMPLETE = 1;
+    static final int MALFORMED = 2;
+    static final int TOO_LARGE = 3;
+    static final int UNSUPPORTED = 4;
+
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE = "close".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEEP_ALIVE = "keep-alive".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HTTP_1_0 = "HTTP/1.0".getBytes(StandardCharsets.US_ASCII);
+
+    final NioHttpServer server;
+    final SocketChannel channel;
+    final ByteBuffer in;
+    final ByteBuffer out;
+    SelectionKey key;
+    ByteBuffer writing;
+    State state = State.READING;
+    boolean keepAlive;
+    boolean closed;
+    private volatile byte[] response;
+
+    private String method;
+    private int pathStart;
+    private int pathEnd;
+    private int queryStart;
+    private int queryEnd;
+    private int bodyStart;
+    private int bodyEnd;
+    // Onde a busca pelo fim dos headers recomeça na próxima leitura: bytes já vistos não são relidos
+    private int headerScanFrom;
+
+    NioHttpExchange(NioHttpServer server, SocketChannel channel, ByteBuffer in, ByteBuffer out) {
+        this.server = server;
+        this.channel = channel;
+        this.in = in;
+        this.out = out;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    /**
+     * Início da query string no {@link #buffer()} ou -1 se não houver; vale o mesmo contrato do corpo.
+     */
+    public int queryOffset() {
+        return queryStart;
+    }
+
+    public int queryLength() {
+        return queryStart < 0 ? 0 : queryEnd - queryStart;
+    }
+
+    /**
+     * Buffer de leitura da conexão; o corpo está em [{@link #bodyOffset()}, bodyOffset + bodyLength).
+     * Use apenas acessos absolutos e somente durante {@link NioHttpHandler#handle}.
+     */
+    public ByteBuffer buffer() {
+        return in;
+    }
+
+    public int bodyOffset() {
+        return bodyStart;
+    }
+
+    public int bodyLength() {
+        return bodyEnd - bodyStart;
+    }
+
+    /**
+     * Envia uma resposta pré-codificada. Pode ser chamado de qualquer thread, uma única vez por requisição.
+     */
+    public void respond(byte[] encodedResponse) {
+        this.response = encodedResponse;
+        if (!server.isEventLoopThread()) {
+            server.responseReady(this);
+        }
+    }
+
+    byte[] takeResponse() {
+        byte[] ready = response;
+        response = null;
+        return ready;
+    }
+
+    boolean pathEquals(byte[] path) {
+        int length = pathEnd - pathStart;
+        if (length != path.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (in.get(pathStart + i) != path[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String path() {
+        return ascii(pathStart, pathEnd);
+    }
+
+    /**
+     * Tenta interpretar uma requisição completa a partir do início do buffer de leitura.
+     */
+    int parseRequest() {
+        int limit = in.position();
+        int headerEnd = indexOfHeaderEnd(limit);
+        if (headerEnd < 0) {
+            return in.hasRemaining() ? INCOMPLETE : TOO_LARGE;
+        }
+
+        // Request line: METHOD SP target SP version CRLF
+        int lineEnd = indexOf((byte) '\r', 0, headerEnd + 2);
+        int methodEnd = indexOf((byte) ' ', 0, lineEnd);
+        int targetEnd = methodEnd < 0 ? -1 : indexOf((byte) ' ', methodEnd + 1, lineEnd);
+        if (targetEnd < 0) {
+            return MALFORMED;
+        }
+        method = parseMethod(methodEnd);
+        pathStart = methodEnd + 1;
+        int question = indexOf((byte) '?', pathStart, targetEnd);
+        if (question < 0) {
+            pathEnd = targetEnd;
+            queryStart = -1;
+            queryEnd = -1;
+        } else {
+            pathEnd = question;
+            queryStart = question + 1;
+            queryEnd = targetEnd;
+        }
+        keepAlive = !regionEquals(targetEnd + 1, lineEnd, HTTP_1_0, false);
+
+        long contentLength = 0;
+        int lineStart = lineEnd + 2;
+        while (lineStart < headerEnd + 2) {
+            lineEnd = indexOf((byte) '\r', lineStart, headerEnd + 2);
+            int colon = indexOf((byte) ':', lineStart, lineEnd);
+            if (colon < 0) {
+                return MALFORMED;
+            }
+            int valueStart = skipSpaces(colon + 1, lineEnd);
+            if (regionEquals(lineStart, colon, CONTENT_LENGTH, true)) {
+                contentLength = parseLength(valueStart, lineEnd);
+                if (contentLength < 0) {
+                    return MALFORMED;
+                }
+            } else if (regionEquals(lineStart, colon, CONNECTION, true)) {
+                if (regionEquals(valueStart, lineEnd, CLOSE, true)) {
+                    keepAlive = false;
+                } else if (regionEquals(valueStart, lineEnd, KEEP_ALIVE, true)) {
+                    keepAlive = true;
+                }
+            } else if (regionEquals(lineStart, colon, TRANSFER_ENCODING, true)) {
+                return UNSUPPORTED;
+            }
+            lineStart = lineEnd + 2;
+        }
+
+        bodyStart = headerEnd + 4;
+        long end = bodyStart + contentLength;
+        if (end > in.capacity()) {
+            return TOO_LARGE;
+        }
+        if (end > limit) {
+            return INCOMPLETE;
+        }
+        bodyEnd = (int) end;
+        return COMPLETE;
+    }
+
+    /**
+     * Descarta a requisição já respondida, mantendo bytes de requisições seguintes (pipelining).
+     */
+    void consumeRequest() {
+        int remaining = in.position() - bodyEnd;
+        headerScanFrom = 0;
+        if (remaining <= 0) {
+            in.clear();
+        } else {
+            in.limit(in.position()).position(bodyEnd);
+            in.compact();
+        }
+    }
+
+    private String parseMethod(int methodEnd) {
+        if (methodEnd == 3 && in.get(0) == 'G' && in.get(1) == 'E' && in.get(2) == 'T') {
+            return "GET";
+        }
+        if (methodEnd == 4 && in.get(0) == 'P' && in.get(1) == 'O' && in.get(2) == 'S' && in.get(3) == 'T') {
+            return "POST";
+        }
+        return ascii(0, methodEnd);
+    }
+
+    private int indexOfHeaderEnd(int limit) {
+        for (int i = headerScanFrom; i + 3 < limit; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                // Corpo ainda incompleto: a próxima tentativa acha o fim dos headers de imediato
+                headerScanFrom = i;
+                return i;
+            }
+        }
+        // Os últimos 3 bytes podem ser o começo de um CRLFCRLF cortado entre leituras
+        headerScanFrom = Math.max(0, limit - 3);
+        return -1;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (in.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && (in.get(from) == ' ' || in.get(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private long parseLength(int from, int to) {
+        long value = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = in.get(i);
+            if (b == ' ' || b == '\t') {
+                break;
+            }
+            if (b < '0' || b > '9' || ++digits > 9) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    private boolean regionEquals(int from, int to, byte[] expected, boolean ignoreCase) {
+        while (to > from && (in.get(to - 1) == ' ' || in.get(to - 1) == '\t')) {
+            to--;
+        }
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            byte b = in.get(from + i);
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String ascii(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        in.get(from, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
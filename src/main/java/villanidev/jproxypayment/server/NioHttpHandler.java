@@ -0,0 +1,11 @@
+package villanidev.jproxypayment.server;
+
+/**
+ * Handler enxuto do {@link NioHttpServer}. É chamado na thread do event loop e deve
+ * responder exatamente uma vez via {@link NioHttpExchange#respond(byte[])}, inline ou
+ * a partir de outra thread; trabalho bloqueante (Redis, etc.) deve sair do event loop.
+ */
+@FunctionalInterface
+public interface NioHttpHandler {
+    void handle(NioHttpExchange exchange);
+}
@@ -0,0 +1,273 @@
+package villanidev.jproxypayment.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Servidor HTTP/1.1 keep-alive mínimo sobre um único Selector. Lê as requisições direto de
+ * ByteBuffers diretos do pool, despacha para {@link NioHttpHandler}s por path exato e escreve
+ * respostas pré-codificadas. Escuta em TCP ou em Unix domain socket (upstream do nginx).
+ */
+public class NioHttpServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioHttpServer.class);
+
+    record Route(byte[] path, NioHttpHandler handler) {}
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 512;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final boolean tcp;
+    private final ByteBufferPool bufferPool = new ByteBufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final Queue<NioHttpExchange> readyResponses = new ConcurrentLinkedQueue<>();
+    private final List<Route> routes = new ArrayList<>();
+    private Thread eventLoop;
+    private volatile boolean closing;
+
+    private NioHttpServer(ServerSocketChannel serverChannel, boolean tcp) throws IOException {
+        this.serverChannel = serverChannel;
+        this.tcp = tcp;
+        this.selector = Selector.open();
+    }
+
+    public static NioHttpServer tcp(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(port), 1024);
+        return new NioHttpServer(channel, true);
+    }
+
+    /**
+     * Porta efêmera só em loopback, para stand-ins em processo (warm-up).
+     */
+    public static NioHttpServer loopback() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.INET);
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        return new NioHttpServer(channel, true);
+    }
+
+    public static NioHttpServer unix(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(socketPath), 1024);
+        return new NioHttpServer(channel, false);
+    }
+
+    public void route(String path, NioHttpHandler handler) {
+        routes.add(new Route(path.getBytes(StandardCharsets.US_ASCII), handler));
+    }
+
+    public void start() throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        // Thread de plataforma: o select() bloquearia o carrier de uma thread virtual
+        eventLoop = Thread.ofPlatform().name("nioEventLoop").daemon(false).start(this::runEventLoop);
+    }
+
+    public int port() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Para o event loop e fecha o socket de escuta e as conexões abertas.
+     */
+    public void close() throws IOException {
+        closing = true;
+        selector.wakeup();
+        if (eventLoop != null) {
+            try {
+                eventLoop.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioHttpExchange exchange) {
+                close(exchange);
+            }
+        }
+        selector.close();
+        serverChannel.close();
+    }
+
+    boolean isEventLoopThread() {
+        return Thread.currentThread() == eventLoop;
+    }
+
+    void responseReady(NioHttpExchange exchange) {
+        readyResponses.offer(exchange);
+        selector.wakeup();
+    }
+
+    private void runEventLoop() {
+        while (!closing) {
+            try {
+                selector.select(this::onReady);
+                NioHttpExchange exchange;
+                while ((exchange = readyResponses.poll()) != null) {
+                    if (!exchange.closed && exchange.state == NioHttpExchange.State.HANDLING) {
+                        advanceSafely(exchange);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.error("NIO event loop error", e);
+            }
+        }
+    }
+
+    private void onReady(SelectionKey key) {
+        if (key.isAcceptable()) {
+            acceptAll();
+            return;
+        }
+
+        NioHttpExchange exchange = (NioHttpExchange) key.attachment();
+        try {
+            if (key.isReadable() && exchange.state == NioHttpExchange.State.READING) {
+                if (exchange.channel.read(exchange.in) < 0) {
+                    close(exchange);
+                    return;
+                }
+            }
+            advance(exchange);
+        } catch (IOException e) {
+            close(exchange);
+        }
+    }
+
+    private void acceptAll() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                if (tcp) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                NioHttpExchange exchange = new NioHttpExchange(this, channel, bufferPool.acquire(), bufferPool.acquire());
+                exchange.key = channel.register(selector, SelectionKey.OP_READ, exchange);
+            }
+        } catch (IOException e) {
+            LOGGER.error("NIO accept error", e);
+        }
+    }
+
+    private void advanceSafely(NioHttpExchange exchange) {
+        try {
+            advance(exchange);
+        } catch (IOException e) {
+            close(exchange);
+        }
+    }
+
+    /**
+     * Máquina de estados da conexão: lê/interpreta, despacha, escreve e volta a ler,
+     * em laço enquanto houver trabalho (inclusive requisições em pipeline já no buffer).
+     */
+    private void advance(NioHttpExchange exchange) throws IOException {
+        while (!exchange.closed) {
+            switch (exchange.state) {
+                case READING -> {
+                    int result = exchange.parseRequest();
+                    if (result == NioHttpExchange.INCOMPLETE) {
+                        exchange.key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                    if (result == NioHttpExchange.COMPLETE) {
+                        exchange.state = NioHttpExchange.State.HANDLING;
+                        dispatch(exchange);
+                    } else {
+                        exchange.keepAlive = false;
+                        startWrite(exchange, switch (result) {
+                            case NioHttpExchange.TOO_LARGE -> HttpResponses.PAYLOAD_TOO_LARGE;
+                            case NioHttpExchange.UNSUPPORTED -> HttpResponses.NOT_IMPLEMENTED;
+                            default -> HttpResponses.BAD_REQUEST;
+                        });
+                    }
+                }
+                case HANDLING -> {
+                    byte[] response = exchange.takeResponse();
+                    if (response == null) {
+                        // Resposta assíncrona: volta pelo readyResponses
+                        exchange.key.interestOps(0);
+                        return;
+                    }
+                    startWrite(exchange, response);
+                }
+                case WRITING -> {
+                    exchange.channel.write(exchange.writing);
+                    if (exchange.writing.hasRemaining()) {
+                        exchange.key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    if (!exchange.keepAlive) {
+                        close(exchange);
+                        return;
+                    }
+                    exchange.consumeRequest();
+                    exchange.state = NioHttpExchange.State.READING;
+                }
+            }
+        }
+    }
+
+    private void dispatch(NioHttpExchange exchange) {
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            if (exchange.pathEquals(route.path())) {
+                try {
+                    route.handler().handle(exchange);
+                } catch (Exception e) {
+                    LOGGER.error("Handler error on {}", exchange.path(), e);
+                    exchange.respond(HttpResponses.INTERNAL_ERROR);
+                }
+                return;
+            }
+        }
+        exchange.respond(HttpResponses.NOT_FOUND);
+    }
+
+    private void startWrite(NioHttpExchange exchange, byte[] response) {
+        ByteBuffer out = exchange.out;
+        out.clear();
+        if (response.length <= out.capacity()) {
+            exchange.writing = out.put(response).flip();
+        } else {
+            exchange.writing = ByteBuffer.wrap(response);
+        }
+        exchange.state = NioHttpExchange.State.WRITING;
+    }
+
+    private void close(NioHttpExchange exchange) {
+        if (exchange.closed) {
+            return;
+        }
+        exchange.closed = true;
+        exchange.key.cancel();
+        try {
+            exchange.channel.close();
+        } catch (IOException ignored) {
+        }
+        bufferPool.release(exchange.in);
+        bufferPool.release(exchange.out);
+    }
+}
@@ -0,0 +1,229 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Controle de admissão do POST /payments. Um tick a cada {@link #TICK_MILLIS} lê o backlog da
+ * fila, a vazão de drenagem (EWMA dos pagamentos concluídos por segundo) e a folga do heap
+ * depois do último GC, e decide se a instância está sobrecarregada:
+ * <ul>
+ *   <li>entra em sobrecarga com backlog &ge; ADMISSION_HIGH_WATERMARK, ou backlog &ge;
+ *       ADMISSION_LOW_WATERMARK com drenagem estimada &ge; ADMISSION_MAX_DRAIN_SECONDS, ou folga
+ *       do heap abaixo de ADMISSION_MIN_HEAP_HEADROOM;</li>
+ *   <li>só sai com backlog abaixo da marca baixa (e abaixo da metade dela se a drenagem continuar
+ *       lenta) e o heap de volta acima da folga mínima com margem (histerese, para não oscilar a
+ *       cada tick).</li>
+ * </ul>
+ * Em sobrecarga aplica ADMISSION_POLICY: {@code reject} (ADMISSION_REJECT_STATUS, 503 ou 429,
+ * com Retry-After), {@code spill} (aceita e manda para o overflow no Redis) ou {@code throttle}
+ * (aceita e atrasa o 202). Com o heap no limite, {@code throttle} também rejeita. {@code off}
+ * desliga o controle.
+ * <p>
+ * {@link #admit()} é uma leitura volátil: todo o cálculo fica no tick, fora do caminho do aceite.
+ */
+public final class AdmissionController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+
+    public enum Decision { ACCEPT, REJECT, SPILL, THROTTLE }
+
+    public enum Policy { OFF, REJECT, SPILL, THROTTLE }
+
+    static final Policy POLICY = Policy.valueOf(
+            System.getenv().getOrDefault("ADMISSION_POLICY", "reject").toUpperCase(Locale.ROOT));
+    static final int HIGH_WATERMARK = Integer.parseInt(
+            System.getenv().getOrDefault("ADMISSION_HIGH_WATERMARK", "40000"));
+    static final int LOW_WATERMARK = Integer.parseInt(
+            System.getenv().getOrDefault("ADMISSION_LOW_WATERMARK", "20000"));
+    private static final double MAX_DRAIN_SECONDS = Double.parseDouble(
+            System.getenv().getOrDefault("ADMISSION_MAX_DRAIN_SECONDS", "15"));
+    private static final double MIN_HEAP_HEADROOM = Double.parseDouble(
+            System.getenv().getOrDefault("ADMISSION_MIN_HEAP_HEADROOM", "0.15"));
+    // Margem para sair do estado de heap crítico
+    private static final double HEAP_RECOVERY_MARGIN = 0.1;
+    private static final long MAX_THROTTLE_DELAY_MILLIS = Long.parseLong(
+            System.getenv().getOrDefault("ADMISSION_MAX_THROTTLE_DELAY_MILLIS", "500"));
+    // 503 por padrão; 429 para clientes que só recuam nele
+    private static final int REJECT_STATUS =
+            "429".equals(System.getenv("ADMISSION_REJECT_STATUS")) ? 429 : 503;
+    private static final int MAX_RETRY_AFTER_SECONDS = 30;
+    private static final long TICK_MILLIS = 50;
+    private static final double RATE_SMOOTHING = 0.2;
+
+    private static final Counter ADMITTED = decisionCounter("accept");
+    private static final Counter REJECTED = decisionCounter("reject");
+    private static final Counter SPILLED = decisionCounter("spill");
+    private static final Counter THROTTLED = decisionCounter("throttle");
+
+    private final IntSupplier backlog;
+    private final LongSupplier drained;
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+            .toList();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("admissionControlVthread-", 0L).factory()
+    );
+
+    // Estado publicado pelo tick e lido no aceite
+    private volatile Decision overloadDecision = Decision.ACCEPT;
+    private volatile int retryAfterSeconds = 1;
+    private volatile long throttleDelayMillis;
+
+    // Só o tick escreve
+    private long lastDrained;
+    private long lastTickNanos;
+    private volatile double drainRate;
+    private volatile double drainSeconds;
+    private volatile double heapHeadroom = 1;
+    private boolean overloaded;
+    private boolean heapCritical;
+
+    public AdmissionController(IntSupplier backlog, LongSupplier drained) {
+        this.backlog = backlog;
+        this.drained = drained;
+    }
+
+    private static Counter decisionCounter(String decision) {
+        return Metrics.REGISTRY.counter("jproxy_admission_decisions_total",
+                "Admission decisions for POST /payments", "decision", decision);
+    }
+
+    private void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("jproxy_admission_overloaded", "1 while the instance is shedding or throttling",
+                () -> overloadDecision == Decision.ACCEPT ? 0 : 1);
+        registry.gauge("jproxy_admission_drain_rate", "Smoothed payments drained per second", () -> drainRate);
+        registry.gauge("jproxy_admission_drain_seconds", "Estimated seconds to drain the backlog", () -> drainSeconds);
+        registry.gauge("jproxy_admission_heap_headroom", "Free heap fraction after the last GC", () -> heapHeadroom);
+    }
+
+    /**
+     * Registra as métricas e, com alguma política, agenda o tick; fora do construtor para não
+     * expor a instância antes de ela estar pronta.
+     */
+    public void start() {
+        registerMetrics(Metrics.REGISTRY);
+        if (POLICY == Policy.OFF) {
+            return;
+        }
+        lastDrained = drained.getAsLong();
+        lastTickNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Decisão para um pagamento recebido agora; conta a decisão nas métricas.
+     */
+    public Decision admit() {
+        Decision decision = overloadDecision;
+        switch (decision) {
+            case ACCEPT -> ADMITTED.increment();
+            case REJECT -> REJECTED.increment();
+            case SPILL -> SPILLED.increment();
+            case THROTTLE -> THROTTLED.increment();
+        }
+        return decision;
+    }
+
+    public int rejectStatus() {
+        return REJECT_STATUS;
+    }
+
+    public int retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public long throttleDelayMillis() {
+        return throttleDelayMillis;
+    }
+
+    private void tick() {
+        try {
+            tick(System.nanoTime(), heapHeadroom());
+        } catch (Exception e) {
+            LOGGER.error("Admission control tick error", e);
+        }
+    }
+
+    /**
+     * Um tick com o relógio e a folga do heap dados; separado para os testes da histerese.
+     */
+    void tick(long now, double headroom) {
+        long drainedNow = drained.getAsLong();
+        double elapsedSeconds = (now - lastTickNanos) / 1e9;
+        double instantRate = (drainedNow - lastDrained) / elapsedSeconds;
+        lastDrained = drainedNow;
+        lastTickNanos = now;
+        double rate = drainRate + RATE_SMOOTHING * (instantRate - drainRate);
+        drainRate = rate;
+
+        int queued = backlog.getAsInt();
+        double seconds = queued == 0 ? 0 : rate < 1 ? Double.POSITIVE_INFINITY : queued / rate;
+        drainSeconds = seconds;
+        heapHeadroom = headroom;
+
+        heapCritical = heapCritical
+                ? headroom < MIN_HEAP_HEADROOM + HEAP_RECOVERY_MARGIN
+                : headroom < MIN_HEAP_HEADROOM;
+        boolean wasOverloaded = overloaded;
+        // A entrada pela drenagem lenta já é na marca baixa: a saída pede metade dela ou drenagem rápida
+        overloaded = heapCritical || (overloaded
+                ? queued >= LOW_WATERMARK || (queued >= LOW_WATERMARK / 2 && seconds >= MAX_DRAIN_SECONDS / 2)
+                : queued >= HIGH_WATERMARK || (queued >= LOW_WATERMARK && seconds >= MAX_DRAIN_SECONDS));
+
+        retryAfterSeconds = (int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS,
+                Double.isInfinite(seconds) ? MAX_RETRY_AFTER_SECONDS : Math.ceil(seconds)));
+        // Atraso proporcional ao excesso sobre a marca baixa, no tempo de drenagem atual
+        throttleDelayMillis = rate < 1
+                ? MAX_THROTTLE_DELAY_MILLIS
+                : Math.min(MAX_THROTTLE_DELAY_MILLIS, (long) (Math.max(0, queued - LOW_WATERMARK) * 1000 / rate));
+        overloadDecision = overloaded ? overloadDecision(heapCritical) : Decision.ACCEPT;
+
+        if (overloaded != wasOverloaded) {
+            LOGGER.warn("Admission {}: backlog {}, drain rate {}/s, heap headroom {}",
+                    overloaded ? "shedding (" + overloadDecision + ")" : "recovered",
+                    queued, (long) rate, String.format(Locale.ROOT, "%.2f", headroom));
+        }
+    }
+
+    private static Decision overloadDecision(boolean heapCritical) {
+        return switch (POLICY) {
+            case SPILL -> Decision.SPILL;
+            case THROTTLE -> heapCritical ? Decision.REJECT : Decision.THROTTLE;
+            case REJECT, OFF -> Decision.REJECT;
+        };
+    }
+
+    /**
+     * Fração livre do heap considerando o uso dos pools logo após o último GC (o uso corrente
+     * inclui lixo ainda não coletado e dispararia à toa).
+     */
+    private double heapHeadroom() {
+        long max = Runtime.getRuntime().maxMemory();
+        if (max == Long.MAX_VALUE || heapPools.isEmpty()) {
+            return 1;
+        }
+        long usedAfterGc = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            var usage = pool.getCollectionUsage();
+            if (usage != null) {
+                usedAfterGc += usage.getUsed();
+            }
+        }
+        return Math.max(0, 1 - (double) usedAfterGc / max);
+    }
+}
@@ -0,0 +1,193 @@
+package villanidev.jproxypayment.service.payment;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto de correlationIds já vistos, para detectar pagamentos duplicados sem alocar: hash
+ * aberto (sondagem linear) sobre as duas metades {@code long} do UUID em arrays primitivos.
+ *
+ * <p>Dividido em {@link #SEGMENTS} segmentos com lock próprio para não serializar as threads.
+ * Cada segmento tem duas gerações de tamanho fixo: inserções vão para a corrente e consultas
+ * olham as duas. Quando a corrente enche até {@link #MAX_LOAD} ou fica mais velha que a
+ * retenção, a anterior é descartada e a corrente passa a ser a anterior. A memória nunca passa
+ * de {@code 2 * capacity * 16} bytes, mas a retenção não é garantida: um id é lembrado pelo
+ * menor entre a retenção e o tempo que o segmento leva para receber {@code capacity * MAX_LOAD}
+ * novos ids. Com a capacidade padrão (2^17 slots, ~65 mil ids por geração) a retenção de 60 s
+ * só se sustenta até ~1 mil ids/s; acima disso as rotações passam a ser por tamanho e a janela
+ * efetiva encolhe. {@link #sizeRotations()} e {@link #ageRotations()} mostram qual dos dois
+ * está mandando: para uma janela real dimensione a capacidade como
+ * {@code 2 * taxa * retenção} ({@code DEDUP_CAPACITY}).
+ */
+final class CorrelationIdIndex {
+
+    private static final int SEGMENTS = 64;
+    private static final double MAX_LOAD = 0.5;
+    // O par (0, 0) marca slot vazio; um UUID todo zero é guardado à parte
+    private static final long EMPTY = 0L;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long retentionMillis;
+    private final LongAdder sizeRotations = new LongAdder();
+    private final LongAdder ageRotations = new LongAdder();
+
+    /**
+     * @param capacity  slots por geração no total (arredondado para potência de dois por segmento)
+     * @param retention tempo mínimo que uma geração fica ativa antes de ser rotacionada por idade
+     */
+    CorrelationIdIndex(int capacity, Duration retention) {
+        this.retentionMillis = retention.toMillis();
+        int segmentCapacity = Integer.highestOneBit(Math.max(capacity / SEGMENTS, 16) * 2 - 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity, retentionMillis, sizeRotations, ageRotations);
+        }
+    }
+
+    /**
+     * Rotações de segmento porque a geração corrente encheu antes da retenção.
+     */
+    long sizeRotations() {
+        return sizeRotations.sum();
+    }
+
+    /**
+     * Rotações de segmento porque a geração corrente completou a retenção.
+     */
+    long ageRotations() {
+        return ageRotations.sum();
+    }
+
+    /**
+     * Registra o id. Retorna false se ele já estava no índice (duplicado).
+     */
+    boolean add(long msb, long lsb) {
+        long hash = mix(msb, lsb);
+        return segments[(int) (hash >>> 58) & (SEGMENTS - 1)].add(msb, lsb, hash);
+    }
+
+    boolean contains(long msb, long lsb) {
+        long hash = mix(msb, lsb);
+        return segments[(int) (hash >>> 58) & (SEGMENTS - 1)].contains(msb, lsb, hash);
+    }
+
+    private static long mix(long msb, long lsb) {
+        // Finalizador do SplitMix64: UUIDs v4 já são aleatórios, mas ids sequenciais não
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int mask;
+        private final int maxEntries;
+        private final long retentionMillis;
+        private final LongAdder sizeRotations;
+        private final LongAdder ageRotations;
+        private long[] currentMsb;
+        private long[] currentLsb;
+        private long[] previousMsb;
+        private long[] previousLsb;
+        private int currentSize;
+        private boolean currentHasZero;
+        private boolean previousHasZero;
+        private long generationStart = System.currentTimeMillis();
+
+        Segment(int capacity, long retentionMillis, LongAdder sizeRotations, LongAdder ageRotations) {
+            this.mask = capacity - 1;
+            this.maxEntries = (int) (capacity * MAX_LOAD);
+            this.retentionMillis = retentionMillis;
+            this.sizeRotations = sizeRotations;
+            this.ageRotations = ageRotations;
+            this.currentMsb = new long[capacity];
+            this.currentLsb = new long[capacity];
+            this.previousMsb = new long[capacity];
+            this.previousLsb = new long[capacity];
+        }
+
+        boolean add(long msb, long lsb, long hash) {
+            lock.lock();
+            try {
+                if (find(previousMsb, previousLsb, previousHasZero, msb, lsb, hash)) {
+                    return false;
+                }
+                if (msb == EMPTY && lsb == EMPTY) {
+                    if (currentHasZero) {
+                        return false;
+                    }
+                    currentHasZero = true;
+                    return true;
+                }
+
+                int slot = (int) hash & mask;
+                while (currentMsb[slot] != EMPTY || currentLsb[slot] != EMPTY) {
+                    if (currentMsb[slot] == msb && currentLsb[slot] == lsb) {
+                        return false;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+
+                if (currentSize >= maxEntries) {
+                    sizeRotations.increment();
+                    rotate();
+                    slot = (int) hash & mask;
+                } else if (System.currentTimeMillis() - generationStart >= retentionMillis) {
+                    ageRotations.increment();
+                    rotate();
+                    slot = (int) hash & mask;
+                }
+                currentMsb[slot] = msb;
+                currentLsb[slot] = lsb;
+                currentSize++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean contains(long msb, long lsb, long hash) {
+            lock.lock();
+            try {
+                return find(currentMsb, currentLsb, currentHasZero, msb, lsb, hash)
+                        || find(previousMsb, previousLsb, previousHasZero, msb, lsb, hash);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean find(long[] msbs, long[] lsbs, boolean hasZero, long msb, long lsb, long hash) {
+            if (msb == EMPTY && lsb == EMPTY) {
+                return hasZero;
+            }
+            int slot = (int) hash & mask;
+            while (msbs[slot] != EMPTY || lsbs[slot] != EMPTY) {
+                if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * Descarta a geração anterior e reaproveita seus arrays como a nova corrente (vazia).
+         */
+        private void rotate() {
+            long[] msbs = previousMsb;
+            long[] lsbs = previousLsb;
+            previousMsb = currentMsb;
+            previousLsb = currentLsb;
+            previousHasZero = currentHasZero;
+            Arrays.fill(msbs, EMPTY);
+            Arrays.fill(lsbs, EMPTY);
+            currentMsb = msbs;
+            currentLsb = lsbs;
+            currentHasZero = false;
+            currentSize = 0;
+            generationStart = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Journal write-ahead dos pagamentos aceitos, em segmentos de arquivo mapeados em memória.
+ *
+ * <p>Cada registro tem {@link #RECORD_SIZE} bytes fixos:
+ * <pre>
+ * 0  int  magic | tipo (ACCEPTED, COMPLETED, FAILED)
+ * 4  int  checksum dos campos abaixo
+ * 8  long correlationId (msb)
+ * 16 long correlationId (lsb)
+ * 24 long amountCents      (só ACCEPTED)
+ * 32 long timestampMillis  (só ACCEPTED)
+ * </pre>
+ * O cabeçalho é escrito por último, então um registro rasgado por crash falha no checksum e é
+ * ignorado. Gravar é só copiar para a página mapeada (sobrevive a crash do processo); o
+ * {@code force()} roda em grupo a cada {@link #GROUP_COMMIT_INTERVAL} numa thread própria,
+ * fora do caminho de aceite. Só o segmento ativo é mapeado: o selado é desmapeado logo depois
+ * do último force, e a leitura (replay, compactação) usa {@link FileChannel#read}.
+ *
+ * <p>COMPLETED e FAILED são tombstones: um pagamento está pendente se tem ACCEPTED e nenhum
+ * tombstone em qualquer segmento, independente da ordem. Quando um segmento enche, outro é
+ * aberto. Com {@link #COMPACT_THRESHOLD} segmentos selados e no máximo
+ * {@link #COMPACT_MAX_LIVE_PERCENT}% dos registros deles ainda pendentes, os pendentes são
+ * copiados para segmentos compactados próprios (fora do ativo, então a cópia não enche o ativo
+ * nem provoca outra rotação) e os selados são apagados. Com mais pendentes que isso (processador
+ * fora por muito tempo) os selados ficam como estão: reescrever quase tudo não libera quase nada.
+ *
+ * <p>{@link #close()} para o committer, força o que falta e desmapeia o ativo; depois dele o
+ * journal ignora gravações, como quando quebra.
+ */
+final class PaymentJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentJournal.class);
+
+    interface ReplaySink {
+        void replay(long correlationIdMsb, long correlationIdLsb, long amountCents, long timestampMillis);
+    }
+
+    private static final int ACCEPTED = 1;
+    private static final int COMPLETED = 2;
+    private static final int FAILED = 3;
+
+    private static final int MAGIC = 0x4A50_4A00;
+    static final int RECORD_SIZE = 40;
+    static final int SEGMENT_RECORDS = 32 * 1024;
+    private static final int SEGMENT_SIZE = RECORD_SIZE * SEGMENT_RECORDS;
+    private static final int COMPACT_THRESHOLD = 2;
+    private static final int COMPACT_MAX_LIVE_PERCENT = 25;
+    private static final long GROUP_COMMIT_INTERVAL = Duration.ofMillis(10).toNanos();
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final PaymentJournal DISABLED = new PaymentJournal();
+    private static final Unmapper UNMAPPER = Unmapper.find();
+
+    private final Path directory;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Queue<Path> sealedSegments = new ConcurrentLinkedQueue<>();
+    private volatile Thread committer;
+    private volatile MappedByteBuffer active;
+    // Segmentos recém-selados ainda não forçados: force e unmap ficam com o committer, fora do lock de append
+    private final Queue<MappedByteBuffer> sealedUnforced = new ConcurrentLinkedQueue<>();
+    private Path activePath;
+    private long nextSegment;
+    private int position;
+    private volatile boolean dirty;
+    // Só vale tentar compactar quando o conjunto de selados muda
+    private volatile boolean compactionDue;
+    private volatile boolean broken;
+    private volatile boolean closing;
+    // Ciclos completos do committer (force e compactação), para quem precisa esperar um
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitProgress = commitLock.newCondition();
+    private long commitCycles;
+
+    private PaymentJournal() {
+        this.directory = null;
+        this.broken = true;
+    }
+
+    private PaymentJournal(Path directory, long nextSegment, List<Path> existingSegments) throws IOException {
+        this.directory = directory;
+        this.nextSegment = nextSegment;
+        this.sealedSegments.addAll(existingSegments);
+        this.compactionDue = existingSegments.size() >= COMPACT_THRESHOLD;
+        openSegment();
+    }
+
+    static PaymentJournal disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Abre o journal no diretório; os segmentos existentes ficam selados até a próxima compactação.
+     */
+    static PaymentJournal open(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = listSegments(directory);
+            long next = existing.isEmpty() ? 0 : segmentNumber(existing.getLast()) + 1;
+            return new PaymentJournal(directory, next, existing);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open payment journal at " + directory, e);
+        }
+    }
+
+    void accepted(long msb, long lsb, long amountCents, long timestampMillis) {
+        append(ACCEPTED, msb, lsb, amountCents, timestampMillis);
+    }
+
+    void completed(long msb, long lsb) {
+        append(COMPLETED, msb, lsb, 0, 0);
+    }
+
+    void failed(long msb, long lsb) {
+        append(FAILED, msb, lsb, 0, 0);
+    }
+
+    /**
+     * Entrega ao sink cada pagamento aceito nos segmentos anteriores à abertura que não tem
+     * tombstone e só então liga o group commit e a compactação, que poderia apagar esses
+     * segmentos. Deve ser chamado uma vez, antes dos workers começarem.
+     */
+    int replayAndStart(ReplaySink sink) {
+        if (broken) {
+            return 0;
+        }
+        int replayed = 0;
+        try {
+            replayed = forEachPending(List.copyOf(sealedSegments), sink).pending();
+        } catch (IOException e) {
+            LOGGER.error("Payment journal replay failed", e);
+        }
+        committer = Thread.ofVirtual().name("journalCommitterVthread-", 0L).start(this::commitLoop);
+        return replayed;
+    }
+
+    private void append(int type, long msb, long lsb, long amountCents, long timestampMillis) {
+        if (broken) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            // De novo sob o lock: o close desmapeia o ativo com ele
+            if (broken) {
+                return;
+            }
+            if (position == SEGMENT_RECORDS) {
+                rotate();
+            }
+            putRecord(active, position * RECORD_SIZE, type, msb, lsb, amountCents, timestampMillis);
+            position++;
+            dirty = true;
+        } catch (IOException | RuntimeException e) {
+            // Sem journal o serviço continua: perde só a proteção contra restart
+            broken = true;
+            LOGGER.error("Payment journal disabled after write failure", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        sealedUnforced.add(active);
+        sealedSegments.add(activePath);
+        openSegment();
+        if (sealedSegments.size() >= COMPACT_THRESHOLD) {
+            compactionDue = true;
+            if (committer != null) {
+                LockSupport.unpark(committer);
+            }
+        }
+    }
+
+    /**
+     * Cabeçalho por último: um registro pela metade falha no checksum.
+     */
+    private static void putRecord(ByteBuffer buffer, int offset, int type, long msb, long lsb, long amountCents, long timestampMillis) {
+        buffer.putLong(offset + 8, msb);
+        buffer.putLong(offset + 16, lsb);
+        buffer.putLong(offset + 24, amountCents);
+        buffer.putLong(offset + 32, timestampMillis);
+        buffer.putInt(offset + 4, checksum(type, msb, lsb, amountCents, timestampMillis));
+        buffer.putInt(offset, MAGIC | type);
+    }
+
+    private void openSegment() throws IOException {
+        Path path = segmentPath(nextSegment++);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+        activePath = path;
+        position = 0;
+    }
+
+    private void commitLoop() {
+        while (!broken && !closing) {
+            LockSupport.parkNanos(GROUP_COMMIT_INTERVAL);
+            try {
+                MappedByteBuffer sealed;
+                while ((sealed = sealedUnforced.poll()) != null) {
+                    // O append já trocou de segmento sob o lock: ninguém mais toca neste mapeamento
+                    sealed.force();
+                    UNMAPPER.unmap(sealed);
+                }
+                if (dirty) {
+                    dirty = false;
+                    active.force();
+                }
+                if (compactionDue) {
+                    compactionDue = false;
+                    compact();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Payment journal commit failed", e);
+            }
+            signalCommitCycle();
+        }
+        // Quem espera um ciclo não fica preso depois do close
+        signalCommitCycle();
+    }
+
+    private void signalCommitCycle() {
+        commitLock.lock();
+        try {
+            commitCycles++;
+            commitProgress.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Espera um ciclo completo do committer que comece depois desta chamada: tudo o que foi
+     * gravado antes está forçado e a compactação pendente, se havia, já rodou. False se o ciclo
+     * não terminar a tempo, se o committer não estiver rodando ou se a espera for interrompida.
+     */
+    boolean awaitCommit(long timeout, TimeUnit unit) {
+        Thread thread = committer;
+        if (thread == null || broken || closing) {
+            return false;
+        }
+        long remaining = unit.toNanos(timeout);
+        commitLock.lock();
+        try {
+            // O ciclo em andamento pode ter começado antes da chamada: só o seguinte garante
+            long target = commitCycles + 2;
+            LockSupport.unpark(thread);
+            while (commitCycles < target) {
+                if (remaining <= 0 || broken || closing) {
+                    return false;
+                }
+                remaining = commitProgress.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Para o committer, força os segmentos ainda não forçados e desmapeia todos. Gravações
+     * depois disto são ignoradas. Pode ser chamado mais de uma vez.
+     */
+    void close() {
+        if (broken || closing) {
+            return;
+        }
+        closing = true;
+        Thread thread = committer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            joinCommitter(thread);
+        }
+        appendLock.lock();
+        try {
+            broken = true;
+            MappedByteBuffer sealed;
+            while ((sealed = sealedUnforced.poll()) != null) {
+                sealed.force();
+                UNMAPPER.unmap(sealed);
+            }
+            active.force();
+            UNMAPPER.unmap(active);
+            active = null;
+        } catch (RuntimeException e) {
+            LOGGER.error("Payment journal close failed", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Espera o committer sair mesmo se interrompido: desmapear com ele ainda rodando derrubaria a JVM.
+     */
+    private static void joinCommitter(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Se os selados têm poucos pendentes, grava os pendentes em segmentos compactados novos e
+     * apaga os selados. Os compactados entram no conjunto de selados antes dos antigos saírem:
+     * um crash no meio deixa cópias repetidas, que o replay descarta. Um tombstone gravado no
+     * ativo enquanto isso cancela a cópia depois, pela semântica de conjunto.
+     */
+    private void compact() throws IOException {
+        List<Path> segments = List.copyOf(sealedSegments);
+        if (segments.size() < COMPACT_THRESHOLD) {
+            return;
+        }
+        PendingRecords pending = new PendingRecords();
+        int records = forEachPending(segments, pending::add).records();
+        if ((long) pending.size * 100 > (long) records * COMPACT_MAX_LIVE_PERCENT) {
+            LOGGER.debug("Payment journal compaction skipped, {} of {} records still pending", pending.size, records);
+            return;
+        }
+
+        for (int from = 0; from < pending.size; from += SEGMENT_RECORDS) {
+            sealedSegments.add(writeCompacted(pending, from, Math.min(pending.size, from + SEGMENT_RECORDS)));
+        }
+        for (Path segment : segments) {
+            sealedSegments.remove(segment);
+            Files.deleteIfExists(segment);
+        }
+        LOGGER.info("Payment journal compacted {} segments, carried {} pending payments", segments.size(), pending.size);
+    }
+
+    private Path writeCompacted(PendingRecords pending, int from, int to) throws IOException {
+        Path path;
+        appendLock.lock();
+        try {
+            path = segmentPath(nextSegment++);
+        } finally {
+            appendLock.unlock();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((to - from) * RECORD_SIZE);
+        for (int i = from; i < to; i++) {
+            int base = i * 4;
+            putRecord(buffer, (i - from) * RECORD_SIZE, ACCEPTED,
+                    pending.fields[base], pending.fields[base + 1], pending.fields[base + 2], pending.fields[base + 3]);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        return path;
+    }
+
+    /**
+     * Pendentes a copiar na compactação, quatro longs por pagamento.
+     */
+    private static final class PendingRecords {
+        private long[] fields = new long[64];
+        private int size;
+
+        void add(long msb, long lsb, long amountCents, long timestampMillis) {
+            int base = size * 4;
+            if (base == fields.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+            }
+            fields[base] = msb;
+            fields[base + 1] = lsb;
+            fields[base + 2] = amountCents;
+            fields[base + 3] = timestampMillis;
+            size++;
+        }
+    }
+
+    private record Scan(int records, int pending) {}
+
+    private static Scan forEachPending(List<Path> segments, ReplaySink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_SIZE);
+        Set<UUID> finished = new HashSet<>();
+        int[] records = {0};
+        for (Path segment : segments) {
+            forEachRecord(segment, buffer, (type, msb, lsb, cents, ts) -> {
+                records[0]++;
+                if (type != ACCEPTED) {
+                    finished.add(new UUID(msb, lsb));
+                }
+            });
+        }
+
+        int[] pending = {0};
+        for (Path segment : segments) {
+            forEachRecord(segment, buffer, (type, msb, lsb, cents, ts) -> {
+                // add no conjunto também descarta cópias repetidas do mesmo ACCEPTED
+                if (type == ACCEPTED && finished.add(new UUID(msb, lsb))) {
+                    sink.replay(msb, lsb, cents, ts);
+                    pending[0]++;
+                }
+            });
+        }
+        return new Scan(records[0], pending[0]);
+    }
+
+    private interface RecordVisitor {
+        void visit(int type, long msb, long lsb, long amountCents, long timestampMillis);
+    }
+
+    /**
+     * Lê o segmento inteiro para {@code buffer} (reaproveitado entre segmentos) e visita os
+     * registros íntegros.
+     */
+    private static void forEachRecord(Path segment, ByteBuffer buffer, RecordVisitor visitor) throws IOException {
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // até encher o buffer ou chegar ao fim do arquivo
+            }
+        }
+        buffer.flip();
+        for (int offset = 0; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE) {
+            int header = buffer.getInt(offset);
+            int type = header & 0xFF;
+            if ((header & ~0xFF) != MAGIC || type < ACCEPTED || type > FAILED) {
+                continue;
+            }
+            long msb = buffer.getLong(offset + 8);
+            long lsb = buffer.getLong(offset + 16);
+            long cents = buffer.getLong(offset + 24);
+            long ts = buffer.getLong(offset + 32);
+            if (buffer.getInt(offset + 4) == checksum(type, msb, lsb, cents, ts)) {
+                visitor.visit(type, msb, lsb, cents, ts);
+            }
+        }
+    }
+
+    private static int checksum(int type, long msb, long lsb, long amountCents, long timestampMillis) {
+        long h = msb * 0x9E3779B97F4A7C15L;
+        h = (h ^ lsb) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ amountCents) * 0x94D049BB133111EBL;
+        h = (h ^ timestampMillis) * 0x9E3779B97F4A7C15L;
+        return Long.hashCode(h) ^ type;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Desmapeia um {@link MappedByteBuffer} na hora via {@code sun.misc.Unsafe#invokeCleaner}
+     * (por reflexão, sem depender do módulo em tempo de compilação), em vez de esperar o GC
+     * soltar a memória e o arquivo. Sem o Unsafe o mapeamento fica para o GC, como antes.
+     */
+    private record Unmapper(Object unsafe, Method invokeCleaner) {
+
+        static Unmapper find() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return new Unmapper(field.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Unmapping journal segments unavailable, leaving them to the GC: {}", e.toString());
+                return new Unmapper(null, null);
+            }
+        }
+
+        /**
+         * O buffer não pode mais ser acessado depois disto: um acesso derruba a JVM.
+         */
+        void unmap(MappedByteBuffer buffer) {
+            if (invokeCleaner == null) {
+                return;
+            }
+            try {
+                invokeCleaner.invoke(unsafe, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.debug("Could not unmap journal segment: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.cache.RedisCacheClient;
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.logging.LogSampler;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Overflow dos pagamentos aceitos em sobrecarga com ADMISSION_POLICY=spill: em vez de crescer
+ * a fila em memória, eles passam por um anel de staging e vão em lote (RPUSH) para uma lista
+ * desta instância no Redis. Quando a fila cai abaixo da marca baixa do
+ * {@link AdmissionController}, a mesma thread traz de volta (LPOP) e enfileira direto, sem
+ * passar de novo pela deduplicação. O pagamento já foi registrado no journal ao ser aceito,
+ * então um crash entre o LPOP e o processamento não o perde.
+ * <p>
+ * Se o Redis falhar no RPUSH, o lote volta para a fila em memória: o overflow alivia o heap,
+ * mas não pode ser o motivo de perder um pagamento.
+ */
+final class PaymentOverflow {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentOverflow.class);
+
+    private static final int STAGING_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+    private static final long FLUSH_INTERVAL_NANOS = Duration.ofMillis(20).toNanos();
+    private static final long RETRY_BACKOFF_NANOS = Duration.ofMillis(200).toNanos();
+    // Com o Redis fora, cada lote falharia: loga uma amostra
+    private static final LogSampler FAILURE_SAMPLER = new LogSampler(Duration.ofSeconds(1), 1);
+    private static final Counter SPILLED = Metrics.REGISTRY.counter(
+            "jproxy_overflow_spilled_total", "Payments written to the Redis overflow");
+    private static final Counter REFILLED = Metrics.REGISTRY.counter(
+            "jproxy_overflow_refilled_total", "Payments read back from the Redis overflow");
+    private static final Counter FALLBACKS = Metrics.REGISTRY.counter(
+            "jproxy_overflow_memory_fallbacks_total", "Spilled payments kept in memory because Redis or staging was full");
+
+    private final PaymentRingBuffer staging = new PaymentRingBuffer(STAGING_CAPACITY);
+    private final ShardedPaymentQueue paymentsQueue;
+    private final RedisCacheClient redisCacheClient;
+    // Tamanho da lista no Redis como esta instância a enxerga (só ela escreve e lê a lista)
+    private final AtomicLong inRedis = new AtomicLong();
+    private final Thread mover;
+
+    PaymentOverflow(ShardedPaymentQueue paymentsQueue, RedisCacheClient redisCacheClient) {
+        this.paymentsQueue = paymentsQueue;
+        this.redisCacheClient = redisCacheClient;
+        try {
+            // Sobra de uma execução anterior desta instância: volta a ser drenada
+            inRedis.set(redisCacheClient.overflowLength());
+        } catch (Exception e) {
+            LOGGER.warn("Could not read the payment overflow length: {}", e.toString());
+        }
+        Metrics.REGISTRY.gauge("jproxy_overflow_pending", "Payments staged or in the Redis overflow", this::pending);
+        this.mover = Thread.ofVirtual().name("paymentOverflowVthread-", 0L).start(this::moveLoop);
+    }
+
+    void spill(long msb, long lsb, long cents, long timestampMillis) {
+        if (!staging.offer(msb, lsb, cents, timestampMillis, 0)) {
+            FALLBACKS.increment();
+            paymentsQueue.offer(msb, lsb, cents, timestampMillis);
+            return;
+        }
+        if (staging.size() >= BATCH_SIZE) {
+            LockSupport.unpark(mover);
+        }
+    }
+
+    long pending() {
+        return staging.size() + inRedis.get();
+    }
+
+    private void moveLoop() {
+        List<PaymentEvent> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                if (staging.size() < BATCH_SIZE) {
+                    LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                }
+                flushStaging(batch);
+                refill();
+            } catch (Exception e) {
+                if (FAILURE_SAMPLER.tryAcquire()) {
+                    LOGGER.warn("Payment overflow error ({} similar suppressed): {}",
+                            FAILURE_SAMPLER.drainSuppressed(), e.toString());
+                }
+                LockSupport.parkNanos(RETRY_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    private void flushStaging(List<PaymentEvent> batch) {
+        PaymentEvent event;
+        while ((event = staging.poll()) != null) {
+            batch.add(event);
+            if (batch.size() == BATCH_SIZE) {
+                push(batch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            push(batch);
+        }
+    }
+
+    private void push(List<PaymentEvent> batch) {
+        List<String> encoded = new ArrayList<>(batch.size());
+        for (PaymentEvent event : batch) {
+            encoded.add(encode(event));
+        }
+        try {
+            redisCacheClient.pushOverflow(encoded);
+            inRedis.addAndGet(batch.size());
+            SPILLED.add(batch.size());
+        } catch (Exception e) {
+            if (FAILURE_SAMPLER.tryAcquire()) {
+                LOGGER.warn("Payment overflow push failed, keeping {} payments in memory ({} similar suppressed): {}",
+                        batch.size(), FAILURE_SAMPLER.drainSuppressed(), e.toString());
+            }
+            FALLBACKS.add(batch.size());
+            for (PaymentEvent event : batch) {
+                paymentsQueue.offerRetry(event);
+            }
+            // Espera o Redis antes do próximo lote; enquanto isso o staging acumula
+            LockSupport.parkNanos(RETRY_BACKOFF_NANOS);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Traz lotes de volta enquanto a fila estiver abaixo da marca baixa.
+     */
+    private void refill() {
+        while (inRedis.get() > 0 && paymentsQueue.size() < AdmissionController.LOW_WATERMARK) {
+            List<String> payments = redisCacheClient.popOverflow(BATCH_SIZE);
+            if (payments.isEmpty()) {
+                inRedis.set(0);
+                return;
+            }
+            inRedis.addAndGet(-payments.size());
+            REFILLED.add(payments.size());
+            for (String payment : payments) {
+                decodeAndOffer(payment);
+            }
+        }
+    }
+
+    private static String encode(PaymentEvent event) {
+        return event.request().correlationId().getMostSignificantBits()
+                + ":" + event.request().correlationId().getLeastSignificantBits()
+                + ":" + event.request().amountCents()
+                + ":" + event.timestamp().toEpochMilli();
+    }
+
+    private void decodeAndOffer(String payment) {
+        String[] fields = payment.split(":");
+        paymentsQueue.offer(
+                Long.parseLong(fields[0]),
+                Long.parseLong(fields[1]),
+                Long.parseLong(fields[2]),
+                Long.parseLong(fields[3]));
+    }
+}
@@ -1,102 +1,398 @@
 package villanidev.jproxypayment.service.payment;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import villanidev.jproxypayment.cache.RedisCacheClient;
-import villanidev.jproxypayment.dto.PaymentRequest;
 import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.exception.CircuitOpenException;
+import villanidev.jproxypayment.exception.PaymentRejectedException;
+import villanidev.jproxypayment.logging.LogSampler;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.metrics.MetricsRegistry;
+import villanidev.jproxypayment.service.processorgateway.AdaptiveConcurrencyLimiter;
 import villanidev.jproxypayment.service.processorgateway.DistributedProcessorSelector;
 import villanidev.jproxypayment.service.processorgateway.PaymentProcessor;
+import villanidev.jproxypayment.service.processorgateway.RoutingDecision;
+import villanidev.jproxypayment.service.summary.PaymentAggregates;
 
-import java.time.Instant;
-import java.util.Comparator;
-import java.util.concurrent.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PaymentQueueService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentQueueService.class);
 
-    private static final int NUM_WORKERS = 10;
-    private static final int MAX_ATTEMPTS = 5;
-    private final BlockingQueue<PaymentEvent> paymentsQueue = new PriorityBlockingQueue<>(
-            20_000,
-            Comparator.comparingInt(PaymentEvent::attempts).reversed()
-    );
+    private static final int NUM_WORKERS = Integer.parseInt(
+            System.getenv().getOrDefault("PAYMENT_WORKERS", "10"));
+    private static final Duration PERMIT_TIMEOUT = Duration.ofMillis(200);
+    private static final long HOLD_DELAY_MILLIS = 100;
+    // Slots por geração, cada uma com até metade deles ocupados; 2 gerações de 16 bytes/slot, 4 MB
+    // por índice no padrão 2^17. Para a retenção valer: 2 * ids/s * 60
+    private static final int DEDUP_CAPACITY = Integer.parseInt(
+            System.getenv().getOrDefault("DEDUP_CAPACITY", Integer.toString(1 << 17)));
+    private static final Duration DEDUP_RETENTION = Duration.ofSeconds(60);
+    // JOURNAL_DIR liga o journal dos pagamentos aceitos, reaplicado no próximo start
+    private static final String JOURNAL_DIR = System.getenv("JOURNAL_DIR");
+    private static final double[] COMPLETION_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    private static final Counter PROCESSED_DEFAULT = processorCounter("jproxy_payments_processed_total",
+            "Payments confirmed by a processor and counted", "default");
+    private static final Counter PROCESSED_FALLBACK = processorCounter("jproxy_payments_processed_total",
+            "Payments confirmed by a processor and counted", "fallback");
+    private static final Counter FAILED_DEFAULT = processorCounter("jproxy_payment_attempts_failed_total",
+            "Failed processor attempts sent back for retry", "default");
+    private static final Counter FAILED_FALLBACK = processorCounter("jproxy_payment_attempts_failed_total",
+            "Failed processor attempts sent back for retry", "fallback");
+    private static final Counter REJECTED = Metrics.REGISTRY.counter(
+            "jproxy_payments_rejected_total", "Payments definitively refused by a processor (4xx)");
+    private static final Counter HELD = Metrics.REGISTRY.counter(
+            "jproxy_payments_held_total", "Payments held back waiting for the default processor");
+    private static final Counter SATURATED = Metrics.REGISTRY.counter(
+            "jproxy_payments_permit_timeouts_total", "Payments requeued because the processor limiter was full");
+    private static final Counter UNEXPECTED_ERRORS = Metrics.REGISTRY.counter(
+            "jproxy_payment_unexpected_errors_total", "Unexpected worker errors; the payment is retried");
+    // Com um processador fora, toda tentativa falha: loga uma amostra, não cada uma
+    private static final LogSampler PROCESSING_ERROR_SAMPLER = new LogSampler(Duration.ofSeconds(1), 5);
+    private static final LogSampler UNEXPECTED_ERROR_SAMPLER = new LogSampler(Duration.ofSeconds(1), 1);
+    private static final Histogram COMPLETION = Metrics.REGISTRY.histogram(
+            "jproxy_payment_completion_seconds", "Time from acceptance to processor confirmation", COMPLETION_BUCKETS);
+    private final ShardedPaymentQueue paymentsQueue = new ShardedPaymentQueue(NUM_WORKERS);
+    private final RetryScheduler retryScheduler;
     private final DistributedProcessorSelector processorSelector;
     private final RedisCacheClient redisCacheClient;
+    private final PaymentAggregates aggregates;
     private final ExecutorService workers;
     private final PaymentProcessor defaultProcessor;
     private final PaymentProcessor fallbackProcessor;
+    private final AdaptiveConcurrencyLimiter defaultLimiter = new AdaptiveConcurrencyLimiter("default");
+    private final AdaptiveConcurrencyLimiter fallbackLimiter = new AdaptiveConcurrencyLimiter("fallback");
+    // Ids aceitos (POST repetido) e ids já contabilizados (sucesso repetido após timeout/retentativa)
+    private final CorrelationIdIndex acceptedIds = new CorrelationIdIndex(DEDUP_CAPACITY, DEDUP_RETENTION);
+    private final CorrelationIdIndex completedIds = new CorrelationIdIndex(DEDUP_CAPACITY, DEDUP_RETENTION);
+    private final LongAdder duplicatesDropped = new LongAdder();
+    private final PaymentJournal journal;
+    // Só existe com ADMISSION_POLICY=spill
+    private final PaymentOverflow overflow;
 
     private final ExecutorService paymentWorkersExecutor = Executors.newThreadPerTaskExecutor(
-            Thread.ofVirtual().name("paymentWorkersExecutorVthread-", 0L).factory()
+            Metrics.countingVirtualThreads(Thread.ofVirtual().name("paymentWorkersExecutorVthread-", 0L).factory())
     );
 
     public PaymentQueueService(DistributedProcessorSelector processorSelector,
                                RedisCacheClient redisCacheClient,
+                               PaymentAggregates aggregates,
                                PaymentProcessor defaultProcessor,
                                PaymentProcessor fallbackProcessor) {
         this.processorSelector = processorSelector;
         this.redisCacheClient = redisCacheClient;
+        this.aggregates = aggregates;
         this.defaultProcessor = defaultProcessor;
         this.fallbackProcessor = fallbackProcessor;
         this.workers = paymentWorkersExecutor;
+        this.retryScheduler = new RetryScheduler(
+                paymentsQueue::offerRetry,
+                processorSelector::areAllProcessorsFailing);
+        this.journal = JOURNAL_DIR == null || JOURNAL_DIR.isBlank()
+                ? PaymentJournal.disabled()
+                : PaymentJournal.open(Path.of(JOURNAL_DIR));
+        this.overflow = AdmissionController.POLICY == AdmissionController.Policy.SPILL
+                ? new PaymentOverflow(paymentsQueue, redisCacheClient)
+                : null;
+    }
+
+    /**
+     * Registra as métricas, reaplica o journal (fechado no shutdown) e sobe os workers. Fora do
+     * construtor para que nenhuma referência à instância (gauges no registry global, workers)
+     * escape antes de ela estar pronta.
+     */
+    public void start() {
+        registerMetrics(Metrics.REGISTRY);
+        int replayed = journal.replayAndStart(this::restorePayment);
+        if (replayed > 0) {
+            LOGGER.info("Replayed {} pending payments from journal", replayed);
+        }
+        // No docker stop o último group commit não espera os 10ms
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journalShutdown"));
         startWorkers();
     }
 
-    public void enqueuePayment(PaymentRequest request) {
-        paymentsQueue.add(new PaymentEvent(request, Instant.now(), 0));
+    private static Counter processorCounter(String name, String help, String processor) {
+        return Metrics.REGISTRY.counter(name, help, "processor", processor);
+    }
+
+    private void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("jproxy_queue_depth", "Payments waiting in the worker queues", this::queueDepth);
+        registry.gauge("jproxy_retry_queue_depth", "Payments waiting in the retry queues", this::retryQueueDepth);
+        registry.counter("jproxy_payments_duplicate_total", "Duplicated correlationIds dropped", this::duplicatesDropped);
+        registerRotations(registry, "accepted", acceptedIds);
+        registerRotations(registry, "completed", completedIds);
+        registry.gauge("jproxy_retry_pending", "Payments scheduled in the retry wheel or waiting in its overflow",
+                retryScheduler::pendingCount);
+        registry.gauge("jproxy_retry_overflow", "Retries waiting for a free slot in the retry wheel", retryScheduler::overflowCount);
+        registry.gauge("jproxy_retry_parked", "Payments parked while all processors are failing", retryScheduler::parkedCount);
+        registry.counter("jproxy_retries_scheduled_total", "Retries scheduled in the retry wheel", retryScheduler::scheduledCount);
+        registry.counter("jproxy_retries_overflowed_total", "Retries that found the retry wheel full", retryScheduler::overflowedCount);
+        registry.counter("jproxy_retries_shed_total", "Retries sent straight back to the queue with the wheel and its overflow full",
+                retryScheduler::shedCount);
+        registry.counter("jproxy_retries_released_total", "Retries released from the retry wheel to the queue",
+                retryScheduler::releasedCount);
+        registry.gauge("jproxy_retry_lag_average_seconds", "Average delay between a retry falling due and its release",
+                () -> retryScheduler.averageLagMillis() / 1000.0);
+        registry.gauge("jproxy_retry_lag_max_seconds", "Maximum delay between a retry falling due and its release",
+                () -> retryScheduler.maxLagMillis() / 1000.0);
+        registry.gauge("jproxy_retry_parked_average_seconds", "Average time a retry stayed parked while all processors were failing",
+                () -> retryScheduler.averageParkedMillis() / 1000.0);
+        registry.gauge("jproxy_retry_parked_max_seconds", "Maximum time a retry stayed parked while all processors were failing",
+                () -> retryScheduler.maxParkedMillis() / 1000.0);
+        for (AdaptiveConcurrencyLimiter limiter : new AdaptiveConcurrencyLimiter[]{defaultLimiter, fallbackLimiter}) {
+            registry.gauge("jproxy_limiter_limit", "Adaptive concurrency limit per processor", limiter::limit,
+                    "processor", limiter.name());
+            registry.gauge("jproxy_limiter_in_flight", "Calls in flight per processor", limiter::inFlight,
+                    "processor", limiter.name());
+            registry.gauge("jproxy_limiter_min_rtt_seconds", "Minimum latency the limiter compares against",
+                    () -> limiter.minRttMillis() / 1000.0, "processor", limiter.name());
+        }
+    }
+
+    /**
+     * reason=size diz que o índice encheu antes da retenção: a janela de deduplicação efetiva
+     * está menor que DEDUP_RETENTION e o DEDUP_CAPACITY precisa crescer.
+     */
+    private static void registerRotations(MetricsRegistry registry, String index, CorrelationIdIndex ids) {
+        registry.counter("jproxy_dedup_rotations_total", "Dedup index generation rotations, by trigger",
+                ids::sizeRotations, "index", index, "reason", "size");
+        registry.counter("jproxy_dedup_rotations_total", "Dedup index generation rotations, by trigger",
+                ids::ageRotations, "index", index, "reason", "age");
+    }
+
+    /**
+     * Enfileira o pagamento a partir dos campos primitivos já extraídos do corpo, sem alocar.
+     * Um correlationId já aceito recentemente é descartado.
+     */
+    public void enqueuePayment(long correlationIdMsb, long correlationIdLsb, long amountCents) {
+        if (!acceptedIds.add(correlationIdMsb, correlationIdLsb)) {
+            duplicatesDropped.increment();
+            return;
+        }
+        long timestampMillis = System.currentTimeMillis();
+        journal.accepted(correlationIdMsb, correlationIdLsb, amountCents, timestampMillis);
+        paymentsQueue.offer(correlationIdMsb, correlationIdLsb, amountCents, timestampMillis);
+    }
+
+    /**
+     * Como {@link #enqueuePayment}, mas aceito em sobrecarga: vai para o overflow no Redis em vez
+     * da fila em memória, e volta quando o backlog baixar.
+     */
+    public void spillPayment(long correlationIdMsb, long correlationIdLsb, long amountCents) {
+        if (overflow == null) {
+            enqueuePayment(correlationIdMsb, correlationIdLsb, amountCents);
+            return;
+        }
+        if (!acceptedIds.add(correlationIdMsb, correlationIdLsb)) {
+            duplicatesDropped.increment();
+            return;
+        }
+        long timestampMillis = System.currentTimeMillis();
+        journal.accepted(correlationIdMsb, correlationIdLsb, amountCents, timestampMillis);
+        overflow.spill(correlationIdMsb, correlationIdLsb, amountCents, timestampMillis);
+    }
+
+    /**
+     * Pagamento aceito antes de um restart e ainda sem conclusão no journal: volta para a fila
+     * com o timestamp original, sem ser registrado de novo.
+     */
+    private void restorePayment(long correlationIdMsb, long correlationIdLsb, long amountCents, long timestampMillis) {
+        if (acceptedIds.add(correlationIdMsb, correlationIdLsb)) {
+            paymentsQueue.offer(correlationIdMsb, correlationIdLsb, amountCents, timestampMillis);
+        }
+    }
+
+    public long duplicatesDropped() {
+        return duplicatesDropped.sum();
+    }
+
+    public int queueDepth() {
+        return paymentsQueue.size();
+    }
+
+    /**
+     * Pagamentos aceitos e ainda em memória: filas mais retentativas agendadas ou estacionadas.
+     */
+    public int backlog() {
+        return paymentsQueue.size() + retryScheduler.pendingCount();
+    }
+
+    /**
+     * Pagamentos que saíram do backlog de vez (contabilizados ou recusados pelo processador).
+     */
+    public long drainedCount() {
+        return PROCESSED_DEFAULT.sum() + PROCESSED_FALLBACK.sum() + REJECTED.sum();
+    }
+
+    public int retryQueueDepth() {
+        return paymentsQueue.retrySize();
+    }
+
+    public RetryScheduler retryScheduler() {
+        return retryScheduler;
+    }
+
+    public AdaptiveConcurrencyLimiter limiterFor(String processor) {
+        return "default".equals(processor) ? defaultLimiter : fallbackLimiter;
     }
 
     private void startWorkers() {
         for (int i = 0; i < NUM_WORKERS; i++) {
-            workers.submit(this::processPayments);
+            int worker = i;
+            workers.submit(() -> processPayments(worker));
         }
     }
 
-    private void processPayments() {
+    private void processPayments(int worker) {
         while (true) {
+            PaymentEvent event;
             try {
-                PaymentEvent event = paymentsQueue.take();
-                processPayment(event);
+                event = paymentsQueue.take(worker);
             } catch (InterruptedException e) {
-                System.err.println("Erro ao consumir fila: " + e);
+                LOGGER.error("Erro ao consumir fila", e);
+                continue;
+            }
+            try {
+                processPayment(event);
+            } catch (Exception e) {
+                // O evento já saiu da fila: qualquer exceção aqui (inclusive uma interrupção na espera
+                // pela permissão) não pode derrubar o worker nem perder o pagamento
+                retryUnexpected(event, e);
             }
         }
     }
 
-    private void processPayment(PaymentEvent event) {
+    /**
+     * Erro fora dos caminhos previstos do processamento: conta, loga (amostrado) e devolve o
+     * pagamento pela timer wheel com backoff pelas tentativas, sem culpar nenhum processador.
+     */
+    private void retryUnexpected(PaymentEvent event, Exception e) {
+        UNEXPECTED_ERRORS.increment();
+        if (UNEXPECTED_ERROR_SAMPLER.tryAcquire()) {
+            LOGGER.error("Unexpected error processing payment {}, retrying ({} similar suppressed)",
+                    event.request().correlationId(), UNEXPECTED_ERROR_SAMPLER.drainSuppressed(), e);
+        }
+        PaymentEvent retry = new PaymentEvent(event.request(), event.timestamp(), event.attempts() + 1);
+        retryScheduler.backoff(retry);
+    }
+
+    /**
+     * Só despacha com uma permissão do limitador do processador escolhido; a permissão é
+     * devolvida na conclusão da chamada, junto com a latência ou a falha observada.
+     */
+    private void processPayment(PaymentEvent event) throws InterruptedException {
+        RoutingDecision decision;
         try {
-            String bestProcessor = processorSelector.selectBestProcessor();
-            PaymentProcessor processor = "default".equals(bestProcessor) ?
-                    defaultProcessor : fallbackProcessor;
+            decision = processorSelector.route();
+        } catch (Exception e) {
+            handleProcessingError(event, "default", e);
+            return;
+        }
 
+        if (decision.hold()) {
+            // Esperar o default sai mais barato que o fallback: segura sem contar tentativa
+            HELD.increment();
+            retryScheduler.hold(event, HOLD_DELAY_MILLIS);
+            return;
+        }
+        String bestProcessor = decision.pick();
+
+        // A conclusão grava no write-behind sem esperar: o limite dele é respeitado aqui
+        redisCacheClient.awaitWriteCapacity();
+        AdaptiveConcurrencyLimiter limiter = limiterFor(bestProcessor);
+        if (!limiter.acquire(PERMIT_TIMEOUT)) {
+            // Processador saturado: devolve para a fila e deixa a seleção ser refeita
+            SATURATED.increment();
+            paymentsQueue.offerRetry(event);
+            return;
+        }
+
+        PaymentProcessor processor = "default".equals(bestProcessor) ?
+                defaultProcessor : fallbackProcessor;
+        long startNanos = System.nanoTime();
+        try {
             processor.processPayment(event)
-                    .thenAccept(__ -> {
-                        redisCacheClient.savePayment(bestProcessor, event.request().amount(), event.timestamp());
-                    })
-                    .exceptionally(e -> {
-                        handleProcessingError(event, e);
-                        return null;
+                    .whenComplete((__, e) -> {
+                        if (e == null) {
+                            limiter.onSuccess(System.nanoTime() - startNanos);
+                            retryScheduler.recordSuccess(bestProcessor);
+                            savePayment(event, bestProcessor);
+                        } else if (unwrap(e) instanceof PaymentRejectedException) {
+                            limiter.onSuccess(System.nanoTime() - startNanos);
+                            rejectPayment(event, e);
+                        } else {
+                            if (unwrap(e) instanceof CircuitOpenException) {
+                                limiter.onIgnored();
+                            } else {
+                                limiter.onDropped();
+                            }
+                            handleProcessingError(event, bestProcessor, e);
+                        }
                     });
         } catch (Exception e) {
-            handleProcessingError(event, e);
+            limiter.onIgnored();
+            handleProcessingError(event, bestProcessor, e);
+        }
+    }
+
+    /**
+     * Contabiliza o pagamento uma única vez, mesmo se ele concluir com sucesso mais de uma vez.
+     */
+    private void savePayment(PaymentEvent event, String processor) {
+        UUID correlationId = event.request().correlationId();
+        long msb = correlationId.getMostSignificantBits();
+        long lsb = correlationId.getLeastSignificantBits();
+        if (!completedIds.add(msb, lsb)) {
+            duplicatesDropped.increment();
+            LOGGER.debug("Payment already counted, skipping: {}", correlationId);
+            return;
         }
+        redisCacheClient.savePayment(correlationId, processor, event.request().amountCents(), event.timestamp());
+        aggregates.record(processor, event.request().amountCents(), event.timestamp().toEpochMilli());
+        ("default".equals(processor) ? PROCESSED_DEFAULT : PROCESSED_FALLBACK).increment();
+        COMPLETION.recordNanos((System.currentTimeMillis() - event.timestamp().toEpochMilli()) * 1_000_000);
+        journal.completed(msb, lsb);
+    }
+
+    /**
+     * Recusa definitiva do processador: não adianta tentar de novo, fecha o pagamento no journal.
+     */
+    private void rejectPayment(PaymentEvent event, Throwable e) {
+        UUID correlationId = event.request().correlationId();
+        REJECTED.increment();
+        LOGGER.warn("Payment {} rejected, giving up: {}", correlationId, unwrap(e).getMessage());
+        journal.failed(correlationId.getMostSignificantBits(), correlationId.getLeastSignificantBits());
     }
 
-    private void handleProcessingError(PaymentEvent task, Throwable e) {
-        System.err.println("handleProcessingError: "+ e);
-        /*if (task.attempts() < MAX_ATTEMPTS) {
-            paymentsQueue.add(new PaymentEvent(
-                    task.request(),
-                    task.timestamp(),
-                    task.attempts() + 1
-            ));
-        } else {
-            redisCacheClient.savePayment("failed", task.request().amount(), task.timestamp());
-            System.err.println("Failed to process payment - too many retries: "+ e);
-        }*/
-
-        paymentsQueue.add(new PaymentEvent(
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Falhas voltam pela timer wheel com backoff do processador que falhou, nunca direto para a fila.
+     */
+    private void handleProcessingError(PaymentEvent task, String processor, Throwable e) {
+        if (PROCESSING_ERROR_SAMPLER.tryAcquire()) {
+            LOGGER.warn("handleProcessingError ({} similar suppressed): {}",
+                    PROCESSING_ERROR_SAMPLER.drainSuppressed(), e.toString());
+        }
+        ("default".equals(processor) ? FAILED_DEFAULT : FAILED_FALLBACK).increment();
+        PaymentEvent retry = new PaymentEvent(
                 task.request(),
                 task.timestamp(),
                 task.attempts() + 1
-        ));
+        );
+
+        retryScheduler.schedule(retry, processor);
     }
 }
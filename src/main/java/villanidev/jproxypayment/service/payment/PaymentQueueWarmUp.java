@@ -0,0 +1,52 @@
+package villanidev.jproxypayment.service.payment;
+
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.warmup.WarmUpTask;
+
+import java.time.Duration;
+
+/**
+ * Aceite e consumo de pagamentos no motor de fila do {@link PaymentQueueService} (dedup,
+ * offer nos anéis, take com roubo entre shards), numa fila e num índice só do warm-up.
+ */
+public final class PaymentQueueWarmUp implements WarmUpTask {
+
+    private static final int WORKERS = 4;
+    private static final int PAYMENTS_PER_BATCH = 2_000;
+    // Menor que o índice real: o código é o mesmo, só rotaciona as gerações mais cedo
+    private static final int DEDUP_CAPACITY = 1 << 14;
+
+    private ShardedPaymentQueue queue;
+    private CorrelationIdIndex acceptedIds;
+    private long sequence;
+
+    @Override
+    public String name() {
+        return "payment queue";
+    }
+
+    @Override
+    public void open() {
+        queue = new ShardedPaymentQueue(WORKERS);
+        acceptedIds = new CorrelationIdIndex(DEDUP_CAPACITY, Duration.ofSeconds(60));
+    }
+
+    @Override
+    public void runBatch() throws InterruptedException {
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < PAYMENTS_PER_BATCH; i++) {
+            long msb = ++sequence * 0x9E3779B97F4A7C15L;
+            long lsb = sequence;
+            if (!acceptedIds.add(msb, lsb)) {
+                continue;
+            }
+            queue.offer(msb, lsb, 1990, timestamp);
+            // Sempre há o que tirar: o take não bloqueia
+            PaymentEvent event = queue.take(i % WORKERS);
+            if (i % 16 == 0) {
+                queue.offerRetry(event);
+                queue.take(i % WORKERS);
+            }
+        }
+    }
+}
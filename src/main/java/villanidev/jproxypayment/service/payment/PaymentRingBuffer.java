@@ -0,0 +1,116 @@
+package villanidev.jproxypayment.service.payment;
+
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.dto.PaymentRequest;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila circular limitada, lock-free e multi-produtor/multi-consumidor (algoritmo de Vyukov),
+ * com slots pré-alocados em arrays primitivos: nada é alocado ao enfileirar. O
+ * {@link PaymentEvent} só é criado no {@link #poll()}, quando o pagamento vai ser despachado.
+ */
+final class PaymentRingBuffer {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] correlationIdMsb;
+    private final long[] correlationIdLsb;
+    private final long[] amountCents;
+    private final long[] timestampMillis;
+    private final int[] attempts;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    PaymentRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.correlationIdMsb = new long[capacity];
+        this.correlationIdLsb = new long[capacity];
+        this.amountCents = new long[capacity];
+        this.timestampMillis = new long[capacity];
+        this.attempts = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Retorna false se a fila estiver cheia.
+     */
+    boolean offer(long msb, long lsb, long cents, long timestamp, int attempt) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        correlationIdMsb[index] = msb;
+        correlationIdLsb[index] = lsb;
+        amountCents[index] = cents;
+        timestampMillis[index] = timestamp;
+        attempts[index] = attempt;
+        sequences.setRelease(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Retorna null se a fila estiver vazia.
+     */
+    PaymentEvent poll() {
+        long position = head.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.getAcquire(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+
+        long msb = correlationIdMsb[index];
+        long lsb = correlationIdLsb[index];
+        long cents = amountCents[index];
+        long timestamp = timestampMillis[index];
+        int attempt = attempts[index];
+        sequences.setRelease(index, position + mask + 1);
+
+        return toEvent(msb, lsb, cents, timestamp, attempt);
+    }
+
+    static PaymentEvent toEvent(long msb, long lsb, long cents, long timestamp, int attempt) {
+        return new PaymentEvent(
+                new PaymentRequest(new UUID(msb, lsb), cents),
+                Instant.ofEpochMilli(timestamp),
+                attempt);
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        return size <= 0 ? 0 : (int) Math.min(size, mask + 1);
+    }
+}
@@ -0,0 +1,369 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.dto.PaymentEvent;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Agenda retentativas numa hashed timer wheel em vez de devolvê-las direto à fila.
+ * O atraso cresce exponencialmente com as falhas consecutivas do processador que falhou
+ * (com jitter) e, enquanto os dois processadores estiverem fora, os vencidos ficam
+ * estacionados até algum voltar. As entradas vivem em arrays primitivos pré-alocados para
+ * {@link #MAX_PENDING} retentativas. Com a roda cheia, o excedente espera num anel de overflow,
+ * também pré-alocado para {@link #MAX_OVERFLOW} entradas (com o próprio vencimento), e entra na
+ * roda conforme slots são liberados. O overflow entra em {@link #pendingCount()}, então o
+ * controle de admissão o enxerga. Só com os dois cheios uma retentativa volta na hora para a fila
+ * de trabalho, que não perde pagamentos aceitos e também é vista pela admissão; cada uma dessas
+ * é contada em {@link #shedCount()}.
+ *
+ * <p>O atraso de liberação (lag) mede só a demora da roda em devolver o que venceu; o tempo
+ * estacionado com os dois processadores fora é medido à parte.
+ */
+public final class RetryScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryScheduler.class);
+
+    /**
+     * Destino das retentativas vencidas (a faixa de retry da fila).
+     */
+    @FunctionalInterface
+    interface RetrySink {
+        void release(long msb, long lsb, long cents, long timestampMillis, int attempts);
+    }
+
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static final int MAX_PENDING = 16_384;
+    private static final int MAX_OVERFLOW = 16_384;
+    private static final long BASE_DELAY_MILLIS = 20;
+    private static final long MAX_DELAY_MILLIS = Duration.ofSeconds(2).toMillis();
+    private static final int NIL = -1;
+
+    private final RetrySink sink;
+    private final BooleanSupplier allProcessorsDown;
+    private final Map<String, AtomicInteger> consecutiveFailures = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Pool de entradas: listas encadeadas por índice (next) em cada bucket da roda
+    private final long[] correlationIdMsb = new long[MAX_PENDING];
+    private final long[] correlationIdLsb = new long[MAX_PENDING];
+    private final long[] amountCents = new long[MAX_PENDING];
+    private final long[] timestampMillis = new long[MAX_PENDING];
+    private final int[] attempts = new int[MAX_PENDING];
+    private final long[] deadlineTick = new long[MAX_PENDING];
+    private final int[] next = new int[MAX_PENDING];
+    private final int[] buckets = new int[WHEEL_SIZE];
+    private int freeHead;
+    private int parkedHead = NIL;
+    // Anel de overflow em arrays primitivos: nada alocado por retentativa
+    private final long[] overflowMsb = new long[MAX_OVERFLOW];
+    private final long[] overflowLsb = new long[MAX_OVERFLOW];
+    private final long[] overflowCents = new long[MAX_OVERFLOW];
+    private final long[] overflowTimestampMillis = new long[MAX_OVERFLOW];
+    private final int[] overflowAttempts = new int[MAX_OVERFLOW];
+    private final long[] overflowDueTick = new long[MAX_OVERFLOW];
+    private int overflowHead;
+    private volatile int pending;
+    private volatile int overflowSize;
+    private volatile int parked;
+    private final long startMillis = System.currentTimeMillis();
+    private long currentTick;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder lagSamples = new LongAdder();
+    private final LongAdder totalLagMillis = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final LongAdder unparked = new LongAdder();
+    private final LongAdder totalParkedMillis = new LongAdder();
+    private final AtomicLong maxParkedMillis = new AtomicLong();
+
+    RetryScheduler(RetrySink sink, BooleanSupplier allProcessorsDown) {
+        this.sink = sink;
+        this.allProcessorsDown = allProcessorsDown;
+        for (int i = 0; i < MAX_PENDING; i++) {
+            next[i] = i + 1 < MAX_PENDING ? i + 1 : NIL;
+        }
+        Arrays.fill(buckets, NIL);
+        this.freeHead = 0;
+        Thread.ofVirtual().name("retrySchedulerVthread-", 0L).start(this::tickLoop);
+    }
+
+    /**
+     * Agenda a retentativa de um pagamento que falhou no processador informado.
+     */
+    void schedule(PaymentEvent event, String processor) {
+        int failures = consecutiveFailures.computeIfAbsent(processor, __ -> new AtomicInteger()).incrementAndGet();
+        enqueue(event, backoffMillis(Math.max(failures, event.attempts())));
+    }
+
+    /**
+     * Agenda a retentativa de um pagamento que falhou sem culpa de um processador (erro
+     * inesperado no worker): o backoff cresce só com as tentativas do próprio pagamento.
+     */
+    void backoff(PaymentEvent event) {
+        enqueue(event, backoffMillis(event.attempts()));
+    }
+
+    /**
+     * Segura um pagamento que não falhou (a política de roteamento preferiu esperar) por um
+     * atraso fixo, sem mexer no backoff dos processadores.
+     */
+    void hold(PaymentEvent event, long delayMillis) {
+        enqueue(event, delayMillis);
+    }
+
+    private void enqueue(PaymentEvent event, long delay) {
+        long dueTick = (System.currentTimeMillis() + delay - startMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+
+        long msb = event.request().correlationId().getMostSignificantBits();
+        long lsb = event.request().correlationId().getLeastSignificantBits();
+        long cents = event.request().amountCents();
+        long timestamp = event.timestamp().toEpochMilli();
+
+        lock.lock();
+        try {
+            if (freeHead != NIL) {
+                insert(msb, lsb, cents, timestamp, event.attempts(), dueTick);
+            } else if (overflowSize < MAX_OVERFLOW) {
+                int slot = (overflowHead + overflowSize) % MAX_OVERFLOW;
+                overflowMsb[slot] = msb;
+                overflowLsb[slot] = lsb;
+                overflowCents[slot] = cents;
+                overflowTimestampMillis[slot] = timestamp;
+                overflowAttempts[slot] = event.attempts();
+                overflowDueTick[slot] = dueTick;
+                overflowSize++;
+                overflowed.increment();
+            } else {
+                // Roda e overflow cheios: volta já para a fila, sem o atraso
+                shed.increment();
+                sink.release(msb, lsb, cents, timestamp, event.attempts());
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        scheduled.increment();
+    }
+
+    /**
+     * Põe a retentativa num slot livre da roda; chamado com o lock e com {@code freeHead != NIL}.
+     */
+    private void insert(long msb, long lsb, long cents, long timestamp, int attemptCount, long dueTick) {
+        int entry = freeHead;
+        freeHead = next[entry];
+
+        correlationIdMsb[entry] = msb;
+        correlationIdLsb[entry] = lsb;
+        amountCents[entry] = cents;
+        timestampMillis[entry] = timestamp;
+        attempts[entry] = attemptCount;
+        deadlineTick[entry] = Math.max(dueTick, currentTick + 1);
+
+        int bucket = (int) (deadlineTick[entry] & (WHEEL_SIZE - 1));
+        next[entry] = buckets[bucket];
+        buckets[bucket] = entry;
+        pending++;
+    }
+
+    /**
+     * Um sucesso zera o backoff do processador.
+     */
+    void recordSuccess(String processor) {
+        AtomicInteger failures = consecutiveFailures.get(processor);
+        if (failures != null && failures.get() != 0) {
+            failures.set(0);
+        }
+    }
+
+    public long scheduledCount() {
+        return scheduled.sum();
+    }
+
+    public long releasedCount() {
+        return released.sum();
+    }
+
+    /**
+     * Retentativas que encontraram a roda cheia e passaram pelo overflow.
+     */
+    public long overflowedCount() {
+        return overflowed.sum();
+    }
+
+    /**
+     * Retentativas que encontraram roda e overflow cheios e voltaram para a fila sem atraso.
+     */
+    public long shedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Retentativas na roda (inclusive estacionadas) mais as que esperam no overflow.
+     */
+    public int pendingCount() {
+        return pending + overflowSize;
+    }
+
+    public int overflowCount() {
+        return overflowSize;
+    }
+
+    public int parkedCount() {
+        return parked;
+    }
+
+    /**
+     * Atraso médio entre o vencimento de uma retentativa e sua liberação para a fila (ou até ser
+     * estacionada, sem contar o tempo estacionada).
+     */
+    public double averageLagMillis() {
+        long count = lagSamples.sum();
+        return count == 0 ? 0 : (double) totalLagMillis.sum() / count;
+    }
+
+    public long maxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    /**
+     * Tempo médio que uma retentativa estacionada esperou algum processador voltar.
+     */
+    public double averageParkedMillis() {
+        long count = unparked.sum();
+        return count == 0 ? 0 : (double) totalParkedMillis.sum() / count;
+    }
+
+    public long maxParkedMillis() {
+        return maxParkedMillis.get();
+    }
+
+    private long backoffMillis(int failures) {
+        long delay = BASE_DELAY_MILLIS << Math.min(Math.max(failures - 1, 0), 16);
+        delay = Math.min(delay, MAX_DELAY_MILLIS);
+        // "Equal jitter": metade fixa, metade aleatória
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void tickLoop() {
+        while (true) {
+            try {
+                long targetTick = (System.currentTimeMillis() - startMillis) / TICK_MILLIS;
+                long sleepMillis = (currentTick + 1) * TICK_MILLIS + startMillis - System.currentTimeMillis();
+                if (currentTick >= targetTick && sleepMillis > 0) {
+                    Thread.sleep(sleepMillis);
+                    continue;
+                }
+                advanceTo(targetTick);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.error("Retry scheduler tick error", e);
+            }
+        }
+    }
+
+    private void advanceTo(long targetTick) {
+        boolean hold = allProcessorsDown.getAsBoolean();
+        lock.lock();
+        try {
+            if (!hold) {
+                releaseParked();
+            }
+            // Nunca varre mais que uma volta: depois disso todos os buckets já foram visitados
+            long from = Math.max(currentTick + 1, targetTick - WHEEL_SIZE + 1);
+            for (long tick = from; tick <= targetTick; tick++) {
+                expireBucket((int) (tick & (WHEEL_SIZE - 1)), targetTick, hold);
+            }
+            currentTick = targetTick;
+            // Slots liberados neste tick recebem o overflow, na ordem de chegada
+            while (freeHead != NIL && overflowSize > 0) {
+                int slot = overflowHead;
+                insert(overflowMsb[slot], overflowLsb[slot], overflowCents[slot],
+                        overflowTimestampMillis[slot], overflowAttempts[slot], overflowDueTick[slot]);
+                overflowHead = (slot + 1) % MAX_OVERFLOW;
+                overflowSize--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expireBucket(int bucket, long nowTick, boolean hold) {
+        int previous = NIL;
+        int entry = buckets[bucket];
+        while (entry != NIL) {
+            int following = next[entry];
+            if (deadlineTick[entry] <= nowTick) {
+                // Desencadeia do bucket
+                if (previous == NIL) {
+                    buckets[bucket] = following;
+                } else {
+                    next[previous] = following;
+                }
+                if (hold) {
+                    recordLag(nowTick - deadlineTick[entry]);
+                    // Daqui em diante o deadline guarda o tick em que ela foi estacionada
+                    deadlineTick[entry] = nowTick;
+                    next[entry] = parkedHead;
+                    parkedHead = entry;
+                    parked++;
+                } else {
+                    recordLag(nowTick - deadlineTick[entry]);
+                    release(entry);
+                }
+            } else {
+                previous = entry;
+            }
+            entry = following;
+        }
+    }
+
+    private void releaseParked() {
+        long nowTick = (System.currentTimeMillis() - startMillis) / TICK_MILLIS;
+        int entry = parkedHead;
+        while (entry != NIL) {
+            int following = next[entry];
+            long parkedMillis = (nowTick - deadlineTick[entry]) * TICK_MILLIS;
+            totalParkedMillis.add(parkedMillis);
+            maxParkedMillis.accumulateAndGet(parkedMillis, Math::max);
+            unparked.increment();
+            release(entry);
+            entry = following;
+        }
+        parkedHead = NIL;
+        parked = 0;
+    }
+
+    private void recordLag(long lagTicks) {
+        long lag = lagTicks * TICK_MILLIS;
+        totalLagMillis.add(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        lagSamples.increment();
+    }
+
+    private void release(int entry) {
+        released.increment();
+
+        sink.release(correlationIdMsb[entry], correlationIdLsb[entry], amountCents[entry],
+                timestampMillis[entry], attempts[entry]);
+
+        next[entry] = freeHead;
+        freeHead = entry;
+        pending--;
+    }
+}
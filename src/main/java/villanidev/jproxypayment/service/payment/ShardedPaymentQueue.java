@@ -0,0 +1,173 @@
+package villanidev.jproxypayment.service.payment;
+
+import villanidev.jproxypayment.dto.PaymentEvent;
+
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Motor de fila dos pagamentos: um {@link PaymentRingBuffer} por worker, uma faixa separada
+ * para retentativas e work stealing entre os workers. Produtores distribuem em round-robin
+ * e acordam o dono do shard ou, se ele estiver ocupado, algum worker estacionado, que rouba o
+ * item. Workers ociosos só acordam por sinal: o timeout de {@link #PARK_NANOS} é uma rede de
+ * segurança, não um polling.
+ * Se todos os anéis estiverem cheios o evento vai para um overflow sem limite, para não
+ * perder pagamentos já aceitos.
+ */
+final class ShardedPaymentQueue {
+
+    private static final int SHARD_CAPACITY = 4096;
+    private static final int RETRY_CAPACITY = 8192;
+    private static final long PARK_NANOS = Duration.ofMillis(100).toNanos();
+
+    private final PaymentRingBuffer[] shards;
+    private final PaymentRingBuffer retryLane = new PaymentRingBuffer(RETRY_CAPACITY);
+    private final Queue<PaymentEvent> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowSize = new AtomicInteger();
+    private final AtomicReferenceArray<Thread> parkedWorkers;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final long parkNanos;
+
+    ShardedPaymentQueue(int workers) {
+        this(workers, PARK_NANOS);
+    }
+
+    /**
+     * @param parkNanos timeout da rede de segurança; os testes o levam ao infinito para provar
+     *                  que nenhum sinal se perde
+     */
+    ShardedPaymentQueue(int workers, long parkNanos) {
+        this.parkNanos = parkNanos;
+        this.shards = new PaymentRingBuffer[workers];
+        for (int i = 0; i < workers; i++) {
+            shards[i] = new PaymentRingBuffer(SHARD_CAPACITY);
+        }
+        this.parkedWorkers = new AtomicReferenceArray<>(workers);
+    }
+
+    void offer(long msb, long lsb, long cents, long timestampMillis) {
+        int start = Math.floorMod(nextShard.getAndIncrement(), shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = (start + i) % shards.length;
+            if (shards[shard].offer(msb, lsb, cents, timestampMillis, 0)) {
+                signal(shard);
+                return;
+            }
+        }
+        spill(PaymentRingBuffer.toEvent(msb, lsb, cents, timestampMillis, 0));
+    }
+
+    void offerRetry(PaymentEvent event) {
+        offerRetry(
+                event.request().correlationId().getMostSignificantBits(),
+                event.request().correlationId().getLeastSignificantBits(),
+                event.request().amountCents(),
+                event.timestamp().toEpochMilli(),
+                event.attempts());
+    }
+
+    void offerRetry(long msb, long lsb, long cents, long timestampMillis, int attempts) {
+        if (retryLane.offer(msb, lsb, cents, timestampMillis, attempts)) {
+            signalAny();
+        } else {
+            spill(PaymentRingBuffer.toEvent(msb, lsb, cents, timestampMillis, attempts));
+        }
+    }
+
+    /**
+     * Bloqueia até haver um pagamento para o worker: primeiro o próprio shard, depois a faixa de
+     * retentativas, depois o roubo dos demais shards e por fim o overflow.
+     */
+    PaymentEvent take(int worker) throws InterruptedException {
+        while (true) {
+            PaymentEvent event = poll(worker);
+            if (event != null) {
+                return event;
+            }
+
+            parkedWorkers.set(worker, Thread.currentThread());
+            try {
+                // Re-checa depois de se anunciar, senão um offer concorrente poderia não acordá-lo.
+                // A cerca impede que a leitura dos anéis (acquire) passe na frente do anúncio.
+                VarHandle.fullFence();
+                event = poll(worker);
+                if (event != null) {
+                    return event;
+                }
+                LockSupport.parkNanos(this, parkNanos);
+            } finally {
+                parkedWorkers.set(worker, null);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    int size() {
+        int size = retryLane.size() + overflowSize.get();
+        for (PaymentRingBuffer shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    int retrySize() {
+        return retryLane.size();
+    }
+
+    private PaymentEvent poll(int worker) {
+        PaymentEvent event = shards[worker].poll();
+        if (event != null) {
+            return event;
+        }
+        event = retryLane.poll();
+        if (event != null) {
+            return event;
+        }
+        for (int i = 1; i < shards.length; i++) {
+            event = shards[(worker + i) % shards.length].poll();
+            if (event != null) {
+                return event;
+            }
+        }
+        event = overflow.poll();
+        if (event != null) {
+            overflowSize.decrementAndGet();
+        }
+        return event;
+    }
+
+    private void spill(PaymentEvent event) {
+        overflowSize.incrementAndGet();
+        overflow.offer(event);
+        signalAny();
+    }
+
+    private void signal(int shard) {
+        // Par da cerca em take: a publicação no anel (release) fica visível antes de lermos quem está estacionado
+        VarHandle.fullFence();
+        Thread owner = parkedWorkers.get(shard);
+        if (owner != null) {
+            LockSupport.unpark(owner);
+        } else {
+            signalAny();
+        }
+    }
+
+    private void signalAny() {
+        VarHandle.fullFence();
+        for (int i = 0; i < shards.length; i++) {
+            Thread worker = parkedWorkers.get(i);
+            if (worker != null) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite adaptativo de chamadas em voo para um processador, no estilo gradiente: enquanto a
+ * latência fica perto da mínima observada o limite cresce ~raiz do limite por RTT; quando a
+ * latência passa da tolerância ele encolhe por RTT na proporção mínima/observada, e
+ * timeouts/5xx cortam multiplicativamente. A mínima é reamostrada periodicamente para acompanhar mudanças
+ * do processador. Quem despacha chama {@link #acquire} e depois exatamente um de
+ * {@link #onSuccess}, {@link #onDropped} ou {@link #onIgnored}.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final int MIN_LIMIT = 2;
+    private static final int MAX_LIMIT = 256;
+    private static final int INITIAL_LIMIT = 16;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DROP_RATIO = 0.7;
+    private static final long MIN_RTT_WINDOW_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private final String name;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitAvailable = lock.newCondition();
+    private volatile int limit = INITIAL_LIMIT;
+    private volatile int waiters;
+
+    // Protegidos por lock
+    private double estimatedLimit = INITIAL_LIMIT;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long minRttResetAt = System.nanoTime() + MIN_RTT_WINDOW_NANOS;
+
+    public AdaptiveConcurrencyLimiter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Obtém uma permissão, esperando até o timeout. Retorna false se não conseguiu.
+     */
+    public boolean acquire(Duration timeout) throws InterruptedException {
+        if (tryAcquire()) {
+            return true;
+        }
+
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            waiters++;
+            while (!tryAcquire()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitAvailable.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            waiters--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chamada concluída com sucesso: libera a permissão e alimenta o limite com a latência.
+     */
+    public void onSuccess(long rttNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - minRttResetAt > 0) {
+                minRttNanos = rttNanos;
+                minRttResetAt = now + MIN_RTT_WINDOW_NANOS;
+            } else if (rttNanos < minRttNanos) {
+                minRttNanos = rttNanos;
+            }
+
+            // Ajustes divididos pelo limite: por "janela" (~limite amostras) o efeito é de uma RTT
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, LATENCY_TOLERANCE * minRttNanos / rttNanos));
+            if (gradient < 1.0) {
+                updateLimit(estimatedLimit - (1 - gradient));
+            } else if (inFlightAtCompletion >= estimatedLimit / 2) {
+                // Só cresce se o processador está de fato sendo exigido (não limitado pela aplicação)
+                updateLimit(estimatedLimit + Math.sqrt(estimatedLimit) / estimatedLimit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Timeout, 5xx ou erro de conexão: libera a permissão e corta o limite.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        lock.lock();
+        try {
+            updateLimit(estimatedLimit * DROP_RATIO);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera a permissão sem amostra (a chamada nem chegou ao processador).
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+        if (waiters > 0) {
+            lock.lock();
+            try {
+                permitAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Latência mínima da janela corrente, base do gradiente; 0 antes da primeira amostra.
+     */
+    public long minRttMillis() {
+        long minRtt;
+        lock.lock();
+        try {
+            minRtt = minRttNanos;
+        } finally {
+            lock.unlock();
+        }
+        return minRtt == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(minRtt);
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void updateLimit(double estimated) {
+        estimatedLimit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, estimated));
+        limit = (int) estimatedLimit;
+        if (waiters > 0) {
+            permitAvailable.signalAll();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker de um processador alimentado pelas chamadas reais de pagamento.
+ * Fechado, avalia uma janela deslizante das últimas {@link #WINDOW_SIZE} chamadas e abre
+ * quando a taxa de falhas ou de chamadas lentas passa do limite. Aberto, recusa tudo por
+ * {@link #OPEN_DURATION}; depois meio-aberto, deixa passar {@link #HALF_OPEN_TRIALS}
+ * chamadas de teste e, conforme o resultado delas, fecha ou volta a abrir.
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int WINDOW_SIZE = 50;
+    private static final int MIN_CALLS = 20;
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+    private static final double SLOW_RATE_THRESHOLD = 0.8;
+    private static final long SLOW_CALL_NANOS = Duration.ofMillis(150).toNanos();
+    private static final long OPEN_DURATION = Duration.ofSeconds(1).toNanos();
+    private static final int HALF_OPEN_TRIALS = 5;
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final long openDurationNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicInteger trialPermits = new AtomicInteger();
+
+    // Janela circular de resultados, protegida por lock
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowPosition;
+    private int windowCount;
+    private int failures;
+    private int slowCalls;
+    private int trialCalls;
+    private int trialFailures;
+
+    public CircuitBreaker(String name) {
+        this(name, OPEN_DURATION);
+    }
+
+    /**
+     * @param openDurationNanos quanto fica aberto antes do meio-aberto; os testes o encurtam
+     */
+    CircuitBreaker(String name, long openDurationNanos) {
+        this.name = name;
+        this.openDurationNanos = openDurationNanos;
+    }
+
+    /**
+     * Registra o gauge do estado; fora do construtor para não expor a instância antes de ela
+     * estar pronta.
+     */
+    public void start() {
+        Metrics.REGISTRY.gauge("jproxy_circuit_breaker_state", "Circuit breaker state (0 closed, 1 open, 2 half-open)",
+                () -> state.ordinal(), "processor", name);
+    }
+
+    /**
+     * Consome uma permissão para chamar o processador (no meio-aberto, uma das chamadas de teste).
+     */
+    public boolean tryAcquirePermission() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            transitionToHalfOpen();
+        }
+        int permits;
+        do {
+            permits = trialPermits.get();
+            if (permits <= 0) {
+                return false;
+            }
+        } while (!trialPermits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    /**
+     * Consulta sem consumir permissão, usada pela seleção do processador.
+     */
+    public boolean allowsTraffic() {
+        State current = state;
+        return switch (current) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openedAt >= openDurationNanos;
+            case HALF_OPEN -> trialPermits.get() > 0;
+        };
+    }
+
+    public boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openDurationNanos;
+    }
+
+    public void onSuccess(long latencyNanos) {
+        record(latencyNanos >= SLOW_CALL_NANOS ? SLOW : SUCCESS);
+    }
+
+    public void onError() {
+        record(FAILURE);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private void record(byte outcome) {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED -> recordClosed(outcome);
+                case HALF_OPEN -> recordTrial(outcome);
+                case OPEN -> {
+                    // Chamadas que saíram antes de abrir: não mudam mais nada
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordClosed(byte outcome) {
+        if (windowCount == WINDOW_SIZE) {
+            byte evicted = window[windowPosition];
+            if (evicted == FAILURE) {
+                failures--;
+            } else if (evicted == SLOW) {
+                slowCalls--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = outcome;
+        windowPosition = (windowPosition + 1) % WINDOW_SIZE;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+
+        if (windowCount >= MIN_CALLS
+                && ((double) failures / windowCount >= FAILURE_RATE_THRESHOLD
+                || (double) slowCalls / windowCount >= SLOW_RATE_THRESHOLD)) {
+            open();
+        }
+    }
+
+    private void recordTrial(byte outcome) {
+        trialCalls++;
+        if (outcome == FAILURE) {
+            trialFailures++;
+        }
+        if ((double) trialFailures / HALF_OPEN_TRIALS >= FAILURE_RATE_THRESHOLD) {
+            open();
+        } else if (trialCalls >= HALF_OPEN_TRIALS) {
+            close();
+        }
+    }
+
+    private void transitionToHalfOpen() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                trialCalls = 0;
+                trialFailures = 0;
+                trialPermits.set(HALF_OPEN_TRIALS);
+                state = State.HALF_OPEN;
+                LOGGER.info("Circuit breaker {} half-open", name);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        trialPermits.set(0);
+        state = State.OPEN;
+        LOGGER.warn("Circuit breaker {} open", name);
+    }
+
+    private void close() {
+        windowPosition = 0;
+        windowCount = 0;
+        failures = 0;
+        slowCalls = 0;
+        state = State.CLOSED;
+        LOGGER.info("Circuit breaker {} closed", name);
+    }
+}
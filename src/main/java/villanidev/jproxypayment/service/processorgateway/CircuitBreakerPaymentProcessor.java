@@ -0,0 +1,61 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.exception.CircuitOpenException;
+import villanidev.jproxypayment.exception.PaymentProcessingException;
+import villanidev.jproxypayment.exception.PaymentRejectedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Decora um {@link PaymentProcessor} com seu {@link CircuitBreaker}: pede permissão antes de
+ * cada chamada e alimenta o breaker com o resultado e a latência de cada pagamento real.
+ */
+public class CircuitBreakerPaymentProcessor implements PaymentProcessor {
+    private final PaymentProcessor delegate;
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerPaymentProcessor(PaymentProcessor delegate, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public CompletableFuture<Void> processPayment(PaymentEvent task) throws PaymentProcessingException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(
+                    new CircuitOpenException("Circuit breaker open for " + circuitBreaker.name()));
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            return delegate.processPayment(task)
+                    .whenComplete((__, e) -> {
+                        // Recusa definitiva é resposta válida do processador, não falha dele
+                        if (e == null || unwrap(e) instanceof PaymentRejectedException) {
+                            circuitBreaker.onSuccess(System.nanoTime() - startNanos);
+                        } else {
+                            circuitBreaker.onError();
+                        }
+                    });
+        } catch (PaymentProcessingException | RuntimeException e) {
+            circuitBreaker.onError();
+            throw e;
+        }
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    @Override
+    public double getFee() {
+        return delegate.getFee();
+    }
+}
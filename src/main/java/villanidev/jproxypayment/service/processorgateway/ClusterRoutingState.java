@@ -0,0 +1,76 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.util.Locale;
+
+/**
+ * Estado de roteamento publicado pelo líder: a decisão eleita e a visão de cada processador
+ * (saúde e latência) que a gerou, com o fencing token do mandato que a publicou.
+ *
+ * <p>Forma no canal e no Redis:
+ * {@code <token>|<decisão>|<default>|<fallback>}, com cada processador como
+ * {@code failing:latencyMillis:failureProbability:unavailableForMillis}.
+ *
+ * @param receivedAtMillis quando esta instância recebeu o estado (não vai no canal)
+ */
+record ClusterRoutingState(long fencingToken,
+                           RoutingDecision decision,
+                           ProcessorView defaultView,
+                           ProcessorView fallbackView,
+                           long receivedAtMillis) {
+
+    private static final char FIELD_SEPARATOR = '|';
+
+    /**
+     * Antes da primeira publicação: tudo no default e ninguém marcado como falhando.
+     */
+    static ClusterRoutingState initial(ProcessorEndpoint defaultEndpoint, ProcessorEndpoint fallbackEndpoint) {
+        return new ClusterRoutingState(0,
+                RoutingDecision.ALL_DEFAULT,
+                new ProcessorView(defaultEndpoint.name(), defaultEndpoint.fee(), false, 0, 0, 0),
+                new ProcessorView(fallbackEndpoint.name(), fallbackEndpoint.fee(), false, 0, 0, 0),
+                0);
+    }
+
+    String encode() {
+        return fencingToken + "|" + decision.encode() + "|" + encode(defaultView) + "|" + encode(fallbackView);
+    }
+
+    private static String encode(ProcessorView view) {
+        return String.format(Locale.ROOT, "%b:%d:%.4f:%d",
+                view.failing(),
+                view.latencyMillis(),
+                view.failureProbability(),
+                view.unavailableForMillis());
+    }
+
+    /**
+     * Lê um estado publicado; a taxa de cada processador vem do endpoint local, não do canal.
+     */
+    static ClusterRoutingState decode(String value,
+                                      ProcessorEndpoint defaultEndpoint,
+                                      ProcessorEndpoint fallbackEndpoint,
+                                      long receivedAtMillis) {
+        int first = value.indexOf(FIELD_SEPARATOR);
+        int second = value.indexOf(FIELD_SEPARATOR, first + 1);
+        int third = value.indexOf(FIELD_SEPARATOR, second + 1);
+        if (first < 0 || second < 0 || third < 0) {
+            throw new IllegalArgumentException("Malformed routing state: " + value);
+        }
+        return new ClusterRoutingState(
+                Long.parseLong(value.substring(0, first)),
+                RoutingDecision.decode(value.substring(first + 1, second)),
+                decode(value.substring(second + 1, third), defaultEndpoint),
+                decode(value.substring(third + 1), fallbackEndpoint),
+                receivedAtMillis);
+    }
+
+    private static ProcessorView decode(String value, ProcessorEndpoint endpoint) {
+        String[] parts = value.split(":");
+        return new ProcessorView(endpoint.name(),
+                endpoint.fee(),
+                Boolean.parseBoolean(parts[0]),
+                Long.parseLong(parts[1]),
+                Double.parseDouble(parts[2]),
+                Long.parseLong(parts[3]));
+    }
+}
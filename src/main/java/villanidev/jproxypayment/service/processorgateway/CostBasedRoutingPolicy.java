@@ -0,0 +1,72 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+/**
+ * Roteia pelo custo esperado de cada processador, em fração do valor do pagamento: a taxa
+ * mais o atraso esperado até o sucesso (latência / (1 - probabilidade de falha)) convertido
+ * por {@link #DELAY_COST_PER_SECOND}.
+ * <ul>
+ *   <li>Os dois disponíveis: divide o tráfego por um peso logístico sobre a diferença de custo,
+ *       então uma diferença pequena reparte e uma grande (ex.: só a taxa) concentra.</li>
+ *   <li>Default fora e fallback disponível: compara o fallback com esperar o default voltar
+ *       (taxa do default + atraso estimado, que cresce com o tempo que ele já está fora) e
+ *       segura os pagamentos enquanto esperar for mais barato.</li>
+ *   <li>Os dois fora: mantém a escolha pela latência, sem segurar indefinidamente.</li>
+ * </ul>
+ */
+public final class CostBasedRoutingPolicy implements RoutingPolicy {
+
+    private static final double DEFAULT_DELAY_COST_PER_SECOND = 0.04;
+    private static final double DEFAULT_SPLIT_TEMPERATURE = 0.01;
+    private static final long MIN_RECOVERY_ESTIMATE_MILLIS = 1_000;
+    private static final double MAX_FAILURE_PROBABILITY = 0.95;
+    private static final double MIN_SHARE = 0.01;
+
+    private final double delayCostPerSecond;
+    private final double splitTemperature;
+
+    public CostBasedRoutingPolicy() {
+        this(DEFAULT_DELAY_COST_PER_SECOND, DEFAULT_SPLIT_TEMPERATURE);
+    }
+
+    /**
+     * @param delayCostPerSecond quanto um segundo de atraso vale em fração do valor do pagamento
+     * @param splitTemperature   diferença de custo que ainda reparte o tráfego (menor = mais binário)
+     */
+    public CostBasedRoutingPolicy(double delayCostPerSecond, double splitTemperature) {
+        this.delayCostPerSecond = delayCostPerSecond;
+        this.splitTemperature = splitTemperature;
+    }
+
+    @Override
+    public RoutingDecision decide(ProcessorView defaultView, ProcessorView fallbackView) {
+        double defaultCost = expectedCost(defaultView);
+        double fallbackCost = expectedCost(fallbackView);
+
+        if (Double.isInfinite(defaultCost) && Double.isInfinite(fallbackCost)) {
+            return new LatencyRoutingPolicy().decide(defaultView, fallbackView);
+        }
+        if (Double.isInfinite(fallbackCost)) {
+            return RoutingDecision.ALL_DEFAULT;
+        }
+        if (Double.isInfinite(defaultCost)) {
+            long recoveryMillis = Math.max(MIN_RECOVERY_ESTIMATE_MILLIS, defaultView.unavailableForMillis());
+            double waitCost = defaultView.fee() + delayCostPerSecond * recoveryMillis / 1000.0;
+            return waitCost < fallbackCost ? RoutingDecision.HOLD : RoutingDecision.ALL_FALLBACK;
+        }
+
+        double defaultWeight = 1 / (1 + Math.exp((defaultCost - fallbackCost) / splitTemperature));
+        if (defaultWeight > 1 - MIN_SHARE) {
+            return RoutingDecision.ALL_DEFAULT;
+        }
+        return defaultWeight < MIN_SHARE ? RoutingDecision.ALL_FALLBACK : RoutingDecision.split(defaultWeight);
+    }
+
+    double expectedCost(ProcessorView view) {
+        if (view.failing() || view.latencyMillis() == Integer.MAX_VALUE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double failureProbability = Math.min(view.failureProbability(), MAX_FAILURE_PROBABILITY);
+        double expectedSeconds = view.latencyMillis() / 1000.0 / (1 - failureProbability);
+        return view.fee() + delayCostPerSecond * expectedSeconds;
+    }
+}
@@ -1,34 +1,218 @@
 package villanidev.jproxypayment.service.processorgateway;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
+import villanidev.jproxypayment.metrics.MetricsRegistry;
+
 import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Eleição do roteamento entre as instâncias.
+ * <ul>
+ *   <li>Um líder por vez, por lease no Redis ({@link #LEASE_KEY}, renovada a cada segundo). Cada
+ *       mandato novo recebe um fencing token crescente ({@link #FENCE_KEY}).</li>
+ *   <li>Só o líder consulta o health check dos processadores e decide. Ele publica o
+ *       {@link ClusterRoutingState} no canal {@link #STATE_CHANNEL} a cada mudança de saúde e a
+ *       cada renovação, e grava o último em {@link #STATE_KEY} para quem (re)conecta.</li>
+ *   <li>A publicação só acontece se a lease ainda for do token que a pede (script atômico), e os
+ *       assinantes descartam estados com token menor que o último aplicado: um líder antigo que
+ *       acorda depois de perder a lease não sobrescreve o novo.</li>
+ *   <li>Cada instância aplica o estado recebido num snapshot volátil; {@link #route()} é só uma
+ *       leitura dele mais os circuit breakers locais, sem I/O.</li>
+ * </ul>
+ */
 public class DistributedProcessorSelector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedProcessorSelector.class);
 
     record ProcessorHealth(boolean isFailing, int responseTime) {}
 
-    private static final String REDIS_KEY = "best_processor";
+    // Estatística observada nos pagamentos reais, agregada entre as instâncias
+    record ObservedStats(long samples, double errorRate, long p50Millis, long p99Millis) {
+        static final ObservedStats EMPTY = new ObservedStats(0, 0, 0, 0);
+    }
+
+    private static final String STATE_KEY = "best_processor";
+    private static final String STATE_CHANNEL = "routing_state";
+    private static final String LEASE_KEY = "routing_leader:lease";
+    private static final String FENCE_KEY = "routing_leader:fence";
     private static final String HEALTH_KEY_PREFIX = "processor_health:";
-    private static final Duration HEALTH_TTL = Duration.ofSeconds(4);
-    public static final long CACHE_REFRESH_PERIOD = Duration.ofSeconds(1).toMillis();
+    private static final String STATS_KEY_PREFIX = "processor_stats:";
+    // Dois ciclos de health check (5s) com folga: um 429 isolado não apaga a última saúde conhecida
+    private static final Duration HEALTH_TTL = Duration.ofSeconds(11);
+    private static final Duration STATS_TTL = Duration.ofSeconds(5);
+    private static final Duration LEASE_DURATION = Duration.ofSeconds(3);
+    private static final Duration STATE_TTL = Duration.ofSeconds(10);
+    private static final long MIN_OBSERVED_SAMPLES = 20;
+    private static final double MAX_OBSERVED_ERROR_RATE = 0.5;
+    private static final long MIN_RESUBSCRIBE_BACKOFF_MILLIS = 100;
+    private static final long MAX_RESUBSCRIBE_BACKOFF_MILLIS = 2_000;
+    private static final Histogram LEASE_ROUNDTRIP = Metrics.REGISTRY.histogram("jproxy_redis_roundtrip_seconds",
+            "Redis calls by operation, including the pool checkout", Histogram.ROUNDTRIP_BUCKETS,
+            "operation", "routing_lease");
+
+    /**
+     * Adquire ou renova a lease. KEYS = lease, fence; ARGV = instanceId, duração em ms.
+     * Retorna o fencing token do mandato (novo se a lease estava livre) ou 0 se outra
+     * instância a detém. Valor da lease: {@code <token>:<instanceId>}.
+     */
+    private static final String ACQUIRE_LEASE_SCRIPT = """
+            local holder = redis.call('GET', KEYS[1])
+            if holder then
+                local sep = string.find(holder, ':', 1, true)
+                if string.sub(holder, sep + 1) == ARGV[1] then
+                    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                    return tonumber(string.sub(holder, 1, sep - 1))
+                end
+                return 0
+            end
+            local token = redis.call('INCR', KEYS[2])
+            redis.call('SET', KEYS[1], token .. ':' .. ARGV[1], 'PX', ARGV[2])
+            return token
+            """;
+
+    /**
+     * Publica o estado só se a lease ainda for {@code <token>:<instanceId>}.
+     * KEYS = lease, estado; ARGV = token, instanceId, estado codificado, canal, TTL do estado (s).
+     */
+    private static final String PUBLISH_STATE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] .. ':' .. ARGV[2] then
+                return 0
+            end
+            redis.call('SET', KEYS[2], ARGV[3], 'EX', ARGV[5])
+            redis.call('PUBLISH', ARGV[4], ARGV[3])
+            return 1
+            """;
+
     private final JedisPool jedisPool;
-    private final AtomicReference<String> cachedBestProcessor = new AtomicReference<>("default");
     private final String instanceId;
-    private volatile long lastCacheUpdate = 0;
+    private final ProcessorEndpoint defaultEndpoint;
+    private final ProcessorEndpoint fallbackEndpoint;
+    private final RoutingPolicy routingPolicy;
+    // Desde quando (epoch millis) cada processador aparece como falhando na eleição
+    private final Map<String, Long> unavailableSince = new ConcurrentHashMap<>();
+    private final Map<String, String> scriptShas = new ConcurrentHashMap<>();
+    private volatile ClusterRoutingState state;
+    // Token do mandato atual (0 = não é líder) e até quando a lease vale sem nova renovação
+    private volatile long leaderToken;
+    private volatile long leaseValidUntil;
 
-    public DistributedProcessorSelector(JedisPool jedisPool, String instanceId) {
+    public DistributedProcessorSelector(JedisPool jedisPool,
+                                        String instanceId,
+                                        ProcessorEndpoint defaultEndpoint,
+                                        ProcessorEndpoint fallbackEndpoint,
+                                        RoutingPolicy routingPolicy) {
         this.jedisPool = jedisPool;
         this.instanceId = instanceId;
+        this.defaultEndpoint = defaultEndpoint;
+        this.fallbackEndpoint = fallbackEndpoint;
+        this.routingPolicy = routingPolicy;
+        this.state = ClusterRoutingState.initial(defaultEndpoint, fallbackEndpoint);
+    }
+
+    /**
+     * Registra as métricas e assina o canal do estado de roteamento; fora do construtor para
+     * não expor a instância antes de ela estar pronta.
+     */
+    public void start() {
+        registerMetrics(Metrics.REGISTRY);
+        Thread.ofVirtual().name("routingStateSubscriberVthread-", 0L).start(this::subscribeLoop);
+    }
+
+    private void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("jproxy_routing_leader", "1 when this instance holds the routing lease",
+                () -> isLeader() ? 1 : 0);
+        registry.gauge("jproxy_routing_fencing_token", "Fencing token of the applied routing state",
+                () -> state.fencingToken());
+        registry.gauge("jproxy_routing_default_weight", "Elected share of traffic for the default processor",
+                () -> state.decision().defaultWeight());
+        registry.gauge("jproxy_routing_hold", "1 when the elected decision holds payments for the default",
+                () -> state.decision().hold() ? 1 : 0);
+        registry.gauge("jproxy_routing_state_age_seconds", "Age of the applied routing state",
+                () -> (System.currentTimeMillis() - state.receivedAtMillis()) / 1000.0);
     }
 
-    public String selectBestProcessor() {
-        if (shouldRefreshCache()) {
-            refreshCache();
+    /**
+     * Decisão de roteamento eleita (cluster), sobreposta localmente pelos circuit breakers: o peso
+     * de um processador que não aceita tráfego passa para o outro; se nenhum aceita, segura.
+     */
+    public RoutingDecision route() {
+        RoutingDecision elected = state.decision();
+        if (elected.hold()) {
+            return elected;
+        }
+        boolean defaultAllowed = defaultEndpoint.circuitBreaker().allowsTraffic();
+        boolean fallbackAllowed = fallbackEndpoint.circuitBreaker().allowsTraffic();
+        if (defaultAllowed && fallbackAllowed) {
+            return elected;
+        }
+        if (defaultAllowed) {
+            return RoutingDecision.ALL_DEFAULT;
+        }
+        return fallbackAllowed ? RoutingDecision.ALL_FALLBACK : RoutingDecision.HOLD;
+    }
+
+    /**
+     * True quando os dois processadores estão fora: pelo último estado publicado ainda válido ou
+     * com o circuit breaker aberto. Sem estado recente nenhum dos dois é considerado fora.
+     */
+    public boolean areAllProcessorsFailing() {
+        ClusterRoutingState current = state;
+        boolean fresh = System.currentTimeMillis() - current.receivedAtMillis() <= STATE_TTL.toMillis();
+        return isKnownFailing(defaultEndpoint, current.defaultView(), fresh)
+                && isKnownFailing(fallbackEndpoint, current.fallbackView(), fresh);
+    }
+
+    private static boolean isKnownFailing(ProcessorEndpoint endpoint, ProcessorView view, boolean fresh) {
+        return endpoint.circuitBreaker().isOpen() || fresh && view.failing();
+    }
+
+    /**
+     * Se esta instância detém a lease de líder (e portanto deve fazer os health checks).
+     */
+    public boolean isLeader() {
+        return leaderToken != 0 && System.currentTimeMillis() < leaseValidUntil;
+    }
+
+    /**
+     * Adquire ou renova a lease; sendo líder, reelege e publica o estado (serve também de
+     * heartbeat para quem perdeu alguma mensagem). Chamado periodicamente por todas as instâncias.
+     */
+    public void maintainLeadership() {
+        long startNanos = System.nanoTime();
+        try (Jedis jedis = jedisPool.getResource()) {
+            long requestedAt = System.currentTimeMillis();
+            long token = ((Number) evalScript(jedis, ACQUIRE_LEASE_SCRIPT,
+                    List.of(LEASE_KEY, FENCE_KEY),
+                    List.of(instanceId, Long.toString(LEASE_DURATION.toMillis())))).longValue();
+            LEASE_ROUNDTRIP.recordSince(startNanos);
+            if (token == 0) {
+                if (leaderToken != 0) {
+                    LOGGER.info("Lost routing leadership, token {}", leaderToken);
+                }
+                leaderToken = 0;
+                return;
+            }
+            if (token != leaderToken) {
+                LOGGER.info("Acquired routing leadership, token {}", token);
+            }
+            leaderToken = token;
+            // Conta a partir do pedido, não da resposta: a lease no Redis começou antes
+            leaseValidUntil = requestedAt + LEASE_DURATION.toMillis();
+            electAndPublish(jedis);
+        } catch (Exception e) {
+            LOGGER.warn("Error maintaining routing leadership: {}", e.getMessage());
         }
-        return cachedBestProcessor.get();
     }
 
     public void updateProcessorHealth(String processor, boolean isHealthy, int responseTime) {
@@ -39,62 +223,202 @@ public class DistributedProcessorSelector {
                     responseTime,
                     Instant.now().getEpochSecond());
 
+            // Gravada no Redis para que um novo líder já comece com a última saúde conhecida
             jedis.setex(healthKey, HEALTH_TTL.getSeconds(), healthValue);
 
-            tryAcquireLockAndElectBestProcessor(jedis);
+            if (isLeader()) {
+                electAndPublish(jedis);
+            }
         }
     }
 
-    private boolean shouldRefreshCache() {
-        return System.currentTimeMillis() - lastCacheUpdate > CACHE_REFRESH_PERIOD;
+    /**
+     * Publica p50/p99/taxa de erro observados por esta instância em
+     * {@code processor_stats:<processor>} (hash com um campo por instância), lidos na eleição.
+     */
+    public void publishObservedStats() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Transaction transaction = jedis.multi();
+            publishObservedStats(transaction, defaultEndpoint.latencyStats());
+            publishObservedStats(transaction, fallbackEndpoint.latencyStats());
+            transaction.exec();
+        } catch (Exception e) {
+            LOGGER.warn("Error publishing processor stats: {}", e.getMessage());
+        }
     }
 
-    private void refreshCache() {
-        try (Jedis jedis = jedisPool.getResource()) {
-            String currentBest = jedis.get(REDIS_KEY);
-            if (currentBest != null) {
-                cachedBestProcessor.set(currentBest);
-                lastCacheUpdate = System.currentTimeMillis();
-            }
+    private void publishObservedStats(Transaction transaction, ProcessorLatencyStats latencyStats) {
+        ProcessorLatencyStats.Snapshot snapshot = latencyStats.snapshot();
+        String statsKey = STATS_KEY_PREFIX + latencyStats.processor();
+        String statsValue = snapshot.samples() + ":"
+                + snapshot.errors() + ":"
+                + snapshot.p50Micros() + ":"
+                + snapshot.p99Micros() + ":"
+                + System.currentTimeMillis();
+        transaction.hset(statsKey, instanceId, statsValue);
+        transaction.expire(statsKey, STATS_TTL.getSeconds());
+    }
+
+    private void electAndPublish(Jedis jedis) {
+        long token = leaderToken;
+        ProcessorView defaultView = processorView(jedis, defaultEndpoint);
+        ProcessorView fallbackView = processorView(jedis, fallbackEndpoint);
+        ClusterRoutingState elected = new ClusterRoutingState(token,
+                routingPolicy.decide(defaultView, fallbackView),
+                defaultView,
+                fallbackView,
+                System.currentTimeMillis());
+        String encoded = elected.encode();
+        long published = ((Number) evalScript(jedis, PUBLISH_STATE_SCRIPT,
+                List.of(LEASE_KEY, STATE_KEY),
+                List.of(Long.toString(token), instanceId, encoded, STATE_CHANNEL,
+                        Long.toString(STATE_TTL.getSeconds())))).longValue();
+        if (published == 0) {
+            // A lease expirou ou mudou de dono entre a renovação e a publicação
+            LOGGER.info("Routing state not published, lease lost by token {}", token);
+            leaderToken = 0;
+            return;
         }
+        if (!elected.decision().equals(state.decision())) {
+            LOGGER.info("Setting routing decision: {}", elected.decision().encode());
+        }
+        apply(elected);
     }
 
-    private void tryAcquireLockAndElectBestProcessor(Jedis jedis) {
-        String lockKey = REDIS_KEY + ":lock";
-        String lockValue = instanceId + ":" + System.currentTimeMillis();
+    /**
+     * Assina o canal de estado com uma conexão dedicada; a cada (re)conexão lê o último estado
+     * gravado, para não depender da próxima publicação.
+     */
+    private void subscribeLoop() {
+        long backoffMillis = MIN_RESUBSCRIBE_BACKOFF_MILLIS;
+        while (true) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                String current = jedis.get(STATE_KEY);
+                if (current != null) {
+                    applyEncoded(current);
+                }
+                backoffMillis = MIN_RESUBSCRIBE_BACKOFF_MILLIS;
+                jedis.subscribe(new JedisPubSub() {
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        applyEncoded(message);
+                    }
+                }, STATE_CHANNEL);
+            } catch (Exception e) {
+                LOGGER.warn("Routing state subscription lost, retrying in {}ms: {}", backoffMillis, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RESUBSCRIBE_BACKOFF_MILLIS);
+            }
+        }
+    }
 
+    private void applyEncoded(String encoded) {
         try {
-            if (jedis.setnx(lockKey, lockValue) == 1) {
-                jedis.expire(lockKey, 1);
-
-                String bestProcessor = electBestProcessor(jedis);
-                jedis.setex(REDIS_KEY, HEALTH_TTL.getSeconds(), bestProcessor);
-                cachedBestProcessor.set(bestProcessor);
-                System.out.println("Setting best processor: "+ bestProcessor);
-                lastCacheUpdate = System.currentTimeMillis();
-            }
-        } finally {
-            if (lockValue.equals(jedis.get(lockKey))) {
-                jedis.del(lockKey);
+            apply(ClusterRoutingState.decode(encoded, defaultEndpoint, fallbackEndpoint, System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Ignoring malformed routing state: {}", encoded);
+        }
+    }
+
+    /**
+     * Fencing do lado de quem recebe: estado com token menor que o atual é de um mandato
+     * anterior e é descartado, a menos que o atual já tenha expirado (o contador de tokens
+     * recomeça se o Redis perder os dados).
+     */
+    synchronized void apply(ClusterRoutingState received) {
+        ClusterRoutingState current = state;
+        boolean currentExpired = received.receivedAtMillis() - current.receivedAtMillis() > STATE_TTL.toMillis();
+        if (received.fencingToken() >= current.fencingToken() || currentExpired) {
+            state = received;
+        }
+    }
+
+    private Object evalScript(Jedis jedis, String script, List<String> keys, List<String> args) {
+        String sha = scriptShas.get(script);
+        if (sha != null) {
+            try {
+                return jedis.evalsha(sha, keys, args);
+            } catch (JedisNoScriptException e) {
+                // Script cache do Redis foi limpo (restart/SCRIPT FLUSH): recarrega abaixo
             }
         }
+        sha = jedis.scriptLoad(script);
+        scriptShas.put(script, sha);
+        return jedis.evalsha(sha, keys, args);
     }
 
-    private String electBestProcessor(Jedis jedis) {
-        ProcessorHealth defaultHealth = getProcessorHealth(jedis, "default");
-        ProcessorHealth fallbackHealth = getProcessorHealth(jedis, "fallback");
+    /**
+     * Com amostras suficientes dos pagamentos reais, o p99 observado substitui o minResponseTime
+     * do health check, a taxa de erro vira a probabilidade de falha e, se alta, marca o
+     * processador como falhando.
+     */
+    private ProcessorView processorView(Jedis jedis, ProcessorEndpoint endpoint) {
+        ProcessorHealth health = getProcessorHealth(jedis, endpoint.name());
+        ObservedStats observed = getObservedStats(jedis, endpoint.name());
 
-        if (!defaultHealth.isFailing() && !fallbackHealth.isFailing()) {
-            return defaultHealth.responseTime() <= fallbackHealth.responseTime() ?
-                    "default" : "fallback";
-        } else if (!defaultHealth.isFailing()) {
-            return "default";
-        } else if (!fallbackHealth.isFailing()) {
-            return "fallback";
+        boolean isFailing = health.isFailing();
+        long latencyMillis = health.responseTime();
+        double failureProbability = 0;
+        if (observed.samples() >= MIN_OBSERVED_SAMPLES) {
+            isFailing = isFailing || observed.errorRate() >= MAX_OBSERVED_ERROR_RATE;
+            failureProbability = observed.errorRate();
+            if (latencyMillis != Integer.MAX_VALUE) {
+                latencyMillis = Math.max(observed.p99Millis(), latencyMillis);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long unavailableForMillis = 0;
+        if (isFailing) {
+            unavailableForMillis = now - unavailableSince.computeIfAbsent(endpoint.name(), __ -> now);
         } else {
-            return defaultHealth.responseTime() <= fallbackHealth.responseTime() ?
-                    "default" : "fallback";
+            unavailableSince.remove(endpoint.name());
+        }
+
+        return new ProcessorView(endpoint.name(),
+                endpoint.fee(),
+                isFailing,
+                latencyMillis,
+                failureProbability,
+                unavailableForMillis);
+    }
+
+    /**
+     * Junta o que cada instância publicou: p50 e taxa de erro ponderados pelo número de amostras,
+     * p99 pelo pior entre as instâncias (conservador). Entradas velhas são ignoradas.
+     */
+    private ObservedStats getObservedStats(Jedis jedis, String processor) {
+        Map<String, String> perInstance = jedis.hgetAll(STATS_KEY_PREFIX + processor);
+        long oldest = System.currentTimeMillis() - STATS_TTL.toMillis();
+
+        long samples = 0;
+        long errors = 0;
+        double weightedP50Micros = 0;
+        long p99Micros = 0;
+        for (String statsValue : perInstance.values()) {
+            String[] parts = statsValue.split(":");
+            long instanceSamples = Long.parseLong(parts[0]);
+            if (instanceSamples == 0 || Long.parseLong(parts[4]) < oldest) {
+                continue;
+            }
+            samples += instanceSamples;
+            errors += Long.parseLong(parts[1]);
+            weightedP50Micros += (double) Long.parseLong(parts[2]) * instanceSamples;
+            p99Micros = Math.max(p99Micros, Long.parseLong(parts[3]));
+        }
+
+        if (samples == 0) {
+            return ObservedStats.EMPTY;
         }
+        return new ObservedStats(samples,
+                (double) errors / samples,
+                (long) (weightedP50Micros / samples) / 1_000,
+                p99Micros / 1_000);
     }
 
     private ProcessorHealth getProcessorHealth(Jedis jedis, String processor) {
@@ -0,0 +1,105 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.exception.PaymentProcessingException;
+import villanidev.jproxypayment.exception.PaymentRejectedException;
+import villanidev.jproxypayment.logging.LogSampler;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Envia o pagamento para POST {@code <baseUrl>/payments} de um processador. O corpo vem pronto
+ * em bytes do {@link PaymentRequestEncoder} e segue pelo {@link ProcessorHttpClient} escolhido
+ * em PROCESSOR_HTTP_CLIENT; só o status da resposta importa.
+ */
+public class HttpPaymentProcessor implements PaymentProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpPaymentProcessor.class);
+
+    private static final String PAYMENTS_PATH = "/payments";
+
+    private final String name;
+    private final double fee;
+    private final ProcessorHttpClient httpClient;
+    private final ProcessorLatencyStats latencyStats;
+    // Criados no start(): antes dele o processador não recebe pagamentos
+    private Histogram requestLatency;
+    private Counter requestErrors;
+    private final LogSampler failureSampler = new LogSampler(Duration.ofSeconds(1), 5);
+
+    public HttpPaymentProcessor(String name, String baseUrl, double fee, ProcessorLatencyStats latencyStats) {
+        this(name, fee, ProcessorHttpClient.create(name,
+                URI.create(baseUrl.endsWith(PAYMENTS_PATH) ? baseUrl : baseUrl + PAYMENTS_PATH)), latencyStats);
+    }
+
+    public HttpPaymentProcessor(String name, double fee, ProcessorHttpClient httpClient, ProcessorLatencyStats latencyStats) {
+        this.name = name;
+        this.fee = fee;
+        this.httpClient = httpClient;
+        this.latencyStats = latencyStats;
+    }
+
+    @Override
+    public void start() {
+        requestLatency = Metrics.REGISTRY.histogram("jproxy_processor_request_seconds",
+                "Payment calls to the processor, successful or not", Histogram.REQUEST_BUCKETS, "processor", name);
+        requestErrors = Metrics.REGISTRY.counter("jproxy_processor_request_errors_total",
+                "Payment calls that failed (status, timeout or connection)", "processor", name);
+    }
+
+    @Override
+    public CompletableFuture<Void> processPayment(PaymentEvent event) {
+        UUID correlationId = event.request().correlationId();
+        byte[] requestBody = PaymentRequestEncoder.encode(
+                correlationId.getMostSignificantBits(),
+                correlationId.getLeastSignificantBits(),
+                event.request().amountCents(),
+                event.timestamp().toEpochMilli());
+
+        long startNanos = System.nanoTime();
+        return httpClient.postPayment(requestBody, latencyStats.requestTimeout())
+                .thenAccept(this::checkStatus)
+                .whenComplete((__, e) -> {
+                    long latencyNanos = System.nanoTime() - startNanos;
+                    latencyStats.record(latencyNanos, e == null);
+                    requestLatency.recordNanos(latencyNanos);
+                    if (e != null) {
+                        requestErrors.increment();
+                    }
+                });
+    }
+
+    private void checkStatus(int statusCode) {
+        // 422: correlationId já processado (ex.: retentativa após timeout), conta como sucesso
+        if (statusCode / 100 == 2 || statusCode == 422) {
+            return;
+        }
+        if (failureSampler.tryAcquire()) {
+            LOGGER.warn("{} processor failed to process payment, status: {} ({} similar suppressed)",
+                    name, statusCode, failureSampler.drainSuppressed());
+        }
+        if (statusCode / 100 == 4 && statusCode != 429) {
+            throw new CompletionException(new PaymentRejectedException(
+                    name + " processor rejected payment with status " + statusCode));
+        }
+        throw new CompletionException(new PaymentProcessingException(
+                name + " processor returned status " + statusCode));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public double getFee() {
+        return fee;
+    }
+}
@@ -0,0 +1,53 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link ProcessorHttpClient} sobre o java.net.http.HttpClient, com o pool de conexões implícito dele.
+ */
+public class JdkProcessorHttpClient implements ProcessorHttpClient {
+    private static final Duration CONN_TIMEOUT = Duration.ofMillis(200);
+
+    private final HttpClient httpClient;
+    // URI e cabeçalhos fixos; cada pagamento copia o template e só acrescenta corpo e timeout
+    private final HttpRequest.Builder requestTemplate;
+    private final ExecutorService executor;
+
+    public JdkProcessorHttpClient(String name, URI paymentUri) {
+        this.requestTemplate = HttpRequest.newBuilder(paymentUri)
+                .header("Content-Type", "application/json");
+        this.executor = Executors.newFixedThreadPool(
+                2,
+                Metrics.countingVirtualThreads(Thread.ofVirtual().name(name + "PaymentProcessorVthread", 0L).factory())
+        );
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(CONN_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<Integer> postPayment(byte[] body, Duration timeout) {
+        HttpRequest httpRequest = requestTemplate.copy()
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .timeout(timeout)
+                .build();
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                .thenApply(HttpResponse::statusCode);
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+        executor.shutdown();
+    }
+}
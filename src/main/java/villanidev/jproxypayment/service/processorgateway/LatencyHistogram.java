@@ -0,0 +1,72 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latência log-linear (no espírito do HdrHistogram) com memória fixa: valores em
+ * microssegundos, 32 buckets lineares até 32µs e depois 16 sub-buckets por potência de dois
+ * (erro relativo de ~6%), até ~16s. Gravar é um incremento atômico, sem alocação.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final long MAX_VALUE_MICROS = (1L << 24) - 1;
+    static final int BUCKETS = indexOf(MAX_VALUE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    void record(long latencyMicros, boolean success) {
+        counts.incrementAndGet(indexOf(Math.max(0, Math.min(latencyMicros, MAX_VALUE_MICROS))));
+        samples.incrementAndGet();
+        if (!success) {
+            errors.incrementAndGet();
+        }
+    }
+
+    long samples() {
+        return samples.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    long count(int bucket) {
+        return counts.get(bucket);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        samples.set(0);
+        errors.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int mantissa = (int) (value >>> exponent);
+        return SUB_BUCKETS + (exponent - 1) * HALF_SUB_BUCKETS + (mantissa - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Valor representativo (ponto médio) do bucket.
+     */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long mantissa = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        long lower = mantissa << exponent;
+        return lower + ((1L << exponent) >>> 1);
+    }
+}
@@ -0,0 +1,17 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+/**
+ * Escolha binária original: o processador disponível com menor latência leva todo o tráfego;
+ * com os dois falhando, o de menor latência mesmo assim.
+ */
+public final class LatencyRoutingPolicy implements RoutingPolicy {
+
+    @Override
+    public RoutingDecision decide(ProcessorView defaultView, ProcessorView fallbackView) {
+        if (defaultView.failing() == fallbackView.failing()) {
+            return defaultView.latencyMillis() <= fallbackView.latencyMillis()
+                    ? RoutingDecision.ALL_DEFAULT : RoutingDecision.ALL_FALLBACK;
+        }
+        return defaultView.failing() ? RoutingDecision.ALL_FALLBACK : RoutingDecision.ALL_DEFAULT;
+    }
+}
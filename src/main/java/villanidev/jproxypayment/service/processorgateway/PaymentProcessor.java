@@ -8,4 +8,10 @@ import java.util.concurrent.CompletableFuture;
 public interface PaymentProcessor {
     CompletableFuture<Void> processPayment(PaymentEvent task) throws PaymentProcessingException;
     double getFee();
+
+    /**
+     * Registra as métricas do processador; chamado uma vez, antes do primeiro pagamento.
+     */
+    default void start() {
+    }
 }
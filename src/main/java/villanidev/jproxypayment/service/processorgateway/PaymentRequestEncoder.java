@@ -0,0 +1,149 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Monta o corpo JSON enviado aos processadores direto em bytes, a partir dos campos primitivos,
+ * sem String.format, UUID.toString nem Instant.toString:
+ * <pre>{"correlationId":"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3","amount":19.90,"requestedAt":"2025-07-15T12:34:56.000Z"}</pre>
+ * O valor sai sempre com duas casas e ponto, independente do locale, e o horário sempre com
+ * milissegundos em UTC.
+ */
+public final class PaymentRequestEncoder {
+
+    private static final byte[] CORRELATION_ID = "{\"correlationId\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT = "\",\"amount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUESTED_AT = ",\"requestedAt\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // Fixo: 36 do UUID + 24 do horário; o valor tem no máximo 20 dígitos + sinal + ponto
+    static final int MAX_LENGTH = CORRELATION_ID.length + 36 + AMOUNT.length + 22
+            + REQUESTED_AT.length + 24 + END.length;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_LENGTH]);
+
+    private PaymentRequestEncoder() {
+    }
+
+    /**
+     * Corpo pronto em um array do tamanho exato (o HttpClient lê o array depois do retorno,
+     * então o rascunho da thread não pode ser entregue a ele).
+     */
+    public static byte[] encode(long correlationIdMsb, long correlationIdLsb, long amountCents, long epochMillis) {
+        byte[] scratch = SCRATCH.get();
+        int length = encodeTo(scratch, 0, correlationIdMsb, correlationIdLsb, amountCents, epochMillis);
+        return Arrays.copyOf(scratch, length);
+    }
+
+    /**
+     * Escreve o corpo em {@code dst} a partir de {@code offset} (precisa de {@link #MAX_LENGTH}
+     * bytes livres) e retorna quantos bytes escreveu.
+     */
+    public static int encodeTo(byte[] dst, int offset, long correlationIdMsb, long correlationIdLsb,
+                               long amountCents, long epochMillis) {
+        int p = put(dst, offset, CORRELATION_ID);
+        p = putUuid(dst, p, correlationIdMsb, correlationIdLsb);
+        p = put(dst, p, AMOUNT);
+        p = putCents(dst, p, amountCents);
+        p = put(dst, p, REQUESTED_AT);
+        p = putIsoInstant(dst, p, epochMillis);
+        p = put(dst, p, END);
+        return p - offset;
+    }
+
+    private static int put(byte[] dst, int p, byte[] src) {
+        System.arraycopy(src, 0, dst, p, src.length);
+        return p + src.length;
+    }
+
+    private static int putUuid(byte[] dst, int p, long msb, long lsb) {
+        p = putHex(dst, p, msb >>> 32, 8);
+        dst[p++] = '-';
+        p = putHex(dst, p, msb >>> 16, 4);
+        dst[p++] = '-';
+        p = putHex(dst, p, msb, 4);
+        dst[p++] = '-';
+        p = putHex(dst, p, lsb >>> 48, 4);
+        dst[p++] = '-';
+        return putHex(dst, p, lsb, 12);
+    }
+
+    private static int putHex(byte[] dst, int p, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[p + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return p + digits;
+    }
+
+    private static int putCents(byte[] dst, int p, long cents) {
+        if (cents < 0) {
+            dst[p++] = '-';
+            cents = -cents;
+        }
+        p = putDecimal(dst, p, cents / 100);
+        dst[p++] = '.';
+        long fraction = cents % 100;
+        dst[p++] = (byte) ('0' + fraction / 10);
+        dst[p++] = (byte) ('0' + fraction % 10);
+        return p;
+    }
+
+    private static int putDecimal(byte[] dst, int p, long value) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[p + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss.SSSZ em UTC; data civil pelo algoritmo days-from-civil de H. Hinnant.
+     */
+    private static int putIsoInstant(byte[] dst, int p, long epochMillis) {
+        long epochSeconds = Math.floorDiv(epochMillis, 1000);
+        int millis = Math.floorMod(epochMillis, 1000);
+        long epochDays = Math.floorDiv(epochSeconds, 86_400);
+        int secondOfDay = Math.floorMod(epochSeconds, 86_400);
+
+        long z = epochDays + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        p = putPadded(dst, p, (int) year, 4);
+        dst[p++] = '-';
+        p = putPadded(dst, p, month, 2);
+        dst[p++] = '-';
+        p = putPadded(dst, p, day, 2);
+        dst[p++] = 'T';
+        p = putPadded(dst, p, secondOfDay / 3600, 2);
+        dst[p++] = ':';
+        p = putPadded(dst, p, secondOfDay / 60 % 60, 2);
+        dst[p++] = ':';
+        p = putPadded(dst, p, secondOfDay % 60, 2);
+        dst[p++] = '.';
+        p = putPadded(dst, p, millis, 3);
+        dst[p++] = 'Z';
+        return p;
+    }
+
+    private static int putPadded(byte[] dst, int p, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[p + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+}
@@ -0,0 +1,583 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cliente HTTP/1.1 keep-alive próprio para o endpoint de pagamentos de um processador: um pool
+ * fixo de conexões abertas já no start, todas num único Selector.
+ * <ul>
+ *   <li>Cada chamada vai para a conexão pronta com menos requisições em voo; com
+ *       PROCESSOR_PIPELINE_DEPTH &gt; 1 uma conexão aceita várias em pipeline (respostas na ordem).</li>
+ *   <li>Timeout, erro de leitura ou resposta inválida derrubam só aquela conexão: as chamadas em
+ *       voo nela falham na hora (a retentativa decide o que fazer) e ela reconecta, imediatamente
+ *       na primeira falha e com backoff nas seguintes.</li>
+ *   <li>Sem nenhuma conexão utilizável, as chamadas na espera falham na hora em vez de esperar o
+ *       timeout, para a seleção de processador reagir.</li>
+ * </ul>
+ * As conclusões rodam num executor virtual, nunca na thread do Selector. A resolução de DNS
+ * também: roda numa thread virtual no start e de novo a cada falha de conexão (o IP do
+ * processador muda quando o container reinicia), e o Selector só usa o endereço já resolvido.
+ */
+public final class PooledNioProcessorHttpClient implements ProcessorHttpClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledNioProcessorHttpClient.class);
+
+    private enum State { CLOSED, CONNECTING, READY }
+
+    private static final int POOL_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("PROCESSOR_POOL_SIZE", "32"));
+    private static final int PIPELINE_DEPTH = Integer.parseInt(
+            System.getenv().getOrDefault("PROCESSOR_PIPELINE_DEPTH", "1"));
+    private static final long CONNECT_TIMEOUT_NANOS = Duration.ofMillis(200).toNanos();
+    private static final long MIN_RECONNECT_BACKOFF_NANOS = Duration.ofMillis(50).toNanos();
+    private static final long MAX_RECONNECT_BACKOFF_NANOS = Duration.ofSeconds(2).toNanos();
+    private static final long SELECT_TIMEOUT_MILLIS = 5;
+    private static final int IN_BUFFER_SIZE = 4 * 1024;
+    private static final byte[] CRLF_CRLF = {'\r', '\n', '\r', '\n'};
+
+    private static final class Call {
+        final byte[] body;
+        final long deadline;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Call(byte[] body, long deadline) {
+            this.body = body;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Connection {
+        SocketChannel channel;
+        SelectionKey key;
+        State state = State.CLOSED;
+        long connectStartedAt;
+        long reconnectAt;
+        int consecutiveFailures;
+        final ArrayDeque<Call> inFlight = new ArrayDeque<>();
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        ByteBuffer in = ByteBuffer.allocate(IN_BUFFER_SIZE);
+    }
+
+    private final String name;
+    private final InetSocketAddress address;
+    private final byte[] requestHead;
+    private final int pipelineDepth;
+    private final Selector selector;
+    private final Connection[] connections;
+    private final Queue<Call> submissions = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Call> waiting = new ArrayDeque<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final AtomicBoolean resolving = new AtomicBoolean();
+    private volatile InetSocketAddress resolvedAddress;
+    private final ExecutorService completionExecutor;
+    private final Thread eventLoop;
+    private volatile boolean closing;
+
+    public PooledNioProcessorHttpClient(String name, URI paymentUri) {
+        this(name, paymentUri, POOL_SIZE, PIPELINE_DEPTH);
+    }
+
+    public PooledNioProcessorHttpClient(String name, URI paymentUri, int poolSize, int pipelineDepth) {
+        this.name = name;
+        int port = paymentUri.getPort() > 0 ? paymentUri.getPort() : 80;
+        this.address = InetSocketAddress.createUnresolved(paymentUri.getHost(), port);
+        String path = paymentUri.getRawPath() == null || paymentUri.getRawPath().isEmpty() ? "/" : paymentUri.getRawPath();
+        this.requestHead = ("POST " + path + " HTTP/1.1\r\n"
+                + "Host: " + paymentUri.getHost() + ":" + port + "\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: ").getBytes(StandardCharsets.US_ASCII);
+        this.pipelineDepth = Math.max(1, pipelineDepth);
+        this.connections = new Connection[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            connections[i] = new Connection();
+        }
+        this.completionExecutor = Executors.newFixedThreadPool(
+                2,
+                Metrics.countingVirtualThreads(Thread.ofVirtual().name(name + "ProcessorClientVthread-", 0L).factory())
+        );
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open selector for " + name + " processor client", e);
+        }
+        resolve();
+        // Thread de plataforma: o select() bloquearia o carrier de uma thread virtual
+        this.eventLoop = Thread.ofPlatform().name(name + "ProcessorClientLoop").daemon(true).start(this::runEventLoop);
+    }
+
+    @Override
+    public CompletableFuture<Integer> postPayment(byte[] body, Duration timeout) {
+        Call call = new Call(body, System.nanoTime() + timeout.toNanos());
+        submissions.offer(call);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+        return call.future;
+    }
+
+    /**
+     * Para o event loop e fecha as conexões; chamadas pendentes falham com IOException.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        selector.wakeup();
+        try {
+            eventLoop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        completionExecutor.shutdown();
+    }
+
+    private void runEventLoop() {
+        // Pré-aquece o pool antes da primeira chamada
+        long now = System.nanoTime();
+        for (Connection connection : connections) {
+            connect(connection, now);
+        }
+
+        while (!closing) {
+            try {
+                selector.select(this::onReady, SELECT_TIMEOUT_MILLIS);
+                wakeupPending.set(false);
+                Call call;
+                while ((call = submissions.poll()) != null) {
+                    waiting.add(call);
+                }
+                now = System.nanoTime();
+                maintainConnections(now);
+                dispatchWaiting(now);
+            } catch (Exception e) {
+                LOGGER.error("{} processor client loop error", name, e);
+            }
+        }
+
+        IOException closed = new IOException(name + " processor client closed");
+        for (Connection connection : connections) {
+            fail(connection, closed, now);
+        }
+        Call call;
+        while ((call = submissions.poll()) != null) {
+            waiting.add(call);
+        }
+        failWaiting(closed);
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // encerrando de qualquer forma
+        }
+    }
+
+    /**
+     * Resolve o endereço fora do Selector; pedidos durante uma resolução em andamento são
+     * ignorados. Ao terminar acorda o loop para as conexões fechadas tentarem de novo.
+     */
+    private void resolve() {
+        if (closing || !resolving.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name(name + "ProcessorResolverVthread-", 0L).start(() -> {
+            try {
+                InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+                if (resolved.isUnresolved()) {
+                    LOGGER.warn("Could not resolve {} processor host {}", name, address.getHostString());
+                } else {
+                    resolvedAddress = resolved;
+                }
+            } finally {
+                resolving.set(false);
+                selector.wakeup();
+            }
+        });
+    }
+
+    private void onReady(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                connection.channel.finishConnect();
+                connection.state = State.READY;
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read(connection);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Só derruba se a chave ainda é da conexão atual (não foi derrubada no meio do processamento)
+            if (connection.key == key) {
+                fail(connection, e instanceof IOException io ? io : new IOException(e), System.nanoTime());
+            }
+        }
+    }
+
+    private void maintainConnections(long now) {
+        for (Connection connection : connections) {
+            switch (connection.state) {
+                case CLOSED -> {
+                    if (now - connection.reconnectAt >= 0) {
+                        connect(connection, now);
+                    }
+                }
+                case CONNECTING -> {
+                    if (now - connection.connectStartedAt > CONNECT_TIMEOUT_NANOS) {
+                        fail(connection, new ConnectException(name + " processor connect timed out"), now);
+                    }
+                }
+                case READY -> {
+                    Call head = connection.inFlight.peek();
+                    if (head != null && now - head.deadline > 0) {
+                        // Resposta atrasada: a conexão não serve mais (as respostas seguintes viriam fora de ordem)
+                        fail(connection, new HttpTimeoutException(name + " processor request timed out"), now);
+                    }
+                }
+            }
+        }
+    }
+
+    private void connect(Connection connection, long now) {
+        InetSocketAddress resolved = resolvedAddress;
+        if (resolved == null) {
+            if (resolving.get()) {
+                // Ainda resolvendo: tenta de novo na próxima volta, sem contar como falha
+                connection.reconnectAt = now;
+            } else {
+                resolve();
+                fail(connection, new UnknownHostException(name + " processor host " + address.getHostString()), now);
+            }
+            return;
+        }
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection.channel = channel;
+            connection.connectStartedAt = now;
+            connection.in.clear();
+            connection.out.clear();
+            if (channel.connect(resolved)) {
+                connection.state = State.READY;
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } else {
+                connection.state = State.CONNECTING;
+                connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(connection, e instanceof IOException io ? io : new IOException(e), now);
+        }
+    }
+
+    private void dispatchWaiting(long now) {
+        while (!waiting.isEmpty()) {
+            Call call = waiting.peek();
+            if (now - call.deadline > 0) {
+                waiting.poll();
+                completeExceptionally(call, new HttpTimeoutException(name + " processor request timed out waiting for a connection"));
+                continue;
+            }
+
+            Connection connection = leastLoadedReady();
+            if (connection == null) {
+                if (!anyUsable(now)) {
+                    failWaiting(new ConnectException(name + " processor has no usable connection"));
+                }
+                return;
+            }
+            waiting.poll();
+            try {
+                send(connection, call);
+            } catch (IOException e) {
+                fail(connection, e, now);
+            }
+        }
+    }
+
+    private Connection leastLoadedReady() {
+        Connection best = null;
+        for (Connection connection : connections) {
+            if (connection.state == State.READY
+                    && connection.inFlight.size() < pipelineDepth
+                    && (best == null || connection.inFlight.size() < best.inFlight.size())) {
+                best = connection;
+                if (best.inFlight.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Alguma conexão aberta, conectando ou fechada mas já liberada para reconectar (a que caiu
+     * agora por timeout reconecta na próxima volta; só as que estão em backoff não contam).
+     */
+    private boolean anyUsable(long now) {
+        for (Connection connection : connections) {
+            if (connection.state != State.CLOSED || now - connection.reconnectAt >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void send(Connection connection, Call call) throws IOException {
+        byte[] length = Integer.toString(call.body.length).getBytes(StandardCharsets.US_ASCII);
+        int needed = requestHead.length + length.length + CRLF_CRLF.length + call.body.length;
+        if (connection.out.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(connection.out.capacity() * 2, connection.out.position() + needed));
+            connection.out.flip();
+            larger.put(connection.out);
+            connection.out = larger;
+        }
+        connection.out.put(requestHead).put(length).put(CRLF_CRLF).put(call.body);
+        connection.inFlight.add(call);
+        flush(connection);
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        boolean pending = out.hasRemaining();
+        out.compact();
+        connection.key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (!in.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+            in.flip();
+            larger.put(in);
+            connection.in = in = larger;
+        }
+        if (connection.channel.read(in) < 0) {
+            throw new IOException(name + " processor closed the connection");
+        }
+
+        in.flip();
+        boolean close = false;
+        while (!close) {
+            int start = in.position();
+            int headerEnd = indexOf(in, start, CRLF_CRLF);
+            if (headerEnd < 0) {
+                break;
+            }
+            int status = parseStatus(in, start);
+            long contentLength = 0;
+            boolean chunked = false;
+            for (int line = nextLine(in, start); line < headerEnd; line = nextLine(in, line)) {
+                if (headerIs(in, line, "content-length:")) {
+                    contentLength = parseHeaderNumber(in, line + "content-length:".length());
+                } else if (headerIs(in, line, "transfer-encoding:")) {
+                    chunked = true;
+                } else if (headerIs(in, line, "connection:") && headerValueIs(in, line + "connection:".length(), "close")) {
+                    close = true;
+                }
+            }
+
+            int bodyStart = headerEnd + CRLF_CRLF.length;
+            int end = chunked ? chunkedEnd(in, bodyStart) : (int) Math.min(bodyStart + contentLength, Integer.MAX_VALUE);
+            if (end < 0 || end > in.limit()) {
+                break;
+            }
+            in.position(end);
+
+            Call call = connection.inFlight.poll();
+            if (call == null) {
+                throw new IOException(name + " processor sent an unexpected response");
+            }
+            connection.consecutiveFailures = 0;
+            complete(call, status);
+        }
+        in.compact();
+
+        if (close) {
+            fail(connection, new IOException(name + " processor closed the connection"), System.nanoTime());
+        }
+    }
+
+    private void fail(Connection connection, IOException cause, long now) {
+        if (connection.state == State.CONNECTING) {
+            // Pode ser o endereço antigo de um processador que voltou com outro IP
+            resolve();
+        }
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        if (connection.channel != null) {
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+                // já está sendo descartada
+            }
+        }
+        connection.channel = null;
+        connection.key = null;
+        connection.state = State.CLOSED;
+
+        Call call;
+        while ((call = connection.inFlight.poll()) != null) {
+            completeExceptionally(call, cause);
+        }
+
+        // Primeira falha reconecta já; falhas seguidas esperam cada vez mais
+        int failures = connection.consecutiveFailures++;
+        long backoff = failures == 0 ? 0 : Math.min(MIN_RECONNECT_BACKOFF_NANOS << Math.min(failures - 1, 10), MAX_RECONNECT_BACKOFF_NANOS);
+        connection.reconnectAt = now + backoff;
+    }
+
+    private void failWaiting(IOException cause) {
+        Call call;
+        while ((call = waiting.poll()) != null) {
+            completeExceptionally(call, cause);
+        }
+    }
+
+    private void complete(Call call, int status) {
+        completionExecutor.execute(() -> call.future.complete(status));
+    }
+
+    private void completeExceptionally(Call call, IOException cause) {
+        completionExecutor.execute(() -> call.future.completeExceptionally(cause));
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, byte[] pattern) {
+        int last = buffer.limit() - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int parseStatus(ByteBuffer buffer, int start) throws IOException {
+        // "HTTP/1.1 200 ..."
+        if (buffer.get(start) != 'H' || buffer.get(start + 8) != ' ') {
+            throw new IOException("Malformed status line");
+        }
+        int status = 0;
+        for (int i = start + 9; i < start + 12; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new IOException("Malformed status code");
+            }
+            status = status * 10 + (b - '0');
+        }
+        return status;
+    }
+
+    /**
+     * Início da linha seguinte a {@code from} ou -1 se o CRLF ainda não chegou.
+     */
+    private static int nextLine(ByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.limit() - 1; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean headerIs(ByteBuffer buffer, int line, String lowerName) {
+        if (line + lowerName.length() > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < lowerName.length(); i++) {
+            if (Character.toLowerCase((char) buffer.get(line + i)) != lowerName.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean headerValueIs(ByteBuffer buffer, int from, String lowerValue) {
+        int i = from;
+        while (i < buffer.limit() && buffer.get(i) == ' ') {
+            i++;
+        }
+        return headerIs(buffer, i, lowerValue);
+    }
+
+    private static long parseHeaderNumber(ByteBuffer buffer, int from) throws IOException {
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+            } else if (b != ' ' || digits) {
+                break;
+            }
+        }
+        if (!digits) {
+            throw new IOException("Malformed Content-Length");
+        }
+        return value;
+    }
+
+    /**
+     * Fim do corpo chunked (depois do chunk de tamanho zero e do CRLF final) ou -1 se ainda incompleto.
+     */
+    private static int chunkedEnd(ByteBuffer buffer, int from) throws IOException {
+        int position = from;
+        while (true) {
+            int lineEnd = nextLine(buffer, position);
+            if (lineEnd < 0) {
+                return -1;
+            }
+            long size = 0;
+            boolean digits = false;
+            for (int i = position; i < lineEnd - 2; i++) {
+                int digit = Character.digit(buffer.get(i), 16);
+                if (digit < 0) {
+                    break;
+                }
+                size = size * 16 + digit;
+                digits = true;
+            }
+            if (!digits) {
+                throw new IOException("Malformed chunk size");
+            }
+            if (size == 0) {
+                // Sem trailers: só o CRLF final
+                return lineEnd + 2 <= buffer.limit() ? lineEnd + 2 : -1;
+            }
+            position = (int) (lineEnd + size + 2);
+            if (position > buffer.limit()) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import villanidev.jproxypayment.handler.PaymentBodyParser;
+import villanidev.jproxypayment.server.HttpResponses;
+import villanidev.jproxypayment.server.NioHttpServer;
+import villanidev.jproxypayment.warmup.WarmUpTask;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Caminho de saída para os processadores: {@link PaymentRequestEncoder} e o
+ * {@link ProcessorHttpClient} configurado (PROCESSOR_HTTP_CLIENT), contra um processador
+ * stand-in num {@link NioHttpServer} em loopback. O stand-in interpreta cada corpo com o
+ * {@link PaymentBodyParser} no seu event loop, então o lado de entrada (servidor NIO e parse)
+ * também é exercitado.
+ */
+public final class ProcessorClientWarmUp implements WarmUpTask {
+
+    private static final int PAYMENTS_PER_BATCH = 192;
+    // Poucas chamadas em voo, como os workers fazem: com a JVM ainda fria, 200 conexões
+    // abertas de uma vez estouram o connect timeout do cliente
+    private static final int IN_FLIGHT = 16;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final byte[] PROCESSED = HttpResponses.json(
+            "{\"message\":\"payment processed successfully\"}".getBytes(StandardCharsets.US_ASCII));
+
+    private final PaymentBodyParser parser = new PaymentBodyParser();
+    private final List<CompletableFuture<Integer>> calls = new ArrayList<>(IN_FLIGHT);
+    private NioHttpServer standIn;
+    private ProcessorHttpClient client;
+    private long sequence;
+
+    @Override
+    public String name() {
+        return "processor client";
+    }
+
+    @Override
+    public void open() throws IOException {
+        standIn = NioHttpServer.loopback();
+        // Só o event loop do stand-in usa o parser
+        standIn.route("/payments", exchange -> exchange.respond(
+                parser.parse(exchange.buffer(), exchange.bodyOffset(), exchange.bodyLength())
+                        ? PROCESSED
+                        : HttpResponses.BAD_REQUEST));
+        standIn.start();
+        client = ProcessorHttpClient.create("warmUp", URI.create("http://127.0.0.1:" + standIn.port() + "/payments"));
+    }
+
+    @Override
+    public void runBatch() {
+        long now = System.currentTimeMillis();
+        for (int sent = 0; sent < PAYMENTS_PER_BATCH; sent += IN_FLIGHT) {
+            calls.clear();
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                sequence++;
+                calls.add(client.postPayment(
+                        PaymentRequestEncoder.encode(sequence * 0x9E3779B97F4A7C15L, sequence, 1990 + i, now),
+                        TIMEOUT));
+            }
+            for (CompletableFuture<Integer> call : calls) {
+                int status = call.join();
+                if (status != 200) {
+                    throw new IllegalStateException("Processor stand-in answered " + status);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (client != null) {
+            client.close();
+        }
+        if (standIn != null) {
+            try {
+                standIn.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+/**
+ * O que a seleção sabe de cada processador nesta instância: taxa cobrada, circuit breaker e
+ * latência observada nos pagamentos reais.
+ */
+public record ProcessorEndpoint(String name,
+                                double fee,
+                                CircuitBreaker circuitBreaker,
+                                ProcessorLatencyStats latencyStats) {
+}
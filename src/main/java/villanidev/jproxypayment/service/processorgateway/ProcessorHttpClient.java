@@ -0,0 +1,35 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transporte HTTP até o endpoint de pagamentos de um processador. Só o status importa: o corpo
+ * da resposta é descartado.
+ */
+public interface ProcessorHttpClient extends AutoCloseable {
+
+    /**
+     * POST de um corpo JSON já codificado; completa com o status HTTP ou falha com IOException
+     * (inclusive timeout).
+     */
+    CompletableFuture<Integer> postPayment(byte[] body, Duration timeout);
+
+    /**
+     * Libera conexões e threads; só clientes de vida curta (warm-up) fecham.
+     */
+    @Override
+    void close();
+
+    /**
+     * PROCESSOR_HTTP_CLIENT=nio usa o pool NIO próprio ({@link PooledNioProcessorHttpClient});
+     * o padrão é o java.net.http.HttpClient.
+     */
+    static ProcessorHttpClient create(String name, URI paymentUri) {
+        if ("nio".equalsIgnoreCase(System.getenv("PROCESSOR_HTTP_CLIENT"))) {
+            return new PooledNioProcessorHttpClient(name, paymentUri);
+        }
+        return new JdkProcessorHttpClient(name, paymentUri);
+    }
+}
@@ -0,0 +1,112 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latência e resultado observados nas chamadas reais a um processador nesta instância.
+ * Mantém dois {@link LatencyHistogram}s alternados a cada {@link #WINDOW}: o snapshot junta
+ * o corrente e o anterior, então reflete os últimos 5-10s com memória fixa.
+ */
+public final class ProcessorLatencyStats {
+
+    public record Snapshot(long samples, long errors, long p50Micros, long p99Micros) {
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0);
+
+        public double errorRate() {
+            return samples == 0 ? 0 : (double) errors / samples;
+        }
+    }
+
+    private static final long WINDOW = Duration.ofSeconds(5).toMillis();
+    private static final int MIN_SAMPLES_FOR_TIMEOUT = 50;
+    private static final double TIMEOUT_P99_MULTIPLIER = 1.5;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration MIN_TIMEOUT = Duration.ofMillis(100);
+    private static final Duration MAX_TIMEOUT = Duration.ofMillis(1500);
+
+    private final String processor;
+    private final LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+    private volatile int active = 0;
+    private volatile Duration requestTimeout = DEFAULT_TIMEOUT;
+
+    public ProcessorLatencyStats(String processor) {
+        this.processor = processor;
+    }
+
+    public String processor() {
+        return processor;
+    }
+
+    public void record(long latencyNanos, boolean success) {
+        rotateIfNeeded();
+        histograms[active].record(latencyNanos / 1_000, success);
+    }
+
+    public Snapshot snapshot() {
+        rotateIfNeeded();
+        LatencyHistogram current = histograms[active];
+        LatencyHistogram previous = histograms[active ^ 1];
+
+        long samples = current.samples() + previous.samples();
+        if (samples == 0) {
+            return Snapshot.EMPTY;
+        }
+        long errors = current.errors() + previous.errors();
+
+        long total = 0;
+        long[] merged = new long[LatencyHistogram.BUCKETS];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = current.count(i) + previous.count(i);
+            total += merged[i];
+        }
+        return new Snapshot(samples, errors, percentile(merged, total, 0.50), percentile(merged, total, 0.99));
+    }
+
+    /**
+     * Timeout por requisição derivado do p99 observado (com folga), limitado a [100ms, 1500ms];
+     * sem amostras suficientes usa os 200ms padrão. Recalculado a cada rotação de janela.
+     */
+    public Duration requestTimeout() {
+        rotateIfNeeded();
+        return requestTimeout;
+    }
+
+    private void rotateIfNeeded() {
+        long start = windowStart.get();
+        long now = System.currentTimeMillis();
+        if (now - start < WINDOW || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+
+        Snapshot snapshot = snapshot();
+        requestTimeout = snapshot.samples() < MIN_SAMPLES_FOR_TIMEOUT
+                ? DEFAULT_TIMEOUT
+                : clamp(Duration.ofNanos((long) (snapshot.p99Micros() * 1_000 * TIMEOUT_P99_MULTIPLIER)));
+
+        // O anterior (mais velho) é zerado e passa a ser o corrente
+        int next = active ^ 1;
+        histograms[next].reset();
+        active = next;
+    }
+
+    private static long percentile(long[] counts, long total, double quantile) {
+        long threshold = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold && counts[i] > 0) {
+                return LatencyHistogram.valueOf(i);
+            }
+        }
+        return 0;
+    }
+
+    private static Duration clamp(Duration timeout) {
+        if (timeout.compareTo(MIN_TIMEOUT) < 0) {
+            return MIN_TIMEOUT;
+        }
+        return timeout.compareTo(MAX_TIMEOUT) > 0 ? MAX_TIMEOUT : timeout;
+    }
+}
@@ -0,0 +1,16 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+/**
+ * Visão de um processador entregue à {@link RoutingPolicy}.
+ *
+ * @param latencyMillis        p99 observado (ou minResponseTime do health check sem amostras)
+ * @param failureProbability   taxa de erro observada nas chamadas reais, 0 sem amostras
+ * @param unavailableForMillis há quanto tempo está marcado como falhando, 0 se disponível
+ */
+public record ProcessorView(String name,
+                            double fee,
+                            boolean failing,
+                            long latencyMillis,
+                            double failureProbability,
+                            long unavailableForMillis) {
+}
@@ -0,0 +1,70 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Resultado de uma {@link RoutingPolicy}: a fração do tráfego que vai para o default (o resto
+ * vai para o fallback) ou {@code hold}, segurar os pagamentos esperando o default voltar.
+ */
+public record RoutingDecision(double defaultWeight, boolean hold) {
+
+    public static final RoutingDecision ALL_DEFAULT = new RoutingDecision(1, false);
+    public static final RoutingDecision ALL_FALLBACK = new RoutingDecision(0, false);
+    public static final RoutingDecision HOLD = new RoutingDecision(0, true);
+
+    private static final String HOLD_VALUE = "hold";
+    private static final String SPLIT_PREFIX = "split:";
+
+    public static RoutingDecision split(double defaultWeight) {
+        if (defaultWeight >= 1) {
+            return ALL_DEFAULT;
+        }
+        return defaultWeight <= 0 ? ALL_FALLBACK : new RoutingDecision(defaultWeight, false);
+    }
+
+    /**
+     * Sorteia o processador de um pagamento conforme o peso. Não deve ser chamado em {@code hold}.
+     */
+    public String pick() {
+        if (defaultWeight >= 1) {
+            return "default";
+        }
+        if (defaultWeight <= 0) {
+            return "fallback";
+        }
+        return ThreadLocalRandom.current().nextDouble() < defaultWeight ? "default" : "fallback";
+    }
+
+    /**
+     * Forma gravada no Redis: "default", "fallback", "hold" ou "split:&lt;peso do default&gt;".
+     */
+    public String encode() {
+        if (hold) {
+            return HOLD_VALUE;
+        }
+        if (defaultWeight >= 1) {
+            return "default";
+        }
+        if (defaultWeight <= 0) {
+            return "fallback";
+        }
+        return SPLIT_PREFIX + String.format(Locale.ROOT, "%.4f", defaultWeight);
+    }
+
+    public static RoutingDecision decode(String value) {
+        if (value == null || "default".equals(value)) {
+            return ALL_DEFAULT;
+        }
+        if ("fallback".equals(value)) {
+            return ALL_FALLBACK;
+        }
+        if (HOLD_VALUE.equals(value)) {
+            return HOLD;
+        }
+        if (value.startsWith(SPLIT_PREFIX)) {
+            return split(Double.parseDouble(value.substring(SPLIT_PREFIX.length())));
+        }
+        return ALL_DEFAULT;
+    }
+}
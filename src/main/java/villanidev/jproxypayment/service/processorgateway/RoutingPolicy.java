@@ -0,0 +1,20 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+/**
+ * Política de roteamento entre default e fallback. Implementações devem ser puras (só dependem
+ * das visões recebidas) para poderem ser avaliadas offline com o {@code RoutingTraceReplay} do módulo de benchmarks.
+ */
+public interface RoutingPolicy {
+
+    RoutingDecision decide(ProcessorView defaultView, ProcessorView fallbackView);
+
+    /**
+     * ROUTING_POLICY=latency mantém a escolha binária pela menor latência; o padrão é por custo.
+     */
+    static RoutingPolicy fromName(String name) {
+        if ("latency".equalsIgnoreCase(name)) {
+            return new LatencyRoutingPolicy();
+        }
+        return new CostBasedRoutingPolicy();
+    }
+}
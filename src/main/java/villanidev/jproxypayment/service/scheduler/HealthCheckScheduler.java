@@ -1,5 +1,10 @@
 package villanidev.jproxypayment.service.scheduler;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
 import villanidev.jproxypayment.service.processorgateway.DistributedProcessorSelector;
 
 import java.net.URI;
@@ -7,13 +12,30 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class HealthCheckScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HealthCheckScheduler.class);
+
+    private record HealthCheckMetrics(Histogram latency, Counter ok, Counter rateLimited, Counter error) {
+        static HealthCheckMetrics of(String processor) {
+            return new HealthCheckMetrics(
+                    Metrics.REGISTRY.histogram("jproxy_health_check_seconds", "Health check calls by processor",
+                            Histogram.REQUEST_BUCKETS, "processor", processor),
+                    result(processor, "ok"),
+                    result(processor, "rate_limited"),
+                    result(processor, "error"));
+        }
+
+        private static Counter result(String processor, String result) {
+            return Metrics.REGISTRY.counter("jproxy_health_checks_total", "Health checks by processor and result",
+                    "processor", processor, "result", result);
+        }
+    }
+
     public static final Duration REQUEST_TIMEOUT = Duration.ofMillis(200);
     public static final Duration CONN_TIMEOUT = Duration.ofMillis(200);
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
@@ -22,12 +44,14 @@ public class HealthCheckScheduler {
 
     private final ExecutorService healthCheckExecutor = Executors.newFixedThreadPool(
             2,
-            Thread.ofVirtual().name("healthCheckExecutorVthread-", 0L).factory()
+            Metrics.countingVirtualThreads(Thread.ofVirtual().name("healthCheckExecutorVthread-", 0L).factory())
     );
     private final HttpClient httpClient;
     private final DistributedProcessorSelector processorSelector;
     private final String defaultProcessorUrl;
     private final String fallbackProcessorUrl;
+    private final HealthCheckMetrics defaultMetrics = HealthCheckMetrics.of("default");
+    private final HealthCheckMetrics fallbackMetrics = HealthCheckMetrics.of("fallback");
 
     public HealthCheckScheduler(DistributedProcessorSelector processorSelector,
                                 String defaultProcessorUrl,
@@ -42,39 +66,52 @@ public class HealthCheckScheduler {
     }
 
     public void start() {
-        scheduler.scheduleAtFixedRate(this::checkDefaultHealth, 0, 5, TimeUnit.SECONDS);
-        scheduler.scheduleAtFixedRate(this::checkFallbackHealth, 0, 5, TimeUnit.SECONDS);
+        // Todas as instâncias disputam/renovam a lease; só o líder faz os health checks
+        scheduler.scheduleAtFixedRate(processorSelector::maintainLeadership, 0, 1000, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::checkDefaultHealth, 200, 5000, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::checkFallbackHealth, 200, 5000, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(processorSelector::publishObservedStats, 1, 1, TimeUnit.SECONDS);
     }
 
     private void checkDefaultHealth() {
-        checkProcessorHealth("default", defaultProcessorUrl + "/payments/service-health");
+        if (processorSelector.isLeader()) {
+            checkProcessorHealth("default", defaultProcessorUrl + "/payments/service-health", defaultMetrics);
+        }
     }
 
     private void checkFallbackHealth() {
-        checkProcessorHealth("fallback", fallbackProcessorUrl + "/payments/service-health");
+        if (processorSelector.isLeader()) {
+            checkProcessorHealth("fallback", fallbackProcessorUrl + "/payments/service-health", fallbackMetrics);
+        }
     }
 
-    private void checkProcessorHealth(String processor, String healthUrl) {
-        System.out.println(Thread.currentThread().getName() + "- Monitoring payment processor: " + processor +  " health at: " + LocalDateTime.now());
+    private void checkProcessorHealth(String processor, String healthUrl, HealthCheckMetrics metrics) {
+        LOGGER.debug("Monitoring payment processor {} health", processor);
         try {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(healthUrl))
                     .timeout(REQUEST_TIMEOUT)
                     .build();
 
+            long startNanos = System.nanoTime();
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            metrics.latency().recordSince(startNanos);
 
             if (response.statusCode() == 200) {
-                System.out.println("Resultado ok");
+                LOGGER.debug("Resultado ok: {}", processor);
+                metrics.ok().increment();
                 parseAndUpdateHealth(processor, response.body());
             } else if (response.statusCode() == 429) {
-                System.out.println("Caiu no rate limiting");
+                LOGGER.debug("Caiu no rate limiting: {}", processor);
+                metrics.rateLimited().increment();
             } else {
-                System.out.println("Servico aparentemente fora, status: " + response.statusCode());
+                LOGGER.warn("Servico {} aparentemente fora, status: {}", processor, response.statusCode());
+                metrics.error().increment();
                 processorSelector.updateProcessorHealth(processor, false, Integer.MAX_VALUE);
             }
         } catch (Exception e) {
-            System.out.println("Erro inesperado, servico fora "+ e);
+            LOGGER.warn("Erro inesperado, servico {} fora: {}", processor, e.toString());
+            metrics.error().increment();
             processorSelector.updateProcessorHealth(processor, false, Integer.MAX_VALUE);
         }
     }
@@ -89,7 +126,7 @@ public class HealthCheckScheduler {
 
             processorSelector.updateProcessorHealth(processor, !failing, minResponseTime);
         } catch (Exception e) {
-            System.err.println("Error parsing health check: " + e.getMessage());
+            LOGGER.warn("Error parsing health check: {}", e.getMessage());
             processorSelector.updateProcessorHealth(processor, false, Integer.MAX_VALUE);
         }
     }
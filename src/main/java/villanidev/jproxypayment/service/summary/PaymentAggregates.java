@@ -0,0 +1,221 @@
+package villanidev.jproxypayment.service.summary;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Totais dos pagamentos concluídos por esta instância, em memória, para responder o summary
+ * com janela sem ir ao Redis.
+ *
+ * <p>Um anel de células de 1 ms cobre a janela mais recente ({@code SUMMARY_WINDOW_SECONDS},
+ * arredondada para potência de dois): cada célula guarda, em sequência num {@code long[]},
+ * contagem e centavos do default e do fallback. As células são agrupadas em buckets de
+ * {@link #BUCKET_MILLIS} ms, e uma árvore de Fenwick sobre os buckets (com o mesmo
+ * entrelaçamento) dá a soma de qualquer faixa de buckets inteiros em O(log n). As bordas
+ * parciais de uma consulta são somadas célula a célula (no máximo {@code 2 * (BUCKET_MILLIS - 1)}
+ * células), então o resultado é exato ao milissegundo.
+ *
+ * <p>O que sai do anel (ou chega atrasado demais para ele) é acumulado à parte, com o menor e o
+ * maior timestamp. Uma consulta só é exata se incluir esse acumulado inteiro ou nada dele, e se
+ * começar depois de {@code coveredSinceMillis}: o que a instância concluiu antes de subir não
+ * está aqui. Fora disso {@link #sum} devolve false e quem consulta usa outra fonte.
+ */
+public final class PaymentAggregates {
+
+    static final int BUCKET_SHIFT = 6;
+    static final int BUCKET_MILLIS = 1 << BUCKET_SHIFT;
+    // Por célula/bucket: contagem e centavos do default, depois do fallback (mesma ordem do summary)
+    private static final int SERIES = 4;
+    // 32 bytes por ms de janela: 240 s viram 2^18 células, 8 MB
+    private static final long MAX_WINDOW_MILLIS = 1 << 24;
+    private static final int DEFAULT_WINDOW_SECONDS = Integer.parseInt(
+            System.getenv().getOrDefault("SUMMARY_WINDOW_SECONDS", "240"));
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long coveredSinceMillis;
+    private final int cellMask;
+    private final long windowMillis;
+    private final int buckets;
+    private final long[] cells;
+    // Fenwick 1-based sobre os buckets físicos do anel
+    private final long[] tree;
+    private final long[] evicted = new long[SERIES];
+    private long evictedMinMillis = Long.MAX_VALUE;
+    private long evictedMaxMillis = Long.MIN_VALUE;
+    // Início (alinhado ao bucket) da janela coberta pelo anel: [windowStart, windowStart + windowMillis)
+    private long windowStart;
+
+    public PaymentAggregates() {
+        this(System.currentTimeMillis(), DEFAULT_WINDOW_SECONDS * 1000L);
+    }
+
+    /**
+     * @param coveredSinceMillis a partir de quando todo pagamento concluído pela instância passa por {@link #record}
+     * @param window             janela mínima mantida em células (arredondada para potência de dois de ms)
+     */
+    PaymentAggregates(long coveredSinceMillis, long window) {
+        int cellCount = Integer.highestOneBit((int) Math.max(BUCKET_MILLIS * 2L, Math.min(window, MAX_WINDOW_MILLIS)) * 2 - 1);
+        this.coveredSinceMillis = coveredSinceMillis;
+        this.cellMask = cellCount - 1;
+        this.windowMillis = cellCount;
+        this.buckets = cellCount >>> BUCKET_SHIFT;
+        this.cells = new long[cellCount * SERIES];
+        this.tree = new long[(buckets + 1) * SERIES];
+        this.windowStart = bucketStart(coveredSinceMillis) + BUCKET_MILLIS - windowMillis;
+    }
+
+    /**
+     * Soma um pagamento concluído no milissegundo {@code timestampMillis}.
+     */
+    public void record(String processor, long amountCents, long timestampMillis) {
+        int series = "fallback".equals(processor) ? 2 : 0;
+        lock.lock();
+        try {
+            if (timestampMillis - windowStart >= windowMillis) {
+                advance(timestampMillis);
+            }
+            if (timestampMillis < windowStart) {
+                evicted[series]++;
+                evicted[series + 1] += amountCents;
+                evictedMinMillis = Math.min(evictedMinMillis, timestampMillis);
+                evictedMaxMillis = Math.max(evictedMaxMillis, timestampMillis);
+                return;
+            }
+            int cell = (int) (timestampMillis & cellMask);
+            cells[cell * SERIES + series]++;
+            cells[cell * SERIES + series + 1] += amountCents;
+            int bucket = cell >>> BUCKET_SHIFT;
+            treeAdd(bucket, series, 1);
+            treeAdd(bucket, series + 1, amountCents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Soma os pagamentos em [fromMillis, toMillis] (inclusivo) em {@code totals}, na ordem
+     * {defaultRequests, defaultCents, fallbackRequests, fallbackCents}. Retorna false, sem
+     * garantia sobre {@code totals}, se a faixa não pode ser respondida com exatidão.
+     */
+    public boolean sum(long fromMillis, long toMillis, long[] totals) {
+        Arrays.fill(totals, 0, SERIES, 0);
+        if (fromMillis < coveredSinceMillis) {
+            return false;
+        }
+        if (fromMillis > toMillis) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (evictedMinMillis <= evictedMaxMillis) {
+                if (fromMillis <= evictedMinMillis && toMillis >= evictedMaxMillis) {
+                    for (int s = 0; s < SERIES; s++) {
+                        totals[s] += evicted[s];
+                    }
+                } else if (toMillis >= evictedMinMillis && fromMillis <= evictedMaxMillis) {
+                    // A faixa corta o acumulado ao meio: não dá para saber quanto dele entra
+                    return false;
+                }
+            }
+
+            long from = Math.max(fromMillis, windowStart);
+            long to = Math.min(toMillis, windowStart + windowMillis - 1);
+            if (from > to) {
+                return true;
+            }
+            long fromBucket = bucketStart(from);
+            long toBucket = bucketStart(to);
+            if (fromBucket == toBucket) {
+                addCells(from, to, totals);
+                return true;
+            }
+            addCells(from, fromBucket + BUCKET_MILLIS - 1, totals);
+            if (toBucket - fromBucket > BUCKET_MILLIS) {
+                addBuckets(fromBucket + BUCKET_MILLIS, toBucket - BUCKET_MILLIS, totals);
+            }
+            addCells(toBucket, to, totals);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Avança a janela até cobrir {@code timestampMillis}, tirando do anel os buckets mais velhos.
+     */
+    private void advance(long timestampMillis) {
+        long newStart = bucketStart(timestampMillis) + BUCKET_MILLIS - windowMillis;
+        long leaving = Math.min((newStart - windowStart) >>> BUCKET_SHIFT, buckets);
+        long bucket = windowStart;
+        for (long i = 0; i < leaving; i++, bucket += BUCKET_MILLIS) {
+            evictBucket(bucket);
+        }
+        windowStart = newStart;
+    }
+
+    private void evictBucket(long bucketStartMillis) {
+        int firstCell = (int) (bucketStartMillis & cellMask);
+        int bucket = firstCell >>> BUCKET_SHIFT;
+        for (int cell = firstCell; cell < firstCell + BUCKET_MILLIS; cell++) {
+            int base = cell * SERIES;
+            if (cells[base] == 0 && cells[base + 2] == 0) {
+                continue;
+            }
+            long millis = bucketStartMillis + (cell - firstCell);
+            evictedMinMillis = Math.min(evictedMinMillis, millis);
+            evictedMaxMillis = Math.max(evictedMaxMillis, millis);
+            for (int s = 0; s < SERIES; s++) {
+                evicted[s] += cells[base + s];
+                treeAdd(bucket, s, -cells[base + s]);
+                cells[base + s] = 0;
+            }
+        }
+    }
+
+    private void addCells(long fromMillis, long toMillis, long[] totals) {
+        // Sempre dentro de um bucket: as células são contíguas no anel
+        int base = (int) (fromMillis & cellMask) * SERIES;
+        int end = base + (int) (toMillis - fromMillis + 1) * SERIES;
+        for (int i = base; i < end; i += SERIES) {
+            totals[0] += cells[i];
+            totals[1] += cells[i + 1];
+            totals[2] += cells[i + 2];
+            totals[3] += cells[i + 3];
+        }
+    }
+
+    /**
+     * Buckets inteiros de {@code fromBucketMillis} a {@code toBucketMillis}; a faixa física pode dar a volta no anel.
+     */
+    private void addBuckets(long fromBucketMillis, long toBucketMillis, long[] totals) {
+        int first = (int) (fromBucketMillis & cellMask) >>> BUCKET_SHIFT;
+        int last = (int) (toBucketMillis & cellMask) >>> BUCKET_SHIFT;
+        for (int s = 0; s < SERIES; s++) {
+            long sum = first <= last
+                    ? prefix(last, s) - prefix(first - 1, s)
+                    : prefix(buckets - 1, s) - prefix(first - 1, s) + prefix(last, s);
+            totals[s] += sum;
+        }
+    }
+
+    private void treeAdd(int bucket, int series, long delta) {
+        for (int i = bucket + 1; i <= buckets; i += i & -i) {
+            tree[i * SERIES + series] += delta;
+        }
+    }
+
+    /**
+     * Soma dos buckets físicos [0, bucket]; zero para bucket negativo.
+     */
+    private long prefix(int bucket, int series) {
+        long sum = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) {
+            sum += tree[i * SERIES + series];
+        }
+        return sum;
+    }
+
+    private static long bucketStart(long millis) {
+        return millis & -BUCKET_MILLIS;
+    }
+}
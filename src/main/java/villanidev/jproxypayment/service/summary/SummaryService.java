@@ -0,0 +1,208 @@
+package villanidev.jproxypayment.service.summary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import villanidev.jproxypayment.cache.RedisCacheClient;
+import villanidev.jproxypayment.cache.SummaryJsonCache;
+import villanidev.jproxypayment.logging.LogSampler;
+import villanidev.jproxypayment.metrics.Counter;
+import villanidev.jproxypayment.metrics.Histogram;
+import villanidev.jproxypayment.metrics.Metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monta o JSON do summary. Consultas com janela são respondidas pelos {@link PaymentAggregates}
+ * desta instância somados às parciais das outras (SUMMARY_PEERS, via GET
+ * /payments-summary/partial), sem ler o Redis. Se alguma das partes não for exata (janela
+ * anterior ao start de uma instância, acumulado cortado ao meio) ou os peers não responderem
+ * dentro de um prazo único para todos ({@code SUMMARY_PEER_TIMEOUT_MILLIS}, que limita o que
+ * eles somam à latência do summary), a consulta cai no Redis, que continua recebendo os totais
+ * pelo write-behind.
+ * <p>
+ * Sem SUMMARY_PEERS, ou com DEDUP_SHARED=true (a deduplicação entre instâncias só acontece no
+ * Redis, então as parciais locais podem contar em dobro), tudo vai para o Redis como antes.
+ * <p>
+ * Sem janela, a resposta sai dos totais do cluster em memória (ver
+ * {@code ClusterSummarySnapshot}) e só lê o Redis enquanto eles não estão prontos.
+ */
+public class SummaryService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SummaryService.class);
+
+    public static final String PARTIAL_PATH = "/payments-summary/partial";
+
+    private static final boolean SHARED_DEDUP = Boolean.parseBoolean(System.getenv("DEDUP_SHARED"));
+    // Prazo total das parciais (conexão incluída), não por peer: as chamadas correm em paralelo
+    private static final Duration PEER_DEADLINE = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("SUMMARY_PEER_TIMEOUT_MILLIS", "300")));
+    private static final Counter LOCAL_SUMMARIES = sourceCounter("local");
+    private static final Counter SNAPSHOT_SUMMARIES = sourceCounter("snapshot");
+    private static final Counter REDIS_SUMMARIES = sourceCounter("redis");
+    private static final Histogram PEER_ROUNDTRIP = Metrics.REGISTRY.histogram("jproxy_summary_peer_roundtrip_seconds",
+            "Partial summary calls to the other instances", Histogram.ROUNDTRIP_BUCKETS);
+    private static final LogSampler PEER_ERROR_SAMPLER = new LogSampler(Duration.ofSeconds(1), 1);
+
+    private final PaymentAggregates aggregates;
+    private final RedisCacheClient redisCacheClient;
+    private final List<URI> peers;
+    private final boolean local;
+    private final HttpClient httpClient;
+
+    private static Counter sourceCounter(String source) {
+        return Metrics.REGISTRY.counter("jproxy_summary_requests_total",
+                "Summaries answered, by source of the totals", "source", source);
+    }
+
+    public SummaryService(PaymentAggregates aggregates, RedisCacheClient redisCacheClient, List<URI> peers) {
+        this.aggregates = aggregates;
+        this.redisCacheClient = redisCacheClient;
+        this.peers = List.copyOf(peers);
+        this.local = !peers.isEmpty() && !SHARED_DEDUP;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(PEER_DEADLINE)
+                .executor(Executors.newFixedThreadPool(
+                        2,
+                        Metrics.countingVirtualThreads(Thread.ofVirtual().name("summaryPeerVthread-", 0L).factory())))
+                .build();
+        if (!peers.isEmpty() && SHARED_DEDUP) {
+            LOGGER.warn("SUMMARY_PEERS ignored with DEDUP_SHARED=true: summaries are read from Redis");
+        }
+    }
+
+    /**
+     * URLs base das outras instâncias em SUMMARY_PEERS, separadas por vírgula.
+     */
+    public static List<URI> peersFromEnv() {
+        List<URI> peers = new ArrayList<>();
+        for (String peer : System.getenv().getOrDefault("SUMMARY_PEERS", "").split(",")) {
+            if (!peer.isBlank()) {
+                peers.add(URI.create(peer.trim()));
+            }
+        }
+        return peers;
+    }
+
+    /**
+     * JSON do summary em [fromMillis, toMillis] (limites abertos como no {@code SummaryQueryParser}).
+     */
+    public byte[] getSummaryJson(long fromMillis, long toMillis) {
+        if (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE) {
+            byte[] json = redisCacheClient.getSnapshotSummaryJson();
+            if (json != null) {
+                SNAPSHOT_SUMMARIES.increment();
+                return json;
+            }
+        } else if (local) {
+            long[] totals = new long[4];
+            if (aggregates.sum(fromMillis, toMillis, totals) && addPeerPartials(fromMillis, toMillis, totals)) {
+                LOCAL_SUMMARIES.increment();
+                return SummaryJsonCache.render(totals[0], totals[1], totals[2], totals[3]);
+            }
+        }
+        REDIS_SUMMARIES.increment();
+        return redisCacheClient.getSummaryJson(fromMillis, toMillis);
+    }
+
+    /**
+     * Parcial desta instância no formato de {@link #PARTIAL_PATH}; null se ela não for exata.
+     */
+    public byte[] partial(long fromMillis, long toMillis) {
+        long[] totals = new long[4];
+        if (!aggregates.sum(fromMillis, toMillis, totals)) {
+            return null;
+        }
+        return (totals[0] + " " + totals[1] + " " + totals[2] + " " + totals[3]).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Soma as parciais de todos os peers (chamadas em paralelo); false se alguma faltar ou se o
+     * prazo total estourar, e nesse caso as chamadas ainda abertas são canceladas.
+     */
+    private boolean addPeerPartials(long fromMillis, long toMillis, long[] totals) {
+        String query = "?from=" + Instant.ofEpochMilli(fromMillis)
+                + (toMillis == Long.MAX_VALUE ? "" : "&to=" + Instant.ofEpochMilli(toMillis));
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + PEER_DEADLINE.toNanos();
+        List<CompletableFuture<HttpResponse<byte[]>>> calls = new ArrayList<>(peers.size());
+        for (URI peer : peers) {
+            HttpRequest request = HttpRequest.newBuilder(peer.resolve(PARTIAL_PATH + query))
+                    .timeout(PEER_DEADLINE)
+                    .build();
+            calls.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()));
+        }
+
+        boolean complete = true;
+        for (int i = 0; i < calls.size() && complete; i++) {
+            try {
+                HttpResponse<byte[]> response = calls.get(i).get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (response.statusCode() != 200) {
+                    LOGGER.debug("Peer {} has no exact partial, status: {}", peers.get(i), response.statusCode());
+                    complete = false;
+                } else if (!addPartial(response.body(), totals)) {
+                    throw new IllegalStateException("malformed partial");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete = false;
+            } catch (Exception e) {
+                if (PEER_ERROR_SAMPLER.tryAcquire()) {
+                    LOGGER.warn("Partial summary from {} failed, reading Redis ({} suppressed): {}",
+                            peers.get(i), PEER_ERROR_SAMPLER.drainSuppressed(), e.toString());
+                }
+                complete = false;
+            }
+        }
+        if (!complete) {
+            for (CompletableFuture<HttpResponse<byte[]>> call : calls) {
+                call.cancel(true);
+            }
+        }
+        PEER_ROUNDTRIP.recordSince(startNanos);
+        return complete;
+    }
+
+    /**
+     * Soma a parcial {@code "a b c d"} (quatro inteiros não negativos separados por espaço, como
+     * {@link #partial} produz) direto dos bytes; false se ela não estiver nesse formato, e aí
+     * {@code totals} pode ter ficado pela metade.
+     */
+    static boolean addPartial(byte[] body, long[] totals) {
+        int position = 0;
+        for (int s = 0; s < 4; s++) {
+            if (s > 0) {
+                if (position >= body.length || body[position] != ' ') {
+                    return false;
+                }
+                position++;
+            }
+            int start = position;
+            long value = 0;
+            while (position < body.length && body[position] >= '0' && body[position] <= '9') {
+                if (value > (Long.MAX_VALUE - 9) / 10) {
+                    return false;
+                }
+                value = value * 10 + (body[position++] - '0');
+            }
+            if (position == start) {
+                return false;
+            }
+            totals[s] += value;
+        }
+        // Tolera só uma quebra de linha no fim
+        while (position < body.length && (body[position] == '\r' || body[position] == '\n')) {
+            position++;
+        }
+        return position == body.length;
+    }
+}
@@ -0,0 +1,123 @@
+package villanidev.jproxypayment.warmup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aquece o JIT antes de a instância se declarar pronta em /ready: roda lotes de todas as
+ * {@link WarmUpTask}s em rodadas até o compilador sossegar (tempo total de compilação do
+ * {@link CompilationMXBean} crescendo menos de {@link #QUIET_COMPILATION_MILLIS} numa janela
+ * de {@link #CHECK_INTERVAL}) ou até WARMUP_MAX_SECONDS. Sem JIT (imagem nativa) ou com
+ * WARMUP_MAX_SECONDS=0 fica pronta na hora.
+ * <p>
+ * Uma tarefa que falha é descartada e as demais seguem: o warm-up nunca impede a instância de
+ * ficar pronta.
+ */
+public final class WarmUpRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    private static final Duration MAX_DURATION = Duration.ofSeconds(Long.parseLong(
+            System.getenv().getOrDefault("WARMUP_MAX_SECONDS", "10")));
+    private static final Duration MIN_DURATION = Duration.ofSeconds(1);
+    private static final Duration CHECK_INTERVAL = Duration.ofMillis(500);
+    private static final long QUIET_COMPILATION_MILLIS = 5;
+
+    private final List<WarmUpTask> tasks;
+    private volatile boolean ready;
+
+    public WarmUpRunner(List<WarmUpTask> tasks) {
+        this.tasks = new ArrayList<>(tasks);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Bloqueia até o fim do warm-up e marca a instância como pronta.
+     */
+    public void run() {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        if (MAX_DURATION.isZero() || compiler == null || !compiler.isCompilationTimeMonitoringSupported()) {
+            ready = true;
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        long startCompilationMillis = compiler.getTotalCompilationTime();
+        long rounds = 0;
+        try {
+            open();
+            long deadline = startNanos + MAX_DURATION.toNanos();
+            long minEnd = startNanos + MIN_DURATION.toNanos();
+            long nextCheck = startNanos + CHECK_INTERVAL.toNanos();
+            long lastCompilationMillis = startCompilationMillis;
+            boolean quiet = false;
+            while (!tasks.isEmpty() && System.nanoTime() - deadline < 0 && !quiet) {
+                runRound();
+                rounds++;
+                long now = System.nanoTime();
+                if (now - nextCheck >= 0) {
+                    long compilationMillis = compiler.getTotalCompilationTime();
+                    quiet = now - minEnd >= 0 && compilationMillis - lastCompilationMillis < QUIET_COMPILATION_MILLIS;
+                    lastCompilationMillis = compilationMillis;
+                    nextCheck = now + CHECK_INTERVAL.toNanos();
+                }
+            }
+        } finally {
+            closeAll();
+            ready = true;
+        }
+        LOGGER.info("Warm-up done in {} (ms): {} rounds, {} (ms) of JIT compilation",
+                Duration.ofNanos(System.nanoTime() - startNanos).toMillis(),
+                rounds,
+                compiler.getTotalCompilationTime() - startCompilationMillis);
+    }
+
+    private void open() {
+        tasks.removeIf(task -> {
+            try {
+                task.open();
+                return false;
+            } catch (Exception e) {
+                LOGGER.warn("Warm-up task {} could not start, skipping: {}", task.name(), e.toString());
+                closeQuietly(task);
+                return true;
+            }
+        });
+    }
+
+    private void runRound() {
+        tasks.removeIf(task -> {
+            try {
+                task.runBatch();
+                return false;
+            } catch (Exception e) {
+                LOGGER.warn("Warm-up task {} failed, skipping: {}", task.name(), e.toString());
+                closeQuietly(task);
+                return true;
+            }
+        });
+    }
+
+    private void closeAll() {
+        for (WarmUpTask task : tasks) {
+            closeQuietly(task);
+        }
+        tasks.clear();
+    }
+
+    private static void closeQuietly(WarmUpTask task) {
+        try {
+            task.close();
+        } catch (Exception e) {
+            LOGGER.debug("Warm-up task {} close error: {}", task.name(), e.toString());
+        }
+    }
+}
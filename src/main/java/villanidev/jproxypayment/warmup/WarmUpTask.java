@@ -0,0 +1,29 @@
+package villanidev.jproxypayment.warmup;
+
+/**
+ * Um componente do caminho quente exercitado pelo {@link WarmUpRunner} com pagamentos
+ * sintéticos, sempre contra stand-ins em processo: nada chega aos processadores nem ao Redis,
+ * e nenhuma métrica da instância é alterada.
+ */
+public interface WarmUpTask extends AutoCloseable {
+
+    String name();
+
+    /**
+     * Sobe os stand-ins que a tarefa usa; chamado uma vez, antes do primeiro lote.
+     */
+    default void open() throws Exception {
+    }
+
+    /**
+     * Um lote de chamadas ao componente.
+     */
+    void runBatch() throws Exception;
+
+    /**
+     * Derruba os stand-ins; não lança exceção checada (erros de fechamento só são logados).
+     */
+    @Override
+    default void close() {
+    }
+}
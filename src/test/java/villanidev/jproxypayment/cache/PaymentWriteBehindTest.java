@@ -0,0 +1,122 @@
+package villanidev.jproxypayment.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentWriteBehindTest {
+    private static final long SHORT_NANOS = Duration.ofMillis(50).toNanos();
+    private static final long LONG_NANOS = Duration.ofSeconds(5).toNanos();
+    // Padrão de WRITE_BEHIND_MAX_PENDING, mais o lote que o flusher segura enquanto o Redis falha
+    private static final int MAX_PENDING = 65536;
+    private static final int OVER_CAPACITY = 512 + 10;
+
+    /**
+     * Writer que só confirma os lotes enquanto o Redis "está de pé".
+     */
+    private static final class GatedWriter implements PaymentWriteBehind.BatchWriter {
+        final AtomicBoolean up = new AtomicBoolean();
+        final AtomicLong written = new AtomicLong();
+        final AtomicBoolean retried = new AtomicBoolean();
+
+        @Override
+        public void write(List<PaymentWriteBehind.PendingPayment> batch, long batchSequence, boolean retry) {
+            if (!up.get()) {
+                throw new IllegalStateException("redis down");
+            }
+            retried.compareAndSet(false, retry);
+            written.addAndGet(batch.size());
+        }
+    }
+
+    private static void record(PaymentWriteBehind writeBehind, int payments) {
+        for (int i = 0; i < payments; i++) {
+            writeBehind.record(0, i, "default", 100, 1_000L + i);
+        }
+    }
+
+    @Test
+    void barrierReturnsOnlyAfterEveryRecordedPaymentIsWritten() {
+        GatedWriter writer = new GatedWriter();
+        writer.up.set(true);
+        PaymentWriteBehind writeBehind = new PaymentWriteBehind(writer);
+
+        record(writeBehind, 1500);
+
+        assertTrue(writeBehind.awaitFlush(LONG_NANOS));
+        assertEquals(1500, writer.written.get());
+        assertEquals(0, writeBehind.pending());
+    }
+
+    @Test
+    void barrierTimesOutWhileRedisIsDownAndRecoversAfterRetry() {
+        GatedWriter writer = new GatedWriter();
+        PaymentWriteBehind writeBehind = new PaymentWriteBehind(writer);
+
+        record(writeBehind, 10);
+
+        assertFalse(writeBehind.awaitFlush(SHORT_NANOS));
+        assertEquals(10, writeBehind.pending());
+
+        writer.up.set(true);
+        assertTrue(writeBehind.awaitFlush(LONG_NANOS));
+        assertEquals(10, writer.written.get());
+        assertTrue(writer.retried.get());
+    }
+
+    @Test
+    void barrierWakesUpWhenTheBatchIsAcknowledged() throws InterruptedException {
+        GatedWriter writer = new GatedWriter();
+        PaymentWriteBehind writeBehind = new PaymentWriteBehind(writer);
+        record(writeBehind, 1);
+
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicBoolean result = new AtomicBoolean();
+        Thread reader = Thread.ofVirtual().start(() -> {
+            result.set(writeBehind.awaitFlush(LONG_NANOS));
+            released.countDown();
+        });
+
+        assertFalse(released.await(100, TimeUnit.MILLISECONDS));
+        writer.up.set(true);
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertTrue(result.get());
+        reader.join();
+    }
+
+    @Test
+    void recordNeverBlocksAndWorkersWaitForCapacity() throws InterruptedException {
+        GatedWriter writer = new GatedWriter();
+        PaymentWriteBehind writeBehind = new PaymentWriteBehind(writer);
+
+        // Acima do limite, com o Redis fora: quem conclui não espera
+        record(writeBehind, MAX_PENDING + OVER_CAPACITY);
+        assertTrue(writeBehind.overCapacity() >= 10);
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread worker = Thread.ofVirtual().start(() -> {
+            try {
+                writeBehind.awaitCapacity();
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+
+        writer.up.set(true);
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        worker.join();
+        assertTrue(writeBehind.awaitFlush(LONG_NANOS));
+        assertEquals(MAX_PENDING + OVER_CAPACITY, writer.written.get());
+    }
+}
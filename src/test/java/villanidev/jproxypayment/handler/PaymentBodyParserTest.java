@@ -0,0 +1,122 @@
+package villanidev.jproxypayment.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentBodyParserTest {
+
+    private static final String ID = "4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3";
+
+    private final PaymentBodyParser parser = new PaymentBodyParser();
+
+    @Test
+    void parsesFieldsInAnyOrder() {
+        assertParsed("{\"correlationId\":\"" + ID + "\",\"amount\":19.90}", 1990);
+        assertParsed("{\"amount\":19.90,\"correlationId\":\"" + ID + "\"}", 1990);
+        assertParsed(" {\n\t\"amount\" : 19.90 ,\r\n \"correlationId\" : \"" + ID + "\" } ", 1990);
+    }
+
+    @Test
+    void skipsUnknownFields() {
+        assertParsed("{\"note\":\"x\",\"amount\":1,\"tags\":[1,{\"a\":\"]}\"}],\"meta\":{\"n\":null,\"b\":true},"
+                + "\"correlationId\":\"" + ID + "\",\"n\":-3.5e2}", 100);
+    }
+
+    @Test
+    void skipsEscapesInsideStrings() {
+        assertParsed("{\"note\":\"quote \\\" and \\\\\",\"correlationId\":\"" + ID + "\",\"amount\":2}", 200);
+        assertParsed("{\"no\\\"te\":\"}\",\"correlationId\":\"" + ID + "\",\"amount\":2}", 200);
+    }
+
+    @Test
+    void convertsAmountToCentsRoundingTheThirdDecimalHalfUp() {
+        assertParsed(body("10"), 1000);
+        assertParsed(body("19.9"), 1990);
+        assertParsed(body("0.01"), 1);
+        assertParsed(body("0.004"), 0);
+        assertParsed(body("0.005"), 1);
+        assertParsed(body("1.999"), 200);
+        assertParsed(body("2.0049"), 200);
+        assertParsed(body("999999999999999.99"), 99999999999999999L);
+    }
+
+    @Test
+    void rejectsInvalidAmounts() {
+        for (String amount : new String[]{"-1", "1.", ".5", "1e2", "1.5E1", "\"10\"", "1000000000000000", "null"}) {
+            assertFailure(body(amount), PaymentBodyParser.INVALID_AMOUNT);
+        }
+    }
+
+    @Test
+    void rejectsInvalidCorrelationIds() {
+        assertFailure("{\"correlationId\":\"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60bz\",\"amount\":1}",
+                PaymentBodyParser.INVALID_CORRELATION_ID);
+        assertFailure("{\"correlationId\":\"4a7901b87d26-4d9d-aa19-4dc1c7cf60b3x\",\"amount\":1}",
+                PaymentBodyParser.INVALID_CORRELATION_ID);
+        assertFailure("{\"correlationId\":\"" + ID + "0\",\"amount\":1}", PaymentBodyParser.INVALID_CORRELATION_ID);
+        assertFailure("{\"correlationId\":42,\"amount\":1}", PaymentBodyParser.INVALID_CORRELATION_ID);
+    }
+
+    @Test
+    void rejectsMissingFields() {
+        assertFailure("{}", PaymentBodyParser.MISSING_FIELD);
+        assertFailure("{\"amount\":1}", PaymentBodyParser.MISSING_FIELD);
+        assertFailure("{\"correlationId\":\"" + ID + "\"}", PaymentBodyParser.MISSING_FIELD);
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        String body = "{\"note\":\"a\\\"b\",\"correlationId\":\"" + ID + "\",\"amount\":19.90}";
+        for (int length = 0; length < body.length(); length++) {
+            assertFalse(parse(body.substring(0, length)), () -> "accepted truncated body");
+        }
+    }
+
+    @Test
+    void rejectsTrailingGarbage() {
+        assertFailure(body("1") + "}", PaymentBodyParser.MALFORMED_JSON);
+        assertFailure(body("1") + " x", PaymentBodyParser.MALFORMED_JSON);
+        assertFailure("{\"amount\":1 \"correlationId\":\"" + ID + "\"}", PaymentBodyParser.MALFORMED_JSON);
+    }
+
+    @Test
+    void readsOnlyTheGivenRegion() {
+        byte[] body = body("7.5").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(body.length + 20);
+        buffer.put(10, body);
+        buffer.put(10 + body.length, "garbage".getBytes(StandardCharsets.US_ASCII));
+
+        assertTrue(parser.parse(buffer, 10, body.length));
+        assertEquals(750, parser.amountCents());
+    }
+
+    private static String body(String amount) {
+        return "{\"correlationId\":\"" + ID + "\",\"amount\":" + amount + "}";
+    }
+
+    private void assertParsed(String body, long expectedCents) {
+        assertTrue(parse(body), () -> parser.error() + ": " + body);
+        UUID expected = UUID.fromString(ID);
+        assertEquals(expected.getMostSignificantBits(), parser.correlationIdMsb());
+        assertEquals(expected.getLeastSignificantBits(), parser.correlationIdLsb());
+        assertEquals(expectedCents, parser.amountCents());
+        assertEquals(PaymentBodyParser.OK, parser.error());
+    }
+
+    private void assertFailure(String body, String expectedError) {
+        assertFalse(parse(body), body);
+        assertEquals(expectedError, parser.error(), body);
+    }
+
+    private boolean parse(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        return parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+}
@@ -0,0 +1,160 @@
+package villanidev.jproxypayment.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioHttpExchangeTest {
+
+    private static final String BODY = "{\"correlationId\":\"4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3\",\"amount\":19.90}";
+
+    @Test
+    void parsesAPostWithItsBody() {
+        NioHttpExchange exchange = exchange(1024);
+        read(exchange, post("/payments", BODY));
+
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals("POST", exchange.method());
+        assertEquals("/payments", exchange.path());
+        assertTrue(exchange.pathEquals(ascii("/payments")));
+        assertEquals(-1, exchange.queryOffset());
+        assertEquals(0, exchange.queryLength());
+        assertEquals(BODY, body(exchange));
+        assertTrue(exchange.keepAlive);
+    }
+
+    @Test
+    void separatesPathAndQuery() {
+        NioHttpExchange exchange = exchange(1024);
+        read(exchange, "GET /payments-summary?from=2020-07-10T12:34:56.000Z&to=x HTTP/1.1\r\nHost: a\r\n\r\n");
+
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals("GET", exchange.method());
+        assertTrue(exchange.pathEquals(ascii("/payments-summary")));
+        assertEquals("from=2020-07-10T12:34:56.000Z&to=x", slice(exchange, exchange.queryOffset(), exchange.queryLength()));
+        assertEquals(0, exchange.bodyLength());
+    }
+
+    @Test
+    void waitsForHeadersAndBodySplitAcrossReads() {
+        String request = post("/payments", BODY);
+        int headerEnd = request.indexOf("\r\n\r\n");
+        NioHttpExchange exchange = exchange(1024);
+
+        // Corta no meio do CRLFCRLF e depois no meio do corpo
+        read(exchange, request.substring(0, headerEnd + 2));
+        assertEquals(NioHttpExchange.INCOMPLETE, exchange.parseRequest());
+        read(exchange, request.substring(headerEnd + 2, headerEnd + 10));
+        assertEquals(NioHttpExchange.INCOMPLETE, exchange.parseRequest());
+        read(exchange, request.substring(headerEnd + 10));
+
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals(BODY, body(exchange));
+    }
+
+    @Test
+    void keepsPipelinedRequestsAfterConsuming() {
+        NioHttpExchange exchange = exchange(1024);
+        read(exchange, post("/payments", BODY) + "GET /payments-summary HTTP/1.1\r\nHost: a\r\n\r\nGET /re");
+
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals(BODY, body(exchange));
+        exchange.consumeRequest();
+
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals("/payments-summary", exchange.path());
+        exchange.consumeRequest();
+
+        assertEquals(NioHttpExchange.INCOMPLETE, exchange.parseRequest());
+        read(exchange, "ady HTTP/1.1\r\n\r\n");
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertEquals("/ready", exchange.path());
+    }
+
+    @Test
+    void followsConnectionHeadersAndHttp10() {
+        NioHttpExchange exchange = exchange(1024);
+        read(exchange, "GET /ready HTTP/1.0\r\n\r\n");
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertFalse(exchange.keepAlive);
+
+        exchange = exchange(1024);
+        read(exchange, "GET /ready HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n");
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertTrue(exchange.keepAlive);
+
+        exchange = exchange(1024);
+        read(exchange, "GET /ready HTTP/1.1\r\nconnection:  close \r\n\r\n");
+        assertEquals(NioHttpExchange.COMPLETE, exchange.parseRequest());
+        assertFalse(exchange.keepAlive);
+    }
+
+    @Test
+    void rejectsMalformedRequests() {
+        assertEquals(NioHttpExchange.MALFORMED, parse("GET\r\n\r\n"));
+        assertEquals(NioHttpExchange.MALFORMED, parse("GET /ready HTTP/1.1\r\nno colon here\r\n\r\n"));
+        assertEquals(NioHttpExchange.MALFORMED, parse("POST /payments HTTP/1.1\r\nContent-Length: 12a\r\n\r\n"));
+        assertEquals(NioHttpExchange.MALFORMED, parse("POST /payments HTTP/1.1\r\nContent-Length: -1\r\n\r\n"));
+        assertEquals(NioHttpExchange.MALFORMED, parse("POST /payments HTTP/1.1\r\nContent-Length:\r\n\r\n"));
+        assertEquals(NioHttpExchange.MALFORMED, parse("POST /payments HTTP/1.1\r\nContent-Length: 1234567890\r\n\r\n"));
+    }
+
+    @Test
+    void refusesChunkedBodies() {
+        assertEquals(NioHttpExchange.UNSUPPORTED,
+                parse("POST /payments HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void reportsRequestsLargerThanTheBuffer() {
+        // Headers que não cabem no buffer
+        NioHttpExchange exchange = exchange(64);
+        read(exchange, "GET /ready HTTP/1.1\r\nX-Padding: " + "a".repeat(64 - 32));
+        assertFalse(exchange.in.hasRemaining());
+        assertEquals(NioHttpExchange.TOO_LARGE, exchange.parseRequest());
+
+        // Corpo anunciado maior que o buffer, antes mesmo de chegar
+        assertEquals(NioHttpExchange.TOO_LARGE, parse("POST /payments HTTP/1.1\r\nContent-Length: 2000\r\n\r\n"));
+    }
+
+    private static int parse(String request) {
+        NioHttpExchange exchange = exchange(1024);
+        read(exchange, request);
+        return exchange.parseRequest();
+    }
+
+    private static NioHttpExchange exchange(int bufferSize) {
+        return new NioHttpExchange(null, null, ByteBuffer.allocate(bufferSize), ByteBuffer.allocate(bufferSize));
+    }
+
+    /**
+     * Simula uma leitura do socket: acrescenta os bytes no buffer de leitura.
+     */
+    private static void read(NioHttpExchange exchange, String bytes) {
+        exchange.in.put(ascii(bytes));
+    }
+
+    private static String post(String path, String body) {
+        return "POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+    }
+
+    private static String body(NioHttpExchange exchange) {
+        return slice(exchange, exchange.bodyOffset(), exchange.bodyLength());
+    }
+
+    private static String slice(NioHttpExchange exchange, int offset, int length) {
+        byte[] bytes = new byte[length];
+        exchange.buffer().get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
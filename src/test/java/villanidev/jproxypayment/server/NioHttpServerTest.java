@@ -0,0 +1,144 @@
+package villanidev.jproxypayment.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioHttpServerTest {
+
+    private NioHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = NioHttpServer.loopback();
+        // Devolve o corpo recebido, para conferir onde o parser o encontrou
+        server.route("/echo", exchange -> {
+            byte[] body = new byte[exchange.bodyLength()];
+            exchange.buffer().get(exchange.bodyOffset(), body);
+            exchange.respond(HttpResponses.json(body));
+        });
+        // Responde de outra thread, como os handlers que vão ao Redis
+        server.route("/async", exchange -> Thread.ofVirtual().start(() -> exchange.respond(HttpResponses.ACCEPTED)));
+        server.route("/fail", exchange -> {
+            throw new IllegalStateException("boom");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void closeServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrderOnOneConnection() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, post("/echo", "{\"a\":1}") + "GET /async HTTP/1.1\r\n\r\n" + post("/echo", "{\"b\":22}"));
+
+            String responses = readUntil(socket.getInputStream(), 3);
+            int first = responses.indexOf("{\"a\":1}");
+            int second = responses.indexOf("202 Accepted");
+            int third = responses.indexOf("{\"b\":22}");
+            assertTrue(first > 0 && first < second && second < third, responses);
+        }
+    }
+
+    @Test
+    void mapsParseFailuresAndHandlerErrorsToStatuses() throws IOException {
+        assertStatus("GET /nowhere HTTP/1.1\r\n\r\n", "404");
+        assertStatus("GET /fail HTTP/1.1\r\n\r\n", "500");
+        assertStatus("POST /echo HTTP/1.1\r\nContent-Length: x\r\n\r\n", "400");
+        assertStatus("POST /echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n", "501");
+        assertStatus("POST /echo HTTP/1.1\r\nContent-Length: 100000\r\n\r\n", "413");
+    }
+
+    @Test
+    void closesAfterAnErrorResponse() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "BROKEN\r\n\r\n");
+            String response = readToEnd(socket.getInputStream());
+            assertTrue(response.startsWith("HTTP/1.1 400"), response);
+        }
+    }
+
+    @Test
+    void closesAfterAnHttp10Response() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, post("/echo", "{}").replace("HTTP/1.1", "HTTP/1.0"));
+            String response = readToEnd(socket.getInputStream());
+            assertTrue(response.startsWith("HTTP/1.1 200") && response.endsWith("{}"), response);
+        }
+    }
+
+    private void assertStatus(String request, String status) throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, request);
+            String response = readUntil(socket.getInputStream(), 1);
+            assertEquals("HTTP/1.1 " + status, response.substring(0, 12), response);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        socket.setSoTimeout(5_000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    private static String post(String path, String body) {
+        return "POST " + path + " HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+    }
+
+    /**
+     * Lê até ter {@code responses} respostas completas (os testes só usam corpos pequenos).
+     */
+    private static String readUntil(InputStream in, int responses) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        while (complete(received.toString(StandardCharsets.US_ASCII)) < responses) {
+            int read = in.read(chunk);
+            if (read < 0) {
+                break;
+            }
+            received.write(chunk, 0, read);
+        }
+        return received.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String readToEnd(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+    }
+
+    private static int complete(String received) {
+        int count = 0;
+        int from = 0;
+        while (true) {
+            int headerEnd = received.indexOf("\r\n\r\n", from);
+            if (headerEnd < 0) {
+                return count;
+            }
+            int lengthAt = received.indexOf("Content-Length: ", from);
+            int length = Integer.parseInt(received.substring(lengthAt + 16, received.indexOf("\r\n", lengthAt)));
+            int end = headerEnd + 4 + length;
+            if (end > received.length()) {
+                return count;
+            }
+            count++;
+            from = end;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int HIGH = AdmissionController.HIGH_WATERMARK;
+    private static final int LOW = AdmissionController.LOW_WATERMARK;
+
+    private int backlog;
+    private long drained;
+    private long now;
+    private final AdmissionController controller = new AdmissionController(() -> backlog, () -> drained);
+
+    @Test
+    void shedsFromTheHighWatermarkUntilBelowTheLowOne() {
+        // Drenagem rápida (100 mil/s): só a marca alta faz entrar
+        ticks(40, 0, 5_000, 1);
+        assertFalse(tick(HIGH - 1, 5_000, 1));
+        assertTrue(tick(HIGH, 5_000, 1));
+
+        // Entre as marcas continua sobrecarregado
+        assertTrue(tick((HIGH + LOW) / 2, 5_000, 1));
+        assertTrue(tick(LOW, 5_000, 1));
+        assertFalse(tick(LOW - 1, 5_000, 1));
+
+        // E de volta entre as marcas não reentra
+        assertFalse(tick((HIGH + LOW) / 2, 5_000, 1));
+    }
+
+    @Test
+    void shedsAtTheLowWatermarkWhenDrainingSlowly() {
+        // 1000/s: a marca baixa já leva 20 s para drenar
+        ticks(40, 0, 50, 1);
+        assertFalse(tick(LOW - 1, 50, 1));
+        assertTrue(tick(LOW, 50, 1));
+
+        // Abaixo da marca baixa mas ainda lento (15 s): segura até metade dela
+        assertTrue(tick(LOW * 3 / 4, 50, 1));
+        assertTrue(tick(LOW / 2, 50, 1));
+        assertFalse(tick(LOW / 2 - 1, 50, 1));
+    }
+
+    @Test
+    void recoversAboveHalfTheLowWatermarkOnceDrainingIsFast() {
+        ticks(40, 0, 50, 1);
+        assertTrue(tick(LOW, 50, 1));
+        assertTrue(tick(LOW * 3 / 4, 50, 1));
+
+        // A drenagem acelera para 10 mil/s: 15 mil em 1,5 s
+        ticks(40, LOW * 3 / 4, 500, 1);
+        assertFalse(tick(LOW * 3 / 4, 500, 1));
+    }
+
+    @Test
+    void shedsOnLowHeapHeadroomWithMarginToRecover() {
+        ticks(40, 0, 5_000, 1);
+        assertTrue(tick(0, 5_000, 0.10));
+
+        // Acima do mínimo (0.15) mas dentro da margem de recuperação (0.25)
+        assertTrue(tick(0, 5_000, 0.20));
+        assertTrue(tick(0, 5_000, 0.24));
+        assertFalse(tick(0, 5_000, 0.25));
+        assertFalse(tick(0, 5_000, 0.16));
+    }
+
+    @Test
+    void asksClientsToRetryAfterTheDrainTime() {
+        ticks(40, 0, 50, 1);
+        tick(LOW, 50, 1);
+        // 20 mil a ~1000/s
+        assertEquals(21, controller.retryAfterSeconds(), 1);
+
+        // Sem drenagem nenhuma, o teto
+        ticks(40, LOW, 0, 1);
+        assertEquals(30, controller.retryAfterSeconds());
+        assertEquals(500, controller.throttleDelayMillis());
+    }
+
+    private void ticks(int count, int queued, long drainedPerTick, double headroom) {
+        for (int i = 0; i < count; i++) {
+            tick(queued, drainedPerTick, headroom);
+        }
+    }
+
+    /**
+     * Avança um tick e diz se a instância ficou sobrecarregada.
+     */
+    private boolean tick(int queued, long drainedPerTick, double headroom) {
+        backlog = queued;
+        drained += drainedPerTick;
+        now += TICK_NANOS;
+        controller.tick(now, headroom);
+        return controller.admit() != AdmissionController.Decision.ACCEPT;
+    }
+}
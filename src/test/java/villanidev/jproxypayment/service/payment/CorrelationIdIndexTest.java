@@ -0,0 +1,66 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorrelationIdIndexTest {
+
+    @Test
+    void detectsDuplicates() {
+        CorrelationIdIndex index = new CorrelationIdIndex(1 << 12, Duration.ofHours(1));
+        assertTrue(index.add(1, 2));
+        assertFalse(index.add(1, 2));
+        assertTrue(index.contains(1, 2));
+        assertFalse(index.contains(2, 1));
+        // O par (0, 0) marca slot vazio, mas ainda é um id válido
+        assertFalse(index.contains(0, 0));
+        assertTrue(index.add(0, 0));
+        assertFalse(index.add(0, 0));
+    }
+
+    @Test
+    void rotatesBySizeWhenFullBeforeTheRetention() {
+        // 16 slots por segmento, até 8 ids por geração
+        CorrelationIdIndex index = new CorrelationIdIndex(64 * 16, Duration.ofHours(1));
+        int ids = 100_000;
+        for (long i = 1; i <= ids; i++) {
+            assertTrue(index.add(i, i));
+        }
+
+        assertTrue(index.sizeRotations() > 0);
+        assertEquals(0, index.ageRotations());
+        // Os mais recentes continuam lembrados; os primeiros já foram descartados, retenção ou não
+        for (long i = ids - 64; i <= ids; i++) {
+            assertTrue(index.contains(i, i));
+        }
+        assertTrue(index.add(1, 1));
+    }
+
+    @Test
+    void rotatesByAgeAndKeepsOneGenerationBack() throws InterruptedException {
+        CorrelationIdIndex index = new CorrelationIdIndex(1 << 16, Duration.ofMillis(20));
+        assertTrue(index.add(-1, -1));
+
+        // Cada rodada toca todos os segmentos depois da retenção
+        Thread.sleep(30);
+        addMany(index, 1);
+        assertTrue(index.ageRotations() > 0);
+        assertTrue(index.contains(-1, -1));
+
+        Thread.sleep(30);
+        addMany(index, 2);
+        assertFalse(index.contains(-1, -1));
+        assertEquals(0, index.sizeRotations());
+    }
+
+    private static void addMany(CorrelationIdIndex index, long round) {
+        for (long i = 0; i < 2_000; i++) {
+            index.add(round, i);
+        }
+    }
+}
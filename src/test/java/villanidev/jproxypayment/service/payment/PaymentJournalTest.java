@@ -0,0 +1,141 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class PaymentJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysOnlyPaymentsWithoutTombstone() {
+        PaymentJournal journal = start(directory);
+        journal.accepted(1, 1, 100, 1000);
+        journal.accepted(1, 2, 200, 2000);
+        journal.completed(1, 1);
+        // A ordem não importa: o tombstone antes do ACCEPTED também fecha o pagamento
+        journal.failed(1, 3);
+        journal.accepted(1, 3, 300, 3000);
+        journal.close();
+
+        Map<Long, long[]> replayed = replay(directory);
+
+        assertEquals(Set.of(2L), replayed.keySet());
+        assertEquals(200, replayed.get(2L)[0]);
+        assertEquals(2000, replayed.get(2L)[1]);
+    }
+
+    @Test
+    void skipsTornRecords() throws IOException {
+        PaymentJournal journal = start(directory);
+        journal.accepted(1, 1, 100, 1000);
+        journal.accepted(1, 2, 200, 2000);
+        journal.accepted(1, 3, 300, 3000);
+        journal.close();
+
+        Path segment = segments(directory).getFirst();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Registro 2 com o cabeçalho gravado e o corpo pela metade
+            channel.write(ByteBuffer.allocate(8).putLong(0, 999), PaymentJournal.RECORD_SIZE + 24);
+            // Registro 4 com o corpo gravado e o cabeçalho ainda não
+            channel.write(ByteBuffer.allocate(32).putLong(0, 1).putLong(8, 4).putLong(16, 400),
+                    3L * PaymentJournal.RECORD_SIZE + 8);
+        }
+
+        assertEquals(Set.of(1L, 3L), replay(directory).keySet());
+    }
+
+    @Test
+    void replaysTheSamePendingPaymentsAfterCompaction() throws IOException {
+        PaymentJournal journal = start(directory);
+        // Dois segmentos e pouco: 1% pendente, bem abaixo do limite de compactação
+        int payments = PaymentJournal.SEGMENT_RECORDS + PaymentJournal.SEGMENT_RECORDS / 4;
+        Map<Long, Long> pending = new HashMap<>();
+        for (long i = 0; i < payments; i++) {
+            journal.accepted(7, i, i * 10, i);
+            if (i % 100 == 0) {
+                pending.put(i, i * 10);
+            } else {
+                journal.completed(7, i);
+            }
+        }
+        assertTrue(journal.awaitCommit(5, TimeUnit.SECONDS));
+        // Os dois selados viram um compactado; fica ele e o ativo
+        assertEquals(2, segments(directory).size());
+        journal.close();
+
+        Map<Long, long[]> replayed = replay(directory);
+
+        assertEquals(pending.keySet(), replayed.keySet());
+        pending.forEach((lsb, cents) -> assertEquals(cents, replayed.get(lsb)[0]));
+    }
+
+    @Test
+    void keepsSegmentsWhileMostlyPending() throws IOException {
+        PaymentJournal journal = start(directory);
+        int payments = 3 * PaymentJournal.SEGMENT_RECORDS + 1;
+        for (long i = 0; i < payments; i++) {
+            journal.accepted(7, i, i, i);
+        }
+
+        assertTrue(journal.awaitCommit(5, TimeUnit.SECONDS));
+        assertEquals(4, segments(directory).size());
+        journal.close();
+        assertEquals(payments, replay(directory).size());
+    }
+
+    @Test
+    void ignoresWritesAfterClose() {
+        PaymentJournal journal = start(directory);
+        journal.accepted(1, 1, 100, 1000);
+        journal.close();
+        journal.accepted(1, 2, 200, 2000);
+        journal.close();
+
+        assertEquals(Set.of(1L), replay(directory).keySet());
+    }
+
+    private static PaymentJournal start(Path directory) {
+        PaymentJournal journal = PaymentJournal.open(directory);
+        journal.replayAndStart((msb, lsb, amountCents, timestampMillis) -> fail("unexpected replay"));
+        return journal;
+    }
+
+    /**
+     * Reabre o diretório como num restart (o journal anterior já fechado) e devolve
+     * lsb -> {amountCents, timestampMillis}.
+     */
+    private static Map<Long, long[]> replay(Path directory) {
+        Map<Long, long[]> replayed = new HashMap<>();
+        PaymentJournal journal = PaymentJournal.open(directory);
+        journal.replayAndStart((msb, lsb, amountCents, timestampMillis) ->
+                assertNull(replayed.put(lsb, new long[]{amountCents, timestampMillis}), "replayed twice"));
+        journal.close();
+        return replayed;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+import villanidev.jproxypayment.dto.PaymentEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentRingBufferTest {
+
+    @Test
+    void requiresPowerOfTwoCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new PaymentRingBuffer(12));
+    }
+
+    @Test
+    void keepsFifoOrderAcrossWrapAround() {
+        PaymentRingBuffer ring = new PaymentRingBuffer(4);
+        assertNull(ring.poll());
+        for (long round = 0; round < 3; round++) {
+            for (long i = 0; i < 4; i++) {
+                assertTrue(ring.offer(round, i, i * 100, 1000 + i, (int) i));
+            }
+            assertFalse(ring.offer(round, 99, 0, 0, 0));
+            assertEquals(4, ring.size());
+            for (long i = 0; i < 4; i++) {
+                PaymentEvent event = ring.poll();
+                assertEquals(round, event.request().correlationId().getMostSignificantBits());
+                assertEquals(i, event.request().correlationId().getLeastSignificantBits());
+                assertEquals(i * 100, event.request().amountCents());
+                assertEquals(1000 + i, event.timestamp().toEpochMilli());
+                assertEquals(i, event.attempts());
+            }
+            assertNull(ring.poll());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    void deliversEveryItemOnceWithConcurrentProducersAndConsumers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 100_000;
+        int total = producers * perProducer;
+        PaymentRingBuffer ring = new PaymentRingBuffer(256);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long id = (long) producer * perProducer + i;
+                    while (!ring.offer(0, id, id, id, 0)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        CountDownLatch consumed = new CountDownLatch(total);
+        for (int c = 0; c < 4; c++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                while (consumed.getCount() > 0) {
+                    PaymentEvent event = ring.poll();
+                    if (event == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    seen.incrementAndGet((int) event.request().correlationId().getLeastSignificantBits());
+                    consumed.countDown();
+                }
+            }));
+        }
+
+        assertTrue(consumed.await(30, TimeUnit.SECONDS), "pending: " + consumed.getCount());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, seen.get(i), "item " + i);
+        }
+    }
+}
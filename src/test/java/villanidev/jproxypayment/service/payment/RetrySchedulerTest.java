@@ -0,0 +1,65 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+import villanidev.jproxypayment.dto.PaymentEvent;
+import villanidev.jproxypayment.dto.PaymentRequest;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetrySchedulerTest {
+    // MAX_PENDING da roda mais MAX_OVERFLOW
+    private static final int CAPACITY = 16_384 + 16_384;
+
+    private static PaymentEvent event(long id) {
+        return new PaymentEvent(new PaymentRequest(new UUID(0, id), 100), Instant.ofEpochMilli(1_000), 1);
+    }
+
+    @Test
+    void shedsToTheQueueOnlyWhenWheelAndOverflowAreFull() {
+        AtomicInteger released = new AtomicInteger();
+        RetryScheduler scheduler = new RetryScheduler(
+                (msb, lsb, cents, timestampMillis, attempts) -> released.incrementAndGet(),
+                () -> false);
+
+        for (int i = 0; i < CAPACITY + 5; i++) {
+            scheduler.hold(event(i), 60_000);
+        }
+
+        assertEquals(CAPACITY, scheduler.pendingCount());
+        assertEquals(16_384, scheduler.overflowCount());
+        assertEquals(5, scheduler.shedCount());
+        assertEquals(5, released.get());
+    }
+
+    @Test
+    void reportsParkedTimeApartFromReleaseLag() throws InterruptedException {
+        AtomicBoolean allDown = new AtomicBoolean(true);
+        CountDownLatch released = new CountDownLatch(1);
+        RetryScheduler scheduler = new RetryScheduler(
+                (msb, lsb, cents, timestampMillis, attempts) -> released.countDown(),
+                allDown::get);
+
+        scheduler.hold(event(1), 0);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.parkedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, scheduler.parkedCount());
+
+        Thread.sleep(300);
+        allDown.set(false);
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, scheduler.releasedCount());
+        assertTrue(scheduler.maxParkedMillis() >= 300, "parked " + scheduler.maxParkedMillis());
+        assertTrue(scheduler.maxLagMillis() < 300, "lag " + scheduler.maxLagMillis());
+    }
+}
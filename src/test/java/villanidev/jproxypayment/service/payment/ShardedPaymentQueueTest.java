@@ -0,0 +1,83 @@
+package villanidev.jproxypayment.service.payment;
+
+import org.junit.jupiter.api.Test;
+import villanidev.jproxypayment.dto.PaymentEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedPaymentQueueTest {
+
+    @Test
+    void spillsToOverflowWhenTheRingsAreFull() throws InterruptedException {
+        ShardedPaymentQueue queue = new ShardedPaymentQueue(2);
+        int total = 3 * 4096;
+        for (long i = 0; i < total; i++) {
+            queue.offer(0, i, i, i);
+        }
+        queue.offerRetry(1, 0, 7, 7, 3);
+        assertEquals(total + 1, queue.size());
+        assertEquals(1, queue.retrySize());
+
+        Set<Long> taken = new HashSet<>();
+        for (int i = 0; i <= total; i++) {
+            PaymentEvent event = queue.take(i % 2);
+            assertTrue(taken.add(event.request().correlationId().getMostSignificantBits() * total
+                    + event.request().correlationId().getLeastSignificantBits()));
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void wakesParkedWorkersForEveryPayment() throws InterruptedException {
+        int workers = 4;
+        int total = 200_000;
+        // Sem rede de segurança: um sinal perdido deixa o worker estacionado até o fim do teste
+        ShardedPaymentQueue queue = new ShardedPaymentQueue(workers, Long.MAX_VALUE);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        CountDownLatch done = new CountDownLatch(total);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        PaymentEvent event = queue.take(worker);
+                        seen.incrementAndGet((int) event.request().correlationId().getLeastSignificantBits());
+                        done.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    // fim do teste
+                }
+            }));
+        }
+
+        // Em rajadas, para os workers estacionarem entre elas e dependerem do sinal
+        for (long i = 0; i < total; i++) {
+            if (i % 2 == 0) {
+                queue.offer(0, i, i, i);
+            } else {
+                queue.offerRetry(0, i, i, i, 1);
+            }
+            if (i % 10_000 == 0) {
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), "pending: " + done.getCount());
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, seen.get(i), "item " + i);
+        }
+    }
+}
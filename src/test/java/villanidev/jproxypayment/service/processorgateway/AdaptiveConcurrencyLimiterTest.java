@@ -0,0 +1,136 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void handsOutPermitsUpToTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        int permits = acquireAll(limiter);
+
+        assertEquals(16, permits);
+        assertEquals(16, limiter.inFlight());
+        limiter.onIgnored();
+        assertTrue(limiter.acquire(Duration.ZERO));
+    }
+
+    @Test
+    void growsWhileLatencyStaysNearTheMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        for (int round = 0; round < 200; round++) {
+            completeAll(limiter, acquireAll(limiter), RTT);
+        }
+        assertTrue(limiter.limit() > 32, "limit " + limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void doesNotGrowWhenTheApplicationIsTheBottleneck() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        // Uma chamada por vez: o processador nunca é exigido perto do limite
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(limiter.acquire(Duration.ZERO));
+            limiter.onSuccess(RTT);
+        }
+        assertEquals(16, limiter.limit());
+    }
+
+    @Test
+    void shrinksWhenLatencyPassesTheToleranceAndHoldsBelowIt() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        completeAll(limiter, acquireAll(limiter), RTT);
+        int before = limiter.limit();
+
+        // 1.4x a mínima ainda está dentro da tolerância de 1.5x
+        for (int round = 0; round < 20; round++) {
+            completeAll(limiter, acquireAll(limiter), RTT * 14 / 10);
+        }
+        assertTrue(limiter.limit() >= before, "limit " + limiter.limit());
+
+        for (int round = 0; round < 200; round++) {
+            completeAll(limiter, acquireAll(limiter), RTT * 10);
+        }
+        assertEquals(2, limiter.limit());
+        assertEquals(10, limiter.minRttMillis());
+    }
+
+    @Test
+    void cutsTheLimitOnDrops() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        assertTrue(limiter.acquire(Duration.ZERO));
+        limiter.onDropped();
+        // 16 * 0.7
+        assertEquals(11, limiter.limit());
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.acquire(Duration.ZERO));
+            limiter.onDropped();
+        }
+        assertEquals(2, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void wakesAWaiterWhenAPermitIsReleased() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        acquireAll(limiter);
+        assertFalse(limiter.acquire(Duration.ofMillis(20)));
+
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        Thread thread = Thread.ofVirtual().start(() -> {
+            try {
+                waiter.complete(limiter.acquire(Duration.ofSeconds(10)));
+            } catch (InterruptedException e) {
+                waiter.completeExceptionally(e);
+            }
+        });
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        limiter.onIgnored();
+
+        // Bem antes dos 10 s do acquire: acordou pelo sinal
+        assertTrue(waiter.get(2, TimeUnit.SECONDS));
+        assertEquals(16, limiter.inFlight());
+    }
+
+    @Test
+    void tracksTheMinimumLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("default");
+        assertEquals(0, limiter.minRttMillis());
+
+        assertTrue(limiter.acquire(Duration.ZERO));
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(limiter.acquire(Duration.ZERO));
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(12));
+        assertTrue(limiter.acquire(Duration.ZERO));
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(12, limiter.minRttMillis());
+    }
+
+    private static int acquireAll(AdaptiveConcurrencyLimiter limiter) throws InterruptedException {
+        int permits = 0;
+        while (limiter.acquire(Duration.ZERO)) {
+            permits++;
+        }
+        return permits;
+    }
+
+    private static void completeAll(AdaptiveConcurrencyLimiter limiter, int permits, long rttNanos) {
+        for (int i = 0; i < permits; i++) {
+            limiter.onSuccess(rttNanos);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(200).toNanos();
+    private static final long OPEN_NANOS = Duration.ofMillis(50).toNanos();
+
+    @Test
+    void staysClosedUntilTheMinimumNumberOfCalls() {
+        CircuitBreaker breaker = breaker();
+        failures(breaker, 19);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquirePermission());
+
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void opensAtTheFailureRate() {
+        CircuitBreaker breaker = breaker();
+        successes(breaker, 11);
+        failures(breaker, 9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // 10 de 21: ainda abaixo de 50%; 11 de 22 abre
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        CircuitBreaker breaker = breaker();
+        successes(breaker, 4);
+        for (int i = 0; i < 15; i++) {
+            breaker.onSuccess(SLOW);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // 16 lentas de 20
+        breaker.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void judgesOnlyTheSlidingWindow() {
+        CircuitBreaker breaker = breaker();
+        successes(breaker, 50);
+        failures(breaker, 24);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // 25 falhas nas últimas 50; no acumulado seriam só 25 de 75
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void refusesWhileOpenAndIgnoresLateResults() {
+        CircuitBreaker breaker = opened();
+
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowsTraffic());
+        assertFalse(breaker.tryAcquirePermission());
+        // Chamadas que saíram antes de abrir não fecham nem reabrem
+        successes(breaker, 50);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void letsOnlyTheTrialCallsThroughWhenHalfOpen() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        awaitOpenDuration();
+
+        assertTrue(breaker.allowsTraffic());
+        assertFalse(breaker.isOpen());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquirePermission(), "trial " + i);
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+        assertFalse(breaker.allowsTraffic());
+    }
+
+    @Test
+    void closesWithAFreshWindowAfterSuccessfulTrials() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        awaitOpenDuration();
+        trials(breaker, 5);
+
+        successes(breaker, 3);
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // As falhas de antes não contam mais: é preciso o mínimo de chamadas de novo
+        failures(breaker, 19);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void reopensWhenTheTrialsFail() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        awaitOpenDuration();
+        trials(breaker, 5);
+
+        breaker.onSuccess(FAST);
+        failures(breaker, 2);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+
+        // E o ciclo recomeça
+        awaitOpenDuration();
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker("default", OPEN_NANOS);
+    }
+
+    private static CircuitBreaker opened() {
+        CircuitBreaker breaker = breaker();
+        failures(breaker, 20);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    private static void awaitOpenDuration() throws InterruptedException {
+        Thread.sleep(Duration.ofNanos(OPEN_NANOS * 2));
+    }
+
+    private static void trials(CircuitBreaker breaker, int trials) {
+        for (int i = 0; i < trials; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+        }
+    }
+
+    private static void successes(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onSuccess(FAST);
+        }
+    }
+
+    private static void failures(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onError();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CostBasedRoutingPolicyTest {
+
+    private static final double DEFAULT_FEE = 0.05;
+    private static final double FALLBACK_FEE = 0.15;
+
+    // 0.04 da taxa por segundo de atraso, temperatura 0.01
+    private final CostBasedRoutingPolicy policy = new CostBasedRoutingPolicy();
+
+    @Test
+    void sendsEverythingToTheCheaperProcessorWhenBothAreFast() {
+        assertEquals(RoutingDecision.ALL_DEFAULT,
+                policy.decide(healthy("default", DEFAULT_FEE, 10, 0), healthy("fallback", FALLBACK_FEE, 10, 0)));
+    }
+
+    @Test
+    void splitsByTheLogisticWeightWhenCostsAreClose() {
+        // Default lento e falhando metade: 2,5 s esperados, custo quase igual ao do fallback
+        ProcessorView defaultView = healthy("default", DEFAULT_FEE, 1_250, 0.5);
+        ProcessorView fallbackView = healthy("fallback", FALLBACK_FEE, 10, 0);
+        double difference = policy.expectedCost(defaultView) - policy.expectedCost(fallbackView);
+
+        RoutingDecision decision = policy.decide(defaultView, fallbackView);
+
+        assertFalse(decision.hold());
+        assertEquals(1 / (1 + Math.exp(difference / 0.01)), decision.defaultWeight(), 1e-9);
+        assertTrue(decision.defaultWeight() > 0.4 && decision.defaultWeight() < 0.6, decision.encode());
+    }
+
+    @Test
+    void shiftsTheSplitTowardsFallbackAsTheDefaultSlowsDown() {
+        ProcessorView fallbackView = healthy("fallback", FALLBACK_FEE, 10, 0);
+        double previous = 1;
+        for (long latency = 2_300; latency <= 2_800; latency += 100) {
+            double weight = policy.decide(healthy("default", DEFAULT_FEE, latency, 0), fallbackView).defaultWeight();
+            assertTrue(weight < previous, "latency " + latency);
+            previous = weight;
+        }
+    }
+
+    @Test
+    void snapsToOneProcessorPastTheMinimumShare() {
+        // Mesma latência: a diferença de custo é só a de taxa. 0.046 / 0.01 dá peso 0.990 (> 99%), 0.045 dá 0.989
+        assertEquals(RoutingDecision.ALL_DEFAULT,
+                policy.decide(healthy("default", 0.05, 10, 0), healthy("fallback", 0.096, 10, 0)));
+        RoutingDecision split = policy.decide(healthy("default", 0.05, 10, 0), healthy("fallback", 0.095, 10, 0));
+        assertEquals(0.989, split.defaultWeight(), 0.001);
+
+        assertEquals(RoutingDecision.ALL_FALLBACK,
+                policy.decide(healthy("default", 0.096, 10, 0), healthy("fallback", 0.05, 10, 0)));
+        split = policy.decide(healthy("default", 0.095, 10, 0), healthy("fallback", 0.05, 10, 0));
+        assertEquals(0.011, split.defaultWeight(), 0.001);
+    }
+
+    @Test
+    void holdsWhileWaitingForTheDefaultIsCheaperThanTheFallback() {
+        // Fallback custa 0.1504; esperar o default custa 0.05 + 0.04 por segundo fora (mínimo 1 s)
+        ProcessorView fallbackView = healthy("fallback", FALLBACK_FEE, 10, 0);
+
+        assertEquals(RoutingDecision.HOLD, policy.decide(down("default", DEFAULT_FEE, 0), fallbackView));
+        assertEquals(RoutingDecision.HOLD, policy.decide(down("default", DEFAULT_FEE, 2_500), fallbackView));
+        // Fora há mais de 2,51 s: a espera estimada já custa mais que pagar a taxa do fallback
+        assertEquals(RoutingDecision.ALL_FALLBACK, policy.decide(down("default", DEFAULT_FEE, 2_520), fallbackView));
+    }
+
+    @Test
+    void holdsLessWhenTheFallbackIsCheap() {
+        ProcessorView cheapFallback = healthy("fallback", DEFAULT_FEE, 10, 0);
+        assertEquals(RoutingDecision.ALL_FALLBACK, policy.decide(down("default", DEFAULT_FEE, 0), cheapFallback));
+    }
+
+    @Test
+    void neverHoldsForASlowDefaultWhenTheFallbackIsDown() {
+        RoutingDecision decision = policy.decide(healthy("default", DEFAULT_FEE, 5_000, 0.9), down("fallback", FALLBACK_FEE, 10_000));
+        assertEquals(RoutingDecision.ALL_DEFAULT, decision);
+    }
+
+    @Test
+    void fallsBackToLatencyWhenBothAreDown() {
+        assertEquals(RoutingDecision.ALL_FALLBACK, policy.decide(
+                view("default", DEFAULT_FEE, true, 200, 5_000),
+                view("fallback", FALLBACK_FEE, true, 50, 5_000)));
+        assertEquals(RoutingDecision.ALL_DEFAULT, policy.decide(
+                view("default", DEFAULT_FEE, true, 50, 60_000),
+                view("fallback", FALLBACK_FEE, true, 200, 0)));
+    }
+
+    @Test
+    void treatsUnknownLatencyAsDown() {
+        ProcessorView unknown = new ProcessorView("default", DEFAULT_FEE, false, Integer.MAX_VALUE, 0, 0);
+        assertEquals(RoutingDecision.HOLD, policy.decide(unknown, healthy("fallback", FALLBACK_FEE, 10, 0)));
+    }
+
+    private static ProcessorView healthy(String name, double fee, long latencyMillis, double failureProbability) {
+        return new ProcessorView(name, fee, false, latencyMillis, failureProbability, 0);
+    }
+
+    private static ProcessorView down(String name, double fee, long unavailableForMillis) {
+        return view(name, fee, true, 10, unavailableForMillis);
+    }
+
+    private static ProcessorView view(String name, double fee, boolean failing, long latencyMillis, long unavailableForMillis) {
+        return new ProcessorView(name, fee, failing, latencyMillis, 0, unavailableForMillis);
+    }
+}
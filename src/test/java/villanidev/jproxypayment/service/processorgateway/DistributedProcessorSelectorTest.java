@@ -0,0 +1,144 @@
+package villanidev.jproxypayment.service.processorgateway;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistributedProcessorSelectorTest {
+
+    private RedisServer redis;
+    private JedisPool pool;
+
+    @BeforeEach
+    void startRedis() throws IOException {
+        redis = RedisServer.newRedisServer().start();
+        pool = new JedisPool("127.0.0.1", redis.getBindPort());
+    }
+
+    @AfterEach
+    void stopRedis() throws IOException {
+        pool.close();
+        redis.stop();
+    }
+
+    @Test
+    void electsOneLeaderAndKeepsItsTokenOnRenewal() {
+        DistributedProcessorSelector first = selector("1");
+        DistributedProcessorSelector second = selector("2");
+
+        first.maintainLeadership();
+        second.maintainLeadership();
+        first.maintainLeadership();
+
+        assertTrue(first.isLeader());
+        assertFalse(second.isLeader());
+        assertEquals("1:1", get("routing_leader:lease"));
+        assertEquals("1", get("routing_leader:fence"));
+        assertTrue(get("best_processor").startsWith("1|"), get("best_processor"));
+    }
+
+    @Test
+    void givesEachNewTermAHigherToken() {
+        DistributedProcessorSelector first = selector("1");
+        DistributedProcessorSelector second = selector("2");
+        first.maintainLeadership();
+
+        expireLease();
+        second.maintainLeadership();
+        first.maintainLeadership();
+
+        assertTrue(second.isLeader());
+        assertFalse(first.isLeader());
+        assertEquals("2:2", get("routing_leader:lease"));
+        assertTrue(get("best_processor").startsWith("2|"), get("best_processor"));
+    }
+
+    @Test
+    void fencesAStaleLeaderOutOfPublishing() {
+        DistributedProcessorSelector first = selector("1");
+        DistributedProcessorSelector second = selector("2");
+        first.maintainLeadership();
+        expireLease();
+        second.maintainLeadership();
+        String published = get("best_processor");
+
+        // O antigo ainda acha que é líder (a lease local não venceu) e tenta publicar
+        assertTrue(first.isLeader());
+        first.updateProcessorHealth("default", false, 10);
+
+        assertEquals(published, get("best_processor"));
+        assertFalse(first.isLeader());
+        assertTrue(second.isLeader());
+    }
+
+    @Test
+    void dropsStatesFromOlderTerms() {
+        DistributedProcessorSelector selector = selector("1");
+        long now = System.currentTimeMillis();
+
+        selector.apply(state(5, RoutingDecision.ALL_FALLBACK, now));
+        assertEquals(RoutingDecision.ALL_FALLBACK, selector.route());
+
+        // Líder antigo que acordou atrasado
+        selector.apply(state(4, RoutingDecision.ALL_DEFAULT, now + 100));
+        assertEquals(RoutingDecision.ALL_FALLBACK, selector.route());
+
+        // Mesmo mandato: a publicação seguinte vale
+        selector.apply(state(5, RoutingDecision.split(0.5), now + 200));
+        assertEquals(0.5, selector.route().defaultWeight());
+
+        selector.apply(state(6, RoutingDecision.HOLD, now + 300));
+        assertEquals(RoutingDecision.HOLD, selector.route());
+    }
+
+    @Test
+    void acceptsALowerTokenOnceTheCurrentStateExpired() {
+        DistributedProcessorSelector selector = selector("1");
+        long now = System.currentTimeMillis();
+        selector.apply(state(9, RoutingDecision.ALL_FALLBACK, now));
+
+        // O Redis perdeu os dados e o contador de tokens recomeçou
+        selector.apply(state(1, RoutingDecision.ALL_DEFAULT, now + 10_000));
+        assertEquals(RoutingDecision.ALL_FALLBACK, selector.route());
+        selector.apply(state(1, RoutingDecision.ALL_DEFAULT, now + 10_001));
+        assertEquals(RoutingDecision.ALL_DEFAULT, selector.route());
+    }
+
+    private DistributedProcessorSelector selector(String instanceId) {
+        return new DistributedProcessorSelector(pool, instanceId,
+                endpoint("default", 0.05), endpoint("fallback", 0.15), new LatencyRoutingPolicy());
+    }
+
+    private static ProcessorEndpoint endpoint(String name, double fee) {
+        return new ProcessorEndpoint(name, fee, new CircuitBreaker(name), new ProcessorLatencyStats(name));
+    }
+
+    private static ClusterRoutingState state(long token, RoutingDecision decision, long receivedAtMillis) {
+        ClusterRoutingState initial = ClusterRoutingState.initial(endpoint("default", 0.05), endpoint("fallback", 0.15));
+        return new ClusterRoutingState(token, decision, initial.defaultView(), initial.fallbackView(), receivedAtMillis);
+    }
+
+    /**
+     * Como se a lease tivesse vencido sem renovação.
+     */
+    private void expireLease() {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.del("routing_leader:lease");
+        }
+    }
+
+    private String get(String key) {
+        try (Jedis jedis = pool.getResource()) {
+            return jedis.get(key);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package villanidev.jproxypayment.service.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentAggregatesTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private record Payment(boolean fallback, long amountCents, long timestampMillis) {}
+
+    @Test
+    void matchesBruteForceSumInsideTheWindow() {
+        Random random = new Random(42);
+        PaymentAggregates aggregates = new PaymentAggregates(START, 1000);
+        List<Payment> payments = new ArrayList<>();
+        long now = START;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                now += random.nextInt(20);
+                // Alguns chegam atrasados, inclusive para antes da janela
+                long timestamp = random.nextInt(10) == 0 ? Math.max(START, now - random.nextInt(3000)) : now;
+                record(aggregates, payments, new Payment(random.nextBoolean(), 1 + random.nextInt(10_000), timestamp));
+            }
+            long windowFrom = Math.max(START, now - 900);
+            for (int q = 0; q < 20; q++) {
+                long from = windowFrom + random.nextInt((int) (now - windowFrom + 1));
+                long to = from + random.nextInt((int) (now - from + 1));
+                assertExact(aggregates, payments, from, to);
+            }
+        }
+    }
+
+    @Test
+    void answersRangesCoveringEverythingEvicted() {
+        Random random = new Random(7);
+        PaymentAggregates aggregates = new PaymentAggregates(START, 1000);
+        List<Payment> payments = new ArrayList<>();
+        for (long t = START; t < START + 10_000; t += 1 + random.nextInt(5)) {
+            record(aggregates, payments, new Payment(random.nextBoolean(), 1 + random.nextInt(100), t));
+        }
+        assertExact(aggregates, payments, START, Long.MAX_VALUE);
+        assertExact(aggregates, payments, START, START + 9_990);
+    }
+
+    @Test
+    void refusesRangesItCannotAnswerExactly() {
+        PaymentAggregates aggregates = new PaymentAggregates(START, 1000);
+        List<Payment> payments = new ArrayList<>();
+        for (long t = START; t < START + 10_000; t += 10) {
+            record(aggregates, payments, new Payment(false, 100, t));
+        }
+        long[] totals = new long[4];
+
+        // Antes de a instância cobrir os pagamentos
+        assertFalse(aggregates.sum(START - 1, Long.MAX_VALUE, totals));
+        // Cortando o acumulado que saiu do anel ao meio
+        assertFalse(aggregates.sum(START + 1_000, Long.MAX_VALUE, totals));
+        // Faixa vazia
+        assertTrue(aggregates.sum(START + 5, START + 4, totals));
+        assertArrayEquals(new long[4], totals);
+    }
+
+    private static void record(PaymentAggregates aggregates, List<Payment> payments, Payment payment) {
+        aggregates.record(payment.fallback() ? "fallback" : "default", payment.amountCents(), payment.timestampMillis());
+        payments.add(payment);
+    }
+
+    private static void assertExact(PaymentAggregates aggregates, List<Payment> payments, long from, long to) {
+        long[] totals = new long[4];
+        assertTrue(aggregates.sum(from, to, totals), () -> "not exact: " + from + ".." + to);
+        assertArrayEquals(bruteForce(payments, from, to), totals, () -> "range " + from + ".." + to);
+    }
+
+    private static long[] bruteForce(List<Payment> payments, long from, long to) {
+        long[] totals = new long[4];
+        for (Payment payment : payments) {
+            if (payment.timestampMillis() >= from && payment.timestampMillis() <= to) {
+                int series = payment.fallback() ? 2 : 0;
+                totals[series]++;
+                totals[series + 1] += payment.amountCents();
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,32 @@
+package villanidev.jproxypayment.service.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SummaryServiceTest {
+
+    @Test
+    void addsWellFormedPartials() {
+        long[] totals = {1, 2, 3, 4};
+        assertTrue(SummaryService.addPartial(bytes("10 2000 0 9223372036854775"), totals));
+        assertTrue(SummaryService.addPartial(bytes("1 1 1 1\r\n"), totals));
+        assertArrayEquals(new long[]{12, 2003, 4, 9223372036854780L}, totals);
+    }
+
+    @Test
+    void rejectsMalformedPartials() {
+        for (String body : new String[]{"", "1 2 3", "1 2 3 4 5", "1  2 3 4", " 1 2 3 4", "1 2 3 -4", "1 2 3 x",
+                "1 2 3 4x", "1 2 3 99999999999999999999"}) {
+            assertFalse(SummaryService.addPartial(bytes(body), new long[4]), body);
+        }
+    }
+
+    private static byte[] bytes(String body) {
+        return body.getBytes(StandardCharsets.US_ASCII);
+    }
+}